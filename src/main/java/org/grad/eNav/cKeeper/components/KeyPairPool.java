@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.cKeeper.utils.X509Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The KeyPairPool Component Class
+ *
+ * This component maintains a bounded pool of pre-generated EC key-pairs for
+ * each of the configured curves. The pools are refilled by a low-priority
+ * background worker, so that the certificate generation does not need to
+ * perform the (relatively expensive) key generation on the request thread.
+ * If a pool is exhausted, or a curve is not pooled, the key-pair is just
+ * generated on demand.
+ * <p/>
+ * The pool depth, the number of pre-generated key-pairs and the number of
+ * pool misses are registered with the Micrometer meter registry.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class KeyPairPool {
+
+    /**
+     * Whether the key-pair pool is enabled.
+     */
+    @Value("${gla.rad.ckeeper.keypair.pool.enabled:true}")
+    boolean enabled = true;
+
+    /**
+     * The maximum number of pre-generated key-pairs per curve.
+     */
+    @Value("${gla.rad.ckeeper.keypair.pool.size:16}")
+    int size = 16;
+
+    /**
+     * The delay between two consecutive pool refill runs.
+     */
+    @Value("${gla.rad.ckeeper.keypair.pool.refill-interval-ms:1000}")
+    long refillIntervalMs = 1000;
+
+    /**
+     * The Key-Pair Curve.
+     */
+    @Value("${gla.rad.ckeeper.x509.keypair.curve:secp384r1}")
+    String keyPairCurve;
+
+    /**
+     * The device-specific Key-Pair Curve.
+     */
+    @Value("${gla.rad.ckeeper.x509.keypair.device.curve:secp256r1}")
+    String deviceKeyPairCurve;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    // Component Variables
+    protected final Map<String, BlockingQueue<KeyPair>> pools = new ConcurrentHashMap<>();
+    protected final Map<String, Counter> generatedCounters = new ConcurrentHashMap<>();
+    protected final Map<String, Counter> missCounters = new ConcurrentHashMap<>();
+    protected ScheduledExecutorService refillExecutor;
+
+    /**
+     * Once the component has been initialised, we can create the pools for
+     * the configured curves, register their metrics and start the background
+     * refill worker.
+     */
+    @PostConstruct
+    public void init() {
+        // Only run when enabled
+        if(!this.enabled) {
+            return;
+        }
+
+        // Create a pool for each distinct curve
+        Arrays.asList(this.keyPairCurve, this.deviceKeyPairCurve)
+                .stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(curve -> {
+                    final BlockingQueue<KeyPair> pool = new ArrayBlockingQueue<>(Math.max(this.size, 1));
+                    this.pools.put(curve, pool);
+
+                    // Register the pool metrics if possible
+                    if(Objects.nonNull(this.meterRegistry)) {
+                        Gauge.builder("ckeeper.keypair.pool.depth", pool, BlockingQueue::size)
+                                .description("The number of pre-generated key-pairs available")
+                                .tag("curve", curve)
+                                .register(this.meterRegistry);
+                        this.generatedCounters.put(curve, Counter.builder("ckeeper.keypair.pool.generated")
+                                .description("The number of key-pairs pre-generated by the refill worker")
+                                .tag("curve", curve)
+                                .register(this.meterRegistry));
+                        this.missCounters.put(curve, Counter.builder("ckeeper.keypair.pool.misses")
+                                .description("The number of key-pairs generated on demand due to an empty pool")
+                                .tag("curve", curve)
+                                .register(this.meterRegistry));
+                    }
+                });
+
+        // Start the low-priority background refill worker
+        this.refillExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "keypair-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.refillExecutor.scheduleWithFixedDelay(this::refill, 0, Math.max(this.refillIntervalMs, 1), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * When shutting down the application we need to make sure that the
+     * background refill worker is terminated.
+     */
+    @PreDestroy
+    public void destroy() {
+        log.info("Key-pair pool is shutting down...");
+        Optional.ofNullable(this.refillExecutor).ifPresent(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Takes a key-pair for the provided curve out of the pool. If the pool is
+     * empty, or the curve is not pooled, the key-pair is generated on demand.
+     *
+     * @param curve the curve of the key-pair
+     * @return the key-pair for the provided curve
+     * @throws NoSuchAlgorithmException if the EC key generation algorithm is not found
+     * @throws InvalidAlgorithmParameterException if the provided curve is not valid
+     */
+    public KeyPair take(String curve) throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+        final KeyPair keyPair = Optional.ofNullable(curve)
+                .map(this.pools::get)
+                .map(BlockingQueue::poll)
+                .orElse(null);
+        if(Objects.nonNull(keyPair)) {
+            return keyPair;
+        }
+
+        // Otherwise generate on demand
+        Optional.ofNullable(curve)
+                .map(this.missCounters::get)
+                .ifPresent(Counter::increment);
+        return X509Utils.generateKeyPair(curve);
+    }
+
+    /**
+     * Returns the number of pre-generated key-pairs currently available for
+     * the provided curve.
+     *
+     * @param curve the curve of the key-pairs
+     * @return the number of available pre-generated key-pairs
+     */
+    public int available(String curve) {
+        return Optional.ofNullable(curve)
+                .map(this.pools::get)
+                .map(BlockingQueue::size)
+                .orElse(0);
+    }
+
+    /**
+     * Refills all the pools up to their capacity. This is normally performed
+     * by the background refill worker.
+     */
+    protected void refill() {
+        for(Map.Entry<String, BlockingQueue<KeyPair>> entry : this.pools.entrySet()) {
+            try {
+                while(entry.getValue().remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                    if(!entry.getValue().offer(X509Utils.generateKeyPair(entry.getKey()))) {
+                        break;
+                    }
+                    Optional.ofNullable(this.generatedCounters.get(entry.getKey()))
+                            .ifPresent(Counter::increment);
+                }
+            } catch (Exception ex) {
+                log.error("Key-pair pool refill failed for curve {}: {}", entry.getKey(), ex.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The McpCircuitBreaker Component Class
+ *
+ * This component keeps track of the MCP Identity Registry connectivity in
+ * memory, so that the MCP operations do not need to contact the registry
+ * beforehand to find out whether it is up. It follows a simple circuit
+ * breaker state machine:
+ * <ul>
+ *     <li>CLOSED: The MCP MIR is considered reachable.</li>
+ *     <li>OPEN: A number of consecutive failures were detected, so all
+ *     operations are rejected until the open duration expires.</li>
+ *     <li>HALF_OPEN: The open duration has expired, so a single trial
+ *     operation is let through, and its outcome will close or re-open the
+ *     circuit. If the trial outcome is not recorded within the open
+ *     duration, another trial is admitted.</li>
+ * </ul>
+ * The outcomes are fed both by the actual MCP MIR calls and by a background
+ * connectivity probe. The current state and the state transitions are
+ * registered with the Micrometer meter registry.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class McpCircuitBreaker {
+
+    /**
+     * The number of consecutive failures that will open the circuit.
+     */
+    @Value("${gla.rad.ckeeper.mcp.circuit.failure-threshold:3}")
+    int failureThreshold = 3;
+
+    /**
+     * The time the circuit remains open before operations are let through.
+     */
+    @Value("${gla.rad.ckeeper.mcp.circuit.open-duration-ms:30000}")
+    long openDurationMs = 30000;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    /**
+     * The circuit breaker states.
+     */
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    // Component Variables
+    protected final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    protected final AtomicInteger consecutiveFailures = new AtomicInteger();
+    protected final AtomicBoolean trialInFlight = new AtomicBoolean();
+    protected volatile Instant trialStartedAt = Instant.EPOCH;
+    protected volatile Instant openedAt = Instant.EPOCH;
+    protected volatile Instant lastTransition = Instant.now();
+
+    /**
+     * Once the component has been initialised, we can register the circuit
+     * breaker state metrics.
+     */
+    @PostConstruct
+    public void init() {
+        if(Objects.nonNull(this.meterRegistry)) {
+            Gauge.builder("ckeeper.mcp.circuit.state", this.state, s -> s.get().ordinal())
+                    .description("The MCP circuit breaker state (0=closed, 1=half-open, 2=open)")
+                    .register(this.meterRegistry);
+            Gauge.builder("ckeeper.mcp.circuit.failures", this.consecutiveFailures, AtomicInteger::get)
+                    .description("The number of consecutive MCP failures")
+                    .register(this.meterRegistry);
+        }
+    }
+
+    /**
+     * Answers whether the MCP MIR operations should be attempted. When the
+     * circuit is open and the open duration has expired, it will move to the
+     * half-open state, where only a single trial operation is let through
+     * until its outcome is recorded.
+     *
+     * @return whether the MCP MIR is considered reachable
+     */
+    public boolean isAvailable() {
+        final State current = this.state.get();
+        if(current == State.CLOSED) {
+            return true;
+        }
+
+        // Check whether the open duration has expired
+        if(current == State.OPEN) {
+            if(Instant.now().isBefore(this.openedAt.plus(Duration.ofMillis(this.openDurationMs)))) {
+                return false;
+            }
+            this.transition(State.OPEN, State.HALF_OPEN);
+        }
+
+        // Only admit a single trial, unless its outcome was never recorded
+        if(this.trialInFlight.get() && Instant.now().isAfter(this.trialStartedAt.plus(Duration.ofMillis(this.openDurationMs)))) {
+            this.trialInFlight.set(false);
+        }
+        if(this.trialInFlight.compareAndSet(false, true)) {
+            this.trialStartedAt = Instant.now();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a successful MCP MIR operation, which will close the circuit.
+     */
+    public void recordSuccess() {
+        this.consecutiveFailures.set(0);
+        final State current = this.state.get();
+        if(current != State.CLOSED) {
+            this.transition(current, State.CLOSED);
+        }
+        this.trialInFlight.set(false);
+    }
+
+    /**
+     * Records a failed MCP MIR operation. Once the configured number of
+     * consecutive failures is reached, or if a half-open trial fails, the
+     * circuit will be opened.
+     */
+    public void recordFailure() {
+        final int failures = this.consecutiveFailures.incrementAndGet();
+        final State current = this.state.get();
+        if(current == State.HALF_OPEN || (current == State.CLOSED && failures >= this.failureThreshold)) {
+            this.transition(current, State.OPEN);
+        }
+        this.trialInFlight.set(false);
+    }
+
+    /**
+     * Returns the current circuit breaker state.
+     *
+     * @return the current circuit breaker state
+     */
+    public State getState() {
+        return this.state.get();
+    }
+
+    /**
+     * Returns the number of consecutive failures recorded.
+     *
+     * @return the number of consecutive failures
+     */
+    public int getConsecutiveFailures() {
+        return this.consecutiveFailures.get();
+    }
+
+    /**
+     * Returns the time of the last state transition.
+     *
+     * @return the time of the last state transition
+     */
+    public Instant getLastTransition() {
+        return this.lastTransition;
+    }
+
+    /**
+     * Performs a state transition, if the current state still matches the
+     * expected one, and records it.
+     *
+     * @param from the expected current state
+     * @param to the new state
+     * @return whether the transition took place
+     */
+    protected boolean transition(State from, State to) {
+        final Instant now = Instant.now();
+        if(to == State.OPEN) {
+            this.openedAt = now;
+        }
+        if(!this.state.compareAndSet(from, to)) {
+            return false;
+        }
+
+        // Record the transition
+        this.lastTransition = now;
+        log.info("MCP circuit breaker transitioned from {} to {}", from, to);
+        if(Objects.nonNull(this.meterRegistry)) {
+            Counter.builder("ckeeper.mcp.circuit.transitions")
+                    .description("The number of MCP circuit breaker state transitions")
+                    .tag("from", from.name())
+                    .tag("to", to.name())
+                    .register(this.meterRegistry)
+                    .increment();
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * The McpHealthIndicator Component Class
+ *
+ * An actuator health indicator that reports the MCP Identity Registry
+ * connectivity, as tracked by the MCP circuit breaker. Since the service
+ * should keep operating on its local state when the MCP is not reachable,
+ * an open circuit is reported as DEGRADED. This status is ordered between
+ * OUT_OF_SERVICE and UP, and mapped to HTTP 200, through the management
+ * health status properties, so it does not bring down the overall service
+ * health.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+public class McpHealthIndicator implements HealthIndicator {
+
+    /**
+     * The degraded health status.
+     */
+    public static final Status DEGRADED = new Status("DEGRADED", "The MCP Identity Registry is not reachable");
+
+    /**
+     * The MCP Circuit Breaker.
+     */
+    @Autowired
+    McpCircuitBreaker mcpCircuitBreaker;
+
+    /**
+     * Reports the MCP connectivity health based on the circuit breaker state.
+     *
+     * @return the MCP connectivity health
+     */
+    @Override
+    public Health health() {
+        final McpCircuitBreaker.State state = this.mcpCircuitBreaker.getState();
+        final Health.Builder builder = switch (state) {
+            case CLOSED -> Health.up();
+            case HALF_OPEN -> Health.unknown();
+            case OPEN -> Health.status(DEGRADED);
+        };
+        return builder
+                .withDetail("state", state)
+                .withDetail("consecutiveFailures", this.mcpCircuitBreaker.getConsecutiveFailures())
+                .withDetail("lastTransition", this.mcpCircuitBreaker.getLastTransition())
+                .build();
+    }
+
+}
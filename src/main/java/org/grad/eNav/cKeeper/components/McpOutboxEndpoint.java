@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import org.grad.eNav.cKeeper.models.domain.McpOutboxEntry;
+import org.grad.eNav.cKeeper.services.McpOutboxService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The McpOutboxEndpoint Component Class
+ *
+ * An actuator endpoint that reports the MCP outbox entries that have been
+ * marked as failed after running out of attempts, and allows them to be
+ * retried on demand.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Endpoint(id = "mcpoutbox")
+public class McpOutboxEndpoint {
+
+    /**
+     * The MCP Outbox Service.
+     */
+    @Autowired
+    McpOutboxService mcpOutboxService;
+
+    /**
+     * Reports the failed MCP outbox entries.
+     *
+     * @return the failed MCP outbox entries information
+     */
+    @ReadOperation
+    public Map<String, Object> failed() {
+        final List<Map<String, Object>> entries = this.mcpOutboxService.findFailed()
+                .stream()
+                .map(this::describe)
+                .toList();
+        final Map<String, Object> info = new LinkedHashMap<>();
+        info.put("failed", entries.size());
+        info.put("entries", entries);
+        return info;
+    }
+
+    /**
+     * Retries all the failed MCP outbox entries.
+     *
+     * @return the number of MCP outbox entries retried
+     */
+    @WriteOperation
+    public Map<String, Object> retry() {
+        final Map<String, Object> info = new LinkedHashMap<>();
+        info.put("retried", this.mcpOutboxService.retryFailed());
+        return info;
+    }
+
+    /**
+     * Describes the provided MCP outbox entry.
+     *
+     * @param entry the MCP outbox entry
+     * @return the MCP outbox entry information
+     */
+    protected Map<String, Object> describe(McpOutboxEntry entry) {
+        final Map<String, Object> info = new LinkedHashMap<>();
+        info.put("mrn", entry.getMrn());
+        info.put("version", entry.getVersion());
+        info.put("entityType", entry.getEntityType());
+        info.put("operation", entry.getOperation());
+        info.put("attempts", entry.getAttempts());
+        info.put("failedAt", entry.getFailedAt());
+        info.put("lastError", entry.getLastError());
+        return info;
+    }
+
+}
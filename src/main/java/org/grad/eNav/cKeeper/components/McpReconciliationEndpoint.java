@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import org.grad.eNav.cKeeper.services.McpReconciliationService;
+import org.grad.eNav.cKeeper.services.McpReconciliationService.ReconciliationProgress;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The McpReconciliationEndpoint Component Class
+ *
+ * An actuator endpoint that reports the progress of the current, or the
+ * last, bulk MCP reconciliation run.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Endpoint(id = "mcpreconciliation")
+public class McpReconciliationEndpoint {
+
+    /**
+     * The MCP Reconciliation Service.
+     */
+    @Autowired
+    McpReconciliationService mcpReconciliationService;
+
+    /**
+     * Reports the bulk MCP reconciliation progress.
+     *
+     * @return the bulk MCP reconciliation progress information
+     */
+    @ReadOperation
+    public Map<String, Object> progress() {
+        final ReconciliationProgress progress = this.mcpReconciliationService.getProgress();
+        final Map<String, Object> info = new LinkedHashMap<>();
+        info.put("running", progress.running());
+        info.put("startedAt", progress.startedAt());
+        info.put("finishedAt", progress.finishedAt());
+        info.put("total", progress.total());
+        info.put("processed", progress.processed());
+        info.put("synced", progress.synced());
+        info.put("mcpErrors", progress.mcpErrors());
+        info.put("failed", progress.failed());
+        info.put("revoked", progress.revoked());
+        info.put("issued", progress.issued());
+        info.put("entitiesPerSecond", progress.entitiesPerSecond());
+        info.put("mcpErrorRate", progress.mcpErrorRate());
+        return info;
+    }
+
+}
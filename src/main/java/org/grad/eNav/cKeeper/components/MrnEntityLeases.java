@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.cKeeper.exceptions.SavingFailedException;
+import org.grad.eNav.cKeeper.models.domain.MrnEntityLease;
+import org.grad.eNav.cKeeper.repos.MrnEntityLeaseRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The MrnEntityLeases Component Class
+ *
+ * This component provides cluster-wide mutual exclusion for the operations
+ * on the same MRN entity (e.g. the certificate issuance), when multiple
+ * cKeeper nodes share the same database. It complements the in-process
+ * {@link MrnEntityLocks}, which should be acquired first, so that each node
+ * only competes for the lease with a single thread per MRN entity.
+ * <p/>
+ * The leases are stored in a dedicated table, with a row per MRN entity. A
+ * lease is acquired either by inserting its row, or by taking over an
+ * expired one, so a node that crashes while holding a lease cannot block
+ * the rest of the cluster for longer than the lease duration. The lease
+ * expiry is always computed by the database clock, so that the nodes do not
+ * depend on their local clocks being in sync, and the lease is renewed in
+ * the background for as long as the protected operation is in progress.
+ * Each lease operation runs in its own short transaction, so that no
+ * database connection is held while the protected operation is running.
+ * <p/>
+ * The same leases can also guard cluster-wide singleton jobs, using lease
+ * IDs that are never assigned to MRN entities, e.g. zero.
+ * <p/>
+ * The time spent acquiring the leases is recorded in the meter registry.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class MrnEntityLeases {
+
+    /**
+     * Whether the cluster-wide leases are enabled.
+     */
+    @Value("${gla.rad.ckeeper.locks.lease.enabled:true}")
+    boolean enabled = true;
+
+    /**
+     * The duration of the leases in milliseconds.
+     */
+    @Value("${gla.rad.ckeeper.locks.lease.duration-ms:60000}")
+    long durationMs = 60000;
+
+    /**
+     * The maximum time to wait for a lease in milliseconds.
+     */
+    @Value("${gla.rad.ckeeper.locks.lease.acquire-timeout-ms:30000}")
+    long acquireTimeoutMs = 30000;
+
+    /**
+     * The interval between the lease acquisition attempts in milliseconds.
+     */
+    @Value("${gla.rad.ckeeper.locks.lease.retry-interval-ms:100}")
+    long retryIntervalMs = 100;
+
+    /**
+     * The name of the application, used to identify the lease owners.
+     */
+    @Value("${spring.application.name:cKeeper}")
+    String applicationName = "cKeeper";
+
+    /**
+     * The MRN Entity Lease Repo.
+     */
+    @Autowired
+    MrnEntityLeaseRepo mrnEntityLeaseRepo;
+
+    /**
+     * The Platform Transaction Manager.
+     */
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    // Component Variables
+    protected String nodeId;
+    protected ScheduledExecutorService renewalExecutor;
+
+    /**
+     * Once the component has been initialised, we can generate the unique
+     * identifier of this node, and create the executor that will be renewing
+     * the held leases.
+     */
+    @PostConstruct
+    public void init() {
+        this.nodeId = String.format("%s-%s", this.applicationName, UUID.randomUUID());
+        this.renewalExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "mrn-entity-lease-renewal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * When shutting down the application we need to make sure that the
+     * lease renewal executor is terminated.
+     */
+    @PreDestroy
+    public void destroy() {
+        Optional.ofNullable(this.renewalExecutor).ifPresent(ScheduledExecutorService::shutdownNow);
+    }
+
+    /**
+     * Executes the provided operation while holding the cluster-wide lease
+     * of the MRN entity identified by the provided ID, and returns its
+     * result. The lease is renewed every third of its duration until the
+     * operation completes. If the leases are disabled, the operation is
+     * executed straight away.
+     *
+     * @param mrnEntityId the MRN entity ID
+     * @param operation the operation to be executed
+     * @return the result of the operation
+     * @param <T> the type of the operation result
+     */
+    public <T> T withLease(@NotNull BigInteger mrnEntityId, @NotNull Supplier<T> operation) {
+        if(!this.enabled) {
+            return operation.get();
+        }
+
+        // Acquire the lease and record how long it took
+        final String owner = this.newOwner();
+        this.acquire(mrnEntityId, owner);
+        return this.runWithLease(mrnEntityId, owner, operation);
+    }
+
+    /**
+     * Executes the provided operation while holding the cluster-wide lease
+     * identified by the provided ID, but only if that lease can be acquired
+     * straight away. This is meant for cluster-wide singleton jobs, which
+     * should simply be skipped when already running on another node. If the
+     * leases are disabled, the operation is executed straight away.
+     *
+     * @param leaseId the lease ID
+     * @param operation the operation to be executed
+     * @return whether the lease was acquired and the operation executed
+     */
+    public boolean tryWithLease(@NotNull BigInteger leaseId, @NotNull Runnable operation) {
+        if(!this.enabled) {
+            operation.run();
+            return true;
+        }
+
+        // Try to acquire the lease once
+        final String owner = this.newOwner();
+        final long start = System.nanoTime();
+        if(!this.tryAcquire(leaseId, owner)) {
+            this.recordAcquisition("skipped", start);
+            return false;
+        }
+        this.recordAcquisition("acquired", start);
+        this.runWithLease(leaseId, owner, () -> {
+            operation.run();
+            return null;
+        });
+        return true;
+    }
+
+    /**
+     * Executes the provided operation while holding the acquired lease. The
+     * lease is renewed every third of its duration until the operation
+     * completes, and it is then released.
+     *
+     * @param leaseId the lease ID
+     * @param owner the owner of the acquired lease
+     * @param operation the operation to be executed
+     * @return the result of the operation
+     * @param <T> the type of the operation result
+     */
+    protected <T> T runWithLease(BigInteger leaseId, String owner, Supplier<T> operation) {
+        final long start = System.currentTimeMillis();
+        final long renewalIntervalMs = Math.max(this.durationMs / 3, 1);
+        final ScheduledFuture<?> renewal = this.renewalExecutor.scheduleAtFixedRate(
+                () -> this.renew(leaseId, owner), renewalIntervalMs, renewalIntervalMs, TimeUnit.MILLISECONDS);
+        try {
+            return operation.get();
+        } finally {
+            renewal.cancel(false);
+            this.release(leaseId, owner, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Generates a new unique lease owner for this node.
+     *
+     * @return the new lease owner
+     */
+    protected String newOwner() {
+        return String.format("%s:%s", this.nodeId, UUID.randomUUID());
+    }
+
+    /**
+     * Keeps trying to acquire the lease of the provided MRN entity for the
+     * provided owner, until either successful or the acquisition timeout
+     * expires.
+     *
+     * @param mrnEntityId the MRN entity ID
+     * @param owner the owner of the lease
+     */
+    protected void acquire(BigInteger mrnEntityId, String owner) {
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(this.acquireTimeoutMs);
+        try {
+            while(!this.tryAcquire(mrnEntityId, owner)) {
+                if(System.nanoTime() >= deadline) {
+                    this.recordAcquisition("timeout", start);
+                    throw new SavingFailedException(String.format("Timed out waiting for the lease of MRN Entity with ID: %d", mrnEntityId));
+                }
+                Thread.sleep(this.retryIntervalMs);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.recordAcquisition("interrupted", start);
+            throw new SavingFailedException(String.format("Interrupted while waiting for the lease of MRN Entity with ID: %d", mrnEntityId));
+        }
+        this.recordAcquisition("acquired", start);
+    }
+
+    /**
+     * Attempts to acquire the lease of the provided MRN entity once. This
+     * will either take over an expired lease, or create a new one if none
+     * exists. If another owner holds a valid lease, or manages to create one
+     * concurrently, the attempt fails.
+     *
+     * @param mrnEntityId the MRN entity ID
+     * @param owner the owner of the lease
+     * @return whether the lease was acquired
+     */
+    protected boolean tryAcquire(BigInteger mrnEntityId, String owner) {
+        final long durationSeconds = this.getDurationSeconds();
+        try {
+            return Boolean.TRUE.equals(this.getTransactionTemplate().execute(status -> {
+                // Take over the existing lease if it has expired
+                if(this.mrnEntityLeaseRepo.acquireExpired(mrnEntityId, owner, durationSeconds) > 0) {
+                    return true;
+                }
+                // Otherwise, if a valid lease exists, we have to wait
+                if(this.mrnEntityLeaseRepo.existsById(mrnEntityId)) {
+                    return false;
+                }
+                // Or else create a new one, and set its expiry by the database clock
+                final MrnEntityLease lease = new MrnEntityLease();
+                lease.setMrnEntityId(mrnEntityId);
+                lease.setOwner(owner);
+                lease.setExpiresAt(new Date(0));
+                this.mrnEntityLeaseRepo.saveAndFlush(lease);
+                this.mrnEntityLeaseRepo.renew(mrnEntityId, owner, durationSeconds);
+                return true;
+            }));
+        } catch (DataIntegrityViolationException ex) {
+            // Another node created the lease in the meantime
+            return false;
+        }
+    }
+
+    /**
+     * Renews the lease of the provided MRN entity, if it is still held by the
+     * provided owner. Failing to renew the lease is only logged, since the
+     * protected operation cannot be interrupted safely anyway.
+     *
+     * @param mrnEntityId the MRN entity ID
+     * @param owner the owner of the lease
+     */
+    protected void renew(BigInteger mrnEntityId, String owner) {
+        try {
+            final Integer renewed = this.getTransactionTemplate().execute(status ->
+                    this.mrnEntityLeaseRepo.renew(mrnEntityId, owner, this.getDurationSeconds()));
+            if(!Objects.equals(renewed, 1)) {
+                log.warn("The lease of MRN Entity with ID: {} was lost before being renewed", mrnEntityId);
+            }
+        } catch (Exception ex) {
+            log.error("Failed to renew the lease of MRN Entity with ID: {} - {}", mrnEntityId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Releases the lease of the provided MRN entity, if it is still held by
+     * the provided owner. Failing to release the lease is only logged, since
+     * it will expire anyway.
+     *
+     * @param mrnEntityId the MRN entity ID
+     * @param owner the owner of the lease
+     * @param heldMs the time the lease was held for in milliseconds
+     */
+    protected void release(BigInteger mrnEntityId, String owner, long heldMs) {
+        try {
+            final Integer released = this.getTransactionTemplate().execute(status ->
+                    this.mrnEntityLeaseRepo.release(mrnEntityId, owner));
+            if(!Objects.equals(released, 1)) {
+                log.warn("The lease of MRN Entity with ID: {} expired after {}ms, before being released", mrnEntityId, heldMs);
+            }
+        } catch (Exception ex) {
+            log.error("Failed to release the lease of MRN Entity with ID: {} - {}", mrnEntityId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Records the time spent on a lease acquisition in the meter registry,
+     * if one is available.
+     *
+     * @param result the result of the acquisition
+     * @param start the start of the acquisition in nanoseconds
+     */
+    protected void recordAcquisition(String result, long start) {
+        if(Objects.isNull(this.meterRegistry)) {
+            return;
+        }
+        Timer.builder("ckeeper.mrn.entity.lease.acquire")
+                .description("The time spent acquiring the cluster-wide MRN entity leases")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the lease duration in whole seconds, as used by the database
+     * time arithmetic.
+     *
+     * @return the lease duration in seconds
+     */
+    protected long getDurationSeconds() {
+        return Math.max(TimeUnit.MILLISECONDS.toSeconds(this.durationMs), 1);
+    }
+
+    /**
+     * Returns a transaction template for the lease operations. These always
+     * run in a new transaction, so that they are committed straight away,
+     * independently of any transaction of the caller.
+     *
+     * @return the transaction template
+     */
+    protected TransactionTemplate getTransactionTemplate() {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The MrnEntityLocks Component Class
+ *
+ * This component provides a set of striped locks, selected based on the MRN
+ * entity ID. This allows operations on different MRN entities to proceed in
+ * parallel, while operations on the same MRN entity (e.g. the certificate
+ * issuance) are still serialised.
+ * <p/>
+ * The time spent waiting for the locks is recorded in the meter registry.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class MrnEntityLocks {
+
+    /**
+     * The number of lock stripes.
+     */
+    @Value("${gla.rad.ckeeper.locks.stripes:64}")
+    int stripes = 64;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    // Component Variables
+    protected ReentrantLock[] locks;
+    protected Timer lockWaitTimer;
+
+    /**
+     * Once the component has been initialised, we can create the lock stripes
+     * and register the lock wait timer.
+     */
+    @PostConstruct
+    public void init() {
+        this.locks = new ReentrantLock[Math.max(this.stripes, 1)];
+        for(int i=0; i<this.locks.length; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+
+        // Register the lock wait timer if possible
+        if(Objects.nonNull(this.meterRegistry)) {
+            this.lockWaitTimer = Timer.builder("ckeeper.mrn.entity.lock.wait")
+                    .description("The time spent waiting for the MRN entity locks")
+                    .publishPercentileHistogram()
+                    .register(this.meterRegistry);
+        }
+    }
+
+    /**
+     * Executes the provided operation while holding the lock assigned to the
+     * MRN entity identified by the provided ID, and returns its result.
+     *
+     * @param mrnEntityId the MRN entity ID
+     * @param operation the operation to be executed
+     * @return the result of the operation
+     * @param <T> the type of the operation result
+     */
+    public <T> T withLock(@NotNull BigInteger mrnEntityId, @NotNull Supplier<T> operation) {
+        final ReentrantLock lock = this.getLock(mrnEntityId);
+
+        // Acquire the lock and record how long it took
+        final long start = System.nanoTime();
+        lock.lock();
+        try {
+            if(Objects.nonNull(this.lockWaitTimer)) {
+                this.lockWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Executes the provided operation while holding the locks assigned to
+     * all the MRN entities identified by the provided IDs, and returns its
+     * result. The lock stripes are always acquired in the same order, so that
+     * concurrent multi-entity operations cannot deadlock.
+     *
+     * @param mrnEntityIds the MRN entity IDs
+     * @param operation the operation to be executed
+     * @return the result of the operation
+     * @param <T> the type of the operation result
+     */
+    public <T> T withLocks(@NotNull Collection<BigInteger> mrnEntityIds, @NotNull Supplier<T> operation) {
+        final int[] stripes = mrnEntityIds.stream()
+                .mapToInt(this::getStripe)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        // Acquire the locks and record how long it took
+        final Deque<ReentrantLock> acquired = new ArrayDeque<>(stripes.length);
+        final long start = System.nanoTime();
+        try {
+            for(int stripe : stripes) {
+                this.locks[stripe].lock();
+                acquired.push(this.locks[stripe]);
+            }
+            if(Objects.nonNull(this.lockWaitTimer)) {
+                this.lockWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            return operation.get();
+        } finally {
+            acquired.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    /**
+     * Returns the lock stripe assigned to the MRN entity identified by the
+     * provided ID.
+     *
+     * @param mrnEntityId the MRN entity ID
+     * @return the assigned lock
+     */
+    protected ReentrantLock getLock(@NotNull BigInteger mrnEntityId) {
+        return this.locks[this.getStripe(mrnEntityId)];
+    }
+
+    /**
+     * Returns the index of the lock stripe assigned to the MRN entity
+     * identified by the provided ID.
+     *
+     * @param mrnEntityId the MRN entity ID
+     * @return the index of the assigned lock stripe
+     */
+    protected int getStripe(@NotNull BigInteger mrnEntityId) {
+        return Math.floorMod(mrnEntityId.hashCode(), this.locks.length);
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.security.PrivateKey;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * The PrivateKeyCache Component Class
+ *
+ * This component holds a bounded in-memory cache of the decoded private keys
+ * of the local certificates, keyed by the certificate ID. This way the
+ * signing operations do not need to re-read the certificate entries and
+ * re-parse the PKCS#8 PEM content every time.
+ * <p/>
+ * The cache statistics (hits, misses, evictions) are registered with the
+ * Micrometer meter registry so that they are available through actuator.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class PrivateKeyCache {
+
+    /**
+     * The maximum number of private keys to be cached.
+     */
+    @Value("${gla.rad.ckeeper.cache.private-keys.maximum-size:1000}")
+    long maximumSize = 1000;
+
+    /**
+     * The number of minutes an unused private key will remain cached.
+     */
+    @Value("${gla.rad.ckeeper.cache.private-keys.expire-after-access-minutes:60}")
+    long expireAfterAccessMinutes = 60;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    /**
+     * The Signature Engines.
+     */
+    @Autowired(required = false)
+    SignatureEngines signatureEngines;
+
+    // Component Variables
+    protected Cache<BigInteger, PrivateKey> cache;
+
+    /**
+     * Once the component has been initialised, we can build the cache based
+     * on the provided configuration, and register its statistics with the
+     * meter registry if one is available. Whenever a private key is dropped,
+     * the signature engines initialised with it are dropped as well.
+     */
+    @PostConstruct
+    public void init() {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfterAccess(Duration.ofMinutes(this.expireAfterAccessMinutes))
+                .removalListener((BigInteger certificateId, PrivateKey privateKey, RemovalCause cause) -> {
+                    if(Objects.nonNull(this.signatureEngines) && Objects.nonNull(privateKey)) {
+                        this.signatureEngines.evict(privateKey);
+                    }
+                })
+                .recordStats()
+                .build();
+
+        // Expose the cache statistics if possible
+        if(Objects.nonNull(this.meterRegistry)) {
+            CaffeineCacheMetrics.monitor(this.meterRegistry, this.cache, "privateKeys");
+        }
+    }
+
+    /**
+     * Returns the cached private key for the certificate identified by the
+     * provided ID, or null if that is not available.
+     *
+     * @param certificateId the ID of the certificate
+     * @return the cached private key if found, otherwise null
+     */
+    public PrivateKey get(BigInteger certificateId) {
+        return this.cache.getIfPresent(certificateId);
+    }
+
+    /**
+     * Caches the provided private key for the certificate identified by the
+     * provided ID.
+     *
+     * @param certificateId the ID of the certificate
+     * @param privateKey the decoded private key of the certificate
+     */
+    public void put(BigInteger certificateId, PrivateKey privateKey) {
+        this.cache.put(certificateId, privateKey);
+    }
+
+    /**
+     * Drops the cached private key of the certificate identified by the
+     * provided ID, e.g. when the certificate is revoked or deleted.
+     *
+     * @param certificateId the ID of the certificate
+     */
+    public void invalidate(BigInteger certificateId) {
+        log.debug("Dropping cached private key for certificate : {}", certificateId);
+        this.cache.invalidate(certificateId);
+    }
+
+    /**
+     * Drops all the cached private keys.
+     */
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * Returns the estimated number of the currently cached private keys.
+     *
+     * @return the estimated number of the cached private keys
+     */
+    public long size() {
+        return this.cache.estimatedSize();
+    }
+
+}
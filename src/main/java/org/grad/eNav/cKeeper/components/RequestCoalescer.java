@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The RequestCoalescer Component Class
+ *
+ * This component provides single-flight execution of expensive operations.
+ * While an operation is in progress for a given key, any concurrent callers
+ * requesting the same key do not repeat it, but wait for and share the
+ * result (or the error) of the first caller. Once the operation completes,
+ * the next caller will execute it again.
+ * <p/>
+ * The number of executed and coalesced calls of each named operation is
+ * recorded in the meter registry.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class RequestCoalescer {
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    // Component Variables
+    protected final Map<FlightKey, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Once the component has been initialised, we can register the in-flight
+     * operations gauge with the meter registry if one is available.
+     */
+    @PostConstruct
+    public void init() {
+        if(Objects.nonNull(this.meterRegistry)) {
+            Gauge.builder("ckeeper.requests.in-flight", this, RequestCoalescer::getInFlight)
+                    .description("The number of coalesced operations currently in progress")
+                    .register(this.meterRegistry);
+        }
+    }
+
+    /**
+     * Executes the provided operation for the provided key, unless the same
+     * operation is already in progress for that key, in which case the
+     * in-progress result is awaited and shared instead.
+     *
+     * @param name the name of the operation, used to separate the keys and tag the metrics
+     * @param key the key identifying the operation request
+     * @param operation the operation to be executed
+     * @return the result of the operation
+     * @param <T> the type of the operation result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T coalesce(@NotNull String name, @NotNull Object key, @NotNull Supplier<T> operation) {
+        final FlightKey flightKey = new FlightKey(name, key);
+        final CompletableFuture<Object> flight = new CompletableFuture<>();
+        final CompletableFuture<Object> existing = this.flights.putIfAbsent(flightKey, flight);
+
+        // If the operation is already in progress, wait for its result
+        if(Objects.nonNull(existing)) {
+            this.countCall(name, "coalesced");
+            try {
+                return (T) existing.join();
+            } catch (CompletionException ex) {
+                if(ex.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw ex;
+            }
+        }
+
+        // Otherwise perform the operation and share its result
+        this.countCall(name, "executed");
+        try {
+            final T result = operation.get();
+            flight.complete(result);
+            return result;
+        } catch (Throwable ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            this.flights.remove(flightKey, flight);
+        }
+    }
+
+    /**
+     * Returns the number of operations currently in progress.
+     *
+     * @return the number of operations in progress
+     */
+    public int getInFlight() {
+        return this.flights.size();
+    }
+
+    /**
+     * Counts a call of the named operation in the meter registry, if one is
+     * available.
+     *
+     * @param name the name of the operation
+     * @param result whether the call was executed or coalesced
+     */
+    protected void countCall(String name, String result) {
+        if(Objects.isNull(this.meterRegistry)) {
+            return;
+        }
+        Counter.builder("ckeeper.requests.coalescing")
+                .description("The number of executed and coalesced operation calls")
+                .tag("operation", name)
+                .tag("result", result)
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    /**
+     * The key of an in-progress operation, combining the operation name with
+     * the key of the request.
+     *
+     * @param name the name of the operation
+     * @param key the key of the request
+     */
+    protected record FlightKey(String name, Object key) {
+
+    }
+
+}
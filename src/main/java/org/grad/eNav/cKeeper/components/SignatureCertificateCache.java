@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.cKeeper.models.domain.SignatureCertificate;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SignatureCertificateCache Component Class
+ *
+ * This component holds a bounded in-memory cache of the assembled signature
+ * certificate bundles, keyed by the entity name, version, MMSI and type used
+ * to request them. Along with each bundle, a strong ETag is computed once, so
+ * that polling clients can be answered with cheap "not modified" responses.
+ * <p/>
+ * Bundles are dropped when the certificates of their MRN entity change, when
+ * the bundled certificate expires, or when the truststore is reloaded. Since a bundle might be built while
+ * its MRN entity is being invalidated, every invalidation advances the cache
+ * generation, and bundles built in an older generation are never cached.
+ * The cache statistics are registered with the Micrometer meter registry so
+ * that they are available through actuator.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class SignatureCertificateCache {
+
+    /**
+     * The maximum number of signature certificate bundles to be cached.
+     */
+    @Value("${gla.rad.ckeeper.cache.signature-certificates.maximum-size:10000}")
+    long maximumSize = 10000;
+
+    /**
+     * The number of minutes after which a cached bundle will be rebuilt.
+     */
+    @Value("${gla.rad.ckeeper.cache.signature-certificates.expire-after-write-minutes:10}")
+    long expireAfterWriteMinutes = 10;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    /**
+     * The Truststore Manager.
+     */
+    @Autowired(required = false)
+    TrustStoreManager trustStoreManager;
+
+    // Component Variables
+    protected Cache<SignatureCertificateKey, SignatureCertificateBundle> cache;
+    protected final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Once the component has been initialised, we can build the cache based
+     * on the provided configuration, and register its statistics with the
+     * meter registry if one is available. Since the bundles include the root
+     * certificate, all of them are dropped every time the truststore is
+     * reloaded.
+     */
+    @PostConstruct
+    public void init() {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfterWrite(Duration.ofMinutes(this.expireAfterWriteMinutes))
+                .recordStats()
+                .build();
+
+        // Expose the cache statistics if possible
+        if(Objects.nonNull(this.meterRegistry)) {
+            CaffeineCacheMetrics.monitor(this.meterRegistry, this.cache, "signatureCertificates");
+        }
+
+        // The bundles carry the root certificate, so drop them on truststore reloads
+        if(Objects.nonNull(this.trustStoreManager)) {
+            this.trustStoreManager.addReloadListener(snapshot -> this.invalidateAll());
+        }
+    }
+
+    /**
+     * Returns the cached signature certificate bundle for the provided key,
+     * or null if that is not available. Bundles of expired certificates are
+     * dropped and never returned.
+     *
+     * @param key the signature certificate key
+     * @return the cached signature certificate bundle if found, otherwise null
+     */
+    public SignatureCertificateBundle get(SignatureCertificateKey key) {
+        final SignatureCertificateBundle bundle = this.cache.getIfPresent(key);
+        if(Objects.nonNull(bundle) && bundle.isExpiredAt(new Date())) {
+            this.cache.invalidate(key);
+            return null;
+        }
+        return bundle;
+    }
+
+    /**
+     * Caches the provided signature certificate bundle for the provided key.
+     *
+     * @param key the signature certificate key
+     * @param bundle the signature certificate bundle
+     */
+    public void put(SignatureCertificateKey key, SignatureCertificateBundle bundle) {
+        this.cache.put(key, bundle);
+    }
+
+    /**
+     * Caches the provided signature certificate bundle for the provided key,
+     * but only if no invalidation has taken place since the provided cache
+     * generation, i.e. since the bundle started being built.
+     *
+     * @param key the signature certificate key
+     * @param bundle the signature certificate bundle
+     * @param generation the cache generation the bundle was built in
+     * @return whether the bundle was cached
+     */
+    public boolean put(SignatureCertificateKey key, SignatureCertificateBundle bundle, long generation) {
+        return this.cache.asMap().compute(key, (k, existing) ->
+                this.generation.get() == generation ? bundle : existing) == bundle;
+    }
+
+    /**
+     * Returns the current cache generation, which should be picked up before
+     * a bundle starts being built.
+     *
+     * @return the current cache generation
+     */
+    public long generation() {
+        return this.generation.get();
+    }
+
+    /**
+     * Drops all the cached signature certificate bundles of the MRN entity
+     * identified by the provided ID, e.g. when its certificates are rotated
+     * or revoked.
+     *
+     * @param mrnEntityId the ID of the MRN entity
+     */
+    public void invalidateMrnEntity(BigInteger mrnEntityId) {
+        log.debug("Dropping cached signature certificates for MRN entity : {}", mrnEntityId);
+        this.generation.incrementAndGet();
+        this.cache.asMap()
+                .values()
+                .removeIf(bundle -> Objects.equals(bundle.mrnEntityId(), mrnEntityId));
+    }
+
+    /**
+     * Drops all the cached signature certificate bundles.
+     */
+    public void invalidateAll() {
+        this.generation.incrementAndGet();
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * Returns the estimated number of the currently cached bundles.
+     *
+     * @return the estimated number of the cached bundles
+     */
+    public long size() {
+        return this.cache.estimatedSize();
+    }
+
+    /**
+     * Computes a strong ETag for the provided signature certificate, based on
+     * the SHA-256 digest of all its contents.
+     *
+     * @param signatureCertificate the signature certificate
+     * @return the quoted strong ETag value
+     */
+    public static String computeETag(SignatureCertificate signatureCertificate) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for(Object field : new Object[]{
+                    signatureCertificate.getCertificateId(),
+                    signatureCertificate.getCertificate(),
+                    signatureCertificate.getPublicKey(),
+                    signatureCertificate.getRootCertificate()}) {
+                digest.update(String.valueOf(field).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest()) + "\"";
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-256 is always available in the Java platform
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * The key identifying a signature certificate request.
+     *
+     * @param entityName    The name of the entity
+     * @param version       The version of the service entity
+     * @param mmsi          The MMSI of the entity
+     * @param entityType    The type of the entity
+     */
+    public record SignatureCertificateKey(String entityName, String version, String mmsi, McpEntityType entityType) {
+    }
+
+    /**
+     * An assembled signature certificate, along with the MRN entity it
+     * belongs to, the certificate end date and its strong ETag.
+     *
+     * @param mrnEntityId           The ID of the MRN entity
+     * @param signatureCertificate  The assembled signature certificate
+     * @param endDate               The end date of the certificate
+     * @param eTag                  The strong ETag of the signature certificate
+     */
+    public record SignatureCertificateBundle(BigInteger mrnEntityId, SignatureCertificate signatureCertificate, Date endDate, String eTag) {
+
+        /**
+         * Checks whether the bundled certificate has expired at the provided
+         * date. A missing end date is not considered as a restriction.
+         *
+         * @param date the date to check the expiry at
+         * @return whether the bundled certificate has expired
+         */
+        public boolean isExpiredAt(Date date) {
+            return Optional.ofNullable(this.endDate).map(d -> d.before(date)).orElse(false);
+        }
+    }
+
+}
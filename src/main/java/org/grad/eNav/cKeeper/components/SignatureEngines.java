@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SignatureEngines Component Class
+ *
+ * This component provides reusable signature engines for the signing and
+ * verification operations. Looking up a signature engine through the JCA
+ * requires a provider search, and initialising it with a key also carries a
+ * considerable cost, while the same few keys are used over and over again.
+ * <p/>
+ * Therefore, the provider of each algorithm is pinned once an engine has
+ * been initialised successfully through the normal JCA provider selection,
+ * and each thread keeps a small number of engines already initialised for
+ * the most recently used algorithm and key combinations. Since an engine is
+ * reset to its initialised state after each signing or verification, a warm
+ * operation does not need to allocate anything apart from the signature.
+ * If the pinned provider does not accept a key, the JCA provider selection
+ * takes place again for that engine.
+ * <p/>
+ * The keys are matched by identity, so this works best with the decoded key
+ * caches, which return the same key instances for as long as these are
+ * valid. Since the engines hold on to their keys, the key caches evict the
+ * engines of all threads whenever a key is dropped.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class SignatureEngines {
+
+    /**
+     * The signature algorithms to resolve the providers for in advance.
+     */
+    @Value("${gla.rad.ckeeper.signature.engines.algorithms:SHA3-384withECDSA,SHA256withCVC-ECDSA,SHA256withECDSA}")
+    String[] algorithms = {"SHA3-384withECDSA", "SHA256withCVC-ECDSA", "SHA256withECDSA"};
+
+    /**
+     * The number of initialised engines kept by each thread.
+     */
+    @Value("${gla.rad.ckeeper.signature.engines.per-thread:8}")
+    int enginesPerThread = 8;
+
+    // Component Variables
+    protected final Map<String, Provider> providers = new ConcurrentHashMap<>();
+    protected final Set<EngineSlots> allEngines = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    protected ThreadLocal<EngineSlots> engines;
+
+    /**
+     * Once the component has been initialised, we can check that the
+     * supported signature algorithms are available. Bouncy Castle is
+     * registered at this point if not already available, since it provides
+     * the CVC algorithms.
+     */
+    @PostConstruct
+    public void init() {
+        Security.addProvider(new BouncyCastleProvider());
+        this.engines = ThreadLocal.withInitial(() -> {
+            final EngineSlots slots = new EngineSlots(Math.max(this.enginesPerThread, 1));
+            this.allEngines.add(slots);
+            return slots;
+        });
+        for(String algorithm : this.algorithms) {
+            try {
+                Signature.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException ex) {
+                log.warn("No provider found for signature algorithm {}", algorithm);
+            }
+        }
+    }
+
+    /**
+     * Signs the provided payload with the provided private key, using an
+     * engine of this thread already initialised for the same algorithm and
+     * key if available.
+     *
+     * @param algorithm the signature algorithm
+     * @param privateKey the private key to sign with
+     * @param payload the payload to be signed
+     * @return the generated signature
+     * @throws NoSuchAlgorithmException if the signature algorithm is not found
+     * @throws InvalidKeyException if the provided key is invalid
+     * @throws SignatureException when the signature generation process fails
+     */
+    public byte[] sign(@NotNull String algorithm, @NotNull PrivateKey privateKey, @NotNull byte[] payload) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        final Signature signature = this.getEngine(algorithm, privateKey, true);
+        try {
+            signature.update(payload);
+            return signature.sign();
+        } catch (SignatureException | RuntimeException ex) {
+            this.engines.get().evict(signature);
+            throw ex;
+        }
+    }
+
+    /**
+     * Verifies the provided signature of the provided payload with the
+     * provided public key, using an engine of this thread already initialised
+     * for the same algorithm and key if available.
+     *
+     * @param algorithm the signature algorithm
+     * @param publicKey the public key to verify with
+     * @param payload the payload to be verified
+     * @param signatureBytes the signature to verify the payload with
+     * @return whether the verification was successful
+     * @throws NoSuchAlgorithmException if the signature algorithm is not found
+     * @throws InvalidKeyException if the provided key is invalid
+     * @throws SignatureException when the signature cannot be processed
+     */
+    public boolean verify(@NotNull String algorithm, @NotNull PublicKey publicKey, @NotNull byte[] payload, byte[] signatureBytes) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        final Signature signature = this.getEngine(algorithm, publicKey, false);
+        try {
+            signature.update(payload);
+            return signature.verify(signatureBytes);
+        } catch (SignatureException | RuntimeException ex) {
+            this.engines.get().evict(signature);
+            throw ex;
+        }
+    }
+
+    /**
+     * Drops the engines of all threads initialised with the provided key,
+     * e.g. when the key is dropped from the key caches, so that the engines
+     * do not keep it around.
+     *
+     * @param key the key of the engines to be dropped
+     */
+    public void evict(@NotNull Key key) {
+        synchronized (this.allEngines) {
+            this.allEngines.forEach(slots -> slots.evict(key));
+        }
+    }
+
+    /**
+     * Drops the engines of all threads.
+     */
+    public void evictAll() {
+        synchronized (this.allEngines) {
+            this.allEngines.forEach(EngineSlots::clear);
+        }
+    }
+
+    /**
+     * Creates a new uninitialised signature engine for the provided algorithm,
+     * using its pinned provider if available. Otherwise, the JCA provider
+     * selection will take place when the engine is initialised with a key.
+     * This is also meant for one-off operations, where keeping the engine
+     * around would not be beneficial.
+     *
+     * @param algorithm the signature algorithm
+     * @return the new signature engine
+     * @throws NoSuchAlgorithmException if the signature algorithm is not found
+     */
+    public Signature getInstance(@NotNull String algorithm) throws NoSuchAlgorithmException {
+        final Provider provider = this.providers.get(algorithm);
+        return Objects.nonNull(provider) ? Signature.getInstance(algorithm, provider) : Signature.getInstance(algorithm);
+    }
+
+    /**
+     * Returns an engine of this thread initialised for the provided algorithm
+     * and key, creating a new one if not available.
+     *
+     * @param algorithm the signature algorithm
+     * @param key the key of the engine
+     * @param signing whether the engine is used for signing or verification
+     * @return the initialised signature engine
+     * @throws NoSuchAlgorithmException if the signature algorithm is not found
+     * @throws InvalidKeyException if the provided key is invalid
+     */
+    protected Signature getEngine(String algorithm, Key key, boolean signing) throws NoSuchAlgorithmException, InvalidKeyException {
+        final EngineSlots slots = this.engines.get();
+        final Signature cached = slots.find(algorithm, key, signing);
+        if(Objects.nonNull(cached)) {
+            return cached;
+        }
+
+        // Otherwise initialise a new engine and keep it for the next time
+        Signature signature = this.getInstance(algorithm);
+        try {
+            this.initEngine(signature, key, signing);
+        } catch (InvalidKeyException ex) {
+            // The pinned provider might not support this key, so let the JCA select one
+            if(Objects.isNull(this.providers.get(algorithm))) {
+                throw ex;
+            }
+            signature = Signature.getInstance(algorithm);
+            this.initEngine(signature, key, signing);
+        }
+
+        // Pin the provider that actually accepted the key
+        if(Objects.isNull(this.providers.putIfAbsent(algorithm, signature.getProvider()))) {
+            log.debug("Signature algorithm {} pinned to provider {}", algorithm, signature.getProvider().getName());
+        }
+        slots.add(new Engine(algorithm, key, signing, signature));
+        return signature;
+    }
+
+    /**
+     * Initialises the provided signature engine with the provided key, for
+     * signing or verification.
+     *
+     * @param signature the signature engine
+     * @param key the key to initialise the engine with
+     * @param signing whether the engine is used for signing or verification
+     * @throws InvalidKeyException if the provided key is invalid
+     */
+    protected void initEngine(Signature signature, Key key, boolean signing) throws InvalidKeyException {
+        if(signing) {
+            signature.initSign((PrivateKey) key);
+        } else {
+            signature.initVerify((PublicKey) key);
+        }
+    }
+
+    /**
+     * A signature engine along with the algorithm and key it was initialised
+     * with.
+     *
+     * @param algorithm the signature algorithm
+     * @param key the key the engine was initialised with
+     * @param signing whether the engine is used for signing or verification
+     * @param signature the initialised signature engine
+     */
+    protected record Engine(String algorithm, Key key, boolean signing, Signature signature) {
+
+    }
+
+    /**
+     * The engines kept by a single thread. Once all slots are taken, the
+     * oldest engine is replaced. Since the engines can also be dropped by
+     * other threads when their keys are invalidated, all the slot operations
+     * are synchronised, which is uncontended for the owning thread.
+     */
+    protected static class EngineSlots {
+
+        // Class Variables
+        private final Engine[] slots;
+        private int next;
+
+        /**
+         * Constructor with the number of slots.
+         *
+         * @param size the number of slots
+         */
+        EngineSlots(int size) {
+            this.slots = new Engine[size];
+        }
+
+        /**
+         * Finds the engine initialised with the provided algorithm and key.
+         *
+         * @param algorithm the signature algorithm
+         * @param key the key of the engine
+         * @param signing whether the engine is used for signing or verification
+         * @return the matching engine, or null if not found
+         */
+        synchronized Signature find(String algorithm, Key key, boolean signing) {
+            for(Engine engine : this.slots) {
+                if(engine != null && engine.key() == key && engine.signing() == signing && engine.algorithm().equals(algorithm)) {
+                    return engine.signature();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds the provided engine, replacing the oldest one if required.
+         *
+         * @param engine the engine to be added
+         */
+        synchronized void add(Engine engine) {
+            this.slots[this.next] = engine;
+            this.next = (this.next + 1) % this.slots.length;
+        }
+
+        /**
+         * Drops the provided signature engine, e.g. after a failure that
+         * might have left it in an inconsistent state.
+         *
+         * @param signature the signature engine to be dropped
+         */
+        synchronized void evict(Signature signature) {
+            for(int i = 0; i < this.slots.length; i++) {
+                if(this.slots[i] != null && this.slots[i].signature() == signature) {
+                    this.slots[i] = null;
+                }
+            }
+        }
+
+        /**
+         * Drops the engines initialised with the provided key.
+         *
+         * @param key the key of the engines to be dropped
+         */
+        synchronized void evict(Key key) {
+            for(int i = 0; i < this.slots.length; i++) {
+                if(this.slots[i] != null && this.slots[i].key() == key) {
+                    this.slots[i] = null;
+                }
+            }
+        }
+
+        /**
+         * Drops all the engines.
+         */
+        synchronized void clear() {
+            Arrays.fill(this.slots, null);
+        }
+
+    }
+
+}
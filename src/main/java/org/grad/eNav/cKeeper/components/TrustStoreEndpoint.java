@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import org.grad.eNav.cKeeper.components.TrustStoreManager.TrustStoreSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The TrustStoreEndpoint Component Class
+ *
+ * An actuator endpoint that reports the currently loaded truststore snapshot
+ * and allows the truststore to be reloaded on demand, without restarting the
+ * service.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Endpoint(id = "truststore")
+public class TrustStoreEndpoint {
+
+    /**
+     * The Truststore Manager.
+     */
+    @Autowired
+    TrustStoreManager trustStoreManager;
+
+    /**
+     * Reports the currently loaded truststore snapshot.
+     *
+     * @return the truststore snapshot information
+     */
+    @ReadOperation
+    public Map<String, Object> info() {
+        return this.describe(this.trustStoreManager.getSnapshot());
+    }
+
+    /**
+     * Reloads the truststore and reports the resulting snapshot.
+     *
+     * @return the reloaded truststore snapshot information
+     */
+    @WriteOperation
+    public Map<String, Object> reload() {
+        return this.describe(this.trustStoreManager.reload());
+    }
+
+    /**
+     * Describes the provided truststore snapshot.
+     *
+     * @param snapshot the truststore snapshot
+     * @return the truststore snapshot information
+     */
+    protected Map<String, Object> describe(TrustStoreSnapshot snapshot) {
+        final Map<String, Object> info = new LinkedHashMap<>();
+        info.put("loadedAt", snapshot.loadedAt());
+        info.put("aliases", new TreeSet<>(snapshot.certificates().keySet()));
+        return info;
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.logging.log4j.util.Strings;
+import org.grad.secom.core.utils.KeyStoreUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * The TrustStoreManager Component Class
+ *
+ * This component loads the configured X.509 truststore once into an immutable
+ * in-memory snapshot, mapping each alias to its trusted certificate, so that
+ * the PKCS12/JKS file does not need to be read and decrypted on every access.
+ * <p/>
+ * The snapshot is replaced atomically whenever the truststore file changes on
+ * disk (monitored through a file watch service), or when a reload is requested
+ * explicitly, e.g. through the truststore actuator endpoint. Interested
+ * components (such as the MCP service SSL context) can register a listener to
+ * be notified about the newly loaded snapshots. If a reload fails, the
+ * previous snapshot is retained.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class TrustStoreManager {
+
+    /**
+     * The X.509 Trust-Store.
+     */
+    @Value("${gla.rad.ckeeper.mcp.trustStore:truststore.p12}")
+    String trustStore;
+
+    /**
+     * The X.509 Trust-Store Password.
+     */
+    @Value("${gla.rad.ckeeper.mcp.trustStorePassword:password}")
+    String trustStorePassword;
+
+    /**
+     * The X.509 Trust-Store Type.
+     */
+    @Value("${gla.rad.ckeeper.mcp.trustStoreType:PKCS12}")
+    String trustStoreType;
+
+    /**
+     * Whether the truststore file should be watched for changes.
+     */
+    @Value("${gla.rad.ckeeper.mcp.trustStore.watch:true}")
+    boolean watch = true;
+
+    // Component Variables
+    protected final AtomicReference<TrustStoreSnapshot> snapshot = new AtomicReference<>(TrustStoreSnapshot.empty());
+    protected final List<Consumer<TrustStoreSnapshot>> reloadListeners = new CopyOnWriteArrayList<>();
+    protected WatchService watchService;
+    protected Thread watchThread;
+
+    /**
+     * Once the component has been initialised, we can load the initial
+     * truststore snapshot and start watching the truststore file for changes,
+     * if that is an actual file on disk (and not a classpath resource).
+     */
+    @PostConstruct
+    public void init() {
+        this.reload();
+
+        // Watch the truststore file if possible
+        final Path trustStorePath = Optional.ofNullable(this.trustStore)
+                .filter(Strings::isNotBlank)
+                .map(Paths::get)
+                .map(Path::toAbsolutePath)
+                .filter(Files::isRegularFile)
+                .orElse(null);
+        if(this.watch && Objects.nonNull(trustStorePath)) {
+            this.startWatching(trustStorePath);
+        }
+    }
+
+    /**
+     * When shutting down the application we need to make sure that the
+     * truststore file watch service is closed.
+     */
+    @PreDestroy
+    public void destroy() {
+        log.info("Truststore manager is shutting down...");
+        Optional.ofNullable(this.watchThread).ifPresent(Thread::interrupt);
+        if(Objects.nonNull(this.watchService)) {
+            try {
+                this.watchService.close();
+            } catch (IOException ex) {
+                log.warn(ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the currently active truststore snapshot.
+     *
+     * @return the current truststore snapshot
+     */
+    public TrustStoreSnapshot getSnapshot() {
+        return this.snapshot.get();
+    }
+
+    /**
+     * Returns the trusted certificate identified by the provided alias from
+     * the current truststore snapshot, or null if that is not available.
+     *
+     * @param alias the alias of the trusted certificate
+     * @return the trusted certificate if found, otherwise null
+     */
+    public X509Certificate getCertificate(String alias) {
+        return Optional.ofNullable(alias)
+                .map(this.getSnapshot().certificates()::get)
+                .orElse(null);
+    }
+
+    /**
+     * Returns the trust manager factory initialised from the current
+     * truststore snapshot, or null if no truststore is configured.
+     *
+     * @return the trust manager factory of the current truststore snapshot
+     */
+    public TrustManagerFactory getTrustManagerFactory() {
+        return this.getSnapshot().trustManagerFactory();
+    }
+
+    /**
+     * Registers a listener to be notified every time a new truststore
+     * snapshot is loaded.
+     *
+     * @param listener the truststore reload listener
+     */
+    public void addReloadListener(Consumer<TrustStoreSnapshot> listener) {
+        this.reloadListeners.add(listener);
+    }
+
+    /**
+     * Reloads the truststore from the configured location and atomically
+     * replaces the current snapshot. If no truststore is configured, an empty
+     * snapshot will be used, while if the loading fails, the current snapshot
+     * will be retained.
+     *
+     * @return the currently active truststore snapshot after the reload
+     */
+    public synchronized TrustStoreSnapshot reload() {
+        // Without a truststore and a valid password, there is nothing to trust
+        if(Strings.isBlank(this.trustStore) || Strings.isBlank(this.trustStorePassword)) {
+            log.warn("No truststore configured, no trusted certificates will be available");
+            this.snapshot.set(TrustStoreSnapshot.empty());
+            return this.snapshot.get();
+        }
+
+        // Load the truststore and pick up all the trusted certificates
+        try {
+            final KeyStore keyStore = KeyStoreUtils.getKeyStore(this.trustStore, this.trustStorePassword, this.trustStoreType);
+            final Map<String, X509Certificate> certificates = new HashMap<>();
+            for(String alias : Collections.list(keyStore.aliases())) {
+                if(keyStore.getCertificate(alias) instanceof X509Certificate x509Certificate) {
+                    certificates.put(alias, x509Certificate);
+                }
+            }
+            final TrustStoreSnapshot newSnapshot = TrustStoreSnapshot.of(certificates);
+            this.snapshot.set(newSnapshot);
+            log.info("Truststore loaded with {} trusted certificates", certificates.size());
+        } catch (Exception ex) {
+            log.error("Truststore reload failed, retaining the previous snapshot: {}", ex.getMessage());
+            return this.snapshot.get();
+        }
+
+        // Notify the interested parties
+        final TrustStoreSnapshot currentSnapshot = this.snapshot.get();
+        for(Consumer<TrustStoreSnapshot> listener : this.reloadListeners) {
+            try {
+                listener.accept(currentSnapshot);
+            } catch (Exception ex) {
+                log.error("Truststore reload listener failed: {}", ex.getMessage());
+            }
+        }
+        return currentSnapshot;
+    }
+
+    /**
+     * Starts a background daemon thread which watches the directory of the
+     * provided truststore file, and reloads the truststore every time the
+     * file is created or modified.
+     *
+     * @param trustStorePath the path of the truststore file
+     */
+    protected void startWatching(Path trustStorePath) {
+        try {
+            this.watchService = trustStorePath.getFileSystem().newWatchService();
+            trustStorePath.getParent().register(this.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException ex) {
+            log.error("Cannot watch the truststore file {}: {}", trustStorePath, ex.getMessage());
+            return;
+        }
+
+        // Start the watching thread
+        this.watchThread = new Thread(() -> {
+            while(!Thread.currentThread().isInterrupted()) {
+                try {
+                    final WatchKey key = this.watchService.take();
+                    final boolean changed = key.pollEvents()
+                            .stream()
+                            .map(WatchEvent::context)
+                            .anyMatch(trustStorePath.getFileName()::equals);
+                    key.reset();
+                    if(changed) {
+                        log.info("Truststore file {} changed, reloading...", trustStorePath);
+                        this.reload();
+                    }
+                } catch (InterruptedException | ClosedWatchServiceException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "truststore-watch");
+        this.watchThread.setDaemon(true);
+        this.watchThread.start();
+    }
+
+    /**
+     * An immutable snapshot of the loaded truststore, mapping each alias to
+     * its trusted certificate, along with the trust manager factory
+     * initialised from the same certificates and the loading time.
+     *
+     * @param certificates          The trusted certificates per alias
+     * @param trustManagerFactory   The trust manager factory, null if nothing is trusted
+     * @param loadedAt              The time the snapshot was loaded
+     */
+    public record TrustStoreSnapshot(Map<String, X509Certificate> certificates, TrustManagerFactory trustManagerFactory, Instant loadedAt) {
+
+        /**
+         * Creates an empty snapshot, used when no truststore is configured.
+         *
+         * @return the empty truststore snapshot
+         */
+        public static TrustStoreSnapshot empty() {
+            return new TrustStoreSnapshot(Collections.emptyMap(), null, Instant.now());
+        }
+
+        /**
+         * Creates a new snapshot from the provided trusted certificates.
+         *
+         * @param certificates the trusted certificates per alias
+         * @return the new truststore snapshot
+         * @throws Exception if the trust manager factory initialisation fails
+         */
+        public static TrustStoreSnapshot of(Map<String, X509Certificate> certificates) throws Exception {
+            final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keyStore.load(null, null);
+            for(Map.Entry<String, X509Certificate> entry : certificates.entrySet()) {
+                keyStore.setCertificateEntry(entry.getKey(), entry.getValue());
+            }
+            final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(keyStore);
+            return new TrustStoreSnapshot(Map.copyOf(certificates), trustManagerFactory, Instant.now());
+        }
+    }
+
+}
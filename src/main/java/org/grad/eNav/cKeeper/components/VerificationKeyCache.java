@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The VerificationKeyCache Component Class
+ *
+ * This component holds a bounded in-memory cache of the decoded public keys
+ * of the non-revoked certificates of each MRN entity, keyed by the MRN entity
+ * ID. The keys are kept ordered from the latest to the oldest certificate
+ * start date, along with their validity period, so that the verification
+ * operations do not need to re-read the certificate entries and re-parse the
+ * PEM content every time.
+ * <p/>
+ * The decoded public keys of individual certificates, used when verifying
+ * against a specific certificate, are cached separately, keyed by the
+ * certificate ID.
+ * <p/>
+ * The cache statistics (hits, misses, size) are registered with the
+ * Micrometer meter registry so that they are available through actuator.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class VerificationKeyCache {
+
+    /**
+     * The maximum number of MRN entity key sets to be cached.
+     */
+    @Value("${gla.rad.ckeeper.cache.verification-keys.maximum-size:10000}")
+    long maximumSize = 10000;
+
+    /**
+     * The number of minutes after which a cached key set will be reloaded.
+     */
+    @Value("${gla.rad.ckeeper.cache.verification-keys.expire-after-write-minutes:10}")
+    long expireAfterWriteMinutes = 10;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    /**
+     * The Signature Engines.
+     */
+    @Autowired(required = false)
+    SignatureEngines signatureEngines;
+
+    // Component Variables
+    protected Cache<BigInteger, List<VerificationKey>> cache;
+    protected Cache<BigInteger, PublicKey> certificateCache;
+
+    /**
+     * Once the component has been initialised, we can build the cache based
+     * on the provided configuration, and register its statistics with the
+     * meter registry if one is available. Whenever a public key is dropped,
+     * the signature engines initialised with it are dropped as well.
+     */
+    @PostConstruct
+    public void init() {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfterWrite(Duration.ofMinutes(this.expireAfterWriteMinutes))
+                .removalListener((BigInteger mrnEntityId, List<VerificationKey> verificationKeys, RemovalCause cause) ->
+                        Optional.ofNullable(verificationKeys)
+                                .orElse(Collections.emptyList())
+                                .forEach(verificationKey -> this.evictEngines(verificationKey.publicKey())))
+                .recordStats()
+                .build();
+        this.certificateCache = Caffeine.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfterWrite(Duration.ofMinutes(this.expireAfterWriteMinutes))
+                .removalListener((BigInteger certificateId, PublicKey publicKey, RemovalCause cause) -> this.evictEngines(publicKey))
+                .recordStats()
+                .build();
+
+        // Expose the cache statistics if possible
+        if(Objects.nonNull(this.meterRegistry)) {
+            CaffeineCacheMetrics.monitor(this.meterRegistry, this.cache, "verificationKeys");
+            CaffeineCacheMetrics.monitor(this.meterRegistry, this.certificateCache, "certificateVerificationKeys");
+        }
+    }
+
+    /**
+     * Returns the cached verification keys for the MRN entity identified by
+     * the provided ID, or null if those are not available.
+     *
+     * @param mrnEntityId the ID of the MRN entity
+     * @return the cached verification keys if found, otherwise null
+     */
+    public List<VerificationKey> get(BigInteger mrnEntityId) {
+        return this.cache.getIfPresent(mrnEntityId);
+    }
+
+    /**
+     * Caches the provided verification keys for the MRN entity identified by
+     * the provided ID.
+     *
+     * @param mrnEntityId the ID of the MRN entity
+     * @param verificationKeys the verification keys of the MRN entity
+     */
+    public void put(BigInteger mrnEntityId, List<VerificationKey> verificationKeys) {
+        this.cache.put(mrnEntityId, List.copyOf(verificationKeys));
+    }
+
+    /**
+     * Drops the cached verification keys of the MRN entity identified by the
+     * provided ID, e.g. when a certificate is generated, revoked or synced.
+     *
+     * @param mrnEntityId the ID of the MRN entity
+     */
+    public void invalidate(BigInteger mrnEntityId) {
+        log.debug("Dropping cached verification keys for MRN entity : {}", mrnEntityId);
+        this.cache.invalidate(mrnEntityId);
+    }
+
+    /**
+     * Returns the cached public key of the certificate identified by the
+     * provided ID, or null if that is not available.
+     *
+     * @param certificateId the ID of the certificate
+     * @return the cached public key if found, otherwise null
+     */
+    public PublicKey getCertificateKey(BigInteger certificateId) {
+        return this.certificateCache.getIfPresent(certificateId);
+    }
+
+    /**
+     * Caches the provided public key of the certificate identified by the
+     * provided ID.
+     *
+     * @param certificateId the ID of the certificate
+     * @param publicKey the decoded public key of the certificate
+     */
+    public void putCertificateKey(BigInteger certificateId, PublicKey publicKey) {
+        this.certificateCache.put(certificateId, publicKey);
+    }
+
+    /**
+     * Drops the cached public key of the certificate identified by the
+     * provided ID, e.g. when the certificate is deleted.
+     *
+     * @param certificateId the ID of the certificate
+     */
+    public void invalidateCertificate(BigInteger certificateId) {
+        log.debug("Dropping cached verification key for certificate : {}", certificateId);
+        this.certificateCache.invalidate(certificateId);
+    }
+
+    /**
+     * Drops all the cached verification keys.
+     */
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+        this.certificateCache.invalidateAll();
+    }
+
+    /**
+     * Drops the signature engines initialised with the provided public key,
+     * if the signature engines are available.
+     *
+     * @param publicKey the dropped public key
+     */
+    protected void evictEngines(PublicKey publicKey) {
+        if(Objects.nonNull(this.signatureEngines) && Objects.nonNull(publicKey)) {
+            this.signatureEngines.evict(publicKey);
+        }
+    }
+
+    /**
+     * Returns the estimated number of the currently cached key sets.
+     *
+     * @return the estimated number of the cached key sets
+     */
+    public long size() {
+        return this.cache.estimatedSize();
+    }
+
+    /**
+     * A decoded certificate public key along with the certificate validity
+     * period. Missing start or end dates are not considered as restrictions.
+     *
+     * @param certificateId the ID of the certificate
+     * @param publicKey     the decoded public key of the certificate
+     * @param startDate     the start date of the certificate
+     * @param endDate       the end date of the certificate
+     */
+    public record VerificationKey(BigInteger certificateId, PublicKey publicKey, Date startDate, Date endDate) {
+
+        /**
+         * Checks whether the key is valid at the provided date.
+         *
+         * @param date the date to check the validity at
+         * @return whether the key is valid at the provided date
+         */
+        public boolean isValidAt(Date date) {
+            return this.isValidAt(date.getTime());
+        }
+
+        /**
+         * Checks whether the key is valid at the provided time, without any
+         * intermediate allocations, since this is on the verification path.
+         *
+         * @param time the time to check the validity at in milliseconds
+         * @return whether the key is valid at the provided time
+         */
+        public boolean isValidAt(long time) {
+            return (Objects.isNull(this.startDate) || this.startDate.getTime() <= time)
+                    && (Objects.isNull(this.endDate) || this.endDate.getTime() >= time);
+        }
+    }
+
+}
@@ -29,6 +29,7 @@ import org.grad.eNav.cKeeper.models.dtos.MrnEntityDto;
 import org.grad.eNav.cKeeper.models.dtos.datatables.DtPage;
 import org.grad.eNav.cKeeper.models.dtos.datatables.DtPagingRequest;
 import org.grad.eNav.cKeeper.services.CertificateService;
+import org.grad.eNav.cKeeper.services.McpSyncService;
 import org.grad.eNav.cKeeper.services.MrnEntityService;
 import org.grad.eNav.cKeeper.utils.HeaderUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -70,6 +71,12 @@ public class MrnEntityController {
     @Autowired
     CertificateService certificateService;
 
+    /**
+     * The MCP Sync Service.
+     */
+    @Autowired
+    McpSyncService mcpSyncService;
+
     /**
      * MRN Entity Mapper from Domain to DTO.
      */
@@ -205,6 +212,7 @@ public class MrnEntityController {
     @GetMapping(value = "/{id}/certificates", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Set<CertificateDto>> getMrnEntityCertificates(@PathVariable BigInteger id) {
         log.debug("REST request to get MRN Entity certificates: {}", id);
+        this.mcpSyncService.requestSync(id);
         final Set<Certificate> result = this.certificateService.findAllByMrnEntityId(id);
         return ResponseEntity.ok()
                 .body(this.certificateDomainToDtoMapper.convertToSet(result, CertificateDto.class));
@@ -22,19 +22,29 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.extern.slf4j.Slf4j;
 import org.grad.eNav.cKeeper.components.DomainDtoMapper;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache.SignatureCertificateBundle;
 import org.grad.eNav.cKeeper.models.domain.SignatureCertificate;
 import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.models.dtos.SignatureBatchVerificationRequestDto;
 import org.grad.eNav.cKeeper.models.dtos.SignatureCertificateDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureRequestDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureResponseDto;
 import org.grad.eNav.cKeeper.models.dtos.SignatureVerificationRequestDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureVerificationResponseDto;
 import org.grad.eNav.cKeeper.services.CertificateService;
 import org.grad.eNav.cKeeper.services.SignatureService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -74,19 +84,30 @@ public class SignatureController {
     /**
      * GET /api/signature/certificate : Requests the certificate to be used for
      * singing payload of a specific entity based on its name, MMSI and type.
+     * <p/>
+     * The response carries a strong ETag, so that clients polling with the
+     * If-None-Match header will receive a 304 (Not Modified) response if
+     * their signature certificate has not changed.
      *
-     * @return the ResponseEntity with status 200 (OK) if successful, or with
-     * status 400 (Bad Request)
+     * @return the ResponseEntity with status 200 (OK) if successful, with
+     * status 304 (Not Modified) if unchanged, or with status 400 (Bad Request)
      */
     @GetMapping(value = "/certificate", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<SignatureCertificateDto> getCertificate(@RequestParam(value = "entityName") String entityName,
                                                                   @RequestParam(value = "mmsi", required = false) String mmsi,
                                                                   @RequestParam(value = "version", required = false) String version,
-                                                                  @RequestParam(value = "entityType", required = false, defaultValue="device") McpEntityType entityType) {
+                                                                  @RequestParam(value = "entityType", required = false, defaultValue="device") McpEntityType entityType,
+                                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.debug("REST request to get signature certificate for entity with name : {} and version (not required) {}", entityName, version);
-        final SignatureCertificate signatureCertificate = this.signatureService.getSignatureCertificate(entityName, version, mmsi, entityType);
+        final SignatureCertificateBundle signatureCertificateBundle = this.signatureService.getSignatureCertificateBundle(entityName, version, mmsi, entityType);
+        if(this.matchesETag(ifNoneMatch, signatureCertificateBundle.eTag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(signatureCertificateBundle.eTag())
+                    .build();
+        }
         return ResponseEntity.ok()
-                .body(this.signatureCertificateDomainToDtoMapper.convertTo(signatureCertificate, SignatureCertificateDto.class));
+                .eTag(signatureCertificateBundle.eTag())
+                .body(this.signatureCertificateDomainToDtoMapper.convertTo(signatureCertificateBundle.signatureCertificate(), SignatureCertificateDto.class));
     }
 
     /**
@@ -143,12 +164,30 @@ public class SignatureController {
                 entityType);
         final byte[] result = signatureService.generateEntitySignature(
                 signatureCertificate.getCertificateId(),
+                entityType,
                 Optional.ofNullable(algorithm).orElse(this.defaultSigningAlgorithm),
                 signaturePayload);
         return ResponseEntity.ok()
                 .body(result);
     }
 
+    /**
+     * POST /api/signature/batch : Requests the signatures for a batch of
+     * payloads. Each item can identify the signing certificate either by its
+     * ID, or by the entity name, MMSI, version and type. The payloads and the
+     * generated signatures are Base64 encoded.
+     *
+     * @return the ResponseEntity with status 200 (OK) and the per-item
+     * signature results, or with status 400 (Bad Request)
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<SignatureResponseDto>> generateBatchSignatures(@RequestBody List<SignatureRequestDto> signatureRequests) {
+        log.debug("REST request to get a batch of {} signatures", signatureRequests.size());
+        final List<SignatureResponseDto> result = this.signatureService.generateBatchSignatures(signatureRequests);
+        return ResponseEntity.ok()
+                .body(result);
+    }
+
     /**
      * POST /api/signature/entity/verify/{entityMrn} : Verify the provided
      * content based on the provided entity MRN.
@@ -187,4 +226,36 @@ public class SignatureController {
         return ResponseEntity.badRequest().build();
     }
 
+    /**
+     * POST /api/signature/verify/batch : Verify a batch of signed contents.
+     * Each item identifies the entity the signature belongs to either by its
+     * MRN or its MMSI. The contents and signatures are Base64 encoded.
+     *
+     * @return the ResponseEntity with status 200 (OK) and the per-item
+     * verification results, or with status 400 (Bad Request)
+     */
+    @PostMapping(value = "/verify/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<SignatureVerificationResponseDto>> verifyBatchSignatures(@RequestBody List<SignatureBatchVerificationRequestDto> verificationRequests) {
+        log.debug("REST request to verify a batch of {} signatures", verificationRequests.size());
+        final List<SignatureVerificationResponseDto> result = this.signatureService.verifyBatchSignatures(verificationRequests);
+        return ResponseEntity.ok()
+                .body(result);
+    }
+
+    /**
+     * Checks whether the provided If-None-Match header value matches the
+     * provided ETag. The header can contain a list of ETags, or a wildcard.
+     * As specified for the If-None-Match header, the weak comparison is used.
+     *
+     * @param ifNoneMatch the If-None-Match header value
+     * @param eTag the current ETag
+     * @return whether the ETag is matched
+     */
+    protected boolean matchesETag(String ifNoneMatch, String eTag) {
+        return Objects.nonNull(ifNoneMatch) && Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(eTag));
+    }
+
 }
@@ -37,7 +37,9 @@ import java.util.Objects;
  * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
  */
 @Entity
-@Table(name = "certificates")
+@Table(name = "certificates",
+        indexes = @Index(name = "idx_certificates_latest_valid", columnList = "mrnEntityId, revoked, startDate, endDate"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_certificates_mcp_mir_id", columnNames = "mcpMirId"))
 @Cacheable
 public class Certificate {
 
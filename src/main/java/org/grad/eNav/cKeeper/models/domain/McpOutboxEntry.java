@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.models.domain;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.hibernate.annotations.JdbcTypeCode;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.sql.Types;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * The type MCP Outbox Entry.
+ * <p/>
+ * Each entry records an MCP MIR mutation that is pending for an MRN entity,
+ * so that it can be replayed asynchronously after the local transaction has
+ * been committed. Only the latest mutation is kept per MRN and version.
+ * <p/>
+ * While an entry is being applied, it is claimed by its dispatcher until the
+ * claim expires, so that it is never applied concurrently, either by another
+ * dispatch or by another cKeeper node.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Entity
+@Table(name = "mcp_outbox",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"mrn", "version"}),
+        indexes = @Index(name = "idx_mcp_outbox_next_attempt", columnList = "nextAttemptAt"))
+public class McpOutboxEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The MCP MIR mutation operations.
+     */
+    public enum Operation {
+        SAVE,
+        DELETE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mcp_outbox_generator")
+    @SequenceGenerator(name = "mcp_outbox_generator", sequenceName = "mcp_outbox_seq", allocationSize = 1)
+    private BigInteger id;
+
+    @NotNull
+    @Column(name = "mrn", nullable = false)
+    private String mrn;
+
+    @NotNull
+    @Column(name = "version", nullable = false)
+    private String version;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entityType", nullable = false)
+    private McpEntityType entityType;
+
+    @Column(name = "name")
+    private String name;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false)
+    private Operation operation;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "nextAttemptAt")
+    private Date nextAttemptAt;
+
+    @JdbcTypeCode(Types.LONGVARCHAR)
+    @Column(name = "lastError")
+    private String lastError;
+
+    @Column(name = "claimedBy")
+    private String claimedBy;
+
+    @Column(name = "claimedUntil")
+    private Date claimedUntil;
+
+    @Column(name = "failedAt")
+    private Date failedAt;
+
+    @Version
+    @Column(name = "revision")
+    private Long revision;
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    public BigInteger getId() {
+        return id;
+    }
+
+    /**
+     * Sets id.
+     *
+     * @param id the id
+     */
+    public void setId(BigInteger id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets mrn.
+     *
+     * @return the mrn
+     */
+    public String getMrn() {
+        return mrn;
+    }
+
+    /**
+     * Sets mrn.
+     *
+     * @param mrn the mrn
+     */
+    public void setMrn(String mrn) {
+        this.mrn = mrn;
+    }
+
+    /**
+     * Gets version.
+     *
+     * @return the version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets version.
+     *
+     * @param version the version
+     */
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Gets entity type.
+     *
+     * @return the entity type
+     */
+    public McpEntityType getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Sets entity type.
+     *
+     * @param entityType the entity type
+     */
+    public void setEntityType(McpEntityType entityType) {
+        this.entityType = entityType;
+    }
+
+    /**
+     * Gets name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets name.
+     *
+     * @param name the name
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets operation.
+     *
+     * @return the operation
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Sets operation.
+     *
+     * @param operation the operation
+     */
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Gets attempts.
+     *
+     * @return the attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Sets attempts.
+     *
+     * @param attempts the attempts
+     */
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * Gets next attempt at.
+     *
+     * @return the next attempt at
+     */
+    public Date getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    /**
+     * Sets next attempt at.
+     *
+     * @param nextAttemptAt the next attempt at
+     */
+    public void setNextAttemptAt(Date nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    /**
+     * Gets last error.
+     *
+     * @return the last error
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Sets last error.
+     *
+     * @param lastError the last error
+     */
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    /**
+     * Gets claimed by.
+     *
+     * @return the claimed by
+     */
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    /**
+     * Sets claimed by.
+     *
+     * @param claimedBy the claimed by
+     */
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    /**
+     * Gets claimed until.
+     *
+     * @return the claimed until
+     */
+    public Date getClaimedUntil() {
+        return claimedUntil;
+    }
+
+    /**
+     * Sets claimed until.
+     *
+     * @param claimedUntil the claimed until
+     */
+    public void setClaimedUntil(Date claimedUntil) {
+        this.claimedUntil = claimedUntil;
+    }
+
+    /**
+     * Gets failed at.
+     *
+     * @return the failed at
+     */
+    public Date getFailedAt() {
+        return failedAt;
+    }
+
+    /**
+     * Sets failed at.
+     *
+     * @param failedAt the failed at
+     */
+    public void setFailedAt(Date failedAt) {
+        this.failedAt = failedAt;
+    }
+
+    /**
+     * Gets revision.
+     *
+     * @return the revision
+     */
+    public Long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Sets revision.
+     *
+     * @param revision the revision
+     */
+    public void setRevision(Long revision) {
+        this.revision = revision;
+    }
+
+    /**
+     * Overrides the equality operator of the class.
+     *
+     * @param o the object to check the equality
+     * @return whether the two objects are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof McpOutboxEntry)) return false;
+        McpOutboxEntry that = (McpOutboxEntry) o;
+        return Objects.equals(id, that.id) && Objects.equals(mrn, that.mrn) && Objects.equals(version, that.version);
+    }
+
+    /**
+     * Overrides the hashcode generation of the object.
+     *
+     * @return the generated hashcode
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, mrn, version);
+    }
+
+}
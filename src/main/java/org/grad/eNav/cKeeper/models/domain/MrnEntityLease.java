@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.models.domain;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * The type MRN Entity Lease.
+ * <p/>
+ * Each lease grants a single cKeeper node the exclusive right to perform
+ * certificate operations on an MRN entity until it expires. This allows
+ * multiple nodes sharing the same database to coordinate without issuing
+ * duplicate certificates.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Entity
+@Table(name = "mrn_entity_lease")
+public class MrnEntityLease implements Persistable<BigInteger>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "mrnEntityId")
+    private BigInteger mrnEntityId;
+
+    @NotNull
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    @NotNull
+    @Column(name = "expiresAt", nullable = false)
+    private Date expiresAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    /**
+     * Gets mrn entity id.
+     *
+     * @return the mrn entity id
+     */
+    public BigInteger getMrnEntityId() {
+        return mrnEntityId;
+    }
+
+    /**
+     * Sets mrn entity id.
+     *
+     * @param mrnEntityId the mrn entity id
+     */
+    public void setMrnEntityId(BigInteger mrnEntityId) {
+        this.mrnEntityId = mrnEntityId;
+    }
+
+    /**
+     * Gets owner.
+     *
+     * @return the owner
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Sets owner.
+     *
+     * @param owner the owner
+     */
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Gets expires at.
+     *
+     * @return the expires at
+     */
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Sets expires at.
+     *
+     * @param expiresAt the expires at
+     */
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    @Override
+    public BigInteger getId() {
+        return mrnEntityId;
+    }
+
+    /**
+     * Since the ID of the lease is assigned, this returns whether the lease
+     * has not been persisted or loaded yet, so that saving it always inserts
+     * a new row rather than merging into the lease of another node.
+     *
+     * @return whether the lease is new
+     */
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    /**
+     * Marks the lease as not new once it has been persisted or loaded.
+     */
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    /**
+     * Overrides the equality operator of the class.
+     *
+     * @param o the object to check the equality
+     * @return whether the two objects are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MrnEntityLease)) return false;
+        MrnEntityLease that = (MrnEntityLease) o;
+        return Objects.equals(mrnEntityId, that.mrnEntityId);
+    }
+
+    /**
+     * Overrides the hashcode generation of the object.
+     *
+     * @return the generated hashcode
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(mrnEntityId);
+    }
+
+}
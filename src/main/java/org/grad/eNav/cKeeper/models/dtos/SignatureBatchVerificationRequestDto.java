@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.models.dtos;
+
+import java.util.Objects;
+
+/**
+ * The type Signature batch verification request.
+ *
+ * This extends the signature verification request with the identification of
+ * the entity the signature belongs to, either through its MRN or its MMSI.
+ * Note that the content and signature are expected to be Base64 encoded.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class SignatureBatchVerificationRequestDto extends SignatureVerificationRequestDto {
+
+    // Class Variables
+    private String mrn;
+    private String mmsi;
+
+    /**
+     * Instantiates a new Signature batch verification request.
+     */
+    public SignatureBatchVerificationRequestDto() {
+    }
+
+    /**
+     * Gets mrn.
+     *
+     * @return the mrn
+     */
+    public String getMrn() {
+        return mrn;
+    }
+
+    /**
+     * Sets mrn.
+     *
+     * @param mrn the mrn
+     */
+    public void setMrn(String mrn) {
+        this.mrn = mrn;
+    }
+
+    /**
+     * Gets mmsi.
+     *
+     * @return the mmsi
+     */
+    public String getMmsi() {
+        return mmsi;
+    }
+
+    /**
+     * Sets mmsi.
+     *
+     * @param mmsi the mmsi
+     */
+    public void setMmsi(String mmsi) {
+        this.mmsi = mmsi;
+    }
+
+    /**
+     * Overrides the equality operator of the class.
+     *
+     * @param o the object to check the equality
+     * @return whether the two objects are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SignatureBatchVerificationRequestDto that)) return false;
+        if (!super.equals(o)) return false;
+        return Objects.equals(mrn, that.mrn) && Objects.equals(mmsi, that.mmsi);
+    }
+
+    /**
+     * Overrides the hashcode generation of the object.
+     *
+     * @return the generated hashcode
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), mrn, mmsi);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.models.dtos;
+
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * The Signature Request DTO.
+ *
+ * The signing certificate can either be identified directly by its ID, or
+ * through the entity name, MMSI, version and type. Note that the payload is
+ * expected to be Base64 encoded.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class SignatureRequestDto {
+
+    // Class Variables
+    private BigInteger certificateId;
+    private String entityName;
+    private String mmsi;
+    private String version;
+    private McpEntityType entityType;
+    private String algorithm;
+    private String payload;
+
+    /**
+     * Instantiates a new signature request dto.
+     */
+    public SignatureRequestDto() {
+    }
+
+    /**
+     * Gets certificate id.
+     *
+     * @return the certificate id
+     */
+    public BigInteger getCertificateId() {
+        return certificateId;
+    }
+
+    /**
+     * Sets certificate id.
+     *
+     * @param certificateId the certificate id
+     */
+    public void setCertificateId(BigInteger certificateId) {
+        this.certificateId = certificateId;
+    }
+
+    /**
+     * Gets entity name.
+     *
+     * @return the entity name
+     */
+    public String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * Sets entity name.
+     *
+     * @param entityName the entity name
+     */
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    /**
+     * Gets mmsi.
+     *
+     * @return the mmsi
+     */
+    public String getMmsi() {
+        return mmsi;
+    }
+
+    /**
+     * Sets mmsi.
+     *
+     * @param mmsi the mmsi
+     */
+    public void setMmsi(String mmsi) {
+        this.mmsi = mmsi;
+    }
+
+    /**
+     * Gets version.
+     *
+     * @return the version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets version.
+     *
+     * @param version the version
+     */
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Gets entity type.
+     *
+     * @return the entity type
+     */
+    public McpEntityType getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Sets entity type.
+     *
+     * @param entityType the entity type
+     */
+    public void setEntityType(McpEntityType entityType) {
+        this.entityType = entityType;
+    }
+
+    /**
+     * Gets algorithm.
+     *
+     * @return the algorithm
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Sets algorithm.
+     *
+     * @param algorithm the algorithm
+     */
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Gets payload.
+     *
+     * @return the payload
+     */
+    public String getPayload() {
+        return payload;
+    }
+
+    /**
+     * Sets payload.
+     *
+     * @param payload the payload
+     */
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Overrides the equality operator of the class.
+     *
+     * @param o the object to check the equality
+     * @return whether the two objects are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SignatureRequestDto that)) return false;
+        return Objects.equals(certificateId, that.certificateId) && Objects.equals(entityName, that.entityName) && Objects.equals(mmsi, that.mmsi) && Objects.equals(version, that.version) && Objects.equals(entityType, that.entityType) && Objects.equals(algorithm, that.algorithm) && Objects.equals(payload, that.payload);
+    }
+
+    /**
+     * Overrides the hashcode generation of the object.
+     *
+     * @return the generated hashcode
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(certificateId, entityName, mmsi, version, entityType, algorithm, payload);
+    }
+}
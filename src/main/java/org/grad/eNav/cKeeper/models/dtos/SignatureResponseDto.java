@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.models.dtos;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * The Signature Response DTO.
+ *
+ * Note that the signature is Base64 encoded. If the signature generation
+ * failed, the error message will be populated instead.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class SignatureResponseDto {
+
+    // Class Variables
+    private BigInteger certificateId;
+    private String signature;
+    private String error;
+
+    /**
+     * Instantiates a new signature response dto.
+     */
+    public SignatureResponseDto() {
+    }
+
+    /**
+     * Gets certificate id.
+     *
+     * @return the certificate id
+     */
+    public BigInteger getCertificateId() {
+        return certificateId;
+    }
+
+    /**
+     * Sets certificate id.
+     *
+     * @param certificateId the certificate id
+     */
+    public void setCertificateId(BigInteger certificateId) {
+        this.certificateId = certificateId;
+    }
+
+    /**
+     * Gets signature.
+     *
+     * @return the signature
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Sets signature.
+     *
+     * @param signature the signature
+     */
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+
+    /**
+     * Gets error.
+     *
+     * @return the error
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Sets error.
+     *
+     * @param error the error
+     */
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Overrides the equality operator of the class.
+     *
+     * @param o the object to check the equality
+     * @return whether the two objects are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SignatureResponseDto that)) return false;
+        return Objects.equals(certificateId, that.certificateId) && Objects.equals(signature, that.signature) && Objects.equals(error, that.error);
+    }
+
+    /**
+     * Overrides the hashcode generation of the object.
+     *
+     * @return the generated hashcode
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(certificateId, signature, error);
+    }
+}
@@ -17,10 +17,15 @@
 package org.grad.eNav.cKeeper.repos;
 
 import org.grad.eNav.cKeeper.models.domain.Certificate;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -37,6 +42,33 @@ public interface CertificateRepo extends JpaRepository<Certificate, BigInteger>
      */
     Set<Certificate> findAllByMrnEntityId(BigInteger mrnEntityId);
 
+    /**
+     * Find one using the MCP MIR certificate ID.
+     *
+     * @param mcpMirId the MCP MIR ID of the certificate
+     * @return The certificate matching the MCP MIR ID
+     */
+    Optional<Certificate> findByMcpMirId(String mcpMirId);
+
+    /**
+     * Find the currently valid (i.e. started, not expired and not revoked)
+     * certificates of the MRN entity, ordered from the latest to the oldest
+     * start date. This is meant to be used with a single-result page, so
+     * that only the latest valid certificate is loaded.
+     *
+     * @param mrnEntityId the ID of the MRN Entity to get the certificate for
+     * @param now the current time
+     * @param pageable the pagination information to limit the results
+     * @return The currently valid certificates, latest first
+     */
+    @Query("select c from Certificate c " +
+            "where c.mrnEntity.id = :mrnEntityId " +
+            "and (c.revoked is null or c.revoked = false) " +
+            "and c.startDate <= :now " +
+            "and (c.endDate is null or c.endDate >= :now) " +
+            "order by c.startDate desc")
+    List<Certificate> findLatestValid(@Param("mrnEntityId") BigInteger mrnEntityId, @Param("now") Date now, Pageable pageable);
+
     /**
      * Returns the number of the new certificates generated today.
      *
@@ -45,4 +77,21 @@ public interface CertificateRepo extends JpaRepository<Certificate, BigInteger>
     @Query("select count(*) from Certificate c where c.startDate >= current_date()")
     int getNumOfGeneratedCertificatesToday();
 
+    /**
+     * Returns the IDs of the MRN entities whose non-revoked certificates are
+     * all going to expire within the provided period, i.e. the latest end date
+     * of their non-revoked certificates falls between the provided dates. The
+     * MRN entities whose certificates expire first are returned first.
+     *
+     * @param from the start of the expiry period
+     * @param to the end of the expiry period
+     * @return the IDs of the MRN entities with certificates about to expire
+     */
+    @Query("select c.mrnEntity.id from Certificate c " +
+            "where (c.revoked is null or c.revoked = false) and c.endDate is not null " +
+            "group by c.mrnEntity.id " +
+            "having max(c.endDate) > :from and max(c.endDate) <= :to " +
+            "order by max(c.endDate) asc")
+    List<BigInteger> findMrnEntityIdsWithCertificatesExpiringBetween(@Param("from") Date from, @Param("to") Date to);
+
 }
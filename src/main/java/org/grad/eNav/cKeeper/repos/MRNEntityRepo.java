@@ -17,9 +17,13 @@
 package org.grad.eNav.cKeeper.repos;
 
 import org.grad.eNav.cKeeper.models.domain.MrnEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -71,4 +75,15 @@ public interface MRNEntityRepo extends JpaRepository<MrnEntity, BigInteger> {
      */
     Optional<MrnEntity> findByMmsi(String mmsi);
 
+    /**
+     * Find the IDs of the entities following the provided ID, in ascending
+     * order, so that all the entities can be paged through without offsets.
+     *
+     * @param afterId the ID after which the entity IDs should be returned
+     * @param pageable the pagination information to limit the results
+     * @return The entity IDs following the provided one
+     */
+    @Query("select e.id from MrnEntity e where e.id > :afterId order by e.id asc")
+    List<BigInteger> findIdsAfter(@Param("afterId") BigInteger afterId, Pageable pageable);
+
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.repos;
+
+import org.grad.eNav.cKeeper.models.domain.McpOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spring Data JPA repository for the MCP Outbox Entry.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public interface McpOutboxRepo extends JpaRepository<McpOutboxEntry, BigInteger> {
+
+    /**
+     * Find one using the MRN and the version of the MRN entity.
+     *
+     * @param mrn the MRN of the entity
+     * @param version the version of the entity
+     * @return The outbox entry matching the MRN and the version
+     */
+    Optional<McpOutboxEntry> findByMrnAndVersion(String mrn, String version);
+
+    /**
+     * Find the outbox entries that are due for dispatching by the provided
+     * time, in the order they were recorded. Entries currently claimed by a
+     * dispatcher, or marked as failed, are skipped.
+     *
+     * @param now the current time
+     * @param pageable the pagination information to limit the batch size
+     * @return The outbox entries due for dispatching
+     */
+    @Query("select e from McpOutboxEntry e where e.nextAttemptAt <= :now and e.failedAt is null and (e.claimedUntil is null or e.claimedUntil < current_timestamp) order by e.id asc")
+    List<McpOutboxEntry> findDue(@Param("now") Date now, Pageable pageable);
+
+    /**
+     * Find the outbox entries that have been marked as failed, in the order
+     * they were recorded.
+     *
+     * @return The failed outbox entries
+     */
+    List<McpOutboxEntry> findAllByFailedAtIsNotNullOrderByIdAsc();
+
+    /**
+     * Counts the outbox entries that are still pending, i.e. not marked as
+     * failed.
+     *
+     * @return The number of pending outbox entries
+     */
+    long countByFailedAtIsNull();
+
+    /**
+     * Counts the outbox entries that have been marked as failed.
+     *
+     * @return The number of failed outbox entries
+     */
+    long countByFailedAtIsNotNull();
+
+    /**
+     * Claims the outbox entry with the provided ID for the provided owner,
+     * but only if it is not already claimed, or its claim has expired. The
+     * claim expiry is computed by the database clock, so that it is
+     * consistent across all the nodes.
+     *
+     * @param id the ID of the outbox entry
+     * @param owner the owner of the claim
+     * @param durationSeconds the duration of the claim in seconds
+     * @return The number of entries claimed, i.e. one if successful
+     */
+    @Modifying
+    @Transactional
+    @Query("update McpOutboxEntry e set e.claimedBy = :owner, e.claimedUntil = current_timestamp + (:durationSeconds) second where e.id = :id and (e.claimedUntil is null or e.claimedUntil < current_timestamp)")
+    int claim(@Param("id") BigInteger id,
+              @Param("owner") String owner,
+              @Param("durationSeconds") long durationSeconds);
+
+    /**
+     * Releases the claim of the outbox entry with the provided ID, but only
+     * if it is still held by the provided owner.
+     *
+     * @param id the ID of the outbox entry
+     * @param owner the owner of the claim
+     * @return The number of entries released, i.e. one if still claimed
+     */
+    @Modifying
+    @Transactional
+    @Query("update McpOutboxEntry e set e.claimedBy = null, e.claimedUntil = null where e.id = :id and e.claimedBy = :owner")
+    int release(@Param("id") BigInteger id,
+                @Param("owner") String owner);
+
+    /**
+     * Resets all the failed outbox entries, so that they are dispatched
+     * again from scratch by the provided time.
+     *
+     * @param now the time the entries should be dispatched by
+     * @return The number of entries reset
+     */
+    @Modifying
+    @Transactional
+    @Query("update McpOutboxEntry e set e.failedAt = null, e.attempts = 0, e.nextAttemptAt = :now where e.failedAt is not null")
+    int retryFailed(@Param("now") Date now);
+
+}
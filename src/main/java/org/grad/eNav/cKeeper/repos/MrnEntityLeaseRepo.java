@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.repos;
+
+import org.grad.eNav.cKeeper.models.domain.MrnEntityLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigInteger;
+
+/**
+ * Spring Data JPA repository for the MRN Entity Lease.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public interface MrnEntityLeaseRepo extends JpaRepository<MrnEntityLease, BigInteger> {
+
+    /**
+     * Takes over the lease of the provided MRN entity, but only if it has
+     * already expired. Both the expiry check and the new expiry time are
+     * computed by the database clock, so that they are consistent across
+     * all the nodes of the cluster.
+     *
+     * @param mrnEntityId the ID of the MRN entity
+     * @param owner the new owner of the lease
+     * @param durationSeconds the duration of the lease in seconds
+     * @return The number of leases taken over, i.e. one if successful
+     */
+    @Modifying
+    @Query("update MrnEntityLease l set l.owner = :owner, l.expiresAt = current_timestamp + (:durationSeconds) second where l.mrnEntityId = :mrnEntityId and l.expiresAt < current_timestamp")
+    int acquireExpired(@Param("mrnEntityId") BigInteger mrnEntityId,
+                       @Param("owner") String owner,
+                       @Param("durationSeconds") long durationSeconds);
+
+    /**
+     * Extends the lease of the provided MRN entity from the current database
+     * time, but only if it is still held by the provided owner.
+     *
+     * @param mrnEntityId the ID of the MRN entity
+     * @param owner the owner of the lease
+     * @param durationSeconds the duration of the lease in seconds
+     * @return The number of leases renewed, i.e. one if still held
+     */
+    @Modifying
+    @Query("update MrnEntityLease l set l.expiresAt = current_timestamp + (:durationSeconds) second where l.mrnEntityId = :mrnEntityId and l.owner = :owner")
+    int renew(@Param("mrnEntityId") BigInteger mrnEntityId,
+              @Param("owner") String owner,
+              @Param("durationSeconds") long durationSeconds);
+
+    /**
+     * Releases the lease of the provided MRN entity, but only if it is still
+     * held by the provided owner.
+     *
+     * @param mrnEntityId the ID of the MRN entity
+     * @param owner the owner of the lease
+     * @return The number of leases released, i.e. one if still held
+     */
+    @Modifying
+    @Query("delete from MrnEntityLease l where l.mrnEntityId = :mrnEntityId and l.owner = :owner")
+    int release(@Param("mrnEntityId") BigInteger mrnEntityId,
+                @Param("owner") String owner);
+
+}
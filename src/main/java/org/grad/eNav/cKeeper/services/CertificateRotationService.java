@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.cKeeper.repos.CertificateRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Certificate Rotation Service Class
+ *
+ * Service Implementation for the proactive rotation of the MRN entity
+ * certificates. Entities whose certificates are all going to expire within
+ * the configured rotation window are periodically picked up, and successor
+ * certificates are issued ahead of time. This way the signing request path
+ * should never have to block on the certificate issuance, which only remains
+ * as a fallback for certificates that are revoked unexpectedly.
+ * <p/>
+ * The number of concurrent issuance operations (and therefore the load on
+ * the MCP Identity Registry) is bounded by the size of the rotation executor.
+ * Each run can only use up to a configurable share of the daily certificate
+ * issuance quota, so that the fallback issuance is never starved, and the
+ * entities whose certificates expire first are rotated first.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Service
+@Slf4j
+public class CertificateRotationService {
+
+    /**
+     * Whether the proactive certificate rotation is enabled.
+     */
+    @Value("${gla.rad.ckeeper.certificate.rotation.enabled:true}")
+    boolean enabled;
+
+    /**
+     * The number of hours before the expiry that certificates get rotated.
+     */
+    @Value("${gla.rad.ckeeper.certificate.rotation.window-hours:168}")
+    long windowHours;
+
+    /**
+     * The maximum number of concurrent certificate issuance operations.
+     */
+    @Value("${gla.rad.ckeeper.certificate.rotation.threads:2}")
+    int threads;
+
+    /**
+     * The share of the daily certificate issuance quota that the rotation
+     * can use up.
+     */
+    @Value("${gla.rad.ckeeper.certificate.rotation.quota-share:0.5}")
+    double quotaShare;
+
+    /**
+     * The maximum number of certificates generated per day.
+     */
+    @Value("${gla.rad.ckeeper.mcp.max-daily-generated-certificates:100}")
+    int maxDailyGeneratedCertificates;
+
+    /**
+     * The Certificate Repo.
+     */
+    @Autowired
+    CertificateRepo certificateRepo;
+
+    /**
+     * The Certificate Service.
+     */
+    @Autowired
+    CertificateService certificateService;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    // Service Variables
+    protected ExecutorService rotationExecutor;
+    protected Counter rotatedCounter;
+    protected Counter failedCounter;
+    protected final AtomicBoolean running = new AtomicBoolean();
+    protected final AtomicInteger pendingRotations = new AtomicInteger();
+
+    /**
+     * Once the service has been initialised, we can create the executor that
+     * will be handling the certificate issuance and register the rotation
+     * metrics.
+     */
+    @PostConstruct
+    public void init() {
+        this.rotationExecutor = Executors.newFixedThreadPool(Math.max(this.threads, 1), runnable -> {
+            final Thread thread = new Thread(runnable, "certificate-rotation");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Register the rotation counters if possible
+        if(Objects.nonNull(this.meterRegistry)) {
+            this.rotatedCounter = Counter.builder("ckeeper.certificate.rotations")
+                    .description("The number of certificate rotations performed")
+                    .tag("result", "success")
+                    .register(this.meterRegistry);
+            this.failedCounter = Counter.builder("ckeeper.certificate.rotations")
+                    .description("The number of certificate rotations performed")
+                    .tag("result", "failure")
+                    .register(this.meterRegistry);
+            Gauge.builder("ckeeper.certificate.rotations.pending", this.pendingRotations, AtomicInteger::get)
+                    .description("The number of certificate rotations still pending in the current run")
+                    .register(this.meterRegistry);
+        }
+    }
+
+    /**
+     * When shutting down the application we need to make sure that the
+     * rotation executor is terminated.
+     */
+    @PreDestroy
+    public void destroy() {
+        log.info("Certificate rotation service is shutting down...");
+        Optional.ofNullable(this.rotationExecutor).ifPresent(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Periodically picks up the MRN entities whose certificates are all going
+     * to expire within the configured rotation window, and issues successor
+     * certificates for them, within the share of the daily issuance quota
+     * that is still available. The issuance operations are handed over to
+     * the rotation executor, so this returns straight away, but a new run
+     * will not start before all the operations of the previous one are done.
+     */
+    @Scheduled(fixedDelayString = "${gla.rad.ckeeper.certificate.rotation.interval-ms:3600000}",
+            initialDelayString = "${gla.rad.ckeeper.certificate.rotation.initial-delay-ms:60000}")
+    public void rotate() {
+        // Only run when enabled and the previous run is done
+        if(!this.enabled || !this.running.compareAndSet(false, true)) {
+            return;
+        }
+
+        final List<CompletableFuture<Void>> rotations = new ArrayList<>();
+        try {
+            // Find the MRN entities that need to be rotated
+            final Instant now = Instant.now();
+            final Date threshold = Date.from(now.plus(Duration.ofHours(this.windowHours)));
+            final List<BigInteger> mrnEntityIds = this.certificateRepo.findMrnEntityIdsWithCertificatesExpiringBetween(Date.from(now), threshold);
+
+            // Only use the available share of the daily issuance quota
+            final int available = mrnEntityIds.isEmpty() ? 0 :
+                    Math.max(this.getQuotaLimit() - this.certificateRepo.getNumOfGeneratedCertificatesToday(), 0);
+            if(mrnEntityIds.size() > available) {
+                log.warn("Certificate rotation service can only rotate {} of the {} MRN entities due, within the daily quota share",
+                        available, mrnEntityIds.size());
+            }
+
+            // Rotate them with a bounded concurrency
+            final List<BigInteger> rotatedIds = mrnEntityIds.subList(0, Math.min(mrnEntityIds.size(), available));
+            if(!rotatedIds.isEmpty()) {
+                log.info("Certificate rotation service is rotating the certificates of {} MRN entities", rotatedIds.size());
+            }
+            this.pendingRotations.set(rotatedIds.size());
+            for(BigInteger mrnEntityId : rotatedIds) {
+                rotations.add(CompletableFuture.runAsync(() -> this.rotate(mrnEntityId, threshold), this.rotationExecutor));
+            }
+        } catch (RejectedExecutionException ex) {
+            log.warn("Certificate rotation rejected: {}", ex.getMessage());
+        } catch (Exception ex) {
+            log.error("Certificate rotation could not be started: {}", ex.getMessage());
+        }
+
+        // Allow the next run once all the rotations are done
+        CompletableFuture.allOf(rotations.toArray(CompletableFuture[]::new))
+                .whenComplete((result, ex) -> {
+                    this.pendingRotations.set(0);
+                    this.running.set(false);
+                });
+    }
+
+    /**
+     * Returns the maximum number of certificates that can be generated per
+     * day, up to which the rotation is allowed to issue certificates.
+     *
+     * @return the share of the daily certificate issuance quota
+     */
+    protected int getQuotaLimit() {
+        return (int) Math.floor(this.maxDailyGeneratedCertificates * Math.min(Math.max(this.quotaShare, 0.0), 1.0));
+    }
+
+    /**
+     * Performs the actual rotation of the certificates of the MRN entity
+     * identified by the provided ID. Any failures are only logged, since the
+     * rotation will be re-attempted in the next run.
+     *
+     * @param mrnEntityId the MRN Entity ID
+     * @param threshold the date before which the certificates need to be rotated
+     */
+    protected void rotate(@NotNull BigInteger mrnEntityId, @NotNull Date threshold) {
+        try {
+            this.certificateService.rotateMrnEntityCertificate(mrnEntityId, threshold)
+                    .ifPresent(certificate -> {
+                        log.info("Rotated certificate for MRN entity {}, new certificate {} valid until {}",
+                                mrnEntityId, certificate.getId(), certificate.getEndDate());
+                        Optional.ofNullable(this.rotatedCounter).ifPresent(Counter::increment);
+                    });
+        } catch (Exception ex) {
+            log.error("Certificate rotation failed for MRN entity {}: {}", mrnEntityId, ex.getMessage());
+            Optional.ofNullable(this.failedCounter).ifPresent(Counter::increment);
+        } finally {
+            this.pendingRotations.updateAndGet(pending -> Math.max(pending - 1, 0));
+        }
+    }
+
+}
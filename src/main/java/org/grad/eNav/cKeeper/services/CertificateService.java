@@ -16,14 +16,26 @@
 
 package org.grad.eNav.cKeeper.services;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
-import lombok.Synchronized;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.grad.eNav.cKeeper.components.KeyPairPool;
+import org.grad.eNav.cKeeper.components.MrnEntityLeases;
+import org.grad.eNav.cKeeper.components.MrnEntityLocks;
+import org.grad.eNav.cKeeper.components.PrivateKeyCache;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache;
+import org.grad.eNav.cKeeper.components.SignatureEngines;
+import org.grad.eNav.cKeeper.components.TrustStoreManager;
+import org.grad.eNav.cKeeper.components.VerificationKeyCache;
+import org.grad.eNav.cKeeper.components.VerificationKeyCache.VerificationKey;
 import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
 import org.grad.eNav.cKeeper.exceptions.McpConnectivityException;
 import org.grad.eNav.cKeeper.exceptions.SavingFailedException;
@@ -35,10 +47,14 @@ import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
 import org.grad.eNav.cKeeper.repos.CertificateRepo;
 import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
 import org.grad.eNav.cKeeper.utils.X509Utils;
-import org.grad.secom.core.utils.KeyStoreUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
 import java.math.BigInteger;
@@ -47,8 +63,10 @@ import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.function.Predicate.not;
 
@@ -99,24 +117,6 @@ public class CertificateService {
     @Value("${gla.rad.ckeeper.x509.cert.yearDuration:1}")
     Integer certYearDuration;
 
-    /**
-     * The X.509 Trust-Store.
-     */
-    @Value("${gla.rad.ckeeper.mcp.trustStore:mcp/truststore.p12}")
-    String trustStore;
-
-    /**
-     * The X.509 Trust-Store Password.
-     */
-    @Value("${gla.rad.ckeeper.mcp.trustStorePassword:password}")
-    String trustStorePassword;
-
-    /**
-     * The X.509 Trust-Store Type.
-     */
-    @Value("${gla.rad.ckeeper.mcp.trustStoreType:PKCS12}")
-    String trustStoreType;
-
     /**
      * The X.509 Trust-Store Type.
      */
@@ -141,56 +141,171 @@ public class CertificateService {
     @Autowired
     McpService mcpService;
 
+    /**
+     * The MCP Outbox Service.
+     */
+    @Autowired
+    McpOutboxService mcpOutboxService;
+
+    /**
+     * The Private Key Cache.
+     */
+    @Autowired
+    PrivateKeyCache privateKeyCache;
+
+    /**
+     * The Verification Key Cache.
+     */
+    @Autowired
+    VerificationKeyCache verificationKeyCache;
+
+    /**
+     * The Signature Certificate Cache.
+     */
+    @Autowired
+    SignatureCertificateCache signatureCertificateCache;
+
+    /**
+     * The Truststore Manager.
+     */
+    @Autowired
+    TrustStoreManager trustStoreManager;
+
+    /**
+     * The MRN Entity Locks.
+     */
+    @Autowired
+    MrnEntityLocks mrnEntityLocks;
+
+    /**
+     * The MRN Entity Leases.
+     */
+    @Autowired
+    MrnEntityLeases mrnEntityLeases;
+
+    /**
+     * The Signature Engines.
+     */
+    @Autowired
+    SignatureEngines signatureEngines;
+
+    /**
+     * The Key-Pair Pool.
+     */
+    @Autowired
+    KeyPairPool keyPairPool;
+
+    /**
+     * The Transaction Manager.
+     */
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
     /**
      * The service post-construct operations where the Bouncy Castle
-     * security provider is added onto the environment.
+     * security provider is added onto the environment, and the cached key
+     * gauges are registered with the meter registry if one is available.
      */
     @PostConstruct
     public void init() {
         // Add the Bouncy castle as a security provider to make signatures
         Security.addProvider(new BouncyCastleProvider());
+
+        // Register the cached key gauges if possible
+        if(Objects.nonNull(this.meterRegistry)) {
+            Gauge.builder("ckeeper.keys.cached", this.privateKeyCache, PrivateKeyCache::size)
+                    .description("The number of decoded keys currently cached")
+                    .tag("type", "private")
+                    .register(this.meterRegistry);
+            Gauge.builder("ckeeper.keys.cached", this.verificationKeyCache, VerificationKeyCache::size)
+                    .description("The number of decoded keys currently cached")
+                    .tag("type", "verification")
+                    .register(this.meterRegistry);
+        }
     }
 
     /**
      * This function can be used to sync the certificate status of a given
      * MRN entity with the MCP MSR.
+     * <p/>
+     * The local certificates are loaded before the MCP MIR is contacted, so
+     * that a certificate issued locally while waiting for the MCP MIR cannot
+     * be mistaken for one that has been revoked in the registry. No database
+     * connection is held while waiting for the MCP MIR.
      *
      * @param mrnEntityId the MRN Entity ID
+     * @return whether the MCP MIR state could be retrieved and synced
      */
-    @Transactional
-    public void syncMrnEntityWithMcpMir(@NotNull BigInteger mrnEntityId) {
+    public boolean syncMrnEntityWithMcpMir(@NotNull BigInteger mrnEntityId) {
         // Sanity Check - Check the MCP connectivity otherwise nothing to sync
         try {
             this.mcpService.checkMcpMirConnectivity();
         } catch (McpConnectivityException ex) {
-            return;
+            return false;
+        }
+
+        // Check that the MRN Entity exists and get its local certificates
+        final Pair<MrnEntity, Set<Certificate>> localState = this.getTransactionTemplate(true).execute(status -> this.mrnEntityRepo
+                .findById(mrnEntityId)
+                .map(mrnEntity -> new Pair<>(mrnEntity, this.certificateRepo.findAllByMrnEntityId(mrnEntityId)))
+                .orElse(null));
+        if(Objects.isNull(localState)) {
+            return true;
+        }
+
+        // And get the current MCP state
+        final MrnEntity mrnEntity = localState.getKey();
+        Map<String, X509Certificate> mcpCertificates;
+        try {
+            mcpCertificates = this.mcpService.getMcpEntityCertificates(mrnEntity.getEntityType(), mrnEntity.getMrn(), mrnEntity.getVersion());
+        } catch (DataNotFoundException ex) {
+            // If the MCP entity is not found, it has no certificates
+            mcpCertificates = Collections.emptyMap();
+        } catch (McpConnectivityException ex) {
+            // If the MCP connectivity failed here, there is nothing to sync
+            return false;
         }
 
-        // Check that the MRN Entity exists and get its MIR certificates
-        final MrnEntity mrnEntity = this.mrnEntityRepo.findById(mrnEntityId)
-                .orElse(null);
+        // Work out and apply the differences with the local certificates
+        this.applyCertificateDiffs(Collections.singletonList(this.diffMrnEntityCertificates(
+                mrnEntity,
+                Optional.ofNullable(localState.getValue()).orElse(Collections.emptySet()),
+                mcpCertificates
+        )));
+
+        // The sync was successful
+        return true;
+    }
 
-        // Extract all the local certificates
-        final Map<String, Certificate> localCertificates = Optional.ofNullable(mrnEntity)
-                .map(MrnEntity::getCertificates)
-                .orElse(Collections.emptySet())
+    /**
+     * The certificate diff engine. Compares the provided local certificates
+     * of an MRN entity with its current MCP MIR certificates, and works out
+     * which local certificates need to be marked as revoked (i.e. they are
+     * no longer found in the MCP MIR) and which MCP MIR certificates need to
+     * be added locally. The revoked certificates are marked as such, but
+     * nothing is written into the database.
+     *
+     * @param mrnEntity         The MRN entity to work out the differences for
+     * @param localCertificates The local certificates of the MRN entity
+     * @param mcpCertificates   The MCP MIR certificates of the MRN entity
+     * @return the differences between the local and the MCP MIR certificates
+     */
+    public CertificateDiff diffMrnEntityCertificates(@NotNull MrnEntity mrnEntity,
+                                                     @NotNull Collection<Certificate> localCertificates,
+                                                     @NotNull Map<String, X509Certificate> mcpCertificates) {
+        // Index the local certificates by their MCP MIR ID
+        final Map<String, Certificate> localCertificatesMap = localCertificates
                 .stream()
                 .collect(Collectors.toMap(Certificate::getMcpMirId, Function.identity()));
 
-        // And get the current MCP state
-        final Map<String, X509Certificate> mcpCertificates = Optional.ofNullable(mrnEntity)
-                .map(entity -> {
-                    try {
-                        return mcpService.getMcpEntityCertificates(mrnEntity.getEntityType(), entity.getMrn(), mrnEntity.getVersion());
-                    } catch (DataNotFoundException | McpConnectivityException ex) {
-                        // If the MCP connectivity failed here, just don't use it
-                        return null;
-                    }
-                })
-                .orElse(Collections.emptyMap());
-
         // Revoke all the certificates that are not found
-        localCertificates.entrySet()
+        final List<Certificate> revokedCertificates = localCertificatesMap.entrySet()
                 .stream()
                 .filter(not(entry -> Objects.equals(entry.getValue().getRevoked(), Boolean.TRUE)))
                 .filter(not(entry -> mcpCertificates.containsKey(entry.getKey())))
@@ -199,12 +314,12 @@ public class CertificateService {
                     cert.setRevoked(Boolean.TRUE);
                     return cert;
                 })
-                .forEach(this.certificateRepo::save);
+                .toList();
 
-        // Finally update the database with any new entries
-        mcpCertificates.entrySet()
+        // And pick up any new entries
+        final List<Certificate> issuedCertificates = mcpCertificates.entrySet()
                 .stream()
-                .filter(not(entry -> localCertificates.containsKey(entry.getKey())))
+                .filter(not(entry -> localCertificatesMap.containsKey(entry.getKey())))
                 .map(entry -> {
                     try {
                         Certificate certificate = new Certificate(entry.getKey(), entry.getValue());
@@ -215,48 +330,122 @@ public class CertificateService {
                     }
                 })
                 .filter(Objects::nonNull)
-                .forEach(this.certificateRepo::save);
+                .toList();
+
+        return new CertificateDiff(mrnEntity.getId(), revokedCertificates, issuedCertificates);
+    }
+
+    /**
+     * Writes the changed certificates of the provided certificate diffs into
+     * the database in a single transaction, so that these can be sent in JDBC
+     * batches. The cached certificate information of the affected MRN
+     * entities is dropped once the transaction commits, since it is now
+     * stale.
+     * <p/>
+     * Since the diffs might have been worked out a while ago, the locks of
+     * the affected MRN entities are held until the transaction commits, and
+     * every change is checked again against the current database state. This
+     * means that certificates that are already revoked are not touched, and
+     * certificates already saved under the same MCP MIR ID (e.g. by a
+     * concurrent issuance) are not saved a second time.
+     *
+     * @param certificateDiffs  The certificate diffs to be applied
+     * @return the certificate diffs that were actually applied
+     */
+    public List<CertificateDiff> applyCertificateDiffs(@NotNull List<CertificateDiff> certificateDiffs) {
+        // Only write the changed certificates
+        if(certificateDiffs.stream().allMatch(CertificateDiff::isEmpty)) {
+            return certificateDiffs;
+        }
+
+        // Apply the changes that are still required, while holding the MRN entity locks
+        return this.mrnEntityLocks.withLocks(certificateDiffs.stream().map(CertificateDiff::mrnEntityId).toList(), () ->
+                this.getTransactionTemplate(false).execute(status -> {
+                    final List<CertificateDiff> appliedDiffs = certificateDiffs.stream()
+                            .map(this::recheckCertificateDiff)
+                            .toList();
+                    final List<Certificate> changedCertificates = appliedDiffs.stream()
+                            .flatMap(diff -> Stream.concat(diff.revoked().stream(), diff.issued().stream()))
+                            .toList();
+                    if(changedCertificates.isEmpty()) {
+                        return appliedDiffs;
+                    }
+                    this.certificateRepo.saveAll(changedCertificates);
+                    appliedDiffs.forEach(diff -> {
+                        diff.revoked().forEach(c -> this.countCertificateOperation("revoked", "mcp-sync", c.getMrnEntity()));
+                        diff.issued().forEach(c -> this.countCertificateOperation("issued", "mcp-sync", c.getMrnEntity()));
+                    });
+
+                    // The cached certificate information is now stale
+                    appliedDiffs.stream()
+                            .filter(not(CertificateDiff::isEmpty))
+                            .forEach(diff -> {
+                                diff.revoked().stream().map(Certificate::getId).forEach(this::invalidateCachedKeys);
+                                this.invalidateCachedCertificates(diff.mrnEntityId());
+                            });
+                    return appliedDiffs;
+                }));
+    }
+
+    /**
+     * Checks the provided certificate diff against the current database
+     * state, and only keeps the changes that are still required. The revoked
+     * certificates are reloaded, so that only the revoked flag is changed on
+     * the current state, while the issued certificates are dropped if a
+     * certificate with the same MCP MIR ID has already been saved.
+     *
+     * @param certificateDiff   The certificate diff to be checked
+     * @return the certificate diff with the changes that are still required
+     */
+    protected CertificateDiff recheckCertificateDiff(@NotNull CertificateDiff certificateDiff) {
+        // Only revoke the certificates that are not revoked already
+        final List<Certificate> revokedCertificates = certificateDiff.revoked()
+                .stream()
+                .map(Certificate::getId)
+                .filter(Objects::nonNull)
+                .map(this.certificateRepo::findById)
+                .flatMap(Optional::stream)
+                .filter(not(cert -> Objects.equals(cert.getRevoked(), Boolean.TRUE)))
+                .map(cert -> {
+                    cert.setRevoked(Boolean.TRUE);
+                    return cert;
+                })
+                .toList();
+
+        // And only add the certificates that are not saved already
+        final List<Certificate> issuedCertificates = certificateDiff.issued()
+                .stream()
+                .filter(cert -> this.certificateRepo.findByMcpMirId(cert.getMcpMirId()).isEmpty())
+                .toList();
+
+        return new CertificateDiff(certificateDiff.mrnEntityId(), revokedCertificates, issuedCertificates);
     }
 
     /**
      * Returns all the certificates assigned to the MRN entity specified by
      * the MRN Entity ID. The result will be translated into DTO objects.
+     * <p/>
+     * Note that only the local database is used here, the MCP MIR state is
+     * kept up to date in the background by the MCP sync service.
      *
      * @param mrnEntityId   The ID of the MRN entity to retrieve the certificates for
      * @return the set of certificates assigned to the provided MRN entity
      */
     @Transactional
     public Set<Certificate> findAllByMrnEntityId(@NotNull BigInteger mrnEntityId) {
-        // First always try to check the MCP MSR
-        this.syncMrnEntityWithMcpMir(mrnEntityId);
-
-        // And then lookup the local database
         return this.certificateRepo.findAllByMrnEntityId(mrnEntityId);
     }
 
     /**
-     * Generate a certificate PEM string based on the selection from the
-     * provided truststore, using the certificate alias.
+     * Returns the certificate selected from the provided truststore, using
+     * the certificate alias. The in-memory truststore snapshot is used, so
+     * the truststore file is not accessed on each call.
      *
      * @param alias                 The alias of the certificate to be returned
-     * @return the generated certificate thumbprint
+     * @return the trusted certificate if found, otherwise null
      */
     public X509Certificate getTrustedCertificate(String alias) {
-            return Optional.of(alias)
-                    .map(a -> {
-                        try {
-                            return KeyStoreUtils.getKeyStore(this.trustStore,
-                                            this.trustStorePassword,
-                                            this.trustStoreType)
-                                    .getCertificate(a);
-                        } catch (Exception ex) {
-                            log.error(ex.getMessage());
-                            return null;
-                        }
-                    })
-                    .filter(X509Certificate.class::isInstance)
-                    .map(X509Certificate.class::cast)
-                    .orElse(null);
+        return this.trustStoreManager.getCertificate(alias);
     }
 
     /**
@@ -264,6 +453,20 @@ public class CertificateService {
      * the provided ID. The new certificate will be added into the database
      * and the corresponding DTO object will be returned.
      * <p/>
+     * The issuance is performed as a staged pipeline, so that no database
+     * connection is held while waiting for the MCP MIR:
+     * <ol>
+     *     <li>prepare: a short read-only transaction loads the MRN entity
+     *     and performs the certificate flooding check,</li>
+     *     <li>issue: the key-pair and the CSR are generated and the MCP MIR
+     *     signs the certificate, outside any transaction,</li>
+     *     <li>persist: a short write transaction saves the new certificate,
+     *     unless a certificate with the same MCP MIR ID is already present.
+     *     If that was picked up from the MCP MIR by a concurrent sync, it will
+     *     be missing its private key, which is then filled in.</li>
+     * </ol>
+     * The time spent in each stage is recorded in the meter registry.
+     * <p/>
      * Note that for devices the hash of the certificate will be fixed to SHA-256
      * to allow for smaller signatures for AIS transmissions.
      *
@@ -274,44 +477,102 @@ public class CertificateService {
      * @throws OperatorCreationException if the certificate generation process fails
      * @throws IOException for errors during the PEM exporting or HTTP call operations
      */
-    @Transactional
     public Certificate generateMrnEntityCertificate(@NotNull BigInteger mrnEntityId) throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, OperatorCreationException, IOException, McpConnectivityException {
-        MrnEntity mrnEntity = this.mrnEntityRepo.findById(mrnEntityId)
-                .orElseThrow(() ->
-                        new DataNotFoundException(String.format("No MRN Entity node found for the provided ID: %d", mrnEntityId))
-                );
+        // Stage 1 - Load the MRN entity and check the daily limit
+        long start = System.nanoTime();
+        final MrnEntity mrnEntity;
+        try {
+            mrnEntity = this.getTransactionTemplate(true).execute(status -> {
+                final MrnEntity entity = this.mrnEntityRepo.findById(mrnEntityId)
+                        .orElseThrow(() ->
+                                new DataNotFoundException(String.format("No MRN Entity node found for the provided ID: %d", mrnEntityId))
+                        );
 
-        // Perform a check to stop certificate flooding
-        if(this.certificateRepo.getNumOfGeneratedCertificatesToday() >= this.maxDailyGeneratedCertificates) {
-            log.error(String.format(
-                    "Certificate generation maximum limit breached!!!" +
-                    "\nCannot generate the requested certificate for MRN entity %s.", mrnEntity.getName())
-            );
-            throw new ValidationException("Too many certificates generated for one day... is there a leak taking place?");
+                // Perform a check to stop certificate flooding
+                if(this.certificateRepo.getNumOfGeneratedCertificatesToday() >= this.maxDailyGeneratedCertificates) {
+                    Optional.ofNullable(this.meterRegistry)
+                            .map(registry -> Counter.builder("ckeeper.certificate.quota.hits")
+                                    .description("The number of certificate issuances refused due to the daily quota")
+                                    .register(registry))
+                            .ifPresent(Counter::increment);
+                    log.error(String.format(
+                            "Certificate generation maximum limit breached!!!" +
+                            "\nCannot generate the requested certificate for MRN entity %s.", entity.getName())
+                    );
+                    throw new ValidationException("Too many certificates generated for one day... is there a leak taking place?");
+                }
+                return entity;
+            });
+        } finally {
+            this.recordIssuanceStage("prepare", start);
         }
 
-        // Generate a new keypair for the certificate - device will follow a different curve
-        String curve = McpEntityType.DEVICE.equals(mrnEntity.getEntityType()) ? this.deviceKeyPairCurve : this.keyPairCurve;
-        KeyPair keyPair = X509Utils.generateKeyPair(curve);
+        // Stage 2 - Generate the key-pair and get the certificate signed by the MCP
+        start = System.nanoTime();
+        final String privateKey;
+        final Pair<String, X509Certificate> certificateInfo;
+        try {
+            // Make sure any pending MCP MIR updates of the entity have gone through
+            this.mcpOutboxService.flush(mrnEntity.getMrn(), mrnEntity.getVersion());
 
-        // Generate a new X509 certificate signing request - device will follow a different algorithm
-        String algorithm = McpEntityType.DEVICE.equals(mrnEntity.getEntityType()) ? this.deviceDefaultSigningAlgorithm : this.defaultSigningAlgorithm;
-        PKCS10CertificationRequest csr = X509Utils.generateX509CSR(keyPair, this.certDirName, algorithm);
+            // The MCP MIR might have assigned a different MRN to the entity
+            final String mrn = this.mrnEntityRepo.findById(mrnEntityId)
+                    .map(MrnEntity::getMrn)
+                    .orElse(mrnEntity.getMrn());
 
-        // Get the X509 certificate signed by the MCP
-        Pair<String, X509Certificate> certificateInfo = this.mcpService.issueMcpEntityCertificate(mrnEntity.getEntityType(), mrnEntity.getMrn(), mrnEntity.getVersion(), csr);
+            // Pick up a new keypair for the certificate - device will follow a different curve
+            String curve = McpEntityType.DEVICE.equals(mrnEntity.getEntityType()) ? this.deviceKeyPairCurve : this.keyPairCurve;
+            KeyPair keyPair = this.keyPairPool.take(curve);
+            privateKey = X509Utils.formatPrivateKey(keyPair.getPrivate());
 
-        // Populate the new certificate object
-        Certificate certificate = new Certificate(certificateInfo.getKey(), certificateInfo.getValue());
-        certificate.setPrivateKey(X509Utils.formatPrivateKey(keyPair.getPrivate()));
-        certificate.setMrnEntity(mrnEntity);
+            // Generate a new X509 certificate signing request - device will follow a different algorithm
+            String algorithm = McpEntityType.DEVICE.equals(mrnEntity.getEntityType()) ? this.deviceDefaultSigningAlgorithm : this.defaultSigningAlgorithm;
+            PKCS10CertificationRequest csr = X509Utils.generateX509CSR(keyPair, this.certDirName, algorithm);
 
-        // Save the certificate into the database
-        return Optional.of(certificate)
-                .map(this.certificateRepo::save)
-                .orElseThrow(() ->
-                        new SavingFailedException(String.format("Failed to generate the X.509 certificate for the MRN Entity with ID: %d", mrnEntityId))
-                );
+            // Get the X509 certificate signed by the MCP
+            certificateInfo = this.mcpService.issueMcpEntityCertificate(mrnEntity.getEntityType(), mrn, mrnEntity.getVersion(), csr);
+        } finally {
+            this.recordIssuanceStage("issue", start);
+        }
+
+        // Stage 3 - Save the certificate into the database, only once
+        start = System.nanoTime();
+        final Certificate savedCertificate;
+        try {
+            savedCertificate = this.getTransactionTemplate(false).execute(status -> this.certificateRepo
+                    .findByMcpMirId(certificateInfo.getKey())
+                    .map(certificate -> {
+                        // A concurrent MCP MIR sync might have saved it without the private key
+                        if(Objects.isNull(certificate.getPrivateKey())) {
+                            certificate.setPrivateKey(privateKey);
+                            return this.certificateRepo.save(certificate);
+                        }
+                        return certificate;
+                    })
+                    .orElseGet(() -> {
+                        // Populate the new certificate object
+                        Certificate certificate = new Certificate(certificateInfo.getKey(), certificateInfo.getValue());
+                        certificate.setPrivateKey(privateKey);
+                        certificate.setMrnEntity(this.mrnEntityRepo.findById(mrnEntityId)
+                                .orElseThrow(() ->
+                                        new DataNotFoundException(String.format("No MRN Entity node found for the provided ID: %d", mrnEntityId))
+                                ));
+
+                        // And save it
+                        return Optional.of(certificate)
+                                .map(this.certificateRepo::save)
+                                .orElseThrow(() ->
+                                        new SavingFailedException(String.format("Failed to generate the X.509 certificate for the MRN Entity with ID: %d", mrnEntityId))
+                                );
+                    }));
+        } finally {
+            this.recordIssuanceStage("persist", start);
+        }
+
+        // The cached certificate information needs to include the new one
+        this.invalidateCachedCertificates(mrnEntityId);
+        this.countCertificateOperation("issued", "local", mrnEntity);
+        return savedCertificate;
     }
 
     /**
@@ -323,7 +584,12 @@ public class CertificateService {
     public void delete(@NotNull BigInteger id) {
         log.debug("Request to delete Certificate : {}", id);
         if(this.certificateRepo.existsById(id)) {
+            this.certificateRepo.findById(id)
+                    .map(Certificate::getMrnEntity)
+                    .map(MrnEntity::getId)
+                    .ifPresent(this::invalidateCachedCertificates);
             this.certificateRepo.deleteById(id);
+            this.invalidateCachedKeys(id);
         } else {
             throw new DataNotFoundException(String.format("No Certificate found for the provided ID: %d", id));
         }
@@ -349,6 +615,9 @@ public class CertificateService {
 
         // And if successful, make it locally as well
         certificate.setRevoked(Boolean.TRUE);
+        this.invalidateCachedKeys(id);
+        this.invalidateCachedCertificates(certificate.getMrnEntity().getId());
+        this.countCertificateOperation("revoked", "local", certificate.getMrnEntity());
 
         // Save and return
         return Optional.of(certificate)
@@ -363,26 +632,163 @@ public class CertificateService {
      * the specified MRN Entity, using its ID. If no valid certificate is
      * detected, the certificate generation method will be called to provide
      * a new one.
+     * <p/>
+     * The operation is locked per MRN entity, so that different entities can
+     * proceed in parallel, while duplicate certificate issuance for the same
+     * entity is still prevented. When a new certificate is required, the
+     * cluster-wide lease of the entity is acquired as well and the check is
+     * repeated, since another node might have issued one in the meantime.
      *
      * @param mrnEntityId       The ID of the MRN entity to get the certificate for
      * @return the latest valid certificate for the specifed MRN entity
      */
-    @Synchronized
     public Certificate getLatestOrCreate(BigInteger mrnEntityId) {
+        return this.mrnEntityLocks.withLock(mrnEntityId, () -> this.findLatestValid(mrnEntityId)
+                .orElseGet(() -> this.mrnEntityLeases.withLease(mrnEntityId, () -> this.findLatestValid(mrnEntityId)
+                        .orElseGet(() -> {
+                            try {
+                                return this.generateMrnEntityCertificate(mrnEntityId);
+                            } catch (Exception ex) {
+                                throw new SavingFailedException(ex.getMessage());
+                            }
+                        }))));
+    }
+
+    /**
+     * Issues a successor certificate for the MRN Entity specified by the
+     * provided ID, if all its currently valid certificates are going to
+     * expire before the provided rotation threshold. The check is repeated
+     * while holding the MRN entity lock and lease, so that a successor issued
+     * in the meantime (e.g. by a signing request or another node) is not
+     * duplicated.
+     * <p/>
+     * Since the signing operations always pick the valid certificate with the
+     * latest start date, the switch-over to the successor happens as soon as
+     * it is saved, while the predecessor remains valid for verification until
+     * it expires.
+     *
+     * @param mrnEntityId   The ID of the MRN entity to rotate the certificate for
+     * @param threshold     The date before which the certificates need to be rotated
+     * @return the successor certificate, if one was issued
+     */
+    public Optional<Certificate> rotateMrnEntityCertificate(@NotNull BigInteger mrnEntityId, @NotNull Date threshold) {
+        return this.mrnEntityLocks.withLock(mrnEntityId, () -> {
+            // Check whether a rotation is still required
+            if(!this.isRotationRequired(mrnEntityId, threshold)) {
+                return Optional.empty();
+            }
+
+            // Issue the successor certificate, unless another node did
+            return this.mrnEntityLeases.withLease(mrnEntityId, () -> {
+                if(!this.isRotationRequired(mrnEntityId, threshold)) {
+                    return Optional.empty();
+                }
+                try {
+                    return Optional.of(this.generateMrnEntityCertificate(mrnEntityId));
+                } catch (Exception ex) {
+                    throw new SavingFailedException(ex.getMessage());
+                }
+            });
+        });
+    }
+
+    /**
+     * Retrieves the decoded public keys of all the currently valid (i.e.
+     * started, not expired and not revoked) certificates of the MRN entity
+     * specified by the provided ID, ordered from the latest to the oldest
+     * start date. This is a read-only operation, so no new certificates will
+     * ever be generated.
+     * <p/>
+     * The decoded keys of each MRN entity are kept in the verification key
+     * cache, and the database/PEM parsing is only required on a cache miss.
+     *
+     * @param mrnEntityId   The ID of the MRN entity to get the public keys for
+     * @return the decoded public keys of the currently valid certificates
+     */
+    public List<PublicKey> getVerificationKeys(@NotNull BigInteger mrnEntityId) {
+        // Only return the keys that are currently valid
+        final long now = System.currentTimeMillis();
+        return this.getCachedVerificationKeys(mrnEntityId)
+                .stream()
+                .filter(key -> key.isValidAt(now))
+                .map(VerificationKey::publicKey)
+                .toList();
+    }
+
+    /**
+     * Retrieves the verification keys of the MRN entity specified by the
+     * provided ID from the verification key cache. If these are not
+     * available, they will be loaded and cached for the next time.
+     *
+     * @param mrnEntityId   The ID of the MRN entity to get the verification keys for
+     * @return the cached verification keys of the MRN entity
+     */
+    protected List<VerificationKey> getCachedVerificationKeys(@NotNull BigInteger mrnEntityId) {
+        List<VerificationKey> verificationKeys = this.verificationKeyCache.get(mrnEntityId);
+        if(Objects.isNull(verificationKeys)) {
+            verificationKeys = this.loadVerificationKeys(mrnEntityId);
+            this.verificationKeyCache.put(mrnEntityId, verificationKeys);
+        }
+        return verificationKeys;
+    }
+
+    /**
+     * Loads and decodes the public keys of all the non-revoked and not yet
+     * expired certificates of the MRN entity specified by the provided ID,
+     * ordered from the latest to the oldest start date. Certificates with
+     * invalid public keys will just be skipped.
+     *
+     * @param mrnEntityId   The ID of the MRN entity to load the public keys for
+     * @return the decoded verification keys of the MRN entity
+     */
+    protected List<VerificationKey> loadVerificationKeys(@NotNull BigInteger mrnEntityId) {
+        final Date now = Date.from(Instant.now());
         return this.findAllByMrnEntityId(mrnEntityId)
                 .stream()
-                .filter(c -> Optional.of(c).map(Certificate::getStartDate).map(d -> d.compareTo(Date.from(Instant.now())) <= 0).orElse(true))
-                .filter(c -> Optional.of(c).map(Certificate::getEndDate).map(d -> d.compareTo(Date.from(Instant.now())) >= 0).orElse(true))
                 .filter(not(c -> Objects.equals(c.getRevoked(), Boolean.TRUE)))
-                .filter(not(c -> Objects.isNull(c.getStartDate())))
-                .max(Comparator.comparing(Certificate::getStartDate))
-                .orElseGet(() -> {
+                .filter(c -> Optional.of(c).map(Certificate::getEndDate).map(d -> d.compareTo(now) >= 0).orElse(true))
+                .sorted(Comparator.comparing(Certificate::getStartDate, Comparator.nullsLast(Comparator.reverseOrder())))
+                .map(c -> {
                     try {
-                        return this.generateMrnEntityCertificate(mrnEntityId);
+                        return new VerificationKey(c.getId(), X509Utils.publicKeyFromPem(c.getPublicKey()), c.getStartDate(), c.getEndDate());
                     } catch (Exception ex) {
-                        throw new SavingFailedException(ex.getMessage());
+                        log.warn("Invalid public key for certificate {}: {}", c.getId(), ex.getMessage());
+                        return null;
                     }
-                });
+                })
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Retrieves the decoded private key of the certificate specified by the
+     * provided certificate ID. Since the same certificates are used over and
+     * over again for signing, the decoded keys are kept in the private key
+     * cache, and the database/PEM parsing is only required on a cache miss.
+     *
+     * @param id            The ID of the certificate to get the private key of
+     * @return The decoded private key of the certificate
+     * @throws NoSuchAlgorithmException if the key factory algorithm is not found
+     * @throws IOException for errors during the private key loading operation
+     * @throws InvalidKeySpecException if the provided key specification is invalid
+     */
+    protected PrivateKey getPrivateKey(BigInteger id) throws NoSuchAlgorithmException, IOException, InvalidKeySpecException {
+        // First try the private key cache
+        final PrivateKey cachedPrivateKey = this.privateKeyCache.get(id);
+        if(Objects.nonNull(cachedPrivateKey)) {
+            return cachedPrivateKey;
+        }
+
+        // Otherwise pick up the certificate by the provided ID
+        final Certificate certificate = this.certificateRepo.findById(id)
+                .orElseThrow(() ->
+                    new DataNotFoundException(String.format("No Certificate found for the provided ID: %d", id))
+                );
+
+        // Decode the private key and cache it for the next time
+        final PrivateKey privateKey = X509Utils.privateKeyFromPem(certificate.getPrivateKey(), this.keyPairCurve);
+        this.privateKeyCache.put(id, privateKey);
+        return privateKey;
     }
 
     /**
@@ -404,24 +810,18 @@ public class CertificateService {
      * @throws InvalidKeyException if the key provided for the signature is invalid
      */
     public byte[] signContent(BigInteger id, String algorithm, byte[] payload) throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
-        // Pick up the certificate by the provided ID
-        Certificate certificate = this.certificateRepo.findById(id)
-                .orElseThrow(() ->
-                    new DataNotFoundException(String.format("No Certificate found for the provided ID: %d", id))
-                );
+        // Pick up the private key of the certificate by the provided ID
+        final PrivateKey privateKey = this.getPrivateKey(id);
 
-        // Create a new signature to sign the provided content
-        Signature sign = Signature.getInstance(Optional.ofNullable(algorithm).orElse(this.defaultSigningAlgorithm));
-        sign.initSign(X509Utils.privateKeyFromPem(certificate.getPrivateKey(), this.keyPairCurve));
-        sign.update(payload);
-
-        // Sign and return the signature
-        return sign.sign();
+        // Sign the provided content with a reusable signature engine
+        return this.signatureEngines.sign(Objects.requireNonNullElse(algorithm, this.defaultSigningAlgorithm), privateKey, payload);
     }
 
     /**
      * Attempts to verify the provided content using the signature specified. The
      * certificate used in this process is identified through the specified ID.
+     * The decoded public key of the certificate is kept in the verification
+     * key cache, so the database/PEM parsing is only required on a cache miss.
      *
      * @param id            The ID of the certificate to be used for the verification
      * @param algorithm     The algorithm to be used for the signature generation
@@ -435,19 +835,260 @@ public class CertificateService {
      * @throws InvalidKeyException if the key provided for the signature is invalid
      */
     public boolean verifyContent(BigInteger id, String algorithm, byte[] payload, byte[] signature) throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
-        // Pick up the certificate by the provided ID
-        Certificate certificate = this.certificateRepo.findById(id)
+        // Pick up the public key of the certificate by the provided ID
+        final PublicKey publicKey = this.getPublicKey(id);
+
+        // Verify the provided content with a reusable signature engine
+        return this.signatureEngines.verify(Objects.requireNonNullElse(algorithm, this.defaultSigningAlgorithm), publicKey, payload, signature);
+    }
+
+    /**
+     * Retrieves the decoded public key of the certificate specified by the
+     * provided certificate ID, from the verification key cache if possible.
+     *
+     * @param id            The ID of the certificate to get the public key of
+     * @return The decoded public key of the certificate
+     * @throws NoSuchAlgorithmException if the key factory algorithm is not found
+     * @throws IOException for errors during the public key loading operation
+     * @throws InvalidKeySpecException if the provided key specification is invalid
+     */
+    protected PublicKey getPublicKey(BigInteger id) throws NoSuchAlgorithmException, IOException, InvalidKeySpecException {
+        // First try the verification key cache
+        final PublicKey cachedPublicKey = this.verificationKeyCache.getCertificateKey(id);
+        if(Objects.nonNull(cachedPublicKey)) {
+            return cachedPublicKey;
+        }
+
+        // Otherwise pick up the certificate by the provided ID
+        final Certificate certificate = this.certificateRepo.findById(id)
                 .orElseThrow(() ->
                         new DataNotFoundException(String.format("No Certificate found for the provided ID: %d", id))
                 );
 
-        // Create a new signature to sign the provided content
-        Signature sign = Signature.getInstance(Optional.ofNullable(algorithm).orElse(this.defaultSigningAlgorithm));
-        sign.initVerify(X509Utils.publicKeyFromPem(certificate.getPublicKey()));
-        sign.update(payload);
+        // Decode the public key and cache it for the next time
+        final PublicKey publicKey = X509Utils.publicKeyFromPem(certificate.getPublicKey());
+        this.verificationKeyCache.putCertificateKey(id, publicKey);
+        return publicKey;
+    }
+
+    /**
+     * Attempts to verify the provided content using the signature specified,
+     * against the currently valid certificates of the MRN entity identified
+     * through the specified ID. The public keys are tried from the latest to
+     * the oldest, so that signatures generated just before a certificate
+     * rotation can still be verified.
+     * <p/>
+     * Note that this is a read-only operation which does not contact the MCP
+     * MIR and will never generate new certificates. If the MRN entity has no
+     * valid certificates, the verification will just fail.
+     *
+     * @param mrnEntityId   The ID of the MRN entity to verify the content for
+     * @param algorithm     The algorithm to be used for the signature generation
+     * @param payload       The payload to be verified
+     * @param signature     The signature to verify the content with
+     * @return Whether the content verification was successful or not
+     * @throws NoSuchAlgorithmException if the selected certificate algorithm is not found
+     */
+    public boolean verifyEntityContent(@NotNull BigInteger mrnEntityId, String algorithm, byte[] payload, byte[] signature) throws NoSuchAlgorithmException {
+        final String signatureAlgorithm = Objects.requireNonNullElse(algorithm, this.defaultSigningAlgorithm);
+        final List<VerificationKey> verificationKeys = this.getCachedVerificationKeys(mrnEntityId);
+        final long now = System.currentTimeMillis();
+        for(int i = 0; i < verificationKeys.size(); i++) {
+            final VerificationKey verificationKey = verificationKeys.get(i);
+            if(!verificationKey.isValidAt(now)) {
+                continue;
+            }
+            try {
+                if(this.signatureEngines.verify(signatureAlgorithm, verificationKey.publicKey(), payload, signature)) {
+                    return true;
+                }
+            } catch (InvalidKeyException | SignatureException ex) {
+                log.debug("Signature verification failed for MRN entity {}: {}", mrnEntityId, ex.getMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the currently valid certificate with the latest start date, of
+     * the MRN entity specified by the provided ID. The filtering is performed
+     * by the database, so only a single certificate is ever loaded, no matter
+     * how many historical ones the entity has.
+     *
+     * @param mrnEntityId   The ID of the MRN entity to find the certificate for
+     * @return the latest valid certificate, if one exists
+     */
+    protected Optional<Certificate> findLatestValid(BigInteger mrnEntityId) {
+        return this.certificateRepo.findLatestValid(mrnEntityId, new Date(), PageRequest.of(0, 1))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Checks whether the MRN entity specified by the provided ID has currently
+     * valid certificates, and these are all going to expire before the
+     * provided rotation threshold. An entity without any valid certificates
+     * (e.g. because they were revoked or expired in the meantime) is not
+     * rotated, but left to the on-demand issuance.
+     *
+     * @param mrnEntityId   The ID of the MRN entity to check
+     * @param threshold     The date before which the certificates need to be rotated
+     * @return whether a certificate rotation is required
+     */
+    protected boolean isRotationRequired(BigInteger mrnEntityId, Date threshold) {
+        final List<Certificate> validCertificates = this.findAllByMrnEntityId(mrnEntityId)
+                .stream()
+                .filter(this::isCurrentlyValid)
+                .toList();
+        return !validCertificates.isEmpty() && validCertificates
+                .stream()
+                .map(Certificate::getEndDate)
+                .allMatch(endDate -> Objects.nonNull(endDate) && !endDate.after(threshold));
+    }
+
+    /**
+     * Checks whether the provided certificate is currently valid, i.e. it
+     * has already started, it has not expired yet and it is not revoked.
+     * Missing start or end dates are not considered as restrictions.
+     *
+     * @param certificate   The certificate to be checked
+     * @return Whether the certificate is currently valid
+     */
+    protected boolean isCurrentlyValid(Certificate certificate) {
+        final Date now = Date.from(Instant.now());
+        return Optional.of(certificate).map(Certificate::getStartDate).map(d -> d.compareTo(now) <= 0).orElse(true)
+                && Optional.of(certificate).map(Certificate::getEndDate).map(d -> d.compareTo(now) >= 0).orElse(true)
+                && !Objects.equals(certificate.getRevoked(), Boolean.TRUE);
+    }
+
+    /**
+     * Drops all the cached certificate information (i.e. the verification
+     * keys and the signature certificate bundles) of the MRN entity specified
+     * by the provided ID. This should be called whenever the certificates of
+     * the entity are generated, revoked or deleted.
+     *
+     * @param mrnEntityId   The ID of the MRN entity to drop the cached information for
+     */
+    protected void invalidateCachedCertificates(BigInteger mrnEntityId) {
+        this.afterCommit(() -> {
+            this.verificationKeyCache.invalidate(mrnEntityId);
+            this.signatureCertificateCache.invalidateMrnEntity(mrnEntityId);
+        });
+    }
+
+    /**
+     * Drops the cached decoded keys (i.e. the private and the public key) of
+     * the certificate specified by the provided ID. This should be called
+     * whenever the certificate is revoked or deleted.
+     *
+     * @param id            The ID of the certificate to drop the cached keys for
+     */
+    protected void invalidateCachedKeys(BigInteger id) {
+        this.afterCommit(() -> {
+            this.privateKeyCache.invalidate(id);
+            this.verificationKeyCache.invalidateCertificate(id);
+        });
+    }
+
+    /**
+     * Performs the provided cache invalidation once the current transaction
+     * commits, so that concurrent readers cannot reload and cache the state
+     * before the change becomes visible. If no transaction is active, the
+     * invalidation is performed straight away.
+     *
+     * @param invalidation  The cache invalidation to be performed
+     */
+    protected void afterCommit(Runnable invalidation) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        } else {
+            invalidation.run();
+        }
+    }
+
+    /**
+     * Creates a transaction template for the short transactions of the staged
+     * certificate issuance. If a transaction is already active, the template
+     * will just participate in it.
+     *
+     * @param readOnly      Whether the transaction is read-only
+     * @return the transaction template
+     */
+    protected TransactionTemplate getTransactionTemplate(boolean readOnly) {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate;
+    }
+
+    /**
+     * Records the time spent in a stage of the certificate issuance in the
+     * meter registry, if one is available.
+     *
+     * @param stage         The certificate issuance stage
+     * @param start         The start time of the stage in nanoseconds
+     */
+    protected void recordIssuanceStage(String stage, long start) {
+        if(Objects.isNull(this.meterRegistry)) {
+            return;
+        }
+        Timer.builder("ckeeper.certificate.issuance.stage")
+                .description("The time spent in each stage of the certificate issuance")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a certificate operation in the meter registry, if one is
+     * available. The local operations are the ones performed by this
+     * service, while the MCP sync ones are picked up from the MCP MIR.
+     *
+     * @param operation     The certificate operation, i.e. issued or revoked
+     * @param source        The source of the operation, i.e. local or mcp-sync
+     * @param mrnEntity     The MRN entity of the certificate
+     */
+    protected void countCertificateOperation(String operation, String source, MrnEntity mrnEntity) {
+        if(Objects.isNull(this.meterRegistry)) {
+            return;
+        }
+        Counter.builder("ckeeper.certificate.operations")
+                .description("The number of issued and revoked certificates")
+                .tag("operation", operation)
+                .tag("source", source)
+                .tag("entity.type", Optional.ofNullable(mrnEntity)
+                        .map(MrnEntity::getEntityType)
+                        .map(McpEntityType::getValue)
+                        .orElse("unknown"))
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    /**
+     * The differences between the local and the MCP MIR certificates of an
+     * MRN entity, i.e. the local certificates that have been revoked and the
+     * MCP MIR certificates that have been newly issued.
+     *
+     * @param mrnEntityId   The ID of the MRN entity
+     * @param revoked       The newly revoked certificates
+     * @param issued        The newly issued certificates
+     */
+    public record CertificateDiff(BigInteger mrnEntityId, List<Certificate> revoked, List<Certificate> issued) {
+
+        /**
+         * Checks whether there are no differences at all.
+         *
+         * @return whether there are no differences
+         */
+        public boolean isEmpty() {
+            return this.revoked.isEmpty() && this.issued.isEmpty();
+        }
 
-        // Sign and return the signature
-        return sign.verify(signature);
     }
 
 }
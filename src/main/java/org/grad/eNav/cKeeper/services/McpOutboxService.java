@@ -0,0 +1,611 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
+import org.grad.eNav.cKeeper.exceptions.DeletingFailedException;
+import org.grad.eNav.cKeeper.exceptions.McpConnectivityException;
+import org.grad.eNav.cKeeper.exceptions.SavingFailedException;
+import org.grad.eNav.cKeeper.models.domain.McpOutboxEntry;
+import org.grad.eNav.cKeeper.models.domain.MrnEntity;
+import org.grad.eNav.cKeeper.models.dtos.mcp.*;
+import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
+import org.grad.eNav.cKeeper.repos.McpOutboxRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.function.Predicate.not;
+
+/**
+ * The MCP Outbox Service Class
+ *
+ * Service Implementation for the write-behind replication of the MRN entity
+ * mutations onto the MCP Identity Registry. The intended MCP MIR mutations
+ * are recorded in the outbox table as part of the local transaction, so that
+ * the local save operations never have to wait for (or fail because of) the
+ * MCP MIR. The recorded mutations are then replayed asynchronously in
+ * batches, right after the local transaction commits and periodically for
+ * any retries.
+ * <p/>
+ * Only the latest mutation is kept per MRN and version, and failed mutations
+ * are retried with an exponential backoff. Each entry is claimed in the
+ * database before being applied, so that the asynchronous dispatches, the
+ * synchronous flushes and the other cKeeper nodes never apply the same entry
+ * concurrently. Mutations that keep being rejected by the MCP MIR are marked
+ * as failed after the configured number of attempts, so that they can be
+ * inspected and retried on demand.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Service
+@Slf4j
+public class McpOutboxService {
+
+    /**
+     * Whether the MCP outbox dispatching is enabled.
+     */
+    @Value("${gla.rad.ckeeper.mcp.outbox.enabled:true}")
+    boolean enabled;
+
+    /**
+     * The maximum number of outbox entries dispatched per batch.
+     */
+    @Value("${gla.rad.ckeeper.mcp.outbox.batch-size:50}")
+    int batchSize = 50;
+
+    /**
+     * The initial backoff before retrying a failed outbox entry.
+     */
+    @Value("${gla.rad.ckeeper.mcp.outbox.backoff-initial-ms:1000}")
+    long backoffInitialMs = 1000;
+
+    /**
+     * The maximum backoff before retrying a failed outbox entry.
+     */
+    @Value("${gla.rad.ckeeper.mcp.outbox.backoff-max-ms:300000}")
+    long backoffMaxMs = 300000;
+
+    /**
+     * The maximum number of attempts before a rejected outbox entry is marked
+     * as failed. Zero or less retries the entries forever.
+     */
+    @Value("${gla.rad.ckeeper.mcp.outbox.max-attempts:10}")
+    int maxAttempts = 10;
+
+    /**
+     * The duration of the outbox entry claims in milliseconds.
+     */
+    @Value("${gla.rad.ckeeper.mcp.outbox.claim-duration-ms:60000}")
+    long claimDurationMs = 60000;
+
+    /**
+     * The maximum time a flush waits for an entry claimed by another
+     * dispatcher in milliseconds.
+     */
+    @Value("${gla.rad.ckeeper.mcp.outbox.flush-timeout-ms:30000}")
+    long flushTimeoutMs = 30000;
+
+    /**
+     * The interval between the flush claim attempts in milliseconds.
+     */
+    @Value("${gla.rad.ckeeper.mcp.outbox.flush-retry-interval-ms:100}")
+    long flushRetryIntervalMs = 100;
+
+    /**
+     * The name of the application, used to identify the claim owners.
+     */
+    @Value("${spring.application.name:cKeeper}")
+    String applicationName = "cKeeper";
+
+    /**
+     * The MCP Outbox Repo.
+     */
+    @Autowired
+    McpOutboxRepo mcpOutboxRepo;
+
+    /**
+     * The MRN Entity Repo.
+     */
+    @Autowired
+    MRNEntityRepo mrnEntityRepo;
+
+    /**
+     * The MCP Service.
+     */
+    @Autowired
+    McpService mcpService;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    // Service Variables
+    protected final AtomicBoolean running = new AtomicBoolean(false);
+    protected final AtomicLong pending = new AtomicLong();
+    protected final AtomicLong failed = new AtomicLong();
+    protected ExecutorService dispatchExecutor;
+    protected Counter dispatchedCounter;
+    protected Counter retriedCounter;
+    protected Counter failedCounter;
+    protected String nodeId;
+
+    /**
+     * Once the service has been initialised, we can create the executor that
+     * will be dispatching the outbox entries after each commit, generate the
+     * unique identifier of this node and register the outbox metrics.
+     */
+    @PostConstruct
+    public void init() {
+        this.nodeId = String.format("%s-%s", this.applicationName, UUID.randomUUID());
+        this.dispatchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "mcp-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Register the outbox metrics if possible
+        if(Objects.nonNull(this.meterRegistry)) {
+            this.dispatchedCounter = Counter.builder("ckeeper.mcp.outbox.dispatched")
+                    .description("The number of MCP outbox entries dispatched")
+                    .tag("result", "success")
+                    .register(this.meterRegistry);
+            this.retriedCounter = Counter.builder("ckeeper.mcp.outbox.dispatched")
+                    .description("The number of MCP outbox entries dispatched")
+                    .tag("result", "retry")
+                    .register(this.meterRegistry);
+            this.failedCounter = Counter.builder("ckeeper.mcp.outbox.dispatched")
+                    .description("The number of MCP outbox entries dispatched")
+                    .tag("result", "failed")
+                    .register(this.meterRegistry);
+            Gauge.builder("ckeeper.mcp.outbox.pending", this.pending, AtomicLong::get)
+                    .description("The number of MCP outbox entries pending after the last dispatch")
+                    .register(this.meterRegistry);
+            Gauge.builder("ckeeper.mcp.outbox.failed", this.failed, AtomicLong::get)
+                    .description("The number of MCP outbox entries that ran out of attempts")
+                    .register(this.meterRegistry);
+        }
+    }
+
+    /**
+     * When shutting down the application we need to make sure that the
+     * dispatch executor is terminated.
+     */
+    @PreDestroy
+    public void destroy() {
+        log.info("MCP outbox service is shutting down...");
+        Optional.ofNullable(this.dispatchExecutor).ifPresent(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Records the intended MCP MIR mutation for the provided MRN entity in the
+     * outbox. This has to be part of the transaction that persists the local
+     * change, so that both are committed (or rolled back) together. Any
+     * previously pending mutation for the same MRN and version is replaced,
+     * since only the latest state needs to reach the MCP MIR.
+     *
+     * @param mrnEntity the MRN entity that was mutated
+     * @param operation the MCP MIR mutation operation
+     * @return the recorded outbox entry
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public McpOutboxEntry record(@NotNull MrnEntity mrnEntity, @NotNull McpOutboxEntry.Operation operation) {
+        final String version = Optional.ofNullable(mrnEntity.getVersion()).orElse("");
+        final McpOutboxEntry entry = this.mcpOutboxRepo.findByMrnAndVersion(mrnEntity.getMrn(), version)
+                .orElseGet(McpOutboxEntry::new);
+        entry.setMrn(mrnEntity.getMrn());
+        entry.setVersion(version);
+        entry.setEntityType(mrnEntity.getEntityType());
+        entry.setName(mrnEntity.getName());
+        entry.setOperation(operation);
+        entry.setAttempts(0);
+        entry.setNextAttemptAt(new Date());
+        entry.setLastError(null);
+        entry.setFailedAt(null);
+
+        // Dispatch as soon as the local transaction commits
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    requestDispatch();
+                }
+            });
+        }
+
+        return this.mcpOutboxRepo.save(entry);
+    }
+
+    /**
+     * Requests an asynchronous dispatch of the outbox entries that are due.
+     * This operation never blocks the caller.
+     */
+    public void requestDispatch() {
+        // Only run when enabled
+        if(!this.enabled) {
+            return;
+        }
+
+        // Submit the dispatch operation
+        try {
+            this.dispatchExecutor.execute(this::dispatch);
+        } catch (RejectedExecutionException ex) {
+            log.warn("MCP outbox dispatch request rejected");
+        }
+    }
+
+    /**
+     * Periodically dispatches the outbox entries that are due, in batches,
+     * until none is left. If the MCP MIR is not reachable the dispatching
+     * stops and the remaining entries will be retried on the next run. Any
+     * entries claimed by another dispatcher in the meantime are skipped.
+     */
+    @Scheduled(fixedDelayString = "${gla.rad.ckeeper.mcp.outbox.interval-ms:5000}",
+            initialDelayString = "${gla.rad.ckeeper.mcp.outbox.initial-delay-ms:10000}")
+    public void dispatch() {
+        // Only run when enabled and not already running
+        if(!this.enabled || !this.running.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            final String owner = this.newClaimOwner();
+            final int size = Math.max(this.batchSize, 1);
+            List<McpOutboxEntry> batch;
+            boolean reachable = true;
+            do {
+                batch = this.mcpOutboxRepo.findDue(new Date(), PageRequest.of(0, size));
+                final List<McpOutboxEntry> completed = new ArrayList<>(batch.size());
+                for(McpOutboxEntry entry : batch) {
+                    if(!this.claim(entry, owner)) {
+                        continue;
+                    }
+                    try {
+                        this.apply(entry);
+                        completed.add(entry);
+                    } catch (McpConnectivityException ex) {
+                        this.reschedule(entry, owner, ex);
+                        reachable = false;
+                        break;
+                    } catch (Exception ex) {
+                        this.reschedule(entry, owner, ex);
+                    }
+                }
+                this.complete(completed, owner);
+            } while(reachable && batch.size() >= size);
+
+            // Keep track of what is left behind
+            this.updateCounts();
+        } catch (Exception ex) {
+            log.error("MCP outbox dispatch failed: {}", ex.getMessage());
+        } finally {
+            this.running.set(false);
+        }
+    }
+
+    /**
+     * Returns the outbox entries that have been marked as failed, after
+     * running out of attempts.
+     *
+     * @return the failed outbox entries
+     */
+    public List<McpOutboxEntry> findFailed() {
+        return this.mcpOutboxRepo.findAllByFailedAtIsNotNullOrderByIdAsc();
+    }
+
+    /**
+     * Resets all the failed outbox entries so that they are retried from
+     * scratch, and requests a new dispatch.
+     *
+     * @return the number of outbox entries reset
+     */
+    public int retryFailed() {
+        final int retried = this.mcpOutboxRepo.retryFailed(new Date());
+        log.info("Retrying {} failed MCP outbox entries", retried);
+        this.updateCounts();
+        this.requestDispatch();
+        return retried;
+    }
+
+    /**
+     * Dispatches any pending outbox entry for the MRN entity identified by the
+     * provided MRN and version straight away. This should be used before
+     * operations that require the MRN entity to be up-to-date in the MCP MIR,
+     * e.g. the certificate issuance.
+     * <p/>
+     * If the entry is currently claimed by another dispatcher, the flush
+     * waits for it to be applied, up to the configured flush timeout.
+     *
+     * @param mrn the MRN of the MRN entity
+     * @param version the version of the MRN entity
+     * @throws McpConnectivityException if the MCP MIR is not reachable
+     */
+    public void flush(@NotNull String mrn, String version) throws McpConnectivityException {
+        final String owner = this.newClaimOwner();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.flushTimeoutMs);
+        Optional<McpOutboxEntry> entry;
+        while((entry = this.mcpOutboxRepo.findByMrnAndVersion(mrn, Optional.ofNullable(version).orElse(""))).isPresent()) {
+            // Apply the entry if we manage to claim it
+            if(this.claim(entry.get(), owner)) {
+                try {
+                    this.apply(entry.get());
+                } catch (McpConnectivityException | RuntimeException ex) {
+                    this.release(entry.get(), owner);
+                    throw ex;
+                }
+                this.complete(List.of(entry.get()), owner);
+                return;
+            }
+
+            // Otherwise wait for the other dispatcher to apply it
+            if(System.nanoTime() >= deadline) {
+                throw new McpConnectivityException(String.format("Timed out waiting for the pending MCP MIR update of MRN: %s", mrn));
+            }
+            try {
+                Thread.sleep(this.flushRetryIntervalMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new McpConnectivityException(String.format("Interrupted while waiting for the pending MCP MIR update of MRN: %s", mrn));
+            }
+        }
+    }
+
+    /**
+     * Applies the MCP MIR mutation recorded in the provided outbox entry.
+     *
+     * @param entry the outbox entry
+     * @throws McpConnectivityException if the MCP MIR is not reachable
+     */
+    protected void apply(@NotNull McpOutboxEntry entry) throws McpConnectivityException {
+        switch (entry.getOperation()) {
+            case SAVE -> this.applySave(entry);
+            case DELETE -> this.applyDelete(entry);
+        }
+    }
+
+    /**
+     * Applies an MCP MIR save mutation. If the entity does not exist in the
+     * MCP MIR it will be created, otherwise it will be updated. The MRN
+     * returned by the MCP MIR is always written back to the local MRN entity.
+     *
+     * @param entry the outbox entry
+     * @throws McpConnectivityException if the MCP MIR is not reachable
+     */
+    protected void applySave(@NotNull McpOutboxEntry entry) throws McpConnectivityException {
+        McpEntityBase mcpEntity;
+        try {
+            // First try to identify if the entity exists in the MRN MIR, and
+            // if no we are going to create it, otherwise update it
+            try {
+                mcpEntity = this.mcpService.getMcpEntity(entry.getMrn(), entry.getVersion(), entry.getEntityType().getEntityClass());
+            } catch(DataNotFoundException ex) {
+                log.warn("MCP entry for the MRN device with MRN {} not found", entry.getMrn());
+                mcpEntity = entry.getEntityType().getEntityClass().getDeclaredConstructor().newInstance();
+                mcpEntity.setMrn(entry.getMrn());
+            }
+        } catch (InvocationTargetException | InstantiationException | IllegalAccessException | NoSuchMethodException ex) {
+            throw new SavingFailedException(ex.getMessage());
+        }
+
+        // We can only update the name of the MCP entity (and version for new services)
+        if(McpDeviceDto.class.isInstance(mcpEntity)) {
+            ((McpDeviceDto)mcpEntity).setName(entry.getName());
+        } else if(McpServiceDto.class.isInstance(mcpEntity)) {
+            ((McpServiceDto)mcpEntity).setName(entry.getName());
+            if(Objects.isNull(mcpEntity.getId())) {
+                ((McpServiceDto) mcpEntity).setInstanceVersion(entry.getVersion());
+            }
+        } else if(McpVesselDto.class.isInstance(mcpEntity)) {
+            ((McpVesselDto)mcpEntity).setName(entry.getName());
+        } else if(McpUserDto.class.isInstance(mcpEntity)) {
+            ((McpUserDto)mcpEntity).setFirstName(entry.getName().split(" ")[0]);
+            ((McpUserDto)mcpEntity).setLastName(entry.getName().split(" ")[1]);
+        } else if(McpRoleDto.class.isInstance(mcpEntity)) {
+            ((McpRoleDto)mcpEntity).setRoleName(entry.getName());
+        }
+
+        // Choose whether to create or update
+        if(Objects.isNull(mcpEntity.getId())) {
+            mcpEntity = this.mcpService.createMcpEntity(mcpEntity);
+        } else {
+            mcpEntity = this.mcpService.updateMcpEntity(mcpEntity.getMrn(), mcpEntity);
+        }
+
+        // Always read the MRN from the MCP MIR
+        Optional.ofNullable(mcpEntity)
+                .map(McpEntityBase::getMrn)
+                .filter(not(mrn -> Objects.equals(mrn, entry.getMrn())))
+                .ifPresent(mrn -> this.mrnEntityRepo.findByMrnAndVersion(entry.getMrn(), entry.getVersion())
+                        .ifPresent(mrnEntity -> {
+                            mrnEntity.setMrn(mrn);
+                            this.mrnEntityRepo.save(mrnEntity);
+                        }));
+    }
+
+    /**
+     * Applies an MCP MIR delete mutation. Entities that are not found in the
+     * MCP MIR are considered already deleted.
+     *
+     * @param entry the outbox entry
+     * @throws McpConnectivityException if the MCP MIR is not reachable
+     */
+    protected void applyDelete(@NotNull McpOutboxEntry entry) throws McpConnectivityException {
+        try {
+            this.mcpService.deleteMcpEntity(entry.getMrn(), entry.getVersion(), entry.getEntityType().getEntityClass());
+        } catch(DeletingFailedException ex) {
+            // Not found? Not problem!
+            log.debug(ex.getMessage());
+        }
+    }
+
+    /**
+     * Removes the successfully dispatched outbox entries in a single batch.
+     * If any of them has been superseded by a newer mutation in the meantime,
+     * the entries are removed one by one so that the newer mutations are kept
+     * and released for the next dispatch.
+     *
+     * @param completed the successfully dispatched outbox entries
+     * @param owner the owner of the outbox entry claims
+     */
+    protected void complete(@NotNull List<McpOutboxEntry> completed, @NotNull String owner) {
+        if(completed.isEmpty()) {
+            return;
+        }
+
+        try {
+            this.mcpOutboxRepo.deleteAll(completed);
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            completed.forEach(entry -> {
+                try {
+                    this.mcpOutboxRepo.delete(entry);
+                } catch (ObjectOptimisticLockingFailureException e) {
+                    log.debug("MCP outbox entry for MRN {} was superseded", entry.getMrn());
+                    this.release(entry, owner);
+                }
+            });
+        }
+        Optional.ofNullable(this.dispatchedCounter).ifPresent(c -> c.increment(completed.size()));
+    }
+
+    /**
+     * Reschedules a failed outbox entry with an exponential backoff, based on
+     * the number of attempts made so far, and releases its claim. Once the
+     * maximum number of attempts is reached, an entry rejected by the MCP MIR
+     * is marked as failed instead. Connectivity failures never mark an entry
+     * as failed, since they are not caused by the entry itself.
+     *
+     * @param entry the failed outbox entry
+     * @param owner the owner of the outbox entry claim
+     * @param error the error that caused the failure
+     */
+    protected void reschedule(@NotNull McpOutboxEntry entry, @NotNull String owner, @NotNull Exception error) {
+        entry.setAttempts(entry.getAttempts() + 1);
+        entry.setNextAttemptAt(new Date(System.currentTimeMillis() + this.getBackoff(entry.getAttempts())));
+        entry.setLastError(error.getMessage());
+
+        // Check whether the entry has run out of attempts
+        final boolean exhausted = this.maxAttempts > 0
+                && entry.getAttempts() >= this.maxAttempts
+                && !(error instanceof McpConnectivityException);
+        if(exhausted) {
+            log.error("MCP outbox entry for MRN {} failed after {} attempts: {}", entry.getMrn(), entry.getAttempts(), error.getMessage());
+            entry.setFailedAt(new Date());
+        } else {
+            log.warn("MCP outbox entry for MRN {} failed on attempt {}: {}", entry.getMrn(), entry.getAttempts(), error.getMessage());
+        }
+        entry.setClaimedBy(null);
+        entry.setClaimedUntil(null);
+        try {
+            this.mcpOutboxRepo.save(entry);
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            log.debug("MCP outbox entry for MRN {} was superseded", entry.getMrn());
+            this.release(entry, owner);
+        }
+        Optional.ofNullable(exhausted ? this.failedCounter : this.retriedCounter).ifPresent(Counter::increment);
+    }
+
+    /**
+     * Updates the number of pending and failed outbox entries reported by
+     * the outbox metrics.
+     */
+    protected void updateCounts() {
+        this.pending.set(this.mcpOutboxRepo.countByFailedAtIsNull());
+        this.failed.set(this.mcpOutboxRepo.countByFailedAtIsNotNull());
+    }
+
+    /**
+     * Attempts to claim the provided outbox entry for the provided owner, so
+     * that no other dispatcher (on this or any other node) applies it at the
+     * same time.
+     *
+     * @param entry the outbox entry
+     * @param owner the owner of the claim
+     * @return whether the entry was claimed
+     */
+    protected boolean claim(@NotNull McpOutboxEntry entry, @NotNull String owner) {
+        final long durationSeconds = Math.max(TimeUnit.MILLISECONDS.toSeconds(this.claimDurationMs), 1);
+        return this.mcpOutboxRepo.claim(entry.getId(), owner, durationSeconds) > 0;
+    }
+
+    /**
+     * Releases the claim of the provided outbox entry, if still held by the
+     * provided owner. Failing to release the claim is only logged, since it
+     * will expire anyway.
+     *
+     * @param entry the outbox entry
+     * @param owner the owner of the claim
+     */
+    protected void release(@NotNull McpOutboxEntry entry, @NotNull String owner) {
+        try {
+            this.mcpOutboxRepo.release(entry.getId(), owner);
+        } catch (Exception ex) {
+            log.error("Failed to release the MCP outbox entry for MRN {}: {}", entry.getMrn(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Generates a new unique owner for the outbox entry claims of this node.
+     *
+     * @return the claim owner
+     */
+    protected String newClaimOwner() {
+        return String.format("%s:%s", this.nodeId, UUID.randomUUID());
+    }
+
+    /**
+     * Returns the backoff in milliseconds before the next attempt, doubling
+     * after every failed attempt up to the configured maximum.
+     *
+     * @param attempts the number of failed attempts so far
+     * @return the backoff in milliseconds
+     */
+    protected long getBackoff(int attempts) {
+        final int exponent = Math.min(Math.max(attempts - 1, 0), 30);
+        return Math.min(this.backoffInitialMs << exponent, this.backoffMaxMs);
+    }
+
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.cKeeper.components.MrnEntityLeases;
+import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
+import org.grad.eNav.cKeeper.models.domain.Certificate;
+import org.grad.eNav.cKeeper.models.domain.MrnEntity;
+import org.grad.eNav.cKeeper.repos.CertificateRepo;
+import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
+import org.grad.eNav.cKeeper.services.CertificateService.CertificateDiff;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * The MCP Reconciliation Service Class
+ *
+ * Service Implementation for the periodic bulk reconciliation of all the
+ * local MRN entity certificates with the MCP Identity Registry. The MCP MIR
+ * certificates are retrieved through the non-blocking MCP service API, with
+ * a configurable concurrency and rate limit, so that the registry is not
+ * flooded and no thread is tied up per in-flight request. The local
+ * certificates of each entity are loaded before its MCP MIR certificates are
+ * retrieved, and both are passed through the certificate diff engine. Only
+ * the changed certificates are then written into the database in batches.
+ * <p/>
+ * The MRN entities are paged through by their IDs, so that they are never
+ * all loaded in memory at once, and only a single node of the cluster runs
+ * the reconciliation at any given time, guarded by a cluster-wide lease.
+ * The runs take place on a dedicated executor, so that the application
+ * scheduler is not tied up for the duration of the run.
+ * <p/>
+ * The reconciliation progress is available through the service, and it is
+ * also registered with the Micrometer meter registry.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Service
+@Slf4j
+public class McpReconciliationService {
+
+    /**
+     * The ID of the cluster-wide lease guarding the reconciliation runs. The
+     * MRN entity IDs start from one, so this never clashes with an entity.
+     */
+    public static final BigInteger RECONCILIATION_LEASE_ID = BigInteger.ZERO;
+
+    /**
+     * Whether the bulk MCP reconciliation is enabled.
+     */
+    @Value("${gla.rad.ckeeper.mcp.reconcile.enabled:true}")
+    boolean enabled;
+
+    /**
+     * The maximum number of concurrent MCP MIR requests.
+     */
+    @Value("${gla.rad.ckeeper.mcp.reconcile.concurrency:8}")
+    int concurrency;
+
+    /**
+     * The maximum number of MCP MIR requests issued per second (0 for no limit).
+     */
+    @Value("${gla.rad.ckeeper.mcp.reconcile.rate-per-second:20}")
+    int ratePerSecond;
+
+    /**
+     * The number of MRN entity certificate diffs written in each batch.
+     */
+    @Value("${gla.rad.ckeeper.mcp.reconcile.batch-size:50}")
+    int batchSize;
+
+    /**
+     * The number of MRN entities loaded from the database in each page.
+     */
+    @Value("${gla.rad.ckeeper.mcp.reconcile.page-size:500}")
+    int pageSize;
+
+    /**
+     * The MRN Entity Repo.
+     */
+    @Autowired
+    MRNEntityRepo mrnEntityRepo;
+
+    /**
+     * The Certificate Repo.
+     */
+    @Autowired
+    CertificateRepo certificateRepo;
+
+    /**
+     * The Certificate Service.
+     */
+    @Autowired
+    CertificateService certificateService;
+
+    /**
+     * The MCP Service.
+     */
+    @Autowired
+    McpService mcpService;
+
+    /**
+     * The MCP Sync Service.
+     */
+    @Autowired
+    McpSyncService mcpSyncService;
+
+    /**
+     * The MRN Entity Leases.
+     */
+    @Autowired
+    MrnEntityLeases mrnEntityLeases;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    // Service Variables
+    protected ExecutorService reconciliationExecutor;
+    protected final AtomicBoolean running = new AtomicBoolean();
+    protected final AtomicLong total = new AtomicLong();
+    protected final AtomicLong synced = new AtomicLong();
+    protected final AtomicLong mcpErrors = new AtomicLong();
+    protected final AtomicLong failed = new AtomicLong();
+    protected final AtomicLong revoked = new AtomicLong();
+    protected final AtomicLong issued = new AtomicLong();
+    protected volatile Instant startedAt;
+    protected volatile Instant finishedAt;
+    protected Counter syncedCounter;
+    protected Counter mcpErrorCounter;
+    protected Counter failedCounter;
+    protected Counter revokedCounter;
+    protected Counter issuedCounter;
+    protected Timer durationTimer;
+
+    /**
+     * Once the service has been initialised, we can create the executor that
+     * will be running the reconciliation and register the reconciliation
+     * metrics.
+     */
+    @PostConstruct
+    public void init() {
+        this.reconciliationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "mcp-reconciliation");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Register the reconciliation metrics if possible
+        if(Objects.nonNull(this.meterRegistry)) {
+            this.syncedCounter = Counter.builder("ckeeper.mcp.reconcile.entities")
+                    .description("The number of MRN entities reconciled with the MCP MIR")
+                    .tag("result", "synced")
+                    .register(this.meterRegistry);
+            this.mcpErrorCounter = Counter.builder("ckeeper.mcp.reconcile.entities")
+                    .description("The number of MRN entities reconciled with the MCP MIR")
+                    .tag("result", "mcp-error")
+                    .register(this.meterRegistry);
+            this.failedCounter = Counter.builder("ckeeper.mcp.reconcile.entities")
+                    .description("The number of MRN entities reconciled with the MCP MIR")
+                    .tag("result", "failed")
+                    .register(this.meterRegistry);
+            this.revokedCounter = Counter.builder("ckeeper.mcp.reconcile.certificates")
+                    .description("The number of certificate changes detected by the MCP reconciliation")
+                    .tag("change", "revoked")
+                    .register(this.meterRegistry);
+            this.issuedCounter = Counter.builder("ckeeper.mcp.reconcile.certificates")
+                    .description("The number of certificate changes detected by the MCP reconciliation")
+                    .tag("change", "issued")
+                    .register(this.meterRegistry);
+            this.durationTimer = Timer.builder("ckeeper.mcp.reconcile.duration")
+                    .description("The duration of the bulk MCP reconciliation runs")
+                    .register(this.meterRegistry);
+            Gauge.builder("ckeeper.mcp.reconcile.rate", this, s -> s.getProgress().entitiesPerSecond())
+                    .description("The number of MRN entities reconciled per second in the current or last run")
+                    .register(this.meterRegistry);
+            Gauge.builder("ckeeper.mcp.reconcile.progress", this, s -> s.getProgress().completion())
+                    .description("The completion ratio of the current or last bulk MCP reconciliation run")
+                    .register(this.meterRegistry);
+        }
+    }
+
+    /**
+     * When shutting down the application we need to make sure that the
+     * reconciliation executor is terminated.
+     */
+    @PreDestroy
+    public void destroy() {
+        log.info("MCP reconciliation service is shutting down...");
+        Optional.ofNullable(this.reconciliationExecutor).ifPresent(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Periodically reconciles all the MRN entities with the MCP MIR. The run
+     * is handed over to the reconciliation executor, so this returns straight
+     * away. Only a single run can take place at any given time across the
+     * whole cluster, so if another node is already running one, this run is
+     * skipped.
+     */
+    @Scheduled(fixedDelayString = "${gla.rad.ckeeper.mcp.reconcile.interval-ms:86400000}",
+            initialDelayString = "${gla.rad.ckeeper.mcp.reconcile.initial-delay-ms:300000}")
+    public void reconcileAll() {
+        // Only run when enabled and not already running
+        if(!this.enabled || !this.running.compareAndSet(false, true)) {
+            return;
+        }
+
+        // Submit the run, which only goes ahead if no other node is running already
+        try {
+            this.reconciliationExecutor.execute(() -> {
+                try {
+                    if(!this.mrnEntityLeases.tryWithLease(RECONCILIATION_LEASE_ID, this::reconcile)) {
+                        log.info("MCP reconciliation is already running on another node, skipping");
+                    }
+                } catch (Exception ex) {
+                    log.error("MCP reconciliation could not be started: {}", ex.getMessage());
+                } finally {
+                    this.running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.warn("MCP reconciliation run rejected");
+            this.running.set(false);
+        }
+    }
+
+    /**
+     * Performs a bulk reconciliation run over all the MRN entities, which are
+     * paged through by their IDs.
+     */
+    protected void reconcile() {
+        final long start = System.nanoTime();
+        try {
+            // Count the MRN entities to be reconciled
+            final long total = this.mrnEntityRepo.count();
+            this.startProgress(total);
+            log.info("MCP reconciliation service is reconciling {} MRN entities", total);
+
+            // Retrieve the MCP MIR certificates, work out the differences and write them in batches
+            this.findAllMrnEntities()
+                    .transform(this::rateLimit)
+                    .flatMap(this::fetchCertificates, Math.max(this.concurrency, 1))
+                    .publishOn(Schedulers.boundedElastic())
+                    .mapNotNull(this::diff)
+                    .buffer(Math.max(this.batchSize, 1))
+                    .doOnNext(this::applyBatch)
+                    .then()
+                    .block();
+
+            log.info("MCP reconciliation service completed: {}", this.getProgress());
+        } catch (Exception ex) {
+            log.error("MCP reconciliation failed: {}", ex.getMessage());
+        } finally {
+            this.finishedAt = Instant.now();
+            Optional.ofNullable(this.durationTimer).ifPresent(timer -> timer.record(Duration.ofNanos(System.nanoTime() - start)));
+        }
+    }
+
+    /**
+     * Pages through all the MRN entities in ascending ID order. Each page is
+     * only loaded from the database once the previous one has been consumed,
+     * on a scheduler that allows blocking calls.
+     *
+     * @return all the MRN entities
+     */
+    protected Flux<MrnEntity> findAllMrnEntities() {
+        return Flux.<List<MrnEntity>, BigInteger>generate(() -> BigInteger.ZERO, (afterId, sink) -> {
+                    final List<BigInteger> ids = this.mrnEntityRepo.findIdsAfter(afterId, PageRequest.of(0, Math.max(this.pageSize, 1)));
+                    if(ids.isEmpty()) {
+                        sink.complete();
+                        return afterId;
+                    }
+                    sink.next(this.mrnEntityRepo.findAllById(ids));
+                    return ids.get(ids.size() - 1);
+                })
+                .flatMapIterable(Function.identity())
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Returns a snapshot of the current, or the last, bulk reconciliation
+     * run progress.
+     *
+     * @return the reconciliation progress
+     */
+    public ReconciliationProgress getProgress() {
+        return new ReconciliationProgress(
+                this.running.get(),
+                this.startedAt,
+                this.running.get() ? null : this.finishedAt,
+                this.total.get(),
+                this.synced.get(),
+                this.mcpErrors.get(),
+                this.failed.get(),
+                this.revoked.get(),
+                this.issued.get()
+        );
+    }
+
+    /**
+     * Limits the rate at which the MRN entities are emitted, based on the
+     * configured maximum number of MCP MIR requests per second.
+     *
+     * @param mrnEntities the MRN entities to be emitted
+     * @return the rate-limited MRN entities
+     */
+    protected Flux<MrnEntity> rateLimit(Flux<MrnEntity> mrnEntities) {
+        return this.ratePerSecond > 0 ?
+                mrnEntities.delayElements(Duration.ofNanos(1_000_000_000L / this.ratePerSecond)) :
+                mrnEntities;
+    }
+
+    /**
+     * Retrieves the local and the MCP MIR certificates of the provided MRN
+     * entity. The local certificates are loaded first, so that a certificate
+     * issued locally while waiting for the MCP MIR cannot be mistaken for
+     * one that has been revoked in the registry. The MCP MIR certificates
+     * are then retrieved without blocking. If the MCP entity is not found,
+     * it has no certificates. Any other MCP failures are recorded as MCP
+     * errors and the entity is skipped.
+     *
+     * @param mrnEntity the MRN entity to retrieve the certificates for
+     * @return the MRN entity along with its local and MCP MIR certificates
+     */
+    protected Mono<MrnEntityCertificates> fetchCertificates(@NotNull MrnEntity mrnEntity) {
+        return Mono.fromCallable(() -> this.certificateRepo.findAllByMrnEntityId(mrnEntity.getId()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(ex -> {
+                    log.error("MCP reconciliation failed to load the certificates of MRN entity {}: {}", mrnEntity.getId(), ex.getMessage());
+                    this.recordFailed(1);
+                    return Mono.empty();
+                })
+                .flatMap(localCertificates -> Mono.defer(() -> this.mcpService.getMcpEntityCertificatesAsync(mrnEntity.getEntityType(), mrnEntity.getMrn(), mrnEntity.getVersion()))
+                        .onErrorResume(DataNotFoundException.class, ex -> Mono.just(Collections.<String, X509Certificate>emptyMap()))
+                        .map(mcpCertificates -> new MrnEntityCertificates(mrnEntity, localCertificates, mcpCertificates))
+                        .onErrorResume(ex -> {
+                            log.warn("MCP reconciliation failed to retrieve the certificates of MRN entity {}: {}", mrnEntity.getId(), ex.getMessage());
+                            this.mcpErrors.incrementAndGet();
+                            Optional.ofNullable(this.mcpErrorCounter).ifPresent(Counter::increment);
+                            return Mono.empty();
+                        }));
+    }
+
+    /**
+     * Works out the differences between the local and the MCP MIR
+     * certificates of the provided MRN entity. Any failures are recorded and
+     * the entity is skipped.
+     *
+     * @param mrnEntityCertificates the MRN entity along with its local and MCP MIR certificates
+     * @return the certificate differences, or null if these could not be worked out
+     */
+    protected CertificateDiff diff(@NotNull MrnEntityCertificates mrnEntityCertificates) {
+        final MrnEntity mrnEntity = mrnEntityCertificates.mrnEntity();
+        try {
+            return this.certificateService.diffMrnEntityCertificates(mrnEntity, mrnEntityCertificates.localCertificates(), mrnEntityCertificates.mcpCertificates());
+        } catch (Exception ex) {
+            log.error("MCP reconciliation failed to compare the certificates of MRN entity {}: {}", mrnEntity.getId(), ex.getMessage());
+            this.recordFailed(1);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the provided batch of certificate differences into the database
+     * and records the outcome. Only the changes that were still required when
+     * the batch was written are counted.
+     *
+     * @param certificateDiffs the batch of certificate differences
+     */
+    protected void applyBatch(@NotNull List<CertificateDiff> certificateDiffs) {
+        final List<CertificateDiff> appliedDiffs;
+        try {
+            appliedDiffs = this.certificateService.applyCertificateDiffs(certificateDiffs);
+        } catch (Exception ex) {
+            log.error("MCP reconciliation failed to write a batch of {} MRN entities: {}", certificateDiffs.size(), ex.getMessage());
+            this.recordFailed(certificateDiffs.size());
+            return;
+        }
+
+        // Record the successful outcome
+        for(CertificateDiff certificateDiff : appliedDiffs) {
+            this.mcpSyncService.markSynced(certificateDiff.mrnEntityId());
+            this.synced.incrementAndGet();
+            this.revoked.addAndGet(certificateDiff.revoked().size());
+            this.issued.addAndGet(certificateDiff.issued().size());
+            Optional.ofNullable(this.syncedCounter).ifPresent(Counter::increment);
+            Optional.ofNullable(this.revokedCounter).ifPresent(counter -> counter.increment(certificateDiff.revoked().size()));
+            Optional.ofNullable(this.issuedCounter).ifPresent(counter -> counter.increment(certificateDiff.issued().size()));
+        }
+    }
+
+    /**
+     * Resets the progress counters for a new reconciliation run.
+     *
+     * @param total the total number of MRN entities to be reconciled
+     */
+    protected void startProgress(long total) {
+        this.startedAt = Instant.now();
+        this.total.set(total);
+        this.synced.set(0);
+        this.mcpErrors.set(0);
+        this.failed.set(0);
+        this.revoked.set(0);
+        this.issued.set(0);
+    }
+
+    /**
+     * Records the provided number of MRN entities as failed.
+     *
+     * @param count the number of failed MRN entities
+     */
+    protected void recordFailed(int count) {
+        this.failed.addAndGet(count);
+        Optional.ofNullable(this.failedCounter).ifPresent(counter -> counter.increment(count));
+    }
+
+    /**
+     * The local and the MCP MIR certificates of an MRN entity, retrieved for
+     * the reconciliation.
+     *
+     * @param mrnEntity         The MRN entity
+     * @param localCertificates The local certificates of the MRN entity
+     * @param mcpCertificates   The MCP MIR certificates of the MRN entity
+     */
+    protected record MrnEntityCertificates(MrnEntity mrnEntity,
+                                           Set<Certificate> localCertificates,
+                                           Map<String, X509Certificate> mcpCertificates) {
+
+    }
+
+    /**
+     * The bulk MCP reconciliation progress snapshot.
+     *
+     * @param running       Whether a reconciliation run is in progress
+     * @param startedAt     The start time of the current or last run
+     * @param finishedAt    The finish time of the last run
+     * @param total         The total number of MRN entities
+     * @param synced        The number of MRN entities synced
+     * @param mcpErrors     The number of MRN entities skipped due to MCP errors
+     * @param failed        The number of MRN entities that failed to be written
+     * @param revoked       The number of newly revoked certificates
+     * @param issued        The number of newly issued certificates
+     */
+    public record ReconciliationProgress(boolean running,
+                                         Instant startedAt,
+                                         Instant finishedAt,
+                                         long total,
+                                         long synced,
+                                         long mcpErrors,
+                                         long failed,
+                                         long revoked,
+                                         long issued) {
+
+        /**
+         * Returns the number of MRN entities processed so far.
+         *
+         * @return the number of processed MRN entities
+         */
+        public long processed() {
+            return this.synced + this.mcpErrors + this.failed;
+        }
+
+        /**
+         * Returns the completion ratio of the run.
+         *
+         * @return the completion ratio
+         */
+        public double completion() {
+            return this.total > 0 ? (double) this.processed() / this.total : 0.0;
+        }
+
+        /**
+         * Returns the number of MRN entities processed per second.
+         *
+         * @return the number of MRN entities processed per second
+         */
+        public double entitiesPerSecond() {
+            if(Objects.isNull(this.startedAt)) {
+                return 0.0;
+            }
+            final Instant end = Optional.ofNullable(this.finishedAt).orElseGet(Instant::now);
+            final double seconds = Duration.between(this.startedAt, end).toMillis() / 1000.0;
+            return seconds > 0 ? this.processed() / seconds : 0.0;
+        }
+
+        /**
+         * Returns the ratio of the processed MRN entities that failed due to
+         * MCP errors.
+         *
+         * @return the MCP error rate
+         */
+        public double mcpErrorRate() {
+            return this.processed() > 0 ? (double) this.mcpErrors / this.processed() : 0.0;
+        }
+
+    }
+
+}
@@ -16,10 +16,17 @@
 
 package org.grad.eNav.cKeeper.services;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -27,6 +34,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.util.Strings;
 import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.grad.eNav.cKeeper.components.McpCircuitBreaker;
+import org.grad.eNav.cKeeper.components.TrustStoreManager;
 import org.grad.eNav.cKeeper.exceptions.*;
 import org.grad.eNav.cKeeper.models.domain.Pair;
 import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
@@ -40,15 +49,25 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
 
+import javax.net.ssl.TrustManagerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -57,10 +76,10 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
-import java.time.temporal.ChronoUnit;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -96,22 +115,94 @@ public class McpService {
     String keyStoreType;
 
     /**
-     * The X.509 Trust-Store.
+     * Whether the background MCP connectivity probe is enabled.
      */
-    @Value("${gla.rad.ckeeper.mcp.trustStore:truststore.p12}")
-    String trustStore;
+    @Value("${gla.rad.ckeeper.mcp.circuit.probe.enabled:true}")
+    boolean probeEnabled;
 
     /**
-     * The X.509 Trust-Store Password.
+     * The maximum number of pooled MCP MIR connections.
      */
-    @Value("${gla.rad.ckeeper.mcp.trustStorePassword:}")
-    String trustStorePassword;
+    @Value("${gla.rad.ckeeper.mcp.client.max-connections:50}")
+    int maxConnections = 50;
 
     /**
-     * The X.509 Trust-Store Type.
+     * The maximum number of requests waiting for a pooled connection.
      */
-    @Value("${gla.rad.ckeeper.mcp.trustStoreType:PKCS12}")
-    String trustStoreType;
+    @Value("${gla.rad.ckeeper.mcp.client.pending-acquire-max-count:500}")
+    int pendingAcquireMaxCount = 500;
+
+    /**
+     * The maximum time to wait for a pooled connection.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.pending-acquire-timeout-ms:5000}")
+    long pendingAcquireTimeoutMs = 5000;
+
+    /**
+     * The time after which idle pooled connections are evicted.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.max-idle-time-ms:30000}")
+    long maxIdleTimeMs = 30000;
+
+    /**
+     * The maximum lifetime of the pooled connections.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.max-life-time-ms:300000}")
+    long maxLifeTimeMs = 300000;
+
+    /**
+     * The interval of the background pooled connection eviction.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.evict-interval-ms:30000}")
+    long evictIntervalMs = 30000;
+
+    /**
+     * The MCP MIR connection timeout.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.connect-timeout-ms:2000}")
+    int connectTimeoutMs = 2000;
+
+    /**
+     * The MCP MIR TLS handshake timeout.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.handshake-timeout-ms:2000}")
+    long handshakeTimeoutMs = 2000;
+
+    /**
+     * The number of TLS sessions cached for resumption.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.tls.session-cache-size:100}")
+    long tlsSessionCacheSize = 100;
+
+    /**
+     * The time the cached TLS sessions can be resumed for.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.tls.session-timeout-seconds:3600}")
+    long tlsSessionTimeoutSeconds = 3600;
+
+    /**
+     * Whether HTTP/2 should be negotiated with the MCP MIR.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.http2.enabled:false}")
+    boolean http2Enabled;
+
+    /**
+     * The default MCP MIR response timeout.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.response-timeout-ms:10000}")
+    long responseTimeoutMs = 10000;
+
+    /**
+     * The MCP MIR certificate issuance response timeout.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.issue-response-timeout-ms:30000}")
+    long issueResponseTimeoutMs = 30000;
+
+    /**
+     * The MCP MIR connectivity probe response timeout.
+     */
+    @Value("${gla.rad.ckeeper.mcp.client.probe-response-timeout-ms:2000}")
+    long probeResponseTimeoutMs = 2000;
 
     /**
      * The MCP Base Service.
@@ -119,17 +210,52 @@ public class McpService {
     @Autowired
     McpConfigService mcpConfigService;
 
+    /**
+     * The Truststore Manager.
+     */
+    @Autowired
+    TrustStoreManager trustStoreManager;
+
+    /**
+     * The MCP Circuit Breaker.
+     */
+    @Autowired
+    McpCircuitBreaker mcpCircuitBreaker;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    /**
+     * The MCP MIR operations, used to apply the response timeouts and to tag
+     * the latency metrics.
+     */
+    public enum McpOperation {
+        GET,
+        CREATE,
+        UPDATE,
+        DELETE,
+        ISSUE,
+        REVOKE,
+        PROBE
+    }
+
     // Class Variables
-    protected HttpClient httpConnector;
-    protected WebClient mcpMirClient;
+    protected static final String OPERATION_ATTRIBUTE = "mcpOperation";
+    protected ConnectionProvider connectionProvider;
+    protected volatile HttpClient httpConnector;
+    protected volatile WebClient mcpMirClient;
     protected CertificateFactory certificateFactory;
 
     /**
      * Once the service has been initialised, it needs to register the
      * MCP keystore with our MCP X.509 certificate into the Java truststore.
      * This was it will be used during the communication with the MCP server,
-     * and it will have access to perform the updating operations. We will
-     * use the "javax.net.ssl.trustStore" environment variable for that.
+     * and it will have access to perform the updating operations. The
+     * trusted certificates are picked up from the truststore manager
+     * snapshot, and the MCP MIR client is rebuilt whenever that is reloaded.
      *
      * For more information see: https://www.baeldung.com/java-ssl
      */
@@ -138,14 +264,72 @@ public class McpService {
         // Initialise the certificate factory
         this.certificateFactory = CertificateFactory.getInstance("X.509");
 
+        // Initialise the MCP MIR connection pool, shared by all client rebuilds
+        this.connectionProvider = ConnectionProvider.builder("mcp-mir")
+                .maxConnections(Math.max(this.maxConnections, 1))
+                .pendingAcquireMaxCount(this.pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(this.pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(this.maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(this.maxLifeTimeMs))
+                .evictInBackground(Duration.ofMillis(this.evictIntervalMs))
+                .metrics(Objects.nonNull(this.meterRegistry))
+                .build();
+
+        // Build the MCP MIR client
+        this.buildMcpMirClient();
+
+        // And rebuild it every time the truststore is reloaded
+        this.trustStoreManager.addReloadListener(snapshot -> {
+            try {
+                this.buildMcpMirClient();
+            } catch (Exception ex) {
+                log.error("Failed to rebuild the MCP MIR client after the truststore reload: {}", ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * When shutting down the application we need to make sure that the
+     * MCP MIR connection pool is released.
+     */
+    @PreDestroy
+    public void destroy() {
+        Optional.ofNullable(this.connectionProvider).ifPresent(ConnectionProvider::dispose);
+    }
+
+    /**
+     * Builds the HTTP connector and the MCP MIR web client, using the pooled
+     * MCP MIR connections and an SSL context initialised with the MCP
+     * keystore and the current truststore manager snapshot.
+     */
+    protected void buildMcpMirClient() throws IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, UnrecoverableKeyException, CertificateException {
         // Initialise the HTTP connection configuration
-        this.httpConnector = HttpClient
-                .create()
-                .followRedirect(true);
+        HttpClient httpClient = Optional.ofNullable(this.connectionProvider)
+                .map(HttpClient::create)
+                .orElseGet(HttpClient::create)
+                .followRedirect(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, this.connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(this.responseTimeoutMs))
+                .protocol(this.http2Enabled ?
+                        new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11} :
+                        new HttpProtocol[]{HttpProtocol.HTTP11});
 
-        // Start Setting up the SSL context builder.
+        // Start Setting up the SSL context builder, caching the sessions for resumption
         SslContextBuilder sslContextBuilder = SslContextBuilder
-                .forClient();
+                .forClient()
+                .sessionCacheSize(this.tlsSessionCacheSize)
+                .sessionTimeout(this.tlsSessionTimeoutSeconds);
+
+        // If HTTP/2 is enabled, it needs to be negotiated through ALPN
+        if (this.http2Enabled) {
+            sslContextBuilder.applicationProtocolConfig(new ApplicationProtocolConfig(
+                    ApplicationProtocolConfig.Protocol.ALPN,
+                    ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                    ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                    ApplicationProtocolNames.HTTP_2,
+                    ApplicationProtocolNames.HTTP_1_1));
+        }
 
         // If we have a keystore and a valid password
         if (Strings.isNotBlank(keyStore) && Strings.isNotBlank(keyStorePassword)) {
@@ -153,10 +337,10 @@ public class McpService {
                     keyStore, keyStorePassword, keyStoreType, null));
         }
 
-        // If we have a truststore and a valid password
-        if (Strings.isNotBlank(this.trustStore) && Strings.isNotBlank(this.trustStorePassword)) {
-            sslContextBuilder.trustManager(KeyStoreUtils.getTrustManagerFactory(
-                    this.trustStore, this.trustStorePassword, this.trustStoreType, null));
+        // If we have a truststore snapshot available
+        final TrustManagerFactory trustManagerFactory = this.trustStoreManager.getTrustManagerFactory();
+        if (Objects.nonNull(trustManagerFactory)) {
+            sslContextBuilder.trustManager(trustManagerFactory);
         }
         // Otherwise check if an insecure policy it to be applied
         else {
@@ -165,17 +349,146 @@ public class McpService {
 
         // Add the SSL context to the HTTP connector
         final SslContext sslContext = sslContextBuilder.build();
-        this.httpConnector = this.httpConnector.secure(spec -> spec.sslContext(sslContext)
-                .handshakeTimeout(Duration.of(2, ChronoUnit.SECONDS)));
+        httpClient = httpClient.secure(spec -> spec.sslContext(sslContext)
+                .handshakeTimeout(Duration.ofMillis(this.handshakeTimeoutMs)));
 
         // And create the MCP MIR web client
+        this.httpConnector = httpClient;
         this.mcpMirClient = WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(httpConnector))
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .baseUrl(this.mcpConfigService.constructMcpBaseUrl())
+                .filter(this.recordMcpOutcome())
+                .filter(this.recordMcpLatency())
+                .filter(this.applyResponseTimeout())
                 //.filter(setJWT())
                 .build();
     }
 
+    /**
+     * Creates an exchange filter that applies the response timeout of the
+     * MCP MIR operation being performed. Operations without a specific
+     * timeout fall back to the default response timeout of the connector.
+     *
+     * @return the response timeout exchange filter
+     */
+    protected ExchangeFilterFunction applyResponseTimeout() {
+        return (request, next) -> {
+            final Duration responseTimeout = request.attribute(OPERATION_ATTRIBUTE)
+                    .map(McpOperation.class::cast)
+                    .map(this::getResponseTimeout)
+                    .orElse(null);
+            if(Objects.isNull(responseTimeout)) {
+                return next.exchange(request);
+            }
+            return next.exchange(ClientRequest.from(request)
+                    .httpRequest(httpRequest -> Optional.ofNullable(httpRequest.<HttpClientRequest>getNativeRequest())
+                            .ifPresent(nativeRequest -> nativeRequest.responseTimeout(responseTimeout)))
+                    .build());
+        };
+    }
+
+    /**
+     * Creates an exchange filter that records the latency of every MCP MIR
+     * call in the meter registry, tagged by the MCP MIR operation, the HTTP
+     * method and the response status.
+     *
+     * @return the MCP latency recording exchange filter
+     */
+    protected ExchangeFilterFunction recordMcpLatency() {
+        return (request, next) -> {
+            if(Objects.isNull(this.meterRegistry)) {
+                return next.exchange(request);
+            }
+            final String operation = request.attribute(OPERATION_ATTRIBUTE)
+                    .map(String::valueOf)
+                    .orElse("UNKNOWN");
+            final long start = System.nanoTime();
+            return next.exchange(request)
+                    .doOnNext(response -> this.recordMcpLatency(operation, request.method().name(), String.valueOf(response.statusCode().value()), start))
+                    .doOnError(ex -> this.recordMcpLatency(operation, request.method().name(), ex.getClass().getSimpleName(), start));
+        };
+    }
+
+    /**
+     * Records the latency of an MCP MIR call in the meter registry.
+     *
+     * @param operation the MCP MIR operation
+     * @param method the HTTP method
+     * @param status the response status, or the error type
+     * @param start the start time of the call in nanoseconds
+     */
+    protected void recordMcpLatency(String operation, String method, String status, long start) {
+        Timer.builder("ckeeper.mcp.client.requests")
+                .description("The latency of the MCP MIR calls")
+                .tag("operation", operation)
+                .tag("method", method)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts an MCP MIR certificate operation in the meter registry, if one
+     * is available, tagged by the entity type and the result.
+     *
+     * @param operation the certificate operation, i.e. issue or revoke
+     * @param mcpEntityType the MCP entity type
+     * @param result the result of the operation
+     */
+    protected void countMcpCertificateOperation(String operation, McpEntityType mcpEntityType, String result) {
+        if(Objects.isNull(this.meterRegistry)) {
+            return;
+        }
+        Counter.builder("ckeeper.mcp.certificates")
+                .description("The number of MCP MIR certificate operations")
+                .tag("operation", operation)
+                .tag("entity.type", mcpEntityType.getValue())
+                .tag("result", result)
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Returns the response timeout of the provided MCP MIR operation.
+     *
+     * @param operation the MCP MIR operation
+     * @return the response timeout of the operation
+     */
+    protected Duration getResponseTimeout(McpOperation operation) {
+        return switch (operation) {
+            case ISSUE -> Duration.ofMillis(this.issueResponseTimeoutMs);
+            case PROBE -> Duration.ofMillis(this.probeResponseTimeoutMs);
+            default -> Duration.ofMillis(this.responseTimeoutMs);
+        };
+    }
+
+    /**
+     * Creates an exchange filter that feeds the outcome of every MCP MIR call
+     * into the MCP circuit breaker. Connection errors and server errors are
+     * recorded as failures, while any other response means that the MCP MIR
+     * is reachable. The connectivity probe calls are skipped, since these
+     * record their own outcome.
+     *
+     * @return the MCP outcome recording exchange filter
+     */
+    protected ExchangeFilterFunction recordMcpOutcome() {
+        return (request, next) -> {
+            if(request.attribute(OPERATION_ATTRIBUTE).filter(McpOperation.PROBE::equals).isPresent()) {
+                return next.exchange(request);
+            }
+            return next.exchange(request)
+                    .doOnNext(response -> {
+                        if(response.statusCode().is5xxServerError()) {
+                            this.mcpCircuitBreaker.recordFailure();
+                        } else {
+                            this.mcpCircuitBreaker.recordSuccess();
+                        }
+                    })
+                    .doOnError(ex -> this.mcpCircuitBreaker.recordFailure());
+        };
+    }
+
     /**
      * Retrieves the MCP entity object identified by the provided MRN from the
      * MCP MIR if successful. Otherwise, a DataNotFoundException will be thrown.
@@ -187,18 +500,30 @@ public class McpService {
     public <T extends McpEntityBase> T getMcpEntity(@NotNull String mrn,
                                                     String version,
                                                     @NotNull Class<T> entityClass) throws McpConnectivityException {
-        // Figure our the type of entity we are working on
-        final McpEntityType mcpEntityType = McpEntityType.fromEntityClass(entityClass);
-        log.debug("Request to get MCP {} with MRN {}", mcpEntityType.getValue(), mrn);
+        return this.await(this.getMcpEntityAsync(mrn, version, entityClass));
+    }
 
+    /**
+     * Retrieves the MCP entity object identified by the provided MRN from the
+     * MCP MIR without blocking. If not found, the returned publisher will
+     * signal a DataNotFoundException.
+     *
+     * @param mrn       The MRN of the MCP entity to be retrieved
+     * @return the publisher of the retrieved MCP entity object
+     */
+    public <T extends McpEntityBase> Mono<T> getMcpEntityAsync(@NotNull String mrn,
+                                                               String version,
+                                                               @NotNull Class<T> entityClass) {
         // Make sure that the service is up first
-        this.checkMcpMirConnectivity();
+        return this.checkMcpMirConnectivityAsync().then(Mono.defer(() -> {
+            // Figure our the type of entity we are working on
+            final McpEntityType mcpEntityType = McpEntityType.fromEntityClass(entityClass);
+            log.debug("Request to get MCP {} with MRN {}", mcpEntityType.getValue(), mrn);
 
-        // Make sure the MCP device MRN has the right prefix
-        final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
+            // Make sure the MCP device MRN has the right prefix
+            final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
 
-        // And get the MCP entity
-        try {
+            // And get the MCP entity
             return this.mcpMirClient.get()
                     .uri(mcpEntityType.getValue() + "/" +
                             fullMrn +
@@ -207,13 +532,12 @@ public class McpService {
                                     .map(t -> String.format("/%s", version))
                                     .orElse(""))
                     .accept(MediaType.APPLICATION_JSON)
+                    .attribute(OPERATION_ATTRIBUTE, McpOperation.GET)
                     .retrieve()
                     .bodyToMono(entityClass)
-                    .blockOptional()
-                    .orElseThrow(() -> new DataNotFoundException(String.format("Failed to retrieve the requested MRN entity with MRN: %s", fullMrn)));
-        } catch (WebClientResponseException ex) {
-            throw new DataNotFoundException((ex.getMessage()));
-        }
+                    .onErrorMap(WebClientResponseException.class, ex -> new DataNotFoundException(ex.getMessage()))
+                    .switchIfEmpty(Mono.error(() -> new DataNotFoundException(String.format("Failed to retrieve the requested MRN entity with MRN: %s", fullMrn))));
+        }));
     }
 
     /**
@@ -225,37 +549,46 @@ public class McpService {
      * @throws McpConnectivityException if the connection to the MCP is not active
      */
     public <T extends McpEntityBase> T createMcpEntity(@NotNull T mcpEntity) throws McpConnectivityException {
-        // Figure our the type of entity we are working on
-        McpEntityType mcpEntityType = McpEntityType.fromEntityClass(mcpEntity.getClass());
-        log.debug("Request to create a new MCP {} with MRN {}", mcpEntityType.getValue(), mcpEntity.getMrn());
+        return this.await(this.createMcpEntityAsync(mcpEntity));
+    }
 
+    /**
+     * Creates a new MCP entity object into the MCP MIR without blocking. If
+     * the creation fails, the returned publisher will signal a
+     * SavingFailedException.
+     *
+     * @param mcpEntity     The MCP entity object to be created
+     * @return the publisher of the created MCP entity object
+     */
+    public <T extends McpEntityBase> Mono<T> createMcpEntityAsync(@NotNull T mcpEntity) {
         // Make sure that the service is up first
-        this.checkMcpMirConnectivity();
+        return this.checkMcpMirConnectivityAsync().then(Mono.defer(() -> {
+            // Figure our the type of entity we are working on
+            McpEntityType mcpEntityType = McpEntityType.fromEntityClass(mcpEntity.getClass());
+            log.debug("Request to create a new MCP {} with MRN {}", mcpEntityType.getValue(), mcpEntity.getMrn());
 
-        // Sanity Check
-        Optional.of(mcpEntity)
-                .filter(d -> StringUtils.isNotBlank(d.getMrn()))
-                .orElseThrow(() -> new SavingFailedException("Cannot create new devices in the MCP without an MRN"));
+            // Sanity Check
+            Optional.of(mcpEntity)
+                    .filter(d -> StringUtils.isNotBlank(d.getMrn()))
+                    .orElseThrow(() -> new SavingFailedException("Cannot create new devices in the MCP without an MRN"));
 
-        // Make sure the MCP device MRN has the right prefix
-        final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mcpEntity.getMrn());
-        mcpEntity.setMrn(fullMrn);
+            // Make sure the MCP device MRN has the right prefix
+            final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mcpEntity.getMrn());
+            mcpEntity.setMrn(fullMrn);
 
-        // And create the MCP entity
-        try {
+            // And create the MCP entity
             return this.mcpMirClient.post()
                     .uri(mcpEntityType.getValue())
                     .contentType(MediaType.APPLICATION_JSON)
                     .accept(MediaType.APPLICATION_JSON)
                     .body(BodyInserters.fromValue(mcpEntity))
+                    .attribute(OPERATION_ATTRIBUTE, McpOperation.CREATE)
                     .retrieve()
                     .bodyToMono(mcpEntityType.getEntityClass())
-                    .blockOptional()
                     .map(o -> (T) o)
-                    .orElseThrow(() -> new SavingFailedException(String.format("Failed to create the provided MCP entity with MRN: %s", mcpEntity.getMrn())));
-        } catch (WebClientException ex) {
-            throw new SavingFailedException(ex.getMessage());
-        }
+                    .onErrorMap(WebClientException.class, ex -> new SavingFailedException(ex.getMessage()))
+                    .switchIfEmpty(Mono.error(() -> new SavingFailedException(String.format("Failed to create the provided MCP entity with MRN: %s", mcpEntity.getMrn()))));
+        }));
     }
 
     /**
@@ -270,24 +603,37 @@ public class McpService {
      */
     public <T extends McpEntityBase> T updateMcpEntity(@NotNull String mrn,
                                                        @NotNull T mcpEntity) throws McpConnectivityException {
-        // Figure our the type of entity we are working on
-        McpEntityType mcpEntityType = McpEntityType.fromEntityClass(mcpEntity.getClass());
-        log.debug("Request to update a existing MCP {} with MRN {}", mcpEntityType.getValue(), mcpEntity.getMrn());
+        return this.await(this.updateMcpEntityAsync(mrn, mcpEntity));
+    }
 
+    /**
+     * Updates the MRN entity identified by the provided MRN in the MCP MIR
+     * without blocking. Once updated, the full entity is retrieved again. If
+     * the update fails, the returned publisher will signal a
+     * SavingFailedException.
+     *
+     * @param mrn       The MRN of the MCP entity to be updated
+     * @param mcpEntity The MCP entity to be updated
+     * @return the publisher of the updated version of the MCP entity object
+     */
+    public <T extends McpEntityBase> Mono<T> updateMcpEntityAsync(@NotNull String mrn,
+                                                                  @NotNull T mcpEntity) {
         // Make sure that the service is up first
-        this.checkMcpMirConnectivity();
+        return this.checkMcpMirConnectivityAsync().then(Mono.defer(() -> {
+            // Figure our the type of entity we are working on
+            McpEntityType mcpEntityType = McpEntityType.fromEntityClass(mcpEntity.getClass());
+            log.debug("Request to update a existing MCP {} with MRN {}", mcpEntityType.getValue(), mcpEntity.getMrn());
 
-        // Sanity Check
-        Optional.of(mcpEntity)
-                .filter(d -> StringUtils.isNotBlank(d.getMrn()))
-                .orElseThrow(() -> new SavingFailedException("Cannot update devices in the MCP without an MRN"));
+            // Sanity Check
+            Optional.of(mcpEntity)
+                    .filter(d -> StringUtils.isNotBlank(d.getMrn()))
+                    .orElseThrow(() -> new SavingFailedException("Cannot update devices in the MCP without an MRN"));
 
-        // Make sure the MCP device MRN has the right prefix
-        final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
+            // Make sure the MCP device MRN has the right prefix
+            final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
 
-        // And update the MCP entity
-        try {
-            this.mcpMirClient.put()
+            // And update the MCP entity
+            return this.mcpMirClient.put()
                     .uri(mcpEntityType.getValue() + "/" +
                             fullMrn +
                             Optional.of(mcpEntityType)
@@ -297,25 +643,23 @@ public class McpService {
                     .contentType(MediaType.APPLICATION_JSON)
                     .accept(MediaType.APPLICATION_JSON)
                     .body(BodyInserters.fromValue(mcpEntity))
+                    .attribute(OPERATION_ATTRIBUTE, McpOperation.UPDATE)
                     .retrieve()
                     .toBodilessEntity()
                     .filter(response -> response.getStatusCode().is2xxSuccessful())
-                    .blockOptional()
-                    .orElseThrow(() -> new SavingFailedException(String.format("Failed to update the provided MCP entity with MRN: %s", mcpEntity.getMrn())));
-        } catch (WebClientResponseException ex) {
-            throw new SavingFailedException(ex.getMessage());
-        }
-
-        // Once updated, we can retrieve the full entity again
-        return (T) this.getMcpEntity(
-                mcpEntity.getMrn(),
-                Optional.of(mcpEntity)
-                        .filter(McpServiceDto.class::isInstance)
-                        .map(McpServiceDto.class::cast)
-                        .map(McpServiceDto::getInstanceVersion)
-                        .orElse(null),
-                mcpEntity.getClass()
-        );
+                    .onErrorMap(WebClientResponseException.class, ex -> new SavingFailedException(ex.getMessage()))
+                    .switchIfEmpty(Mono.error(() -> new SavingFailedException(String.format("Failed to update the provided MCP entity with MRN: %s", mcpEntity.getMrn()))))
+                    // Once updated, we can retrieve the full entity again
+                    .flatMap(response -> this.getMcpEntityAsync(
+                            mcpEntity.getMrn(),
+                            Optional.of(mcpEntity)
+                                    .filter(McpServiceDto.class::isInstance)
+                                    .map(McpServiceDto.class::cast)
+                                    .map(McpServiceDto::getInstanceVersion)
+                                    .orElse(null),
+                            mcpEntity.getClass()))
+                    .map(o -> (T) o);
+        }));
     }
 
     /**
@@ -329,18 +673,30 @@ public class McpService {
     public <T extends McpEntityBase> boolean deleteMcpEntity(@NotNull String mrn,
                                                              String version,
                                                              @NotNull Class<T> entityClass) throws McpConnectivityException {
-        // Figure our the type of entity we are working on
-        McpEntityType mcpEntityType = McpEntityType.fromEntityClass(entityClass);
-        log.debug("Request to delete MCP {} with MRN {}", mcpEntityType.getValue(), mrn);
+        return this.await(this.deleteMcpEntityAsync(mrn, version, entityClass));
+    }
 
+    /**
+     * Delete the MRN entity identified by the provided MRN from the MCP
+     * MIR without blocking. If the entity does not exist, the returned
+     * publisher will signal a DeletingFailedException.
+     *
+     * @param mrn       The MRN of the MCP entity to be deleted
+     * @return the publisher of whether the operation was successful or not
+     */
+    public <T extends McpEntityBase> Mono<Boolean> deleteMcpEntityAsync(@NotNull String mrn,
+                                                                        String version,
+                                                                        @NotNull Class<T> entityClass) {
         // Make sure that the service is up first
-        this.checkMcpMirConnectivity();
+        return this.checkMcpMirConnectivityAsync().then(Mono.defer(() -> {
+            // Figure our the type of entity we are working on
+            McpEntityType mcpEntityType = McpEntityType.fromEntityClass(entityClass);
+            log.debug("Request to delete MCP {} with MRN {}", mcpEntityType.getValue(), mrn);
 
-        // Make sure the MCP device MRN has the right prefix
-        final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
+            // Make sure the MCP device MRN has the right prefix
+            final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
 
-        // And delete the MCP entity
-        try {
+            // And delete the MCP entity
             return this.mcpMirClient.delete()
                     .uri(mcpEntityType.getValue() + "/" +
                             fullMrn +
@@ -349,14 +705,13 @@ public class McpService {
                                     .map(t -> String.format("/%s", version))
                                     .orElse(""))
                     .accept(MediaType.APPLICATION_JSON)
+                    .attribute(OPERATION_ATTRIBUTE, McpOperation.DELETE)
                     .retrieve()
                     .toBodilessEntity()
-                    .filter(response -> response.getStatusCode().is2xxSuccessful())
-                    .blockOptional()
-                    .isPresent();
-        } catch (WebClientResponseException ex) {
-            throw new DeletingFailedException((ex.getMessage()));
-        }
+                    .map(response -> response.getStatusCode().is2xxSuccessful())
+                    .onErrorMap(WebClientResponseException.class, ex -> new DeletingFailedException(ex.getMessage()))
+                    .defaultIfEmpty(Boolean.FALSE);
+        }));
     }
 
     /**
@@ -373,25 +728,40 @@ public class McpService {
     public Map<String, X509Certificate> getMcpEntityCertificates(@NotNull McpEntityType mcpEntityType,
                                                                  @NotNull String mrn,
                                                                  String version) throws McpConnectivityException {
+        return this.await(this.getMcpEntityCertificatesAsync(mcpEntityType, mrn, version));
+    }
+
+    /**
+     * Retrieves all the certificates available for a specific MCP entity
+     * registered in the MCP Identity Registry without blocking.
+     *
+     * @param mcpEntityType The MCP entity type
+     * @param mrn           The MCP entity MRN to retrieve the certificates for
+     * @param version       The version (if applicable) of the MCP entity
+     * @return the publisher of the available certificates
+     */
+    public Mono<Map<String, X509Certificate>> getMcpEntityCertificatesAsync(@NotNull McpEntityType mcpEntityType,
+                                                                            @NotNull String mrn,
+                                                                            String version) {
         log.debug("Request to retrieve an existing certificate for the MCP {} with MRN {}", mcpEntityType.getValue(), mrn);
 
         // Get the MCP Entity certificates directly from the MCP MIR
-        return this.getMcpEntity(mrn, version, mcpEntityType.getEntityClass())
-                .getCertificates()
-                .stream()
-                .filter(not(McpCertitifateDto::isRevoked))
-                .map(McpCertitifateDto::getCertificate)
-                .map(s -> s.replace("\\n","\n"))
-                .map(pem -> {
-                    try {
-                        return (X509Certificate) this.certificateFactory.generateCertificate(new ByteArrayInputStream(pem.getBytes()));
-                    } catch (CertificateException ex) {
-                        // Don't include invalid certificates
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(c -> c.getSerialNumber().toString(), Function.identity()));
+        return this.getMcpEntityAsync(mrn, version, mcpEntityType.getEntityClass())
+                .map(mcpEntity -> mcpEntity.getCertificates()
+                        .stream()
+                        .filter(not(McpCertitifateDto::isRevoked))
+                        .map(McpCertitifateDto::getCertificate)
+                        .map(s -> s.replace("\\n","\n"))
+                        .map(pem -> {
+                            try {
+                                return (X509Certificate) this.certificateFactory.generateCertificate(new ByteArrayInputStream(pem.getBytes()));
+                            } catch (CertificateException ex) {
+                                // Don't include invalid certificates
+                                return null;
+                            }
+                        })
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toMap(c -> c.getSerialNumber().toString(), Function.identity())));
     }
 
     /**
@@ -412,19 +782,44 @@ public class McpService {
                                                                    @NotNull String mrn,
                                                                    String version,
                                                                    @NotNull PKCS10CertificationRequest csr) throws McpConnectivityException, IOException {
-        log.debug("Request to issue a new certificate for the MCP {} with MRN {}", mcpEntityType.getValue(), mrn);
+        try {
+            return this.await(this.issueMcpEntityCertificateAsync(mcpEntityType, mrn, version, csr));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
 
+    /**
+     * Requests the MCP MIR to issue a new X509 certificate based on the
+     * provided certificate signing operation without blocking. If the
+     * issuance fails, the returned publisher will signal an
+     * InvalidRequestException.
+     *
+     * @param mcpEntityType The MCP entity type
+     * @param mrn           he MCP device MRN to attach the new certificate to
+     * @param version       The version (if applicable) of the MCP entity
+     * @param csr           The certificate signing request to issue the certificate from
+     * @return the publisher of the signed X.509 certificate
+     */
+    public Mono<Pair<String, X509Certificate>> issueMcpEntityCertificateAsync(@NotNull McpEntityType mcpEntityType,
+                                                                              @NotNull String mrn,
+                                                                              String version,
+                                                                              @NotNull PKCS10CertificationRequest csr) {
         // Make sure that the service is up first
-        this.checkMcpMirConnectivity();
+        return this.checkMcpMirConnectivityAsync().then(Mono.defer(() -> {
+            log.debug("Request to issue a new certificate for the MCP {} with MRN {}", mcpEntityType.getValue(), mrn);
 
-        // Make sure the MCP device MRN has the right prefix
-        final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
-        final String formattedCsr = X509Utils.formatCSR(csr);
+            // Make sure the MCP device MRN has the right prefix
+            final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
+            final String formattedCsr;
+            try {
+                formattedCsr = X509Utils.formatCSR(csr);
+            } catch (IOException ex) {
+                return Mono.error(new UncheckedIOException(ex));
+            }
 
-        // And issue the MCP entity certificate
-        final ResponseEntity<String> responseEntity;
-        try {
-            responseEntity = this.mcpMirClient.post()
+            // And issue the MCP entity certificate
+            return this.mcpMirClient.post()
                     .uri(mcpEntityType.getValue() + "/" +
                             fullMrn +
                             Optional.of(mcpEntityType)
@@ -435,15 +830,27 @@ public class McpService {
                     .contentType(MediaType.TEXT_PLAIN)
                     .accept(MediaType.ALL)
                     .body(BodyInserters.fromValue(formattedCsr))
+                    .attribute(OPERATION_ATTRIBUTE, McpOperation.ISSUE)
                     .retrieve()
                     .toEntity(String.class)
                     .filter(response -> response.getStatusCode().is2xxSuccessful())
-                    .blockOptional()
-                    .orElseThrow(() -> new InvalidRequestException(String.format("Failed to issue a new certificate for entity with MRN: %s", fullMrn)));
-        } catch (WebClientException ex) {
-            throw new InvalidRequestException((ex.getMessage()));
-        }
+                    .onErrorMap(WebClientException.class, ex -> new InvalidRequestException(ex.getMessage()))
+                    .switchIfEmpty(Mono.error(() -> new InvalidRequestException(String.format("Failed to issue a new certificate for entity with MRN: %s", fullMrn))))
+                    .map(responseEntity -> this.parseIssuedCertificate(fullMrn, responseEntity))
+                    .doOnSuccess(certificate -> this.countMcpCertificateOperation("issue", mcpEntityType, "success"))
+                    .doOnError(ex -> this.countMcpCertificateOperation("issue", mcpEntityType, "failure"));
+        }));
+    }
 
+    /**
+     * Parses the response of the MCP MIR certificate issuance operation, to
+     * return the MCP MIR ID and the X.509 certificate object.
+     *
+     * @param fullMrn           The full MRN of the MCP entity the certificate was issued for
+     * @param responseEntity    The MCP MIR certificate issuance response
+     * @return the MCP MIR ID and the X.509 certificate object
+     */
+    protected Pair<String, X509Certificate> parseIssuedCertificate(String fullMrn, ResponseEntity<String> responseEntity) {
         // Now parse the response to return the X.509 certificate object
         final String mcpMirId = Optional.of(responseEntity)
                 .map(ResponseEntity::getHeaders)
@@ -477,16 +884,32 @@ public class McpService {
                                            @NotNull String mrn,
                                            String version,
                                            @NotNull String mcpMirId) throws IOException, McpConnectivityException {
-        log.debug("Request to revoke a certificate for the MCP {} with MRN {}", mcpEntityType.getValue(), mrn);
+        this.await(this.revokeMcpEntityCertificateAsync(mcpEntityType, mrn, version, mcpMirId));
+    }
 
+    /**
+     * Requests the MCP MIR to revoke an existing X509 certificate without
+     * blocking. If the revocation fails, the returned publisher will signal
+     * an InvalidRequestException.
+     *
+     * @param mcpEntityType The MCP entity type
+     * @param mrn           The MRN of the MCP device to revoke the certificate for
+     * @param version       The version (if applicable) of the MCP entity
+     * @param mcpMirId  The MCP MIR ID of the certificate to be revoked
+     * @return the publisher signalling the completion of the revocation
+     */
+    public Mono<Void> revokeMcpEntityCertificateAsync(@NotNull McpEntityType mcpEntityType,
+                                                      @NotNull String mrn,
+                                                      String version,
+                                                      @NotNull String mcpMirId) {
         // Make sure that the service is up first
-        this.checkMcpMirConnectivity();
+        return this.checkMcpMirConnectivityAsync().then(Mono.defer(() -> {
+            log.debug("Request to revoke a certificate for the MCP {} with MRN {}", mcpEntityType.getValue(), mrn);
 
-        // Make sure the MCP device MRN has the right prefix
-        final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
+            // Make sure the MCP device MRN has the right prefix
+            final String fullMrn = this.mcpConfigService.constructMcpEntityMrn(mcpEntityType, mrn);
 
-        try {
-            this.mcpMirClient.post()
+            return this.mcpMirClient.post()
                     .uri(mcpEntityType.getValue() + "/" +
                             fullMrn +
                             Optional.of(mcpEntityType)
@@ -499,13 +922,87 @@ public class McpService {
                     .contentType(MediaType.APPLICATION_JSON)
                     .accept(MediaType.ALL)
                     .body(BodyInserters.fromValue(new McpRevocationRequest("unspecified", String.format("%d", System.currentTimeMillis()))))
+                    .attribute(OPERATION_ATTRIBUTE, McpOperation.REVOKE)
                     .retrieve()
                     .toBodilessEntity()
                     .filter(response -> response.getStatusCode().is2xxSuccessful())
-                    .blockOptional()
-                    .orElseThrow(() -> new InvalidRequestException(String.format("Failed to revoke a new certificate for entity with MRN: %s", fullMrn)));
-        } catch (WebClientResponseException ex) {
-            throw new InvalidRequestException((ex.getMessage()));
+                    .onErrorMap(WebClientResponseException.class, ex -> new InvalidRequestException(ex.getMessage()))
+                    .switchIfEmpty(Mono.error(() -> new InvalidRequestException(String.format("Failed to revoke a new certificate for entity with MRN: %s", fullMrn))))
+                    .doOnSuccess(response -> this.countMcpCertificateOperation("revoke", mcpEntityType, "success"))
+                    .doOnError(ex -> this.countMcpCertificateOperation("revoke", mcpEntityType, "failure"))
+                    .then();
+        }));
+    }
+
+    /**
+     * Checks whether the MCP Identity Registry is currently considered
+     * reachable. This is answered from memory by the MCP circuit breaker,
+     * which is fed by the actual MCP MIR calls and the background
+     * connectivity probe, so no request is sent to the registry.
+     *
+     * @throws McpConnectivityException if the MCP Identity Registry is not reachable
+     */
+    public void checkMcpMirConnectivity() throws McpConnectivityException {
+        if(!this.mcpCircuitBreaker.isAvailable()) {
+            throw new McpConnectivityException("MCP Identity Registry could not be contacted... please make sure you have connected and try again later!");
+        }
+    }
+
+    /**
+     * The non-blocking flavour of the MCP connectivity check. The returned
+     * publisher completes empty if the MCP Identity Registry is considered
+     * reachable, otherwise it signals an McpConnectivityException.
+     *
+     * @return the publisher of the MCP connectivity check
+     */
+    protected Mono<Void> checkMcpMirConnectivityAsync() {
+        return Mono.defer(() -> {
+            try {
+                this.checkMcpMirConnectivity();
+                return Mono.empty();
+            } catch (McpConnectivityException ex) {
+                return Mono.error(ex);
+            }
+        });
+    }
+
+    /**
+     * Blocks on the provided publisher, so that the blocking MCP operations
+     * can be implemented as thin adapters of the non-blocking ones. The MCP
+     * connectivity exceptions are unwrapped, to be reported as before.
+     *
+     * @param mono the publisher to block on
+     * @return the published value
+     * @param <T> the type of the published value
+     * @throws McpConnectivityException if the connection to the MCP is not active
+     */
+    protected <T> T await(Mono<T> mono) throws McpConnectivityException {
+        try {
+            return mono.block();
+        } catch (RuntimeException ex) {
+            if(Exceptions.unwrap(ex) instanceof McpConnectivityException mcpConnectivityException) {
+                throw mcpConnectivityException;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Periodically probes the connectivity to the MCP Identity Registry and
+     * feeds the outcome into the MCP circuit breaker.
+     */
+    @Scheduled(fixedDelayString = "${gla.rad.ckeeper.mcp.circuit.probe.interval-ms:10000}",
+            initialDelayString = "${gla.rad.ckeeper.mcp.circuit.probe.initial-delay-ms:10000}")
+    public void probe() {
+        // Only run when enabled
+        if(!this.probeEnabled) {
+            return;
+        }
+
+        try {
+            this.probeMcpMirConnectivity();
+        } catch (McpConnectivityException ex) {
+            log.debug(ex.getMessage());
         }
     }
 
@@ -514,15 +1011,17 @@ public class McpService {
      * is up and active. We just check the address of an empty device which
      * should basically give as the organisation endpoint. Don't worry about
      * the response or authorisation, we just need to make sure the service is
-     * up, and we can contact it.
+     * up, and we can contact it. The outcome is recorded in the MCP circuit
+     * breaker.
      *
-     * @return Whether the connection to the MCP Identity Registry is possible
+     * @throws McpConnectivityException if the MCP Identity Registry could not be contacted
      */
-    public void checkMcpMirConnectivity() throws McpConnectivityException {
+    public void probeMcpMirConnectivity() throws McpConnectivityException {
         try {
             // Check the MCP connection - Use a GET organisation call
             final Optional<ResponseEntity<Void>> response = this.mcpMirClient.options()
                     .uri(this.mcpConfigService.constructMcpCheckUrl())
+                    .attribute(OPERATION_ATTRIBUTE, McpOperation.PROBE)
                     .retrieve()
                     .toBodilessEntity()
                     .blockOptional();
@@ -531,8 +1030,10 @@ public class McpService {
             assert response.get().getStatusCode().is2xxSuccessful();
         } catch (WebClientException | AssertionError ex) {
             log.trace(ex.getMessage(), ex);
+            this.mcpCircuitBreaker.recordFailure();
             throw new McpConnectivityException("MCP Identity Registry could not be contacted... please make sure you have connected and try again later!");
         }
+        this.mcpCircuitBreaker.recordSuccess();
     }
 
     /**
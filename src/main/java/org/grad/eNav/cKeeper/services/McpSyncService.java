@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.cKeeper.components.MrnEntityLeases;
+import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The MCP Sync Service Class
+ *
+ * Service Implementation for the background reconciliation of the local MRN
+ * entity certificates with the MCP Identity Registry. This takes the MCP MIR
+ * round-trips out of the signing request path, which should only read the
+ * local state. Entities that have not been synced within the configured
+ * staleness interval are refreshed by a periodic scheduler, while the request
+ * path can ask for an asynchronous refresh without blocking.
+ * <p/>
+ * The periodic sweep runs on a dedicated executor, so that the application
+ * scheduler is never tied up by the MCP MIR round-trips. It pages through
+ * the MRN entity IDs, hands the stale entities over to the sync executor,
+ * and only runs on a single node of the cluster at any given time, guarded
+ * by a cluster-wide lease.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Service
+@Slf4j
+public class McpSyncService {
+
+    /**
+     * The ID of the cluster-wide lease guarding the sweeps. The MRN entity
+     * IDs start from one, so this never clashes with an entity.
+     */
+    public static final BigInteger SYNC_LEASE_ID = BigInteger.ONE.negate();
+
+    /**
+     * Whether the background MCP sync is enabled.
+     */
+    @Value("${gla.rad.ckeeper.mcp.sync.enabled:true}")
+    boolean enabled;
+
+    /**
+     * The number of seconds after which an entity sync is considered stale.
+     */
+    @Value("${gla.rad.ckeeper.mcp.sync.staleness-seconds:300}")
+    long stalenessSeconds;
+
+    /**
+     * The number of threads used for the asynchronous sync requests.
+     */
+    @Value("${gla.rad.ckeeper.mcp.sync.threads:2}")
+    int threads;
+
+    /**
+     * The number of MRN entities checked in each page of the sweep.
+     */
+    @Value("${gla.rad.ckeeper.mcp.sync.page-size:500}")
+    int pageSize;
+
+    /**
+     * The MRN Entity Repo.
+     */
+    @Autowired
+    MRNEntityRepo mrnEntityRepo;
+
+    /**
+     * The Certificate Service.
+     */
+    @Autowired
+    CertificateService certificateService;
+
+    /**
+     * The MRN Entity Leases.
+     */
+    @Autowired
+    MrnEntityLeases mrnEntityLeases;
+
+    // Service Variables
+    protected final Map<BigInteger, Instant> lastSynced = new ConcurrentHashMap<>();
+    protected final Set<BigInteger> inFlight = ConcurrentHashMap.newKeySet();
+    protected final AtomicBoolean sweeping = new AtomicBoolean();
+    protected ExecutorService syncExecutor;
+    protected ExecutorService sweepExecutor;
+
+    /**
+     * Once the service has been initialised, we can create the executors that
+     * will be handling the sweeps and the asynchronous sync requests.
+     */
+    @PostConstruct
+    public void init() {
+        this.syncExecutor = Executors.newFixedThreadPool(Math.max(this.threads, 1), runnable -> {
+            final Thread thread = new Thread(runnable, "mcp-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweepExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "mcp-sync-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * When shutting down the application we need to make sure that the
+     * sweep and the asynchronous sync executors are terminated.
+     */
+    @PreDestroy
+    public void destroy() {
+        log.info("MCP sync service is shutting down...");
+        Optional.ofNullable(this.sweepExecutor).ifPresent(ExecutorService::shutdownNow);
+        Optional.ofNullable(this.syncExecutor).ifPresent(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Periodically goes through all the MRN entities and syncs the ones that
+     * have not been synced within the configured staleness interval. The
+     * sweep is handed over to the sweep executor, so this returns straight
+     * away. If another node is already sweeping, this sweep is skipped.
+     */
+    @Scheduled(fixedDelayString = "${gla.rad.ckeeper.mcp.sync.interval-ms:60000}",
+            initialDelayString = "${gla.rad.ckeeper.mcp.sync.initial-delay-ms:30000}")
+    public void reconcile() {
+        // Only run when enabled and not already sweeping
+        if(!this.enabled || !this.sweeping.compareAndSet(false, true)) {
+            return;
+        }
+
+        // Submit the sweep, which only goes ahead if no other node is sweeping already
+        try {
+            this.sweepExecutor.execute(() -> {
+                try {
+                    if(!this.mrnEntityLeases.tryWithLease(SYNC_LEASE_ID, this::sweep)) {
+                        log.debug("MCP sync service sweep is already running on another node, skipping");
+                    }
+                } catch (Exception ex) {
+                    log.error("MCP sync service sweep failed: {}", ex.getMessage());
+                } finally {
+                    this.sweeping.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.warn("MCP sync service sweep rejected");
+            this.sweeping.set(false);
+        }
+    }
+
+    /**
+     * Pages through all the MRN entity IDs and syncs the stale entities on
+     * the sync executor. Each page is completed before the next one is
+     * loaded, so that the sync executor queue stays bounded, and the lease
+     * is held until all the syncs of the sweep are done. Once all the MRN
+     * entities have been checked, the sync times of the ones that no longer
+     * exist are dropped.
+     */
+    protected void sweep() {
+        log.debug("MCP sync service is reconciling the stale MRN entities");
+        final Set<BigInteger> mrnEntityIds = new HashSet<>();
+        BigInteger afterId = BigInteger.ZERO;
+        List<BigInteger> ids;
+        while(!(ids = this.mrnEntityRepo.findIdsAfter(afterId, PageRequest.of(0, Math.max(this.pageSize, 1)))).isEmpty()) {
+            mrnEntityIds.addAll(ids);
+            CompletableFuture.allOf(ids.stream()
+                    .filter(this::isStale)
+                    .filter(this.inFlight::add)
+                    .map(this::submitSync)
+                    .toArray(CompletableFuture[]::new))
+                    .join();
+            afterId = ids.get(ids.size() - 1);
+        }
+
+        // Drop the sync times of the deleted MRN entities
+        this.lastSynced.keySet().retainAll(mrnEntityIds);
+    }
+
+    /**
+     * Requests an asynchronous sync of the MRN entity identified by the
+     * provided ID. If the entity has been synced recently, or a sync is
+     * already in progress, nothing will happen. This operation never blocks
+     * the caller.
+     *
+     * @param mrnEntityId the MRN Entity ID
+     */
+    public void requestSync(@NotNull BigInteger mrnEntityId) {
+        // Only run when enabled and required
+        if(!this.enabled || !this.isStale(mrnEntityId) || !this.inFlight.add(mrnEntityId)) {
+            return;
+        }
+
+        // Submit the sync operation
+        this.submitSync(mrnEntityId);
+    }
+
+    /**
+     * Records that the MRN entity identified by the provided ID has just been
+     * synced by some other means (e.g. the bulk MCP reconciliation), so that
+     * it is not synced again before it gets stale.
+     *
+     * @param mrnEntityId the MRN Entity ID
+     */
+    public void markSynced(@NotNull BigInteger mrnEntityId) {
+        this.lastSynced.put(mrnEntityId, Instant.now());
+    }
+
+    /**
+     * Drops the sync time of the MRN entity identified by the provided ID,
+     * once the entity has been deleted.
+     *
+     * @param mrnEntityId the MRN Entity ID
+     */
+    public void forget(@NotNull BigInteger mrnEntityId) {
+        this.lastSynced.remove(mrnEntityId);
+    }
+
+    /**
+     * Checks whether the MRN entity identified by the provided ID has never
+     * been synced, or the last sync is older than the staleness interval.
+     *
+     * @param mrnEntityId the MRN Entity ID
+     * @return whether the MRN entity sync is stale
+     */
+    public boolean isStale(@NotNull BigInteger mrnEntityId) {
+        return Optional.ofNullable(this.lastSynced.get(mrnEntityId))
+                .map(instant -> instant.plus(Duration.ofSeconds(this.stalenessSeconds)))
+                .map(Instant.now()::isAfter)
+                .orElse(Boolean.TRUE);
+    }
+
+    /**
+     * Submits the sync operation of the MRN entity identified by the provided
+     * ID to the sync executor. The entity should already be marked as in
+     * flight, and if the operation is rejected, it will be unmarked.
+     *
+     * @param mrnEntityId the MRN Entity ID
+     * @return the completion of the sync operation
+     */
+    protected CompletableFuture<Void> submitSync(@NotNull BigInteger mrnEntityId) {
+        try {
+            return CompletableFuture.runAsync(() -> this.sync(mrnEntityId), this.syncExecutor);
+        } catch (RejectedExecutionException ex) {
+            log.warn("MCP sync request rejected for MRN entity {}", mrnEntityId);
+            this.inFlight.remove(mrnEntityId);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Performs the actual sync operation of the MRN entity identified by the
+     * provided ID with the MCP MIR. The sync time is only recorded if the
+     * operation was successful, so that failed attempts are retried.
+     *
+     * @param mrnEntityId the MRN Entity ID
+     */
+    protected void sync(@NotNull BigInteger mrnEntityId) {
+        try {
+            if(this.certificateService.syncMrnEntityWithMcpMir(mrnEntityId)) {
+                this.lastSynced.put(mrnEntityId, Instant.now());
+            }
+        } catch (Exception ex) {
+            log.error("MCP sync failed for MRN entity {}: {}", mrnEntityId, ex.getMessage());
+        } finally {
+            this.inFlight.remove(mrnEntityId);
+        }
+    }
+
+}
@@ -18,11 +18,12 @@ package org.grad.eNav.cKeeper.services;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.search.Sort;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache;
 import org.grad.eNav.cKeeper.exceptions.*;
+import org.grad.eNav.cKeeper.models.domain.McpOutboxEntry;
 import org.grad.eNav.cKeeper.models.domain.MrnEntity;
 import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
 import org.grad.eNav.cKeeper.models.dtos.datatables.DtPagingRequest;
-import org.grad.eNav.cKeeper.models.dtos.mcp.*;
 import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
 import org.hibernate.search.backend.lucene.LuceneExtension;
 import org.hibernate.search.engine.search.query.SearchQuery;
@@ -35,18 +36,21 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import jakarta.persistence.EntityManager;
 import jakarta.validation.constraints.NotNull;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.math.BigInteger;
 import java.util.*;
 
 /**
  * The MRN Entity Service Class
  *
- * Service Implementation for managing MRN Entities.
+ * Service Implementation for managing MRN Entities. The corresponding MCP
+ * Identity Registry updates are not performed directly, but recorded in the
+ * MCP outbox and replayed asynchronously by the {@link McpOutboxService}.
  *
  * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
  */
@@ -61,10 +65,16 @@ public class MrnEntityService {
     EntityManager entityManager;
 
     /**
-     * The MCP Service.
+     * The MCP Outbox Service.
      */
     @Autowired
-    McpService mcpService;
+    McpOutboxService mcpOutboxService;
+
+    /**
+     * The MCP Sync Service.
+     */
+    @Autowired
+    McpSyncService mcpSyncService;
 
     /**
      * The MRN Entity Repo
@@ -72,6 +82,12 @@ public class MrnEntityService {
     @Autowired
     MRNEntityRepo mrnEntityRepo;
 
+    /**
+     * The Signature Certificate Cache.
+     */
+    @Autowired
+    SignatureCertificateCache signatureCertificateCache;
+
     // Service Variables
     private final String[] searchFields = new String[] {
             "name",
@@ -185,61 +201,20 @@ public class MrnEntityService {
             throw new ValidationException(String.format("No version provided by the MRN Entity service with MRN: %s", mrnEntity.getMrn()));
         }
 
-        // Save the MRN Entity
+        // Updated entities should not be served from the cached signature certificates
+        Optional.ofNullable(mrnEntity.getId()).ifPresent(this::invalidateCachedCertificates);
+
+        // Save the MRN Entity and record the MCP MIR update in the outbox
         return Optional.of(mrnEntity)
                 .map(entity -> {
-                    McpEntityBase mcpEntity;
-                    try {
-                        // First try to identify if the entity exists in the MRN
-                        // MIR, and if no we are going to create it, otherwise
-                        // update it
-                        try {
-                            mcpEntity = this.mcpService.getMcpEntity(entity.getMrn(), entity.getVersion(), entity.getEntityType().getEntityClass());
-                        } catch(DataNotFoundException ex) {
-                            this.log.warn("MCP entry for the MRN device with MRN {} not found", entity.getMrn());
-                            mcpEntity = entity.getEntityType().getEntityClass().getDeclaredConstructor().newInstance();
-                            mcpEntity.setMrn(entity.getMrn());
-                        }
-
-                        // We can only update the name of the MCP entity (and version for new services)
-                        if(McpDeviceDto.class.isInstance(mcpEntity)) {
-                            ((McpDeviceDto)mcpEntity).setName(entity.getName());
-                        } else if(McpServiceDto.class.isInstance(mcpEntity)) {
-                            ((McpServiceDto)mcpEntity).setName(entity.getName());
-                            if(Objects.isNull(mcpEntity.getId())) {
-                                ((McpServiceDto) mcpEntity).setInstanceVersion(entity.getVersion());
-                            }
-                        } else if(McpVesselDto.class.isInstance(mcpEntity)) {
-                            ((McpVesselDto)mcpEntity).setName(entity.getName());
-                        } else if(McpUserDto.class.isInstance(mcpEntity)) {
-                            ((McpUserDto)mcpEntity).setFirstName(entity.getName().split(" ")[0]);
-                            ((McpUserDto)mcpEntity).setLastName(entity.getName().split(" ")[1]);
-                        } else if(McpRoleDto.class.isInstance(mcpEntity)) {
-                            ((McpRoleDto)mcpEntity).setRoleName(entity.getName());
-                        }
-
-                        // Choose whether to create or update
-                        if(Objects.isNull(mcpEntity.getId())) {
-                            mcpEntity = this.mcpService.createMcpEntity(mcpEntity);
-                        } else {
-                            mcpEntity = this.mcpService.updateMcpEntity(mcpEntity.getMrn(), mcpEntity);
-                        }
-
-                        // Always read the MRN from the MCP MIR
-                        entity.setMrn(mcpEntity.getMrn());
-                        entity.setVersion(Optional.of(entity).map(MrnEntity::getVersion).orElse(""));
-                    } catch (McpConnectivityException ex) {
-                        // If the MCP connectivity failed, don't continue
-                        log.error(ex.getMessage());
-                        return null;
-                    } catch (InvocationTargetException | InstantiationException | IllegalAccessException | NoSuchMethodException ex) {
-                        // If we get a reflections change, also don't continue
-                        log.error(ex.getMessage());
-                        return null;
-                    }
+                    entity.setVersion(Optional.of(entity).map(MrnEntity::getVersion).orElse(""));
                     return entity;
                 })
                 .map(this.mrnEntityRepo::save)
+                .map(entity -> {
+                    this.mcpOutboxService.record(entity, McpOutboxEntry.Operation.SAVE);
+                    return entity;
+                })
                 .orElseThrow(() ->
                         new SavingFailedException(String.format("Cannot save invalid MRN Entity object"))
                 );
@@ -259,18 +234,10 @@ public class MrnEntityService {
             throw new DataNotFoundException(String.format("No MRN Entity found for the provided ID: %d", id));
         }
 
-        // Check and update the MCP Identity Registry
+        // Record the MCP Identity Registry update in the outbox
         this.mrnEntityRepo.findById(id)
                 .map(entity -> {
-                    try {
-                        this.mcpService.deleteMcpEntity(entity.getMrn(), entity.getVersion(), entity.getEntityType().getEntityClass());
-                    } catch(DeletingFailedException ex) {
-                        // Not found? Not problem!
-                        log.debug(ex.getMessage());
-                    } catch(McpConnectivityException ex) {
-                        // If the MCP connectivity failed, don't worry continue
-                        log.debug(ex.getMessage());
-                    }
+                    this.mcpOutboxService.record(entity, McpOutboxEntry.Operation.DELETE);
                     return entity.getId();
                 })
                 .orElseThrow(() ->
@@ -278,6 +245,8 @@ public class MrnEntityService {
                 );
         // Finally, delete the station node
         this.mrnEntityRepo.deleteById(id);
+        this.invalidateCachedCertificates(id);
+        this.mcpSyncService.forget(id);
     }
 
     /**
@@ -371,4 +340,25 @@ public class MrnEntityService {
                 .toQuery();
     }
 
+    /**
+     * Drops the cached signature certificates of the MRN entity specified by
+     * the provided ID, once the current transaction commits, so that they
+     * cannot be rebuilt from the old state in the meantime. If no transaction
+     * is active, they are dropped straight away.
+     *
+     * @param mrnEntityId the ID of the MRN entity
+     */
+    protected void invalidateCachedCertificates(BigInteger mrnEntityId) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    signatureCertificateCache.invalidateMrnEntity(mrnEntityId);
+                }
+            });
+        } else {
+            this.signatureCertificateCache.invalidateMrnEntity(mrnEntityId);
+        }
+    }
+
 }
@@ -16,13 +16,28 @@
 
 package org.grad.eNav.cKeeper.services;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.cKeeper.components.RequestCoalescer;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache.SignatureCertificateBundle;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache.SignatureCertificateKey;
+import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
 import org.grad.eNav.cKeeper.exceptions.InvalidRequestException;
 import org.grad.eNav.cKeeper.exceptions.ValidationException;
 import org.grad.eNav.cKeeper.models.domain.Certificate;
 import org.grad.eNav.cKeeper.models.domain.MrnEntity;
+import org.grad.eNav.cKeeper.models.domain.Pair;
 import org.grad.eNav.cKeeper.models.domain.SignatureCertificate;
 import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.models.dtos.SignatureBatchVerificationRequestDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureRequestDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureResponseDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureVerificationResponseDto;
 import org.grad.secom.core.utils.SecomPemUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -36,8 +51,17 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
 import java.security.cert.CertificateEncodingException;
 import java.security.spec.InvalidKeySpecException;
-import java.util.Base64;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * The Signature Service Class
@@ -62,6 +86,32 @@ public class SignatureService {
     @Value("${gla.rad.ckeeper.mcp.trustStore.rootCertificate.thumbprintAlgorithm:SHA-1}")
     String rootCertThumbprintAlgorithm;
 
+    /**
+     * The maximum number of items allowed in a batch signature or
+     * verification request.
+     */
+    @Value("${gla.rad.ckeeper.signature.batch.max-size:1000}")
+    int maxBatchSize;
+
+    /**
+     * The number of threads used for processing the batch items (0 for the
+     * number of available processors).
+     */
+    @Value("${gla.rad.ckeeper.signature.batch.threads:0}")
+    int batchThreads;
+
+    /**
+     * The X.509 Certificate Algorithm.
+     */
+    @Value("${gla.rad.ckeeper.x509.cert.algorithm:SHA3-384withECDSA}")
+    String defaultSigningAlgorithm;
+
+    /**
+     * The supported signature algorithms, used to tag the signature metrics.
+     */
+    @Value("${gla.rad.ckeeper.signature.engines.algorithms:SHA3-384withECDSA,SHA256withCVC-ECDSA,SHA256withECDSA}")
+    Set<String> supportedAlgorithms = Set.of("SHA3-384withECDSA", "SHA256withCVC-ECDSA", "SHA256withECDSA");
+
     /**
      * The MRN Entity Service.
      */
@@ -80,6 +130,60 @@ public class SignatureService {
     @Autowired
     McpConfigService mcpConfigService;
 
+    /**
+     * The MCP Sync Service.
+     */
+    @Autowired
+    McpSyncService mcpSyncService;
+
+    /**
+     * The Signature Certificate Cache.
+     */
+    @Autowired
+    SignatureCertificateCache signatureCertificateCache;
+
+    /**
+     * The Request Coalescer.
+     */
+    @Autowired
+    RequestCoalescer requestCoalescer;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    // Service Variables
+    protected final Map<SignatureMeterKey, Timer> signatureTimers = new ConcurrentHashMap<>();
+    protected final Map<SignatureMeterKey, Counter> verificationCounters = new ConcurrentHashMap<>();
+    protected ExecutorService batchExecutor;
+
+    /**
+     * Once the service has been initialised, we can create the executor that
+     * will be processing the items of the batch requests. Unless configured
+     * otherwise, a thread is used per available processor.
+     */
+    @PostConstruct
+    public void init() {
+        final int threads = this.batchThreads > 0 ? this.batchThreads : Runtime.getRuntime().availableProcessors();
+        this.batchExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "signature-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * When shutting down the application we need to make sure that the
+     * batch executor is terminated.
+     */
+    @PreDestroy
+    public void destroy() {
+        log.info("Signature service is shutting down...");
+        Optional.ofNullable(this.batchExecutor).ifPresent(ExecutorService::shutdownNow);
+    }
+
     /**
      * This function will attempt to access the most recent valid certificate
      * to be used for signing and will return its information so that it can
@@ -92,9 +196,71 @@ public class SignatureService {
      * @return the most recent valid certificate for the specified entity
      */
     public SignatureCertificate getSignatureCertificate(@NotNull String entityName, String version, String mmsi, McpEntityType entityType) {
+        return this.getSignatureCertificateBundle(entityName, version, mmsi, entityType).signatureCertificate();
+    }
+
+    /**
+     * This function will attempt to access the most recent valid certificate
+     * to be used for signing and will return it as a bundle, along with its
+     * strong ETag. Since the same entities keep requesting their signature
+     * certificates, the assembled bundles are cached, and only rebuilt when
+     * the certificates of the entity change or expire.
+     * <p/>
+     * Concurrent cache misses for the same entity type, MRN and version are
+     * coalesced, so that only the first caller builds the bundle, while the
+     * rest share its result. The bundle is only cached if the certificates
+     * of the entity have not been invalidated since the build started.
+     *
+     * @param entityName        The name of the entity to retrieve the certificate for
+     * @param version           The version of the service entity to retrieve the certificate for
+     * @param mmsi              The mmsi of the entity to retrieve the certificate for
+     * @param entityType        The type of the entity to retrieve the certificate for
+     * @return the most recent valid certificate bundle for the specified entity
+     */
+    public SignatureCertificateBundle getSignatureCertificateBundle(@NotNull String entityName, String version, String mmsi, McpEntityType entityType) {
+        // First try the signature certificate cache
+        final SignatureCertificateKey key = new SignatureCertificateKey(entityName, version, mmsi, entityType);
+        final SignatureCertificateBundle cachedBundle = this.signatureCertificateCache.get(key);
+        if(Objects.nonNull(cachedBundle)) {
+            // Refresh the MCP MIR state in the background if it's stale
+            this.mcpSyncService.requestSync(cachedBundle.mrnEntityId());
+            return cachedBundle;
+        }
+
+        // Build the bundle once, for all concurrent requests of the same entity
+        final String mrn = this.mcpConfigService.constructMcpEntityMrn(entityType, entityName);
+        final Pair<SignatureCertificateBundle, Long> bundle = this.requestCoalescer.coalesce(
+                "signatureCertificate",
+                new SignatureCertificateFlightKey(entityType, mrn, version),
+                () -> {
+                    final long generation = this.signatureCertificateCache.generation();
+                    return new Pair<>(this.buildSignatureCertificateBundle(entityName, mrn, version, mmsi, entityType), generation);
+                });
+
+        // Cache and return the signature certificate bundle
+        this.signatureCertificateCache.put(key, bundle.getKey(), bundle.getValue());
+        return bundle.getKey();
+    }
+
+    /**
+     * Builds the signature certificate bundle of the specified entity, by
+     * retrieving (or creating) the MRN entity and its most recent valid
+     * certificate.
+     *
+     * @param entityName        The name of the entity to retrieve the certificate for
+     * @param mrn               The MRN of the entity to retrieve the certificate for
+     * @param version           The version of the service entity to retrieve the certificate for
+     * @param mmsi              The mmsi of the entity to retrieve the certificate for
+     * @param entityType        The type of the entity to retrieve the certificate for
+     * @return the most recent valid certificate bundle for the specified entity
+     */
+    protected SignatureCertificateBundle buildSignatureCertificateBundle(@NotNull String entityName, String mrn, String version, String mmsi, McpEntityType entityType) {
         // Get or create a new MRN Entity if it doesn't exist
         final MrnEntity mrnEntity = this.mrnEntityService.getOrCreate(
-                entityName, this.mcpConfigService.constructMcpEntityMrn(entityType, entityName), version, mmsi, entityType);
+                entityName, mrn, version, mmsi, entityType);
+
+        // Refresh the MCP MIR state in the background if it's stale
+        this.mcpSyncService.requestSync(mrnEntity.getId());
 
         // Get the latest or create a certificate if it doesn't exist
         final Certificate certificate = this.certificateService.getLatestOrCreate(
@@ -111,8 +277,12 @@ public class SignatureService {
             throw new ValidationException(ex.getMessage());
         }
 
-        // And return the signature certificate
-        return signatureCertificate;
+        // Assemble the signature certificate bundle
+        return new SignatureCertificateBundle(
+                mrnEntity.getId(),
+                signatureCertificate,
+                certificate.getEndDate(),
+                SignatureCertificateCache.computeETag(signatureCertificate));
     }
 
     /**
@@ -128,15 +298,162 @@ public class SignatureService {
     public byte[] generateEntitySignature(@NotNull BigInteger certificateId,
                                           String algorithm,
                                           @NotNull byte[] payload) {
+        return this.generateEntitySignature(certificateId, null, algorithm, payload);
+    }
+
+    /**
+     * Generates and returns a signature for the provided payload using the
+     * keys from the certificate identified by the provided ID. The entity
+     * type of the certificate, if known, is only used to tag the signing
+     * metrics.
+     *
+     * @param certificateId The ID of the certificate to generate the signature for
+     * @param entityType    The type of the entity the certificate belongs to, if known
+     * @param algorithm     The algorithm to use for generating the signature
+     * @param payload       The payload to be signed
+     * @return The signature for the provided payload
+     */
+    public byte[] generateEntitySignature(@NotNull BigInteger certificateId,
+                                          McpEntityType entityType,
+                                          String algorithm,
+                                          @NotNull byte[] payload) {
+        final long start = System.nanoTime();
+        boolean success = false;
         try {
-            log.debug("Signature service signing payload: {}", Base64.getEncoder().encodeToString(payload));
+            // Only encode the payload for logging if it is actually required
+            if(log.isDebugEnabled()) {
+                log.debug("Signature service signing payload: {}", Base64.getEncoder().encodeToString(payload));
+            }
             final byte[] signature = this.certificateService.signContent(certificateId, algorithm, payload);
-            log.debug("Signature service generated signature: {}", Base64.getEncoder().encodeToString(signature));
+            if(log.isDebugEnabled()) {
+                log.debug("Signature service generated signature: {}", Base64.getEncoder().encodeToString(signature));
+            }
+            success = true;
             return signature;
         } catch (NoSuchAlgorithmException | IOException | InvalidKeySpecException | SignatureException | InvalidKeyException ex) {
             log.error(ex.getMessage());
             throw new InvalidRequestException(ex.getMessage());
+        } finally {
+            this.recordSignatureOperation("ckeeper.signature.sign", "The latency of the signature generation", algorithm, entityType, success ? "success" : "failure", start);
+        }
+    }
+
+    /**
+     * Generates the signatures for a batch of signature requests. Each request
+     * can either identify the signing certificate directly through its ID, or
+     * through the entity name, MMSI, version and type. In the latter case, the
+     * entity and certificate resolution will only take place once for each
+     * distinct entity. Since that might block on the database or the MCP, the
+     * distinct entities are resolved sequentially, and only the signing
+     * operations are then performed in parallel, on the batch executor.
+     * <p/>
+     * Failures are reported per item, through the error field of the
+     * respective response, without failing the whole batch.
+     *
+     * @param signatureRequests the signature requests
+     * @return the signature responses, in the same order as the requests
+     */
+    public List<SignatureResponseDto> generateBatchSignatures(@NotNull List<SignatureRequestDto> signatureRequests) {
+        // Sanity Check
+        if(signatureRequests.size() > this.maxBatchSize) {
+            throw new InvalidRequestException(String.format("The batch signature request exceeds the maximum size of %d items", this.maxBatchSize));
         }
+
+        // Resolve the signing certificates once for each distinct entity
+        final Map<BatchEntityKey, Pair<BigInteger, String>> resolvedEntities = signatureRequests.stream()
+                .filter(Objects::nonNull)
+                .filter(request -> Objects.isNull(request.getCertificateId()))
+                .map(BatchEntityKey::new)
+                .distinct()
+                .collect(Collectors.toMap(Function.identity(), this::resolveBatchEntity));
+
+        // And sign all the payloads in parallel
+        return this.processBatch(signatureRequests.size(), i -> this.generateBatchSignature(signatureRequests.get(i), resolvedEntities));
+    }
+
+    /**
+     * Resolves the signing certificate of a distinct entity in a batch
+     * signature request. The result pair will contain either the certificate
+     * ID as the key, or the resolution error message as the value.
+     *
+     * @param entityKey the key of the entity to be resolved
+     * @return the certificate ID or the resolution error message
+     */
+    protected Pair<BigInteger, String> resolveBatchEntity(BatchEntityKey entityKey) {
+        // Sanity Check
+        if(Objects.isNull(entityKey.entityName())) {
+            return new Pair<>(null, "No certificate ID or entity name provided for signing");
+        }
+
+        // Get the signature certificate for the entity
+        try {
+            return new Pair<>(this.getSignatureCertificate(entityKey.entityName(), entityKey.version(), entityKey.mmsi(), entityKey.entityType()).getCertificateId(), null);
+        } catch (Exception ex) {
+            return new Pair<>(null, Optional.ofNullable(ex.getMessage()).orElse(ex.getClass().getSimpleName()));
+        }
+    }
+
+    /**
+     * Generates the signature for a single item of a batch signature request.
+     * The resolved entities map should provide the certificate ID (or the
+     * resolution error message) of each distinct entity in the batch.
+     *
+     * @param signatureRequest the signature request
+     * @param resolvedEntities the resolved entity certificate IDs or errors
+     * @return the signature response
+     */
+    protected SignatureResponseDto generateBatchSignature(SignatureRequestDto signatureRequest, Map<BatchEntityKey, Pair<BigInteger, String>> resolvedEntities) {
+        final SignatureResponseDto signatureResponse = new SignatureResponseDto();
+
+        // Sanity Check
+        if(Objects.isNull(signatureRequest) || Objects.isNull(signatureRequest.getPayload())) {
+            signatureResponse.setError("No payload provided for signing");
+            return signatureResponse;
+        }
+
+        // Identify the signing certificate
+        final BatchEntityKey entityKey = new BatchEntityKey(signatureRequest);
+        final Pair<BigInteger, String> certificate = Optional.of(signatureRequest)
+                .map(SignatureRequestDto::getCertificateId)
+                .map(id -> new Pair<BigInteger, String>(id, null))
+                .orElseGet(() -> resolvedEntities.get(entityKey));
+        if(Objects.isNull(certificate.getKey())) {
+            signatureResponse.setError(certificate.getValue());
+            return signatureResponse;
+        }
+        signatureResponse.setCertificateId(certificate.getKey());
+
+        // And generate the signature
+        try {
+            final byte[] payload = Base64.getDecoder().decode(signatureRequest.getPayload());
+            final byte[] signature = this.generateEntitySignature(
+                    certificate.getKey(),
+                    Objects.isNull(signatureRequest.getCertificateId()) ? entityKey.entityType() : null,
+                    signatureRequest.getAlgorithm(),
+                    payload);
+            signatureResponse.setSignature(Base64.getEncoder().encodeToString(signature));
+        } catch (Exception ex) {
+            signatureResponse.setError(Optional.ofNullable(ex.getMessage()).orElse(ex.getClass().getSimpleName()));
+        }
+        return signatureResponse;
+    }
+
+    /**
+     * Processes the items of a batch request in parallel on the batch
+     * executor, and collects the results in the order of the items.
+     *
+     * @param size the number of the batch items
+     * @param operation the operation processing the batch item of each index
+     * @return the results of the batch items, in the order of the items
+     * @param <T> the type of the batch item results
+     */
+    protected <T> List<T> processBatch(int size, IntFunction<T> operation) {
+        final List<CompletableFuture<T>> results = IntStream.range(0, size)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> operation.apply(i), this.batchExecutor))
+                .toList();
+        return results.stream()
+                .map(CompletableFuture::join)
+                .toList();
     }
 
     /**
@@ -144,7 +461,8 @@ public class SignatureService {
      * signature is a valid one for the specified content.
      *
      * Note that the content and signature need to be Base64 encoded, coming
-     * from the controller.
+     * from the controller. The verification only uses the existing valid
+     * certificates of the entity, so no new certificates will be generated.
      *
      * @param entityMrn     The entity MRN to get the certificate for
      * @param algorithm     The algorithm to verify the signature with
@@ -155,13 +473,10 @@ public class SignatureService {
     public boolean verifyEntitySignatureByMrn(@NotNull String entityMrn, String algorithm, String b64Content, String b64Signature) {
         return Optional.of(entityMrn)
                 .map(this.mrnEntityService::findOneByMrn)
-                .map(MrnEntity::getId)
-                .map(this.certificateService::getLatestOrCreate)
-                .map(Certificate::getId)
-                .map(id -> {
+                .map(mrnEntity -> {
                     try {
                         log.debug("Signature service verifying payload: {}\n with signature: {}", b64Content, b64Signature);
-                        return this.certificateService.verifyContent(id, algorithm, Base64.getDecoder().decode(b64Content), Base64.getDecoder().decode(b64Signature));
+                        return this.verifyEntityContent(mrnEntity, algorithm, Base64.getDecoder().decode(b64Content), Base64.getDecoder().decode(b64Signature));
                     } catch (Exception ex) {
                         return false;
                     }
@@ -189,4 +504,259 @@ public class SignatureService {
                 .map(mrn -> this.verifyEntitySignatureByMrn(mrn, algorithm, b64Content, b64Signature))
                 .orElse(Boolean.FALSE);
     }
+
+    /**
+     * Verifies a batch of signatures. Each request identifies the entity the
+     * signature belongs to either through its MRN, or its MMSI. The entity
+     * resolution will only take place once for each distinct entity, on the
+     * calling thread, and only the verification operations are then performed
+     * in parallel, on the batch executor. Verification is read-only, so no new
+     * certificates will be generated.
+     * <p/>
+     * Failures are reported per item, through the error field of the
+     * respective response, without failing the whole batch. Just like the
+     * single verification operations, signatures of unknown entities are
+     * simply reported as invalid.
+     *
+     * @param verificationRequests the signature verification requests
+     * @return the verification responses, in the same order as the requests
+     */
+    public List<SignatureVerificationResponseDto> verifyBatchSignatures(@NotNull List<SignatureBatchVerificationRequestDto> verificationRequests) {
+        // Sanity Check
+        if(verificationRequests.size() > this.maxBatchSize) {
+            throw new InvalidRequestException(String.format("The batch verification request exceeds the maximum size of %d items", this.maxBatchSize));
+        }
+
+        // Resolve the MRN entities once for each distinct entity
+        final Map<BatchVerificationKey, Pair<MrnEntity, String>> resolvedEntities = verificationRequests.stream()
+                .filter(Objects::nonNull)
+                .map(BatchVerificationKey::new)
+                .distinct()
+                .collect(Collectors.toMap(Function.identity(), this::resolveBatchVerificationEntity));
+
+        // And verify all the signatures in parallel
+        return this.processBatch(verificationRequests.size(), i -> this.verifyBatchSignature(verificationRequests.get(i), resolvedEntities));
+    }
+
+    /**
+     * Resolves the MRN entity of a distinct entity in a batch verification
+     * request. The result pair will contain either the MRN entity as the
+     * key, or the resolution error message as the value. If the entity is
+     * not found, both will be empty.
+     *
+     * @param entityKey the key of the entity to be resolved
+     * @return the MRN entity or the resolution error message
+     */
+    protected Pair<MrnEntity, String> resolveBatchVerificationEntity(BatchVerificationKey entityKey) {
+        // Sanity Check
+        if(Objects.isNull(entityKey.mrn()) && Objects.isNull(entityKey.mmsi())) {
+            return new Pair<>(null, "No entity MRN or MMSI provided for verification");
+        }
+
+        // Get the MRN entity - verification should never generate certificates
+        try {
+            final MrnEntity mrnEntity = Objects.nonNull(entityKey.mrn()) ?
+                    this.mrnEntityService.findOneByMrn(entityKey.mrn()) :
+                    this.mrnEntityService.findOneByMmsi(entityKey.mmsi());
+            return new Pair<>(mrnEntity, null);
+        } catch (DataNotFoundException ex) {
+            return new Pair<>(null, null);
+        } catch (Exception ex) {
+            return new Pair<>(null, Optional.ofNullable(ex.getMessage()).orElse(ex.getClass().getSimpleName()));
+        }
+    }
+
+    /**
+     * Verifies the signature for a single item of a batch verification
+     * request. The resolved entities map should provide the MRN entity (or
+     * the resolution error message) of each distinct entity in the batch.
+     *
+     * @param verificationRequest the signature verification request
+     * @param resolvedEntities the resolved MRN entities or errors
+     * @return the verification response
+     */
+    protected SignatureVerificationResponseDto verifyBatchSignature(SignatureBatchVerificationRequestDto verificationRequest, Map<BatchVerificationKey, Pair<MrnEntity, String>> resolvedEntities) {
+        final SignatureVerificationResponseDto verificationResponse = new SignatureVerificationResponseDto();
+
+        // Sanity Check
+        if(Objects.isNull(verificationRequest) || Objects.isNull(verificationRequest.getContent()) || Objects.isNull(verificationRequest.getSignature())) {
+            verificationResponse.setError("No content or signature provided for verification");
+            return verificationResponse;
+        }
+
+        // Identify the MRN entity
+        final Pair<MrnEntity, String> mrnEntity = resolvedEntities.get(new BatchVerificationKey(verificationRequest));
+        if(Objects.isNull(mrnEntity.getKey())) {
+            verificationResponse.setError(mrnEntity.getValue());
+            return verificationResponse;
+        }
+
+        // And verify the signature
+        try {
+            verificationResponse.setValid(this.verifyEntityContent(
+                    mrnEntity.getKey(),
+                    verificationRequest.getAlgorithm(),
+                    Base64.getDecoder().decode(verificationRequest.getContent()),
+                    Base64.getDecoder().decode(verificationRequest.getSignature())));
+        } catch (Exception ex) {
+            verificationResponse.setError(Optional.ofNullable(ex.getMessage()).orElse(ex.getClass().getSimpleName()));
+        }
+        return verificationResponse;
+    }
+
+    /**
+     * Verifies the provided content against the signature, using the valid
+     * certificates of the provided MRN entity. The verification latency and
+     * outcome are recorded in the meter registry, tagged by the algorithm and
+     * the entity type.
+     *
+     * @param mrnEntity     The MRN entity to verify the content for
+     * @param algorithm     The algorithm to verify the signature with
+     * @param content       The content to be verified
+     * @param signature     The signature to verify the content with
+     * @return Whether the verification was successful or not
+     * @throws NoSuchAlgorithmException if the selected algorithm is not found
+     */
+    protected boolean verifyEntityContent(MrnEntity mrnEntity, String algorithm, byte[] content, byte[] signature) throws NoSuchAlgorithmException {
+        final long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            final boolean valid = this.certificateService.verifyEntityContent(mrnEntity.getId(), algorithm, content, signature);
+            outcome = valid ? "valid" : "invalid";
+            return valid;
+        } finally {
+            this.recordSignatureOperation("ckeeper.signature.verify", "The latency of the signature verification", algorithm, mrnEntity.getEntityType(), outcome, start);
+            if(Objects.nonNull(this.meterRegistry)) {
+                this.verificationCounters.computeIfAbsent(
+                        new SignatureMeterKey("ckeeper.signature.verifications", this.getAlgorithmTag(algorithm), this.getEntityTypeTag(mrnEntity.getEntityType()), outcome),
+                        key -> Counter.builder(key.name())
+                                .description("The number of signature verifications by outcome")
+                                .tag("algorithm", key.algorithm())
+                                .tag("entity.type", key.entityType())
+                                .tag("outcome", key.result())
+                                .register(this.meterRegistry))
+                        .increment();
+            }
+        }
+    }
+
+    /**
+     * Records the latency of a signing or verification operation in the
+     * meter registry, tagged by the algorithm, the entity type and the
+     * result of the operation. Since all the tags have a bounded set of
+     * values, the timers are only built once and then reused.
+     *
+     * @param name the name of the timer
+     * @param description the description of the timer
+     * @param algorithm the signature algorithm, or null for the default one
+     * @param entityType the type of the entity, if known
+     * @param result the result of the operation
+     * @param start the start time of the operation in nanoseconds
+     */
+    protected void recordSignatureOperation(String name, String description, String algorithm, McpEntityType entityType, String result, long start) {
+        if(Objects.isNull(this.meterRegistry)) {
+            return;
+        }
+        this.signatureTimers.computeIfAbsent(
+                new SignatureMeterKey(name, this.getAlgorithmTag(algorithm), this.getEntityTypeTag(entityType), result),
+                key -> Timer.builder(key.name())
+                        .description(description)
+                        .tag("algorithm", key.algorithm())
+                        .tag("entity.type", key.entityType())
+                        .tag("result", key.result())
+                        .publishPercentileHistogram()
+                        .register(this.meterRegistry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the metrics tag value of the provided signature algorithm,
+     * falling back to the default one. Since the algorithm is provided by
+     * the callers, only the supported algorithms are used as tag values,
+     * while anything else is tagged as "other", so that the number of meters
+     * remains bounded.
+     *
+     * @param algorithm the signature algorithm
+     * @return the algorithm tag value
+     */
+    protected String getAlgorithmTag(String algorithm) {
+        final String signatureAlgorithm = Optional.ofNullable(algorithm).orElse(this.defaultSigningAlgorithm);
+        if(Objects.isNull(signatureAlgorithm)) {
+            return "default";
+        }
+        return Stream.concat(Stream.ofNullable(this.defaultSigningAlgorithm), this.supportedAlgorithms.stream())
+                .filter(signatureAlgorithm::equalsIgnoreCase)
+                .findFirst()
+                .orElse("other");
+    }
+
+    /**
+     * Returns the metrics tag value of the provided entity type, which might
+     * not be known, e.g. when signing directly with a certificate ID.
+     *
+     * @param entityType the entity type
+     * @return the entity type tag value
+     */
+    protected String getEntityTypeTag(McpEntityType entityType) {
+        return Optional.ofNullable(entityType)
+                .map(McpEntityType::getValue)
+                .orElse("unknown");
+    }
+
+    /**
+     * A key identifying a signature meter by its name and tag values.
+     *
+     * @param name the name of the meter
+     * @param algorithm the algorithm tag value
+     * @param entityType the entity type tag value
+     * @param result the result tag value
+     */
+    protected record SignatureMeterKey(String name, String algorithm, String entityType, String result) {
+
+    }
+
+    /**
+     * A key identifying a distinct entity in a batch signature request. The
+     * entity type defaults to a device, similarly to the single requests.
+     *
+     * @param entityName    The name of the entity
+     * @param version       The version of the service entity
+     * @param mmsi          The MMSI of the entity
+     * @param entityType    The type of the entity
+     */
+    protected record BatchEntityKey(String entityName, String version, String mmsi, McpEntityType entityType) {
+        BatchEntityKey(SignatureRequestDto signatureRequest) {
+            this(signatureRequest.getEntityName(),
+                    signatureRequest.getVersion(),
+                    signatureRequest.getMmsi(),
+                    Optional.ofNullable(signatureRequest.getEntityType()).orElse(McpEntityType.DEVICE));
+        }
+    }
+
+    /**
+     * A key identifying a distinct entity in a batch verification request.
+     * When both are provided, the MRN takes precedence over the MMSI.
+     *
+     * @param mrn   The MRN of the entity
+     * @param mmsi  The MMSI of the entity
+     */
+    protected record BatchVerificationKey(String mrn, String mmsi) {
+        BatchVerificationKey(SignatureBatchVerificationRequestDto verificationRequest) {
+            this(verificationRequest.getMrn(),
+                    Objects.isNull(verificationRequest.getMrn()) ? verificationRequest.getMmsi() : null);
+        }
+    }
+
+    /**
+     * A key identifying the in-progress signature certificate bundle builds,
+     * so that the concurrent requests for the same entity can be coalesced.
+     *
+     * @param entityType    The type of the entity
+     * @param mrn           The MRN of the entity
+     * @param version       The version of the service entity
+     */
+    protected record SignatureCertificateFlightKey(McpEntityType entityType, String mrn, String version) {
+
+    }
+
 }
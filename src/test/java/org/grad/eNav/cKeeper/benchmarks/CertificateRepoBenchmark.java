@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.benchmarks;
+
+import org.grad.eNav.cKeeper.CKeeper;
+import org.grad.eNav.cKeeper.models.domain.Certificate;
+import org.grad.eNav.cKeeper.models.domain.MrnEntity;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.repos.CertificateRepo;
+import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.function.Predicate.not;
+
+/**
+ * The Certificate Repo Benchmark.
+ * <p/>
+ * Compares the retrieval of the latest valid certificate of an MRN entity
+ * with a long certificate history, between loading all the certificates and
+ * filtering them in memory, and querying the database for only the latest
+ * valid one. The application is booted against an in-memory H2 database.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CertificateRepoBenchmark {
+
+    /**
+     * The number of historical (i.e. expired or revoked) certificates of the
+     * MRN entity, in addition to its single valid one.
+     */
+    @Param({"1", "10", "100", "1000"})
+    int historicalCertificates;
+
+    // Benchmark Variables
+    private ConfigurableApplicationContext context;
+    private CertificateRepo certificateRepo;
+    private BigInteger mrnEntityId;
+
+    /**
+     * Boots the application and populates the certificate history of the
+     * benchmarked MRN entity.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.context = new SpringApplicationBuilder(CKeeper.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.search.backend.directory.root=./target/lucene-benchmark/",
+                        "logging.level.root=WARN")
+                .run();
+        this.certificateRepo = this.context.getBean(CertificateRepo.class);
+
+        // Create the MRN entity
+        final MrnEntity mrnEntity = new MrnEntity();
+        mrnEntity.setName("benchmark");
+        mrnEntity.setMrn("urn:mrn:mcp:device:mcc:grad:benchmark");
+        mrnEntity.setEntityType(McpEntityType.DEVICE);
+        mrnEntity.setVersion("");
+        this.mrnEntityId = this.context.getBean(MRNEntityRepo.class).save(mrnEntity).getId();
+
+        // Create a yearly rotated certificate history, every fifth one revoked
+        final Instant now = Instant.now();
+        final List<Certificate> certificates = new ArrayList<>();
+        for(int i = this.historicalCertificates; i > 0; i--) {
+            final Instant start = now.minus(366L * i + 1, ChronoUnit.DAYS);
+            certificates.add(this.createCertificate(mrnEntity, start, start.plus(365, ChronoUnit.DAYS), i % 5 == 0));
+        }
+        certificates.add(this.createCertificate(mrnEntity, now.minus(1, ChronoUnit.DAYS), now.plus(364, ChronoUnit.DAYS), false));
+        this.certificateRepo.saveAll(certificates);
+    }
+
+    /**
+     * Shuts the application down.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.context.close();
+    }
+
+    /**
+     * Loads all the certificates of the MRN entity and picks the latest valid
+     * one in memory.
+     *
+     * @return the latest valid certificate
+     */
+    @Benchmark
+    public Certificate findAllAndFilter() {
+        return this.certificateRepo.findAllByMrnEntityId(this.mrnEntityId)
+                .stream()
+                .filter(this::isCurrentlyValid)
+                .filter(not(c -> Objects.isNull(c.getStartDate())))
+                .max(Comparator.comparing(Certificate::getStartDate))
+                .orElseThrow();
+    }
+
+    /**
+     * Queries the database for the latest valid certificate of the MRN entity
+     * only.
+     *
+     * @return the latest valid certificate
+     */
+    @Benchmark
+    public Certificate findLatestValid() {
+        return this.certificateRepo.findLatestValid(this.mrnEntityId, new Date(), PageRequest.of(0, 1))
+                .stream()
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /**
+     * Checks whether the provided certificate is currently valid, the same way
+     * the in-memory filtering used to.
+     *
+     * @param certificate the certificate to be checked
+     * @return whether the certificate is currently valid
+     */
+    private boolean isCurrentlyValid(Certificate certificate) {
+        final Date now = Date.from(Instant.now());
+        return Optional.of(certificate).map(Certificate::getStartDate).map(d -> d.compareTo(now) <= 0).orElse(true)
+                && Optional.of(certificate).map(Certificate::getEndDate).map(d -> d.compareTo(now) >= 0).orElse(true)
+                && !Objects.equals(certificate.getRevoked(), Boolean.TRUE);
+    }
+
+    /**
+     * Creates a dummy certificate for the provided MRN entity, valid between
+     * the provided dates.
+     *
+     * @param mrnEntity the MRN entity of the certificate
+     * @param start the start date of the certificate
+     * @param end the end date of the certificate
+     * @param revoked whether the certificate is revoked
+     * @return the created certificate
+     */
+    private Certificate createCertificate(MrnEntity mrnEntity, Instant start, Instant end, boolean revoked) {
+        final Certificate certificate = new Certificate();
+        certificate.setMrnEntity(mrnEntity);
+        certificate.setCertificate("CERTIFICATE");
+        certificate.setPublicKey("PUBLIC KEY");
+        certificate.setPrivateKey("PRIVATE KEY");
+        certificate.setMcpMirId(UUID.randomUUID().toString());
+        certificate.setStartDate(Date.from(start));
+        certificate.setEndDate(Date.from(end));
+        certificate.setRevoked(revoked);
+        return certificate;
+    }
+
+}
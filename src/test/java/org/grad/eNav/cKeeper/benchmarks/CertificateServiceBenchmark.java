@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.benchmarks;
+
+import org.grad.eNav.cKeeper.components.PrivateKeyCache;
+import org.grad.eNav.cKeeper.components.SignatureEngines;
+import org.grad.eNav.cKeeper.models.domain.Certificate;
+import org.grad.eNav.cKeeper.repos.CertificateRepo;
+import org.grad.eNav.cKeeper.services.CertificateService;
+import org.grad.eNav.cKeeper.utils.X509Utils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The Certificate Service Benchmark.
+ * <p/>
+ * Measures the signing and verification operations of the certificate
+ * service, for each of the supported signature algorithms and for payloads
+ * ranging from 32 bytes to 1 megabyte. The key-pairs are generated on the
+ * curve used along with each algorithm, i.e. secp384r1 for
+ * SHA3-384withECDSA and secp256r1 otherwise.
+ * <p/>
+ * The private key is picked up from the private key cache, as in a warm
+ * signing request. The certificate repository is stubbed for the
+ * verification, which still includes the public key PEM parsing that the
+ * service performs on every call.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CertificateServiceBenchmark {
+
+    /**
+     * The signature algorithm.
+     */
+    @Param({"SHA3-384withECDSA", "SHA256withCVC-ECDSA", "SHA256withECDSA"})
+    String algorithm;
+
+    /**
+     * The size of the payload in bytes.
+     */
+    @Param({"32", "1024", "32768", "1048576"})
+    int payloadSize;
+
+    // Benchmark Variables
+    private final BigInteger certificateId = BigInteger.ONE;
+    private CertificateService certificateService;
+    private byte[] payload;
+    private byte[] signature;
+
+    /**
+     * Sets up the certificate service with a generated key-pair.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final String curve = "SHA3-384withECDSA".equals(this.algorithm) ? "secp384r1" : "secp256r1";
+        final KeyPair keyPair = X509Utils.generateKeyPair(curve);
+        this.payload = new byte[this.payloadSize];
+        new Random(0).nextBytes(this.payload);
+
+        // Initialise the components and cache the private key
+        final SignatureEngines signatureEngines = new SignatureEngines();
+        signatureEngines.init();
+        final PrivateKeyCache privateKeyCache = new PrivateKeyCache();
+        privateKeyCache.init();
+        privateKeyCache.put(this.certificateId, keyPair.getPrivate());
+
+        // Stub the certificate repository for the verification
+        final Certificate certificate = new Certificate();
+        certificate.setId(this.certificateId);
+        certificate.setPublicKey(X509Utils.formatPublicKey(keyPair.getPublic()));
+        final CertificateRepo certificateRepo = mock(CertificateRepo.class);
+        doReturn(Optional.of(certificate)).when(certificateRepo).findById(this.certificateId);
+
+        // And wire everything into the certificate service
+        this.certificateService = new CertificateService();
+        ReflectionTestUtils.setField(this.certificateService, "signatureEngines", signatureEngines);
+        ReflectionTestUtils.setField(this.certificateService, "privateKeyCache", privateKeyCache);
+        ReflectionTestUtils.setField(this.certificateService, "certificateRepo", certificateRepo);
+        ReflectionTestUtils.setField(this.certificateService, "keyPairCurve", curve);
+        ReflectionTestUtils.setField(this.certificateService, "defaultSigningAlgorithm", this.algorithm);
+        this.signature = this.certificateService.signContent(this.certificateId, this.algorithm, this.payload);
+    }
+
+    /**
+     * Signs the payload.
+     *
+     * @return the generated signature
+     */
+    @Benchmark
+    public byte[] signContent() throws Exception {
+        return this.certificateService.signContent(this.certificateId, this.algorithm, this.payload);
+    }
+
+    /**
+     * Verifies the signature of the payload.
+     *
+     * @return whether the verification was successful
+     */
+    @Benchmark
+    public boolean verifyContent() throws Exception {
+        return this.certificateService.verifyContent(this.certificateId, this.algorithm, this.payload, this.signature);
+    }
+
+}
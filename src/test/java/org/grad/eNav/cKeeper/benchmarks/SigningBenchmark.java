@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.benchmarks;
+
+import org.grad.eNav.cKeeper.components.PrivateKeyCache;
+import org.grad.eNav.cKeeper.components.SignatureEngines;
+import org.grad.eNav.cKeeper.components.VerificationKeyCache;
+import org.grad.eNav.cKeeper.components.VerificationKeyCache.VerificationKey;
+import org.grad.eNav.cKeeper.services.CertificateService;
+import org.grad.eNav.cKeeper.utils.X509Utils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.security.*;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Signing Benchmark.
+ * <p/>
+ * Compares the warm signing and verification paths of the certificate
+ * service, against the previous approach of looking up and initialising a
+ * new signature engine, and encoding the payload for logging, on every
+ * request. This is mostly meant to be run with the GC profiler, i.e.
+ * <pre>
+ *     mvn -Pbenchmarks verify -Djmh.args="SigningBenchmark -prof gc"
+ * </pre>
+ * so that the allocated bytes per operation can be compared.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SigningBenchmark {
+
+    /**
+     * The size of the signed payload in bytes.
+     */
+    @Param({"32", "4096"})
+    int payloadSize;
+
+    // Benchmark Variables
+    private final String algorithm = "SHA256withCVC-ECDSA";
+    private final BigInteger certificateId = BigInteger.ONE;
+    private final BigInteger mrnEntityId = BigInteger.ONE;
+    private CertificateService certificateService;
+    private KeyPair keyPair;
+    private byte[] payload;
+    private byte[] signature;
+
+    /**
+     * Sets up the certificate service with a cached key pair.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.keyPair = X509Utils.generateKeyPair("secp256r1");
+        this.payload = new byte[this.payloadSize];
+        new Random(0).nextBytes(this.payload);
+
+        // Initialise the components and cache the keys
+        final SignatureEngines signatureEngines = new SignatureEngines();
+        signatureEngines.init();
+        final PrivateKeyCache privateKeyCache = new PrivateKeyCache();
+        privateKeyCache.init();
+        privateKeyCache.put(this.certificateId, this.keyPair.getPrivate());
+        final VerificationKeyCache verificationKeyCache = new VerificationKeyCache();
+        verificationKeyCache.init();
+        verificationKeyCache.put(this.mrnEntityId, Collections.singletonList(
+                new VerificationKey(this.certificateId, this.keyPair.getPublic(), new Date(0), null)));
+
+        // And wire them into the certificate service
+        this.certificateService = new CertificateService();
+        ReflectionTestUtils.setField(this.certificateService, "signatureEngines", signatureEngines);
+        ReflectionTestUtils.setField(this.certificateService, "privateKeyCache", privateKeyCache);
+        ReflectionTestUtils.setField(this.certificateService, "verificationKeyCache", verificationKeyCache);
+        ReflectionTestUtils.setField(this.certificateService, "defaultSigningAlgorithm", this.algorithm);
+        this.signature = this.certificateService.signContent(this.certificateId, this.algorithm, this.payload);
+    }
+
+    /**
+     * Signs the payload the way it used to be done, with a new engine and the
+     * debug logging arguments always encoded.
+     *
+     * @return the generated signature
+     */
+    @Benchmark
+    public byte[] signBaseline() throws Exception {
+        final String loggedPayload = Base64.getEncoder().encodeToString(this.payload);
+        final Signature sign = Signature.getInstance(this.algorithm);
+        sign.initSign(this.keyPair.getPrivate());
+        sign.update(this.payload);
+        final byte[] result = sign.sign();
+        final String loggedSignature = Base64.getEncoder().encodeToString(result);
+        return loggedPayload.length() + loggedSignature.length() > 0 ? result : null;
+    }
+
+    /**
+     * Signs the payload through the certificate service.
+     *
+     * @return the generated signature
+     */
+    @Benchmark
+    public byte[] signContent() throws Exception {
+        return this.certificateService.signContent(this.certificateId, this.algorithm, this.payload);
+    }
+
+    /**
+     * Verifies the signature the way it used to be done, with a new engine.
+     *
+     * @return whether the verification was successful
+     */
+    @Benchmark
+    public boolean verifyBaseline() throws Exception {
+        final Signature sign = Signature.getInstance(this.algorithm);
+        sign.initVerify(this.keyPair.getPublic());
+        sign.update(this.payload);
+        return sign.verify(this.signature);
+    }
+
+    /**
+     * Verifies the signature through the certificate service.
+     *
+     * @return whether the verification was successful
+     */
+    @Benchmark
+    public boolean verifyEntityContent() throws Exception {
+        return this.certificateService.verifyEntityContent(this.mrnEntityId, this.algorithm, this.payload, this.signature);
+    }
+
+}
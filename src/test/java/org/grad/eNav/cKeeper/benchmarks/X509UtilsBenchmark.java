@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.benchmarks;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.grad.eNav.cKeeper.utils.X509Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The X509Utils Benchmark.
+ * <p/>
+ * Measures the key-pair generation, CSR generation, PEM formatting and PEM
+ * parsing operations of the X509Utils, for each of the supported curves.
+ * The CSRs are signed with the algorithm used along with each curve, i.e.
+ * SHA3-384withECDSA for secp384r1 and SHA256withCVC-ECDSA for secp256r1.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class X509UtilsBenchmark {
+
+    /**
+     * The elliptic curve of the key-pairs.
+     */
+    @Param({"secp256r1", "secp384r1"})
+    String curve;
+
+    // Benchmark Variables
+    private final String dirName = "C=GB, O=urn:mrn:mcp:org:mcc:grad, OU=device, CN=benchmark, UID=urn:mrn:mcp:device:mcc:grad:benchmark";
+    private String algorithm;
+    private KeyPair keyPair;
+    private X509Certificate certificate;
+    private String publicKeyPem;
+    private String privateKeyPem;
+
+    /**
+     * Generates the key-pair and certificate used by the benchmarks.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        this.algorithm = "secp384r1".equals(this.curve) ? "SHA3-384withECDSA" : "SHA256withCVC-ECDSA";
+        this.keyPair = X509Utils.generateKeyPair(this.curve);
+        this.certificate = X509Utils.generateX509Certificate(this.keyPair, this.dirName, new Date(), new Date(System.currentTimeMillis() + 86400000L), this.algorithm);
+        this.publicKeyPem = X509Utils.formatPublicKey(this.keyPair.getPublic());
+        this.privateKeyPem = X509Utils.formatPrivateKey(this.keyPair.getPrivate());
+    }
+
+    /**
+     * Generates a new key-pair.
+     *
+     * @return the generated key-pair
+     */
+    @Benchmark
+    public KeyPair generateKeyPair() throws Exception {
+        return X509Utils.generateKeyPair(this.curve);
+    }
+
+    /**
+     * Generates a new CSR for the existing key-pair.
+     *
+     * @return the generated CSR
+     */
+    @Benchmark
+    public PKCS10CertificationRequest generateX509CSR() throws Exception {
+        return X509Utils.generateX509CSR(this.keyPair, this.dirName, this.algorithm);
+    }
+
+    /**
+     * Formats the certificate as PEM.
+     *
+     * @return the PEM formatted certificate
+     */
+    @Benchmark
+    public String formatCertificate() throws Exception {
+        return X509Utils.formatCertificate(this.certificate);
+    }
+
+    /**
+     * Formats the private key as PEM.
+     *
+     * @return the PEM formatted private key
+     */
+    @Benchmark
+    public String formatPrivateKey() throws Exception {
+        return X509Utils.formatPrivateKey(this.keyPair.getPrivate());
+    }
+
+    /**
+     * Parses the private key from its PEM representation.
+     *
+     * @return the parsed private key
+     */
+    @Benchmark
+    public PrivateKey privateKeyFromPem() throws Exception {
+        return X509Utils.privateKeyFromPem(this.privateKeyPem, this.curve);
+    }
+
+    /**
+     * Parses the public key from its PEM representation.
+     *
+     * @return the parsed public key
+     */
+    @Benchmark
+    public PublicKey publicKeyFromPem() throws Exception {
+        return X509Utils.publicKeyFromPem(this.publicKeyPem);
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.ECPublicKey;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class KeyPairPoolTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    KeyPairPool keyPairPool;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.keyPairPool.meterRegistry = this.meterRegistry;
+        this.keyPairPool.keyPairCurve = "secp384r1";
+        this.keyPairPool.deviceKeyPairCurve = "secp256r1";
+        this.keyPairPool.size = 2;
+        this.keyPairPool.refillIntervalMs = 60000;
+    }
+
+    /**
+     * Clean up after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.keyPairPool.destroy();
+    }
+
+    /**
+     * Test that the pools are filled up in the background, and that the
+     * pre-generated key-pairs are handed out for the requested curve.
+     */
+    @Test
+    void testTake() throws NoSuchAlgorithmException, InvalidAlgorithmParameterException, InterruptedException {
+        this.keyPairPool.init();
+        this.awaitFull();
+
+        // Take a pre-generated key-pair for each curve
+        final KeyPair keyPair = this.keyPairPool.take("secp384r1");
+        final KeyPair deviceKeyPair = this.keyPairPool.take("secp256r1");
+
+        // Make sure the key-pairs follow the right curves
+        assertEquals(384, ((ECPublicKey) keyPair.getPublic()).getParams().getCurve().getField().getFieldSize());
+        assertEquals(256, ((ECPublicKey) deviceKeyPair.getPublic()).getParams().getCurve().getField().getFieldSize());
+        assertEquals(1, this.keyPairPool.available("secp384r1"));
+        assertEquals(1, this.keyPairPool.available("secp256r1"));
+
+        // Make sure the metrics are populated
+        assertTrue(this.meterRegistry.get("ckeeper.keypair.pool.generated").tag("curve", "secp384r1").counter().count() > 0);
+        assertEquals(1.0, this.meterRegistry.get("ckeeper.keypair.pool.depth").tag("curve", "secp384r1").gauge().value());
+        assertEquals(0.0, this.meterRegistry.get("ckeeper.keypair.pool.misses").tag("curve", "secp384r1").counter().count());
+    }
+
+    /**
+     * Test that when the pool is exhausted, the key-pairs are generated on
+     * demand and the misses are recorded.
+     */
+    @Test
+    void testTakeExhausted() throws NoSuchAlgorithmException, InvalidAlgorithmParameterException, InterruptedException {
+        this.keyPairPool.init();
+        this.awaitFull();
+
+        // Exhaust the pool
+        for(int i=0; i<3; i++) {
+            assertNotNull(this.keyPairPool.take("secp384r1"));
+        }
+
+        // Make sure the miss was recorded
+        assertEquals(1.0, this.meterRegistry.get("ckeeper.keypair.pool.misses").tag("curve", "secp384r1").counter().count());
+    }
+
+    /**
+     * Test that when the pool is disabled, the key-pairs are always
+     * generated on demand.
+     */
+    @Test
+    void testTakeDisabled() throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+        this.keyPairPool.enabled = false;
+        this.keyPairPool.init();
+
+        // Make sure we still get key-pairs
+        assertNotNull(this.keyPairPool.take("secp384r1"));
+        assertEquals(0, this.keyPairPool.available("secp384r1"));
+    }
+
+    /**
+     * A helper function that waits for the pools to be filled up by the
+     * background refill worker.
+     */
+    private void awaitFull() throws InterruptedException {
+        for(int i=0; i<300 && (this.keyPairPool.available("secp384r1") < 2 || this.keyPairPool.available("secp256r1") < 2); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(2, this.keyPairPool.available("secp384r1"));
+        assertEquals(2, this.keyPairPool.available("secp256r1"));
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class McpCircuitBreakerTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    McpCircuitBreaker mcpCircuitBreaker;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.mcpCircuitBreaker.meterRegistry = this.meterRegistry;
+        this.mcpCircuitBreaker.failureThreshold = 2;
+        this.mcpCircuitBreaker.openDurationMs = 60000;
+        this.mcpCircuitBreaker.init();
+    }
+
+    /**
+     * Test that the circuit opens after the configured number of consecutive
+     * failures and rejects the operations.
+     */
+    @Test
+    void testOpen() {
+        assertTrue(this.mcpCircuitBreaker.isAvailable());
+
+        // Record the failures
+        this.mcpCircuitBreaker.recordFailure();
+        assertEquals(McpCircuitBreaker.State.CLOSED, this.mcpCircuitBreaker.getState());
+        this.mcpCircuitBreaker.recordFailure();
+
+        // Make sure the circuit is now open
+        assertEquals(McpCircuitBreaker.State.OPEN, this.mcpCircuitBreaker.getState());
+        assertFalse(this.mcpCircuitBreaker.isAvailable());
+
+        // Make sure the metrics are populated
+        assertEquals(2.0, this.meterRegistry.get("ckeeper.mcp.circuit.state").gauge().value());
+        assertEquals(1.0, this.meterRegistry.get("ckeeper.mcp.circuit.transitions").tag("from", "CLOSED").tag("to", "OPEN").counter().count());
+    }
+
+    /**
+     * Test that a success resets the consecutive failures count.
+     */
+    @Test
+    void testSuccessResetsFailures() {
+        this.mcpCircuitBreaker.recordFailure();
+        this.mcpCircuitBreaker.recordSuccess();
+        this.mcpCircuitBreaker.recordFailure();
+
+        // Make sure the circuit is still closed
+        assertEquals(McpCircuitBreaker.State.CLOSED, this.mcpCircuitBreaker.getState());
+        assertEquals(1, this.mcpCircuitBreaker.getConsecutiveFailures());
+    }
+
+    /**
+     * Test that once the open duration expires the circuit moves to the
+     * half-open state, and the next outcome closes or re-opens it.
+     */
+    @Test
+    void testHalfOpen() {
+        this.mcpCircuitBreaker.recordFailure();
+        this.mcpCircuitBreaker.recordFailure();
+
+        // Expire the open duration
+        this.mcpCircuitBreaker.openedAt = Instant.now().minusSeconds(61);
+        assertTrue(this.mcpCircuitBreaker.isAvailable());
+        assertEquals(McpCircuitBreaker.State.HALF_OPEN, this.mcpCircuitBreaker.getState());
+
+        // A failed trial re-opens the circuit
+        this.mcpCircuitBreaker.recordFailure();
+        assertEquals(McpCircuitBreaker.State.OPEN, this.mcpCircuitBreaker.getState());
+        assertFalse(this.mcpCircuitBreaker.isAvailable());
+
+        // While a successful one (e.g. by the probe) closes it
+        this.mcpCircuitBreaker.recordSuccess();
+        assertEquals(McpCircuitBreaker.State.CLOSED, this.mcpCircuitBreaker.getState());
+        assertTrue(this.mcpCircuitBreaker.isAvailable());
+        assertEquals(1.0, this.meterRegistry.get("ckeeper.mcp.circuit.transitions").tag("from", "OPEN").tag("to", "CLOSED").counter().count());
+    }
+
+    /**
+     * Test that while the circuit is half-open, only a single trial
+     * operation is let through until its outcome is recorded.
+     */
+    @Test
+    void testHalfOpenSingleTrial() {
+        this.mcpCircuitBreaker.recordFailure();
+        this.mcpCircuitBreaker.recordFailure();
+
+        // Expire the open duration
+        this.mcpCircuitBreaker.openedAt = Instant.now().minusSeconds(61);
+
+        // Make sure only the first operation is admitted
+        assertTrue(this.mcpCircuitBreaker.isAvailable());
+        assertFalse(this.mcpCircuitBreaker.isAvailable());
+        assertEquals(McpCircuitBreaker.State.HALF_OPEN, this.mcpCircuitBreaker.getState());
+
+        // Unless the trial outcome is never recorded
+        this.mcpCircuitBreaker.trialStartedAt = Instant.now().minusSeconds(61);
+        assertTrue(this.mcpCircuitBreaker.isAvailable());
+        assertFalse(this.mcpCircuitBreaker.isAvailable());
+
+        // Once the trial succeeds, all operations are admitted again
+        this.mcpCircuitBreaker.recordSuccess();
+        assertTrue(this.mcpCircuitBreaker.isAvailable());
+        assertTrue(this.mcpCircuitBreaker.isAvailable());
+    }
+
+}
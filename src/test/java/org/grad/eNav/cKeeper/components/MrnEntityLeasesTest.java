@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.grad.eNav.cKeeper.exceptions.SavingFailedException;
+import org.grad.eNav.cKeeper.models.domain.MrnEntityLease;
+import org.grad.eNav.cKeeper.repos.MrnEntityLeaseRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MrnEntityLeasesTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    MrnEntityLeases mrnEntityLeases;
+
+    /**
+     * The MRN Entity Lease Repo mock.
+     */
+    @Mock
+    MrnEntityLeaseRepo mrnEntityLeaseRepo;
+
+    /**
+     * The Platform Transaction Manager mock.
+     */
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.mrnEntityLeases.meterRegistry = this.meterRegistry;
+        this.mrnEntityLeases.enabled = true;
+        this.mrnEntityLeases.durationMs = 60000;
+        this.mrnEntityLeases.acquireTimeoutMs = 200;
+        this.mrnEntityLeases.retryIntervalMs = 10;
+        this.mrnEntityLeases.init();
+    }
+
+    /**
+     * Clean up after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.mrnEntityLeases.destroy();
+    }
+
+    /**
+     * Test that when no lease exists for an MRN entity, a new one is created
+     * and released again once the operation completes.
+     */
+    @Test
+    void testWithLease() {
+        doReturn(0).when(this.mrnEntityLeaseRepo).acquireExpired(eq(BigInteger.ONE), anyString(), anyLong());
+        doReturn(false).when(this.mrnEntityLeaseRepo).existsById(BigInteger.ONE);
+        doReturn(1).when(this.mrnEntityLeaseRepo).release(eq(BigInteger.ONE), anyString());
+
+        // Perform the component call
+        final String result = this.mrnEntityLeases.withLease(BigInteger.ONE, () -> "result");
+
+        // Make sure the lease was created and released by the same owner
+        assertEquals("result", result);
+        final ArgumentCaptor<MrnEntityLease> leaseCaptor = ArgumentCaptor.forClass(MrnEntityLease.class);
+        verify(this.mrnEntityLeaseRepo, times(1)).saveAndFlush(leaseCaptor.capture());
+        assertEquals(BigInteger.ONE, leaseCaptor.getValue().getMrnEntityId());
+        assertTrue(leaseCaptor.getValue().getOwner().startsWith(this.mrnEntityLeases.nodeId));
+        assertTrue(leaseCaptor.getValue().isNew());
+        verify(this.mrnEntityLeaseRepo, times(1)).renew(BigInteger.ONE, leaseCaptor.getValue().getOwner(), 60L);
+        verify(this.mrnEntityLeaseRepo, times(1)).release(BigInteger.ONE, leaseCaptor.getValue().getOwner());
+        assertEquals(1, this.meterRegistry.get("ckeeper.mrn.entity.lease.acquire").tag("result", "acquired").timer().count());
+    }
+
+    /**
+     * Test that an expired lease is taken over, without creating a new one.
+     */
+    @Test
+    void testWithLeaseExpired() {
+        doReturn(1).when(this.mrnEntityLeaseRepo).acquireExpired(eq(BigInteger.ONE), anyString(), anyLong());
+        doReturn(1).when(this.mrnEntityLeaseRepo).release(eq(BigInteger.ONE), anyString());
+
+        // Perform the component call
+        assertEquals("result", this.mrnEntityLeases.withLease(BigInteger.ONE, () -> "result"));
+
+        // Make sure the existing lease was reused
+        verify(this.mrnEntityLeaseRepo, never()).existsById(any());
+        verify(this.mrnEntityLeaseRepo, never()).saveAndFlush(any());
+    }
+
+    /**
+     * Test that the lease is renewed by its owner for as long as the
+     * operation is in progress, and no longer once it completes.
+     */
+    @Test
+    void testWithLeaseRenewed() throws InterruptedException {
+        this.mrnEntityLeases.durationMs = 150;
+        doReturn(1).when(this.mrnEntityLeaseRepo).acquireExpired(eq(BigInteger.ONE), anyString(), anyLong());
+        doReturn(1).when(this.mrnEntityLeaseRepo).renew(eq(BigInteger.ONE), anyString(), anyLong());
+        doReturn(1).when(this.mrnEntityLeaseRepo).release(eq(BigInteger.ONE), anyString());
+
+        // Perform a long running component call
+        assertEquals("result", this.mrnEntityLeases.withLease(BigInteger.ONE, () -> {
+            try {
+                Thread.sleep(400);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "result";
+        }));
+
+        // Make sure the lease was renewed by the same owner that released it
+        final ArgumentCaptor<String> ownerCaptor = ArgumentCaptor.forClass(String.class);
+        verify(this.mrnEntityLeaseRepo, times(1)).release(eq(BigInteger.ONE), ownerCaptor.capture());
+        verify(this.mrnEntityLeaseRepo, atLeast(2)).renew(BigInteger.ONE, ownerCaptor.getValue(), 1L);
+
+        // And that the renewal stopped after the release
+        clearInvocations(this.mrnEntityLeaseRepo);
+        Thread.sleep(200);
+        verify(this.mrnEntityLeaseRepo, never()).renew(any(), any(), anyLong());
+    }
+
+    /**
+     * Test that when the lease is held by another node, we keep retrying
+     * until it becomes available.
+     */
+    @Test
+    void testWithLeaseRetried() {
+        doReturn(0).when(this.mrnEntityLeaseRepo).acquireExpired(eq(BigInteger.ONE), anyString(), anyLong());
+        doReturn(true).doReturn(false).when(this.mrnEntityLeaseRepo).existsById(BigInteger.ONE);
+        doThrow(DataIntegrityViolationException.class).doReturn(null).when(this.mrnEntityLeaseRepo).saveAndFlush(any());
+        doReturn(1).when(this.mrnEntityLeaseRepo).release(eq(BigInteger.ONE), anyString());
+
+        // Perform the component call
+        assertEquals("result", this.mrnEntityLeases.withLease(BigInteger.ONE, () -> "result"));
+
+        // Make sure we waited for the held lease and lost one creation race
+        verify(this.mrnEntityLeaseRepo, times(3)).acquireExpired(eq(BigInteger.ONE), anyString(), anyLong());
+        verify(this.mrnEntityLeaseRepo, times(2)).saveAndFlush(any());
+    }
+
+    /**
+     * Test that if the lease cannot be acquired in time, the operation is not
+     * executed and an exception is thrown.
+     */
+    @Test
+    void testWithLeaseTimeout() {
+        doReturn(0).when(this.mrnEntityLeaseRepo).acquireExpired(eq(BigInteger.ONE), anyString(), anyLong());
+        doReturn(true).when(this.mrnEntityLeaseRepo).existsById(BigInteger.ONE);
+
+        // Perform the component call
+        assertThrows(SavingFailedException.class, () ->
+                this.mrnEntityLeases.withLease(BigInteger.ONE, () -> fail("Operation should not be executed")));
+
+        // Make sure nothing was released and the timeout was recorded
+        verify(this.mrnEntityLeaseRepo, never()).release(any(), any());
+        assertEquals(1, this.meterRegistry.get("ckeeper.mrn.entity.lease.acquire").tag("result", "timeout").timer().count());
+    }
+
+    /**
+     * Test that the lease is released even if the operation fails.
+     */
+    @Test
+    void testWithLeaseOperationFailed() {
+        doReturn(1).when(this.mrnEntityLeaseRepo).acquireExpired(eq(BigInteger.ONE), anyString(), anyLong());
+        doReturn(1).when(this.mrnEntityLeaseRepo).release(eq(BigInteger.ONE), anyString());
+
+        // Perform the component call
+        assertThrows(SavingFailedException.class, () ->
+                this.mrnEntityLeases.withLease(BigInteger.ONE, () -> {
+                    throw new SavingFailedException("failed");
+                }));
+
+        // Make sure the lease was released
+        verify(this.mrnEntityLeaseRepo, times(1)).release(eq(BigInteger.ONE), anyString());
+    }
+
+    /**
+     * Test that when the leases are disabled, the operation is executed
+     * straight away without touching the database.
+     */
+    @Test
+    void testWithLeaseDisabled() {
+        this.mrnEntityLeases.enabled = false;
+
+        // Perform the component call
+        assertEquals("result", this.mrnEntityLeases.withLease(BigInteger.ONE, () -> "result"));
+
+        // Make sure the database was not accessed
+        verifyNoInteractions(this.mrnEntityLeaseRepo);
+        verifyNoInteractions(this.transactionManager);
+    }
+
+}
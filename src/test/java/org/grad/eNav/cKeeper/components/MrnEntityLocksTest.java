@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class MrnEntityLocksTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    MrnEntityLocks mrnEntityLocks;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.mrnEntityLocks.meterRegistry = this.meterRegistry;
+        this.mrnEntityLocks.stripes = 16;
+        this.mrnEntityLocks.init();
+    }
+
+    /**
+     * Test that the operation result is returned and that the lock wait time
+     * is recorded.
+     */
+    @Test
+    void testWithLock() {
+        assertEquals("result", this.mrnEntityLocks.withLock(BigInteger.ONE, () -> "result"));
+
+        // Make sure the lock wait time was recorded
+        assertEquals(1, this.meterRegistry.get("ckeeper.mrn.entity.lock.wait").timer().count());
+    }
+
+    /**
+     * Test that operations on different MRN entities can proceed in parallel,
+     * while holding their respective locks.
+     */
+    @Test
+    void testWithLockDifferentEntities() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        // Both operations wait for each other while holding their locks
+        final CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() ->
+                this.mrnEntityLocks.withLock(BigInteger.ONE, () -> this.awaitLatch(latch)));
+        final CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() ->
+                this.mrnEntityLocks.withLock(BigInteger.TWO, () -> this.awaitLatch(latch)));
+
+        // Make sure they both completed
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test that operations on the same MRN entity are serialised.
+     */
+    @Test
+    void testWithLockSameEntity() throws Exception {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        // Run a number of concurrent operations on the same entity
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[8];
+        for(int i=0; i<futures.length; i++) {
+            futures[i] = CompletableFuture.runAsync(() ->
+                    this.mrnEntityLocks.withLock(BigInteger.ONE, () -> {
+                        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                        active.decrementAndGet();
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+
+        // Make sure only one was ever active at a time
+        assertEquals(1, maxActive.get());
+    }
+
+    /**
+     * Test that the operation is executed while holding the locks of all the
+     * provided MRN entities, and that these are all released afterwards.
+     */
+    @Test
+    void testWithLocks() {
+        final List<BigInteger> mrnEntityIds = List.of(BigInteger.ONE, BigInteger.TWO, BigInteger.TEN);
+
+        // Make sure all the locks are held during the operation
+        assertTrue(this.mrnEntityLocks.withLocks(mrnEntityIds, () -> mrnEntityIds.stream()
+                .map(this.mrnEntityLocks::getLock)
+                .allMatch(ReentrantLock::isHeldByCurrentThread)));
+
+        // Make sure all the locks were released and the wait time recorded
+        assertTrue(mrnEntityIds.stream()
+                .map(this.mrnEntityLocks::getLock)
+                .noneMatch(ReentrantLock::isLocked));
+        assertEquals(1, this.meterRegistry.get("ckeeper.mrn.entity.lock.wait").timer().count());
+    }
+
+    /**
+     * Test that operations locking the same MRN entities in a different order
+     * cannot deadlock.
+     */
+    @Test
+    void testWithLocksDifferentOrder() throws Exception {
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[8];
+        for(int i=0; i<futures.length; i++) {
+            final List<BigInteger> mrnEntityIds = i % 2 == 0 ?
+                    List.of(BigInteger.ONE, BigInteger.TWO) :
+                    List.of(BigInteger.TWO, BigInteger.ONE);
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for(int j=0; j<100; j++) {
+                    this.mrnEntityLocks.withLocks(mrnEntityIds, () -> null);
+                }
+            });
+        }
+
+        // Make sure they all completed
+        CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A helper function that counts down the provided latch and waits for it
+     * to reach zero.
+     *
+     * @param latch the latch to wait for
+     * @return whether the latch reached zero in time
+     */
+    private boolean awaitLatch(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            return false;
+        }
+    }
+
+}
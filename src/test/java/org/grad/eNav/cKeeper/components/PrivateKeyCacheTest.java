@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.grad.eNav.cKeeper.utils.X509Utils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PrivateKeyCacheTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    PrivateKeyCache privateKeyCache;
+
+    /**
+     * The Signature Engines mock.
+     */
+    @Mock
+    SignatureEngines signatureEngines;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+    private PrivateKey privateKey;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.privateKeyCache.meterRegistry = this.meterRegistry;
+        this.privateKeyCache.init();
+
+        // Generate a private key to cache
+        this.privateKey = X509Utils.generateKeyPair(null).getPrivate();
+    }
+
+    /**
+     * Test that we can cache and retrieve a private key based on the
+     * certificate ID.
+     */
+    @Test
+    void testPutAndGet() {
+        assertNull(this.privateKeyCache.get(BigInteger.ONE));
+
+        // Cache the private key
+        this.privateKeyCache.put(BigInteger.ONE, this.privateKey);
+
+        // Make sure the private key is now available
+        assertEquals(this.privateKey, this.privateKeyCache.get(BigInteger.ONE));
+        assertNull(this.privateKeyCache.get(BigInteger.TWO));
+    }
+
+    /**
+     * Test that we can drop a cached private key based on the certificate ID.
+     */
+    @Test
+    void testInvalidate() {
+        this.privateKeyCache.put(BigInteger.ONE, this.privateKey);
+        this.privateKeyCache.put(BigInteger.TWO, this.privateKey);
+
+        // Drop the first private key
+        this.privateKeyCache.invalidate(BigInteger.ONE);
+
+        // Make sure only the second one remains
+        assertNull(this.privateKeyCache.get(BigInteger.ONE));
+        assertNotNull(this.privateKeyCache.get(BigInteger.TWO));
+
+        // Drop everything
+        this.privateKeyCache.invalidateAll();
+        assertNull(this.privateKeyCache.get(BigInteger.TWO));
+    }
+
+    /**
+     * Test that when a private key is dropped, the signature engines
+     * initialised with it are dropped as well.
+     */
+    @Test
+    void testInvalidateEvictsEngines() {
+        this.privateKeyCache.put(BigInteger.ONE, this.privateKey);
+
+        // Drop the private key
+        this.privateKeyCache.invalidate(BigInteger.ONE);
+
+        // Make sure the signature engines were dropped as well
+        verify(this.signatureEngines, timeout(1000).times(1)).evict(this.privateKey);
+    }
+
+    /**
+     * Test that the cache hits and misses are registered with the meter
+     * registry.
+     */
+    @Test
+    void testMetrics() {
+        this.privateKeyCache.get(BigInteger.ONE);
+        this.privateKeyCache.put(BigInteger.ONE, this.privateKey);
+        this.privateKeyCache.get(BigInteger.ONE);
+
+        // Make sure the metrics are populated
+        assertEquals(1.0, this.meterRegistry.get("cache.gets").tag("cache", "privateKeys").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, this.meterRegistry.get("cache.gets").tag("cache", "privateKeys").tag("result", "miss").functionCounter().count());
+    }
+
+}
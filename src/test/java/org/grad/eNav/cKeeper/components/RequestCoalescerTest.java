@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.grad.eNav.cKeeper.exceptions.SavingFailedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class RequestCoalescerTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    RequestCoalescer requestCoalescer;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.requestCoalescer.meterRegistry = this.meterRegistry;
+        this.requestCoalescer.init();
+    }
+
+    /**
+     * Test that sequential calls are all executed, since there is nothing in
+     * progress to coalesce them with.
+     */
+    @Test
+    void testCoalesceSequential() {
+        final AtomicInteger executions = new AtomicInteger();
+
+        // Perform the calls one after the other
+        assertEquals(1, (int) this.requestCoalescer.coalesce("test", "key", executions::incrementAndGet));
+        assertEquals(2, (int) this.requestCoalescer.coalesce("test", "key", executions::incrementAndGet));
+
+        // Make sure nothing was left in progress
+        assertEquals(0, this.requestCoalescer.getInFlight());
+        assertEquals(2, this.meterRegistry.get("ckeeper.requests.coalescing").tag("result", "executed").counter().count());
+    }
+
+    /**
+     * Test that concurrent calls for the same key share the result of the
+     * first call, while the operation is only executed once.
+     */
+    @Test
+    void testCoalesceConcurrent() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // Start the first call and keep it in progress
+        final CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() ->
+                this.requestCoalescer.coalesce("test", "key", () -> {
+                    started.countDown();
+                    this.await(release);
+                    return executions.incrementAndGet();
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Perform a concurrent call, which should not be executed
+        final CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() ->
+                this.requestCoalescer.coalesce("test", "key", executions::incrementAndGet));
+        final long deadline = System.currentTimeMillis() + 5000;
+        while(this.meterRegistry.get("ckeeper.requests.coalescing").tag("result", "executed").counter().count() < 1
+                || this.meterRegistry.find("ckeeper.requests.coalescing").tag("result", "coalesced").counter() == null) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        // Make sure both calls got the result of the single execution
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+        assertEquals(0, this.requestCoalescer.getInFlight());
+    }
+
+    /**
+     * Test that the failure of the first call is shared with the concurrent
+     * calls as well.
+     */
+    @Test
+    void testCoalesceConcurrentFailure() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // Start the first call, which will eventually fail
+        final CompletableFuture<Object> first = CompletableFuture.supplyAsync(() ->
+                this.requestCoalescer.coalesce("test", "key", () -> {
+                    started.countDown();
+                    this.await(release);
+                    throw new SavingFailedException("failed");
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Perform a concurrent call
+        final CompletableFuture<Object> second = CompletableFuture.supplyAsync(() ->
+                this.requestCoalescer.coalesce("test", "key", () -> "not executed"));
+        final long deadline = System.currentTimeMillis() + 5000;
+        while(this.meterRegistry.find("ckeeper.requests.coalescing").tag("result", "coalesced").counter() == null) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        // Make sure both calls failed with the same error
+        assertInstanceOf(SavingFailedException.class, assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+        assertInstanceOf(SavingFailedException.class, assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals(0, this.requestCoalescer.getInFlight());
+    }
+
+    /**
+     * A helper function that waits for the provided latch to reach zero.
+     *
+     * @param latch the latch to wait for
+     */
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache.SignatureCertificateBundle;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache.SignatureCertificateKey;
+import org.grad.eNav.cKeeper.models.domain.SignatureCertificate;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SignatureCertificateCacheTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    SignatureCertificateCache signatureCertificateCache;
+
+    /**
+     * The Truststore Manager mock.
+     */
+    @Mock
+    TrustStoreManager trustStoreManager;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+    private SignatureCertificate signatureCertificate;
+    private SignatureCertificateKey key;
+    private SignatureCertificateBundle bundle;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.signatureCertificateCache.meterRegistry = this.meterRegistry;
+        this.signatureCertificateCache.init();
+
+        // Create a signature certificate bundle to cache
+        this.signatureCertificate = new SignatureCertificate();
+        this.signatureCertificate.setCertificateId(BigInteger.ONE);
+        this.signatureCertificate.setCertificate("Certificate");
+        this.signatureCertificate.setPublicKey("PublicKey");
+        this.signatureCertificate.setRootCertificate("RootCertificate");
+        this.key = new SignatureCertificateKey("entity", null, "123456789", McpEntityType.DEVICE);
+        this.bundle = new SignatureCertificateBundle(BigInteger.TEN,
+                this.signatureCertificate,
+                new Date(new Date().getTime() + 60000),
+                SignatureCertificateCache.computeETag(this.signatureCertificate));
+    }
+
+    /**
+     * Test that we can cache and retrieve a signature certificate bundle
+     * based on the entity request key.
+     */
+    @Test
+    void testPutAndGet() {
+        assertNull(this.signatureCertificateCache.get(this.key));
+
+        // Cache the bundle
+        this.signatureCertificateCache.put(this.key, this.bundle);
+
+        // Make sure the bundle is now available
+        assertEquals(this.bundle, this.signatureCertificateCache.get(this.key));
+        assertNull(this.signatureCertificateCache.get(new SignatureCertificateKey("other", null, null, McpEntityType.DEVICE)));
+    }
+
+    /**
+     * Test that bundles of expired certificates are never returned.
+     */
+    @Test
+    void testGetExpired() {
+        this.signatureCertificateCache.put(this.key, new SignatureCertificateBundle(BigInteger.TEN,
+                this.signatureCertificate,
+                new Date(new Date().getTime() - 1000),
+                this.bundle.eTag()));
+
+        // Make sure the expired bundle is not returned
+        assertNull(this.signatureCertificateCache.get(this.key));
+    }
+
+    /**
+     * Test that we can drop all the cached bundles of an MRN entity.
+     */
+    @Test
+    void testInvalidateMrnEntity() {
+        final SignatureCertificateKey otherKey = new SignatureCertificateKey("other", null, null, McpEntityType.DEVICE);
+        this.signatureCertificateCache.put(this.key, this.bundle);
+        this.signatureCertificateCache.put(otherKey, new SignatureCertificateBundle(BigInteger.TWO,
+                this.signatureCertificate,
+                null,
+                this.bundle.eTag()));
+
+        // Drop the bundles of the first MRN entity
+        this.signatureCertificateCache.invalidateMrnEntity(BigInteger.TEN);
+
+        // Make sure only the other bundle remains
+        assertNull(this.signatureCertificateCache.get(this.key));
+        assertNotNull(this.signatureCertificateCache.get(otherKey));
+    }
+
+    /**
+     * Test that bundles built before an invalidation of their MRN entity are
+     * not cached, while bundles built afterwards are.
+     */
+    @Test
+    void testPutGeneration() {
+        final long generation = this.signatureCertificateCache.generation();
+
+        // Invalidate the MRN entity while the bundle is being built
+        this.signatureCertificateCache.invalidateMrnEntity(BigInteger.TEN);
+
+        // Make sure the stale bundle is not cached
+        assertFalse(this.signatureCertificateCache.put(this.key, this.bundle, generation));
+        assertNull(this.signatureCertificateCache.get(this.key));
+
+        // But a bundle of the current generation is
+        assertTrue(this.signatureCertificateCache.put(this.key, this.bundle, this.signatureCertificateCache.generation()));
+        assertEquals(this.bundle, this.signatureCertificateCache.get(this.key));
+    }
+
+    /**
+     * Test that all the cached bundles are dropped when the truststore is
+     * reloaded, since they include the root certificate.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testTrustStoreReload() {
+        final ArgumentCaptor<Consumer<TrustStoreManager.TrustStoreSnapshot>> listenerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(this.trustStoreManager, times(1)).addReloadListener(listenerCaptor.capture());
+        this.signatureCertificateCache.put(this.key, this.bundle);
+
+        // Reload the truststore
+        listenerCaptor.getValue().accept(TrustStoreManager.TrustStoreSnapshot.empty());
+
+        // Make sure the bundle was dropped
+        assertNull(this.signatureCertificateCache.get(this.key));
+    }
+
+    /**
+     * Test that the computed ETags are strong, deterministic and change when
+     * the signature certificate contents change.
+     */
+    @Test
+    void testComputeETag() {
+        final String eTag = SignatureCertificateCache.computeETag(this.signatureCertificate);
+        assertTrue(eTag.startsWith("\""));
+        assertTrue(eTag.endsWith("\""));
+        assertEquals(eTag, SignatureCertificateCache.computeETag(this.signatureCertificate));
+
+        // Change the certificate and make sure the ETag changes
+        this.signatureCertificate.setCertificateId(BigInteger.TWO);
+        assertNotEquals(eTag, SignatureCertificateCache.computeETag(this.signatureCertificate));
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import org.grad.eNav.cKeeper.utils.X509Utils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SignatureEnginesTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    SignatureEngines signatureEngines;
+
+    // Test Variables
+    private KeyPair keyPair;
+    private byte[] payload;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        this.signatureEngines.enginesPerThread = 2;
+        this.signatureEngines.init();
+
+        // Create a key pair and a payload to sign
+        this.keyPair = X509Utils.generateKeyPair(null);
+        this.payload = "Hello World".getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test that the providers are only pinned once an engine has been
+     * initialised successfully with an actual key.
+     */
+    @Test
+    void testProviderPinned() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        assertTrue(this.signatureEngines.providers.isEmpty());
+
+        // Sign the payload
+        this.signatureEngines.sign("SHA3-384withECDSA", this.keyPair.getPrivate(), this.payload);
+
+        // Make sure the provider that accepted the key was pinned
+        assertNotNull(this.signatureEngines.providers.get("SHA3-384withECDSA"));
+        assertEquals(1, this.signatureEngines.providers.size());
+    }
+
+    /**
+     * Test that if the pinned provider does not accept a key, the JCA
+     * provider selection takes place again for that engine.
+     */
+    @Test
+    void testPinnedProviderRejectsKey() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        final Signature rejectingSignature = mock(Signature.class);
+        doThrow(InvalidKeyException.class).when(rejectingSignature).initSign(any());
+        doReturn(rejectingSignature).when(this.signatureEngines).getInstance("SHA3-384withECDSA");
+        this.signatureEngines.providers.put("SHA3-384withECDSA", Signature.getInstance("SHA3-384withECDSA").getProvider());
+
+        // Sign and verify the payload
+        final byte[] signature = this.signatureEngines.sign("SHA3-384withECDSA", this.keyPair.getPrivate(), this.payload);
+        final Signature verification = Signature.getInstance("SHA3-384withECDSA");
+        verification.initVerify(this.keyPair.getPublic());
+        verification.update(this.payload);
+        assertTrue(verification.verify(signature));
+    }
+
+    /**
+     * Test that the engines initialised with a key are dropped when the key
+     * is evicted, so that they do not keep the key around.
+     */
+    @Test
+    void testEvict() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        this.signatureEngines.sign("SHA3-384withECDSA", this.keyPair.getPrivate(), this.payload);
+
+        // Evict the key and sign again
+        this.signatureEngines.evict(this.keyPair.getPrivate());
+        this.signatureEngines.sign("SHA3-384withECDSA", this.keyPair.getPrivate(), this.payload);
+
+        // Make sure the engine had to be recreated
+        verify(this.signatureEngines, times(2)).getInstance("SHA3-384withECDSA");
+    }
+
+    /**
+     * Test that the engines of all the threads are dropped when evicting a
+     * key from another thread.
+     */
+    @Test
+    void testEvictOtherThread() throws InterruptedException {
+        final CountDownLatch signed = new CountDownLatch(1);
+        final CountDownLatch evicted = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> {
+            try {
+                this.signatureEngines.sign("SHA3-384withECDSA", this.keyPair.getPrivate(), this.payload);
+                signed.countDown();
+                evicted.await();
+            } catch (GeneralSecurityException | InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        thread.start();
+        assertTrue(signed.await(10, TimeUnit.SECONDS));
+
+        // Evict the key from this thread, while the other one is still alive
+        this.signatureEngines.evict(this.keyPair.getPrivate());
+
+        // Make sure no engine holds the key anymore
+        try {
+            synchronized (this.signatureEngines.allEngines) {
+                assertFalse(this.signatureEngines.allEngines.isEmpty());
+                for(SignatureEngines.EngineSlots slots : this.signatureEngines.allEngines) {
+                    assertNull(slots.find("SHA3-384withECDSA", this.keyPair.getPrivate(), true));
+                }
+            }
+        } finally {
+            evicted.countDown();
+            thread.join();
+        }
+    }
+
+    /**
+     * Test that the signatures generated can be verified, and that the
+     * initialised engines are reused for the same algorithm and key.
+     */
+    @Test
+    void testSignAndVerify() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        // Sign and verify the payload twice
+        for(int i = 0; i < 2; i++) {
+            final byte[] signature = this.signatureEngines.sign("SHA3-384withECDSA", this.keyPair.getPrivate(), this.payload);
+            assertTrue(this.signatureEngines.verify("SHA3-384withECDSA", this.keyPair.getPublic(), this.payload, signature));
+            assertFalse(this.signatureEngines.verify("SHA3-384withECDSA", this.keyPair.getPublic(), "Tampered".getBytes(StandardCharsets.UTF_8), signature));
+        }
+
+        // Make sure only one signing and one verification engine were created
+        verify(this.signatureEngines, times(2)).getInstance("SHA3-384withECDSA");
+    }
+
+    /**
+     * Test that when more algorithm and key combinations are used than the
+     * engines kept per thread, the oldest engines are replaced.
+     */
+    @Test
+    void testSignEngineReplaced() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException, InvalidAlgorithmParameterException {
+        final KeyPair otherKeyPair = X509Utils.generateKeyPair(null);
+
+        // Sign with three different combinations, and then the first again
+        this.signatureEngines.sign("SHA3-384withECDSA", this.keyPair.getPrivate(), this.payload);
+        this.signatureEngines.sign("SHA256withECDSA", this.keyPair.getPrivate(), this.payload);
+        this.signatureEngines.sign("SHA3-384withECDSA", otherKeyPair.getPrivate(), this.payload);
+        this.signatureEngines.sign("SHA3-384withECDSA", this.keyPair.getPrivate(), this.payload);
+
+        // Make sure the first engine had to be recreated
+        verify(this.signatureEngines, times(3)).getInstance("SHA3-384withECDSA");
+        verify(this.signatureEngines, times(1)).getInstance("SHA256withECDSA");
+    }
+
+    /**
+     * Test that an engine failing to verify a corrupted signature is dropped,
+     * and that the next verification still succeeds.
+     */
+    @Test
+    void testVerifyCorruptedSignature() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        final byte[] signature = this.signatureEngines.sign("SHA3-384withECDSA", this.keyPair.getPrivate(), this.payload);
+
+        // Verify a corrupted signature
+        assertThrows(SignatureException.class, () ->
+                this.signatureEngines.verify("SHA3-384withECDSA", this.keyPair.getPublic(), this.payload, new byte[]{1, 2, 3}));
+
+        // Make sure the correct signature is still verified on a new engine
+        assertTrue(this.signatureEngines.verify("SHA3-384withECDSA", this.keyPair.getPublic(), this.payload, signature));
+        verify(this.signatureEngines, times(3)).getInstance("SHA3-384withECDSA");
+    }
+
+    /**
+     * Test that an unknown algorithm cannot be used.
+     */
+    @Test
+    void testSignUnknownAlgorithm() {
+        assertThrows(NoSuchAlgorithmException.class, () ->
+                this.signatureEngines.sign("UNKNOWN", this.keyPair.getPrivate(), this.payload));
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import org.grad.eNav.cKeeper.components.TrustStoreManager.TrustStoreSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class TrustStoreManagerTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    TrustStoreManager trustStoreManager;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        this.trustStoreManager.trustStore = "truststore.jks";
+        this.trustStoreManager.trustStorePassword = "password";
+        this.trustStoreManager.trustStoreType = "JKS";
+    }
+
+    /**
+     * Clean up after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.trustStoreManager.destroy();
+    }
+
+    /**
+     * Test that the truststore is loaded into memory once, and the trusted
+     * certificates can then be retrieved by their alias.
+     */
+    @Test
+    void testInit() {
+        this.trustStoreManager.init();
+
+        // Make sure the trusted certificates are available
+        assertNotNull(this.trustStoreManager.getCertificate("test-cert"));
+        assertNull(this.trustStoreManager.getCertificate("unknown"));
+        assertNull(this.trustStoreManager.getCertificate(null));
+        assertNotNull(this.trustStoreManager.getTrustManagerFactory());
+
+        // Make sure the snapshot cannot be modified
+        assertThrows(UnsupportedOperationException.class, () ->
+                this.trustStoreManager.getSnapshot().certificates().clear()
+        );
+    }
+
+    /**
+     * Test that without a truststore password, an empty snapshot will be
+     * used and nothing will be trusted.
+     */
+    @Test
+    void testInitNotConfigured() {
+        this.trustStoreManager.trustStorePassword = "";
+        this.trustStoreManager.init();
+
+        // Make sure nothing is trusted
+        assertTrue(this.trustStoreManager.getSnapshot().certificates().isEmpty());
+        assertNull(this.trustStoreManager.getTrustManagerFactory());
+    }
+
+    /**
+     * Test that a reload replaces the current snapshot and notifies the
+     * registered listeners, while a failed reload retains the previous
+     * snapshot.
+     */
+    @Test
+    void testReload() {
+        this.trustStoreManager.init();
+        final TrustStoreSnapshot initialSnapshot = this.trustStoreManager.getSnapshot();
+
+        // Register a listener and reload
+        final TrustStoreSnapshot[] notified = new TrustStoreSnapshot[1];
+        this.trustStoreManager.addReloadListener(snapshot -> notified[0] = snapshot);
+        final TrustStoreSnapshot reloadedSnapshot = this.trustStoreManager.reload();
+
+        // Make sure the snapshot was replaced and the listener notified
+        assertNotSame(initialSnapshot, reloadedSnapshot);
+        assertSame(reloadedSnapshot, notified[0]);
+
+        // Now break the truststore configuration and reload
+        this.trustStoreManager.trustStorePassword = "wrong";
+        assertSame(reloadedSnapshot, this.trustStoreManager.reload());
+        assertNotNull(this.trustStoreManager.getCertificate("test-cert"));
+    }
+
+    /**
+     * Test that when the truststore file changes on disk, it will be
+     * reloaded automatically.
+     */
+    @Test
+    void testWatch(@TempDir Path tempDir) throws IOException, InterruptedException {
+        // Copy the truststore into a file on disk
+        final Path trustStoreFile = tempDir.resolve("truststore.jks");
+        try(InputStream in = this.getClass().getClassLoader().getResourceAsStream("truststore.jks")) {
+            Files.copy(in, trustStoreFile);
+        }
+        this.trustStoreManager.trustStore = trustStoreFile.toString();
+        this.trustStoreManager.init();
+
+        // Register a listener to wait for the reload
+        final CountDownLatch reloaded = new CountDownLatch(1);
+        this.trustStoreManager.addReloadListener(snapshot -> reloaded.countDown());
+
+        // Touch the truststore file
+        final Path updatedFile = tempDir.resolve("truststore.tmp");
+        Files.copy(trustStoreFile, updatedFile);
+        Files.move(updatedFile, trustStoreFile, StandardCopyOption.REPLACE_EXISTING);
+
+        // Make sure the truststore was reloaded
+        assertTrue(reloaded.await(30, TimeUnit.SECONDS));
+        assertNotNull(this.trustStoreManager.getCertificate("test-cert"));
+    }
+
+}
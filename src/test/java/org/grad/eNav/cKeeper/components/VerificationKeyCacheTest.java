@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.grad.eNav.cKeeper.components.VerificationKeyCache.VerificationKey;
+import org.grad.eNav.cKeeper.utils.X509Utils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VerificationKeyCacheTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    VerificationKeyCache verificationKeyCache;
+
+    /**
+     * The Signature Engines mock.
+     */
+    @Mock
+    SignatureEngines signatureEngines;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+    private VerificationKey verificationKey;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.verificationKeyCache.meterRegistry = this.meterRegistry;
+        this.verificationKeyCache.init();
+
+        // Generate a verification key to cache
+        this.verificationKey = new VerificationKey(BigInteger.ONE,
+                X509Utils.generateKeyPair(null).getPublic(),
+                new Date(new Date().getTime() - 1000),
+                new Date(new Date().getTime() + 1000));
+    }
+
+    /**
+     * Test that we can cache and retrieve the verification keys based on the
+     * MRN entity ID.
+     */
+    @Test
+    void testPutAndGet() {
+        assertNull(this.verificationKeyCache.get(BigInteger.ONE));
+
+        // Cache the verification keys
+        this.verificationKeyCache.put(BigInteger.ONE, List.of(this.verificationKey));
+
+        // Make sure the verification keys are now available
+        assertEquals(List.of(this.verificationKey), this.verificationKeyCache.get(BigInteger.ONE));
+        assertNull(this.verificationKeyCache.get(BigInteger.TWO));
+    }
+
+    /**
+     * Test that we can drop the cached verification keys based on the MRN
+     * entity ID.
+     */
+    @Test
+    void testInvalidate() {
+        this.verificationKeyCache.put(BigInteger.ONE, List.of(this.verificationKey));
+        this.verificationKeyCache.put(BigInteger.TWO, List.of(this.verificationKey));
+
+        // Drop the first key set
+        this.verificationKeyCache.invalidate(BigInteger.ONE);
+
+        // Make sure only the second one remains
+        assertNull(this.verificationKeyCache.get(BigInteger.ONE));
+        assertNotNull(this.verificationKeyCache.get(BigInteger.TWO));
+
+        // Drop everything
+        this.verificationKeyCache.invalidateAll();
+        assertNull(this.verificationKeyCache.get(BigInteger.TWO));
+    }
+
+    /**
+     * Test that when the public keys are dropped, either as part of the MRN
+     * entity key sets or individually, the signature engines initialised
+     * with them are dropped as well.
+     */
+    @Test
+    void testInvalidateEvictsEngines() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        final PublicKey certificateKey = X509Utils.generateKeyPair(null).getPublic();
+        this.verificationKeyCache.put(BigInteger.ONE, List.of(this.verificationKey));
+        this.verificationKeyCache.putCertificateKey(BigInteger.TWO, certificateKey);
+
+        // Drop the public keys
+        this.verificationKeyCache.invalidate(BigInteger.ONE);
+        this.verificationKeyCache.invalidateCertificate(BigInteger.TWO);
+
+        // Make sure the signature engines were dropped as well
+        verify(this.signatureEngines, timeout(1000).times(1)).evict(this.verificationKey.publicKey());
+        verify(this.signatureEngines, timeout(1000).times(1)).evict(certificateKey);
+    }
+
+    /**
+     * Test that we can cache, retrieve and drop the public keys of individual
+     * certificates based on the certificate ID.
+     */
+    @Test
+    void testCertificateKeys() {
+        assertNull(this.verificationKeyCache.getCertificateKey(BigInteger.ONE));
+
+        // Cache the certificate public key
+        this.verificationKeyCache.putCertificateKey(BigInteger.ONE, this.verificationKey.publicKey());
+        assertEquals(this.verificationKey.publicKey(), this.verificationKeyCache.getCertificateKey(BigInteger.ONE));
+
+        // Drop it again
+        this.verificationKeyCache.invalidateCertificate(BigInteger.ONE);
+        assertNull(this.verificationKeyCache.getCertificateKey(BigInteger.ONE));
+    }
+
+    /**
+     * Test that the verification key validity is evaluated correctly based
+     * on the certificate start and end dates.
+     */
+    @Test
+    void testVerificationKeyIsValidAt() {
+        assertTrue(this.verificationKey.isValidAt(new Date()));
+        assertFalse(this.verificationKey.isValidAt(new Date(this.verificationKey.startDate().getTime() - 1000)));
+        assertFalse(this.verificationKey.isValidAt(new Date(this.verificationKey.endDate().getTime() + 1000)));
+        assertTrue(new VerificationKey(BigInteger.ONE, this.verificationKey.publicKey(), null, null).isValidAt(new Date()));
+    }
+
+    /**
+     * Test that the cache hits and misses are registered with the meter
+     * registry.
+     */
+    @Test
+    void testMetrics() {
+        this.verificationKeyCache.get(BigInteger.ONE);
+        this.verificationKeyCache.put(BigInteger.ONE, List.of(this.verificationKey));
+        this.verificationKeyCache.get(BigInteger.ONE);
+
+        // Make sure the metrics are populated
+        assertEquals(1.0, this.meterRegistry.get("cache.gets").tag("cache", "verificationKeys").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, this.meterRegistry.get("cache.gets").tag("cache", "verificationKeys").tag("result", "miss").functionCounter().count());
+    }
+
+}
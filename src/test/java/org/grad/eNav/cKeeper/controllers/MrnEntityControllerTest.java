@@ -26,6 +26,7 @@ import org.grad.eNav.cKeeper.models.dtos.CertificateDto;
 import org.grad.eNav.cKeeper.models.dtos.MrnEntityDto;
 import org.grad.eNav.cKeeper.models.dtos.datatables.*;
 import org.grad.eNav.cKeeper.services.CertificateService;
+import org.grad.eNav.cKeeper.services.McpSyncService;
 import org.grad.eNav.cKeeper.services.MrnEntityService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -85,6 +86,12 @@ class MrnEntityControllerTest {
     @MockBean
     CertificateService certificateService;
 
+    /**
+     * The MCP Sync Service mock.
+     */
+    @MockBean
+    McpSyncService mcpSyncService;
+
     // Test Variables
     private List<MrnEntityDto> entities;
     private Pageable pageable;
@@ -18,10 +18,16 @@ package org.grad.eNav.cKeeper.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.grad.eNav.cKeeper.TestingConfiguration;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache.SignatureCertificateBundle;
 import org.grad.eNav.cKeeper.models.domain.SignatureCertificate;
 import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.models.dtos.SignatureBatchVerificationRequestDto;
 import org.grad.eNav.cKeeper.models.dtos.SignatureCertificateDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureRequestDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureResponseDto;
 import org.grad.eNav.cKeeper.models.dtos.SignatureVerificationRequestDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureVerificationResponseDto;
 import org.grad.eNav.cKeeper.services.CertificateService;
 import org.grad.eNav.cKeeper.services.SignatureService;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,6 +37,7 @@ import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfi
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -40,6 +47,7 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.Collections;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -47,6 +55,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ActiveProfiles("test")
@@ -85,6 +94,7 @@ class SignatureControllerTest {
     private Integer mmsi;
     private McpEntityType mcpEntityType;
     private SignatureCertificate signatureCertificate;
+    private SignatureCertificateBundle signatureCertificateBundle;
     private SignatureVerificationRequestDto svr;
 
     /**
@@ -104,6 +114,7 @@ class SignatureControllerTest {
         this.signatureCertificate.setCertificate("Certificate");
         this.signatureCertificate.setPublicKey("PublicKey");
         this.signatureCertificate.setRootCertificate("rootCertificateThumbprint");
+        this.signatureCertificateBundle = new SignatureCertificateBundle(BigInteger.ONE, this.signatureCertificate, null, SignatureCertificateCache.computeETag(this.signatureCertificate));
 
         // Create a new signature verification request
         this.svr = new SignatureVerificationRequestDto();
@@ -117,13 +128,14 @@ class SignatureControllerTest {
      */
     @Test
     void testGetSignatureCertificate() throws Exception {
-        doReturn(this.signatureCertificate).when(this.signatureService).getSignatureCertificate(any(), any(), any(), any());
+        doReturn(this.signatureCertificateBundle).when(this.signatureService).getSignatureCertificateBundle(any(), any(), any(), any());
 
         // Perform the MVC request
         MvcResult mvcResult = this.mockMvc.perform(get("/api/signature/certificate?entityName={entityName}&mmsi={mmsi}&entityType={entityType}", this.entityName, this.mmsi, McpEntityType.SERVICE.getValue())
                         .contentType(MediaType.APPLICATION_JSON_VALUE)
                         .content(this.svr.getContent()))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, this.signatureCertificateBundle.eTag()))
                 .andReturn();
 
         // Parse and validate the response
@@ -134,6 +146,26 @@ class SignatureControllerTest {
         assertEquals(this.signatureCertificate.getRootCertificate(), result.getRootCertificate());
     }
 
+    /**
+     * Test that if the signature certificate has not changed since the last
+     * time it was retrieved, based on the provided ETag, an HTTP NOT MODIFIED
+     * will be returned without a body.
+     */
+    @Test
+    void testGetSignatureCertificateNotModified() throws Exception {
+        doReturn(this.signatureCertificateBundle).when(this.signatureService).getSignatureCertificateBundle(any(), any(), any(), any());
+
+        // Perform the MVC request
+        MvcResult mvcResult = this.mockMvc.perform(get("/api/signature/certificate?entityName={entityName}&mmsi={mmsi}&entityType={entityType}", this.entityName, this.mmsi, McpEntityType.SERVICE.getValue())
+                        .header(HttpHeaders.IF_NONE_MATCH, this.signatureCertificateBundle.eTag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, this.signatureCertificateBundle.eTag()))
+                .andReturn();
+
+        // Make sure there is no content
+        assertEquals("", mvcResult.getResponse().getContentAsString());
+    }
+
     /**
      * Test that we can generate a signature based on a specific certificate
      * assigned to an entity.
@@ -186,7 +218,7 @@ class SignatureControllerTest {
     @Test
     void testGenerateEntitySignatureForDevice() throws Exception {
         doReturn(this.signatureCertificate).when(this.signatureService).getSignatureCertificate(any(), any(), any(), any());
-        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), any(), any());
+        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), eq(McpEntityType.DEVICE), any(), any());
 
         // Perform the MVC request
         MvcResult mvcResult = this.mockMvc.perform(post("/api/signature/entity/generate/{entityName}?mmsi={mmsi}&entityType={entityType}", this.entityName, this.mmsi, McpEntityType.DEVICE.getValue())
@@ -209,7 +241,7 @@ class SignatureControllerTest {
     @Test
     void testGenerateEntitySignatureForService() throws Exception {
         doReturn(this.signatureCertificate).when(this.signatureService).getSignatureCertificate(any(), any(), any(), any());
-        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), any(), any());
+        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), eq(McpEntityType.SERVICE), any(), any());
 
         // Perform the MVC request
         MvcResult mvcResult = this.mockMvc.perform(post("/api/signature/entity/generate/{entityName}?version={version}&entityType={entityType}", this.entityName, this.version, McpEntityType.SERVICE.getValue())
@@ -232,7 +264,7 @@ class SignatureControllerTest {
     @Test
     void testGenerateEntitySignatureForVessel() throws Exception {
         doReturn(this.signatureCertificate).when(this.signatureService).getSignatureCertificate(any(), any(), any(), any());
-        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), any(), any());
+        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), eq(McpEntityType.VESSEL), any(), any());
 
         // Perform the MVC request
         MvcResult mvcResult = this.mockMvc.perform(post("/api/signature/entity/generate/{entityName}?mmsi={mmsi}&entityType={entityType}", this.entityName, this.mmsi, McpEntityType.VESSEL.getValue())
@@ -255,7 +287,7 @@ class SignatureControllerTest {
     @Test
     void testGenerateEntitySignatureForUser() throws Exception {
         doReturn(this.signatureCertificate).when(this.signatureService).getSignatureCertificate(any(), any(), any(), any());
-        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), any(), any());
+        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), eq(McpEntityType.USER), any(), any());
 
         // Perform the MVC request
         MvcResult mvcResult = this.mockMvc.perform(post("/api/signature/entity/generate/{entityName}?mmsi={mmsi}&entityType={entityType}", this.entityName, this.mmsi, McpEntityType.USER.getValue())
@@ -278,7 +310,7 @@ class SignatureControllerTest {
     @Test
     void testGenerateEntitySignatureFoRole() throws Exception {
         doReturn(this.signatureCertificate).when(this.signatureService).getSignatureCertificate(any(), any(), any(), any());
-        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), any(), any());
+        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), eq(McpEntityType.ROLE), any(), any());
 
         // Perform the MVC request
         MvcResult mvcResult = this.mockMvc.perform(post("/api/signature/entity/generate/{entityName}?mmsi={mmsi}&entityType={entityType}", this.entityName, this.mmsi, McpEntityType.ROLE.getValue())
@@ -301,7 +333,7 @@ class SignatureControllerTest {
     @Test
     void testGenerateEntitySignatureWithAlgorithm() throws Exception {
         doReturn(this.signatureCertificate).when(this.signatureService).getSignatureCertificate(any(), any(), any(), any());
-        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), eq("someAlgorithm"), any());
+        doReturn(this.svr.getSignature().getBytes()).when(this.signatureService).generateEntitySignature(any(), eq(McpEntityType.DEVICE), eq("someAlgorithm"), any());
 
         // Perform the MVC request
         MvcResult mvcResult = this.mockMvc.perform(post("/api/signature/entity/generate/{entityName}?mmsi={mmsi}&entityType={entityType}&algorithm={algorithm}", this.entityName, this.mmsi, McpEntityType.DEVICE.getValue(), "someAlgorithm")
@@ -317,6 +349,34 @@ class SignatureControllerTest {
         }
     }
 
+    /**
+     * Test that we can generate a batch of signatures in a single request.
+     */
+    @Test
+    void testGenerateBatchSignatures() throws Exception {
+        // Create a batch signature request and response
+        final SignatureRequestDto signatureRequest = new SignatureRequestDto();
+        signatureRequest.setCertificateId(this.signatureCertificate.getCertificateId());
+        signatureRequest.setPayload(this.svr.getContent());
+        final SignatureResponseDto signatureResponse = new SignatureResponseDto();
+        signatureResponse.setCertificateId(this.signatureCertificate.getCertificateId());
+        signatureResponse.setSignature(this.svr.getSignature());
+
+        doReturn(Collections.singletonList(signatureResponse)).when(this.signatureService).generateBatchSignatures(any());
+
+        // Perform the MVC request
+        MvcResult mvcResult = this.mockMvc.perform(post("/api/signature/batch")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .content(this.objectMapper.writeValueAsString(Collections.singletonList(signatureRequest))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // Parse and validate the response
+        SignatureResponseDto[] result = this.objectMapper.readValue(mvcResult.getResponse().getContentAsString(), SignatureResponseDto[].class);
+        assertEquals(1, result.length);
+        assertEquals(signatureResponse, result[0]);
+    }
+
     /**
      * Test that we can correctly verify that some content matches the provided
      * signature, for a given entity MRN.
@@ -381,4 +441,32 @@ class SignatureControllerTest {
                 .andReturn();
     }
 
-}
\ No newline at end of file
+    /**
+     * Test that we can verify a batch of signatures in a single request.
+     */
+    @Test
+    void testVerifyBatchSignatures() throws Exception {
+        // Create a batch verification request and response
+        final SignatureBatchVerificationRequestDto verificationRequest = new SignatureBatchVerificationRequestDto();
+        verificationRequest.setMmsi(this.mmsi);
+        verificationRequest.setContent(this.svr.getContent());
+        verificationRequest.setSignature(this.svr.getSignature());
+        final SignatureVerificationResponseDto verificationResponse = new SignatureVerificationResponseDto();
+        verificationResponse.setValid(true);
+
+        doReturn(Collections.singletonList(verificationResponse)).when(this.signatureService).verifyBatchSignatures(any());
+
+        // Perform the MVC request
+        MvcResult mvcResult = this.mockMvc.perform(post("/api/signature/verify/batch")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .content(this.objectMapper.writeValueAsString(Collections.singletonList(verificationRequest))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // Parse and validate the response
+        SignatureVerificationResponseDto[] result = this.objectMapper.readValue(mvcResult.getResponse().getContentAsString(), SignatureVerificationResponseDto[].class);
+        assertEquals(1, result.length);
+        assertEquals(verificationResponse, result[0]);
+    }
+
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.grad.eNav.cKeeper.CKeeper;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.models.dtos.SignatureVerificationRequestDto;
+import org.grad.eNav.cKeeper.services.McpConfigService;
+import org.grad.eNav.cKeeper.simulator.McpMirSimulator;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * The Signature API Load Harness.
+ * <p/>
+ * Boots the application against an in-memory H2 database and the MCP MIR
+ * simulator, and then drives the signature REST API over HTTP with a fixed
+ * number of concurrent clients, each sending its next request as soon as
+ * the previous one completes. The following scenarios are supported:
+ * <ul>
+ *     <li>certificate: GET /api/signature/certificate</li>
+ *     <li>sign-entity: POST /api/signature/entity/generate/{entityName}</li>
+ *     <li>sign-certificate: POST /api/signature/certificate/{certificateId}</li>
+ *     <li>verify-mrn: POST /api/signature/entity/verify/{entityMrn}</li>
+ *     <li>verify-mmsi: POST /api/signature/mmsi/verify/{mmsi}</li>
+ * </ul>
+ * Each request picks one of the load test entities at random, while the
+ * signing and verification scenarios are repeated for every payload size.
+ * The entities, their certificates and the signatures to be verified are
+ * all prepared before the measurements start.
+ * <p/>
+ * The throughput and the latency percentiles of each scenario are reported
+ * on completion. If a maximum 99th percentile latency or error rate is
+ * provided, the harness exits with a non-zero status when any scenario
+ * exceeds it, so that it can be used to catch regressions.
+ * <p/>
+ * The harness is configured through "--name=value" arguments:
+ * <ul>
+ *     <li>concurrency: the number of concurrent clients (default 16)</li>
+ *     <li>entities: the number of entities to spread the requests over (default 50)</li>
+ *     <li>payload-sizes: the comma-separated payload sizes in bytes (default 64,1024,16384)</li>
+ *     <li>scenarios: the comma-separated scenarios to run (default all)</li>
+ *     <li>warmup-seconds: the warmup duration of each scenario (default 5)</li>
+ *     <li>duration-seconds: the measured duration of each scenario (default 20)</li>
+ *     <li>mcp-latency-ms: the latency of the simulated MCP MIR (default 0)</li>
+ *     <li>max-p99-ms: the maximum allowed 99th percentile latency (default 0, i.e. unchecked)</li>
+ *     <li>max-error-rate: the maximum allowed error rate (default 0.0)</li>
+ * </ul>
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class SignatureApiLoadHarness {
+
+    /**
+     * The scenarios supported by the harness.
+     */
+    public static final List<String> SCENARIOS = List.of("certificate", "sign-entity", "sign-certificate", "verify-mrn", "verify-mmsi");
+
+    // Harness Variables
+    private final int concurrency;
+    private final int entities;
+    private final List<Integer> payloadSizes;
+    private final List<String> scenarios;
+    private final Duration warmup;
+    private final Duration duration;
+    private final long mcpLatencyMs;
+    private final double maxP99Ms;
+    private final double maxErrorRate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpClient httpClient;
+    private String baseUrl;
+    private String[] entityNames;
+    private String[] entityMrns;
+    private String[] entityMmsis;
+    private BigInteger[] certificateIds;
+    private byte[][] payloads;
+    private String[][] verificationBodies;
+
+    /**
+     * Instantiates a new load harness from the provided "--name=value"
+     * arguments.
+     *
+     * @param args the harness arguments
+     */
+    public SignatureApiLoadHarness(String... args) {
+        final Map<String, String> arguments = Arrays.stream(args)
+                .filter(arg -> arg.startsWith("--") && arg.contains("="))
+                .map(arg -> arg.substring(2).split("=", 2))
+                .collect(Collectors.toMap(arg -> arg[0], arg -> arg[1], (a, b) -> b));
+        this.concurrency = Integer.parseInt(arguments.getOrDefault("concurrency", "16"));
+        this.entities = Integer.parseInt(arguments.getOrDefault("entities", "50"));
+        this.payloadSizes = Arrays.stream(arguments.getOrDefault("payload-sizes", "64,1024,16384").split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .toList();
+        this.scenarios = Arrays.stream(arguments.getOrDefault("scenarios", String.join(",", SCENARIOS)).split(","))
+                .map(String::trim)
+                .filter(SCENARIOS::contains)
+                .toList();
+        this.warmup = Duration.ofSeconds(Long.parseLong(arguments.getOrDefault("warmup-seconds", "5")));
+        this.duration = Duration.ofSeconds(Long.parseLong(arguments.getOrDefault("duration-seconds", "20")));
+        this.mcpLatencyMs = Long.parseLong(arguments.getOrDefault("mcp-latency-ms", "0"));
+        this.maxP99Ms = Double.parseDouble(arguments.getOrDefault("max-p99-ms", "0"));
+        this.maxErrorRate = Double.parseDouble(arguments.getOrDefault("max-error-rate", "0.0"));
+    }
+
+    /**
+     * Runs the load harness and exits with a non-zero status if any of the
+     * scenarios did not meet the configured thresholds.
+     *
+     * @param args the harness arguments
+     */
+    public static void main(String[] args) throws Exception {
+        System.exit(new SignatureApiLoadHarness(args).run() ? 0 : 1);
+    }
+
+    /**
+     * Boots the MCP MIR simulator and the application, prepares the load
+     * test entities and runs all the selected scenarios.
+     *
+     * @return whether all scenarios met the configured thresholds
+     */
+    public boolean run() throws Exception {
+        final Path workDir = Files.createDirectories(Path.of("target", "loadtest"));
+        try (McpMirSimulator simulator = new McpMirSimulator().setLatency(this.mcpLatencyMs, 0).start(0, true)) {
+            // Trust the simulator CA, which also acts as the root certificate
+            final Path trustStore = workDir.resolve("truststore.p12");
+            simulator.writeTrustStore(trustStore, "password");
+
+            // Boot the application against the simulator
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CKeeper.class)
+                    .properties(
+                            "server.port=0",
+                            "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                            "spring.jpa.hibernate.ddl-auto=create-drop",
+                            "spring.jpa.show-sql=false",
+                            "spring.jpa.properties.hibernate.search.backend.directory.root=./target/lucene-loadtest/",
+                            "gla.rad.ckeeper.mcp.host=" + simulator.getHost(),
+                            "gla.rad.ckeeper.mcp.trustStore=" + trustStore.toAbsolutePath(),
+                            "gla.rad.ckeeper.mcp.trustStorePassword=password",
+                            "gla.rad.ckeeper.mcp.trustStoreType=PKCS12",
+                            "gla.rad.ckeeper.mcp.trustStore.watch=false",
+                            "gla.rad.ckeeper.mcp.trustStore.rootCertificate.alias=mcp-mir-simulator-ca",
+                            "logging.level.root=WARN")
+                    .run()) {
+                this.baseUrl = String.format("http://localhost:%s/api/signature", context.getEnvironment().getProperty("local.server.port"));
+                this.httpClient = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .build();
+
+                // Prepare the entities and run the scenarios
+                this.prepare(context.getBean(McpConfigService.class));
+                final List<ScenarioResult> results = new ArrayList<>();
+                for(String scenario : this.scenarios) {
+                    if(scenario.equals("certificate")) {
+                        results.add(this.runScenario(scenario, 0));
+                    } else {
+                        for(int i = 0; i < this.payloadSizes.size(); i++) {
+                            results.add(this.runScenario(scenario, i));
+                        }
+                    }
+                }
+
+                // Report the results
+                this.report(results, simulator);
+                return results.stream().allMatch(this::meetsThresholds);
+            }
+        }
+    }
+
+    /**
+     * Prepares the load test entities, by requesting their signature
+     * certificates (which issues them through the MCP MIR simulator), and
+     * signs each of the payloads, so that the signatures can be verified.
+     *
+     * @param mcpConfigService the MCP config service to construct the entity MRNs with
+     */
+    protected void prepare(McpConfigService mcpConfigService) throws IOException, InterruptedException {
+        System.out.printf("Preparing %d entities and %d payloads...%n", this.entities, this.payloadSizes.size());
+
+        // Generate the payloads
+        final Random random = new Random(0);
+        this.payloads = new byte[this.payloadSizes.size()][];
+        for(int i = 0; i < this.payloads.length; i++) {
+            this.payloads[i] = new byte[this.payloadSizes.get(i)];
+            random.nextBytes(this.payloads[i]);
+        }
+
+        // Create the entities along with their certificates and signatures
+        this.entityNames = new String[this.entities];
+        this.entityMrns = new String[this.entities];
+        this.entityMmsis = new String[this.entities];
+        this.certificateIds = new BigInteger[this.entities];
+        this.verificationBodies = new String[this.entities][this.payloads.length];
+        for(int e = 0; e < this.entities; e++) {
+            this.entityNames[e] = "loadtest-" + e;
+            this.entityMrns[e] = mcpConfigService.constructMcpEntityMrn(McpEntityType.DEVICE, this.entityNames[e]);
+            this.entityMmsis[e] = String.valueOf(990000000 + e);
+            this.certificateIds[e] = new BigInteger(this.objectMapper
+                    .readTree(this.send(this.certificateRequest(e)).body())
+                    .get("certificateId")
+                    .asText());
+            for(int p = 0; p < this.payloads.length; p++) {
+                final SignatureVerificationRequestDto verificationRequest = new SignatureVerificationRequestDto();
+                verificationRequest.setContent(Base64.getEncoder().encodeToString(this.payloads[p]));
+                verificationRequest.setSignature(Base64.getEncoder().encodeToString(this.send(this.signCertificateRequest(e, p)).body()));
+                this.verificationBodies[e][p] = this.objectMapper.writeValueAsString(verificationRequest);
+            }
+        }
+    }
+
+    /**
+     * Runs the provided scenario for the payload of the provided index. The
+     * scenario is first run for the warmup duration and then for the
+     * measured duration, with the configured number of concurrent clients.
+     *
+     * @param scenario the scenario to be run
+     * @param payloadIndex the index of the payload to be used
+     * @return the scenario result
+     */
+    protected ScenarioResult runScenario(String scenario, int payloadIndex) throws InterruptedException {
+        final IntFunction<HttpRequest> requestFactory = switch (scenario) {
+            case "certificate" -> this::certificateRequest;
+            case "sign-entity" -> e -> this.signEntityRequest(e, payloadIndex);
+            case "sign-certificate" -> e -> this.signCertificateRequest(e, payloadIndex);
+            case "verify-mrn" -> e -> this.verifyMrnRequest(e, payloadIndex);
+            case "verify-mmsi" -> e -> this.verifyMmsiRequest(e, payloadIndex);
+            default -> throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        };
+        final int payloadSize = scenario.equals("certificate") ? 0 : this.payloadSizes.get(payloadIndex);
+        System.out.printf("Running %s (payload %d bytes)...%n", scenario, payloadSize);
+
+        // Warm up first and only then measure
+        final Recorder recorder = new Recorder(3);
+        final LongAdder errors = new LongAdder();
+        this.drive(requestFactory, this.warmup, recorder, errors);
+        recorder.reset();
+        errors.reset();
+        final long start = System.nanoTime();
+        this.drive(requestFactory, this.duration, recorder, errors);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        return new ScenarioResult(scenario, payloadSize, recorder.getIntervalHistogram(), errors.sum(), seconds);
+    }
+
+    /**
+     * Drives the requests created by the provided factory for the provided
+     * duration, with the configured number of concurrent clients. The
+     * latency of every request is recorded in microseconds, while the
+     * failed requests are also counted as errors.
+     *
+     * @param requestFactory the factory of the requests for each entity
+     * @param duration the duration to drive the requests for
+     * @param recorder the latency recorder
+     * @param errors the error counter
+     */
+    protected void drive(IntFunction<HttpRequest> requestFactory, Duration duration, Recorder recorder, LongAdder errors) throws InterruptedException {
+        final long deadline = System.nanoTime() + duration.toNanos();
+        final ExecutorService executor = Executors.newFixedThreadPool(this.concurrency);
+        try {
+            final List<Future<?>> clients = new ArrayList<>();
+            for(int c = 0; c < this.concurrency; c++) {
+                clients.add(executor.submit(() -> {
+                    while(System.nanoTime() < deadline) {
+                        final HttpRequest request = requestFactory.apply(ThreadLocalRandom.current().nextInt(this.entities));
+                        final long requestStart = System.nanoTime();
+                        try {
+                            final int status = this.httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if(status != 200) {
+                                errors.increment();
+                            }
+                        } catch (IOException ex) {
+                            errors.increment();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - requestStart));
+                    }
+                }));
+            }
+            for(Future<?> client : clients) {
+                try {
+                    client.get();
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Prints the throughput and latency percentiles of each scenario, along
+     * with the MCP MIR simulator request count.
+     *
+     * @param results the scenario results
+     * @param simulator the MCP MIR simulator
+     */
+    protected void report(List<ScenarioResult> results, McpMirSimulator simulator) {
+        System.out.printf("%nConcurrency: %d, entities: %d, MCP MIR requests: %d%n",
+                this.concurrency, this.entities, simulator.getRequestCount());
+        System.out.printf("%-18s %9s %10s %8s %11s %9s %9s %9s %9s %9s%n",
+                "Scenario", "Payload", "Requests", "Errors", "Req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for(ScenarioResult result : results) {
+            final Histogram histogram = result.histogram();
+            System.out.printf("%-18s %9d %10d %8d %11.1f %9.2f %9.2f %9.2f %9.2f %9.2f%s%n",
+                    result.scenario(),
+                    result.payloadSize(),
+                    histogram.getTotalCount(),
+                    result.errors(),
+                    result.getThroughput(),
+                    histogram.getValueAtPercentile(50.0) / 1000.0,
+                    histogram.getValueAtPercentile(90.0) / 1000.0,
+                    histogram.getValueAtPercentile(99.0) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0,
+                    this.meetsThresholds(result) ? "" : "  <-- FAILED");
+        }
+    }
+
+    /**
+     * Checks whether the provided scenario result meets the configured
+     * 99th percentile latency and error rate thresholds.
+     *
+     * @param result the scenario result
+     * @return whether the thresholds were met
+     */
+    protected boolean meetsThresholds(ScenarioResult result) {
+        final boolean latencyMet = this.maxP99Ms <= 0
+                || result.histogram().getValueAtPercentile(99.0) / 1000.0 <= this.maxP99Ms;
+        return latencyMet && result.getErrorRate() <= this.maxErrorRate;
+    }
+
+    /**
+     * Sends the provided request, failing if the response is not successful.
+     *
+     * @param request the request to be sent
+     * @return the response
+     */
+    protected HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        final HttpResponse<byte[]> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if(response.statusCode() != 200) {
+            throw new IOException(String.format("Request %s failed with status %d", request.uri(), response.statusCode()));
+        }
+        return response;
+    }
+
+    /**
+     * Creates the signature certificate request for the provided entity.
+     *
+     * @param entity the index of the entity
+     * @return the request
+     */
+    protected HttpRequest certificateRequest(int entity) {
+        return HttpRequest.newBuilder(URI.create(String.format("%s/certificate?entityName=%s&mmsi=%s",
+                        this.baseUrl, this.entityNames[entity], this.entityMmsis[entity])))
+                .GET()
+                .build();
+    }
+
+    /**
+     * Creates the entity signing request for the provided entity and
+     * payload.
+     *
+     * @param entity the index of the entity
+     * @param payload the index of the payload
+     * @return the request
+     */
+    protected HttpRequest signEntityRequest(int entity, int payload) {
+        return HttpRequest.newBuilder(URI.create(String.format("%s/entity/generate/%s?mmsi=%s",
+                        this.baseUrl, this.entityNames[entity], this.entityMmsis[entity])))
+                .header("Content-Type", "text/plain")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(this.payloads[payload]))
+                .build();
+    }
+
+    /**
+     * Creates the certificate signing request for the provided entity and
+     * payload.
+     *
+     * @param entity the index of the entity
+     * @param payload the index of the payload
+     * @return the request
+     */
+    protected HttpRequest signCertificateRequest(int entity, int payload) {
+        return HttpRequest.newBuilder(URI.create(String.format("%s/certificate/%s", this.baseUrl, this.certificateIds[entity])))
+                .header("Content-Type", "text/plain")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(this.payloads[payload]))
+                .build();
+    }
+
+    /**
+     * Creates the MRN verification request for the provided entity and
+     * payload.
+     *
+     * @param entity the index of the entity
+     * @param payload the index of the payload
+     * @return the request
+     */
+    protected HttpRequest verifyMrnRequest(int entity, int payload) {
+        return HttpRequest.newBuilder(URI.create(String.format("%s/entity/verify/%s",
+                        this.baseUrl, URLEncoder.encode(this.entityMrns[entity], StandardCharsets.UTF_8))))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(this.verificationBodies[entity][payload]))
+                .build();
+    }
+
+    /**
+     * Creates the MMSI verification request for the provided entity and
+     * payload.
+     *
+     * @param entity the index of the entity
+     * @param payload the index of the payload
+     * @return the request
+     */
+    protected HttpRequest verifyMmsiRequest(int entity, int payload) {
+        return HttpRequest.newBuilder(URI.create(String.format("%s/mmsi/verify/%s", this.baseUrl, this.entityMmsis[entity])))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(this.verificationBodies[entity][payload]))
+                .build();
+    }
+
+    /**
+     * The result of a scenario run.
+     *
+     * @param scenario the scenario
+     * @param payloadSize the payload size in bytes
+     * @param histogram the latency histogram in microseconds
+     * @param errors the number of failed requests
+     * @param seconds the measured duration in seconds
+     */
+    protected record ScenarioResult(String scenario, int payloadSize, Histogram histogram, long errors, double seconds) {
+
+        /**
+         * Returns the throughput of the scenario in requests per second.
+         *
+         * @return the throughput
+         */
+        double getThroughput() {
+            return this.histogram.getTotalCount() / this.seconds;
+        }
+
+        /**
+         * Returns the ratio of the failed requests.
+         *
+         * @return the error rate
+         */
+        double getErrorRate() {
+            return this.histogram.getTotalCount() == 0 ? 0.0 : (double) this.errors / this.histogram.getTotalCount();
+        }
+
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.repos;
+
+import org.grad.eNav.cKeeper.models.domain.Certificate;
+import org.grad.eNav.cKeeper.models.domain.MrnEntity;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class CertificateRepoTest {
+
+    /**
+     * The Certificate Repo.
+     */
+    @Autowired
+    CertificateRepo certificateRepo;
+
+    /**
+     * The MRN Entity Repo.
+     */
+    @Autowired
+    MRNEntityRepo mrnEntityRepo;
+
+    // Test Variables
+    private MrnEntity mrnEntity;
+    private Date now;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        this.now = new Date();
+
+        // Create the MRN entity the certificates belong to
+        this.mrnEntity = new MrnEntity();
+        this.mrnEntity.setName("mrn_entity");
+        this.mrnEntity.setMrn("urn:mrn:mcp:device:mcc:grad:mrn_entity");
+        this.mrnEntity.setEntityType(McpEntityType.DEVICE);
+        this.mrnEntity.setVersion("");
+        this.mrnEntity = this.mrnEntityRepo.save(this.mrnEntity);
+    }
+
+    /**
+     * Test that the currently valid certificates are returned latest first,
+     * and that the page size limits them to the latest one.
+     */
+    @Test
+    void testFindLatestValid() {
+        final Certificate older = this.createCertificate(this.mrnEntity, this.daysFromNow(-10), this.daysFromNow(10), false);
+        final Certificate newer = this.createCertificate(this.mrnEntity, this.daysFromNow(-1), this.daysFromNow(20), null);
+
+        // Make sure all the valid certificates are returned in order
+        assertEquals(List.of(newer.getId(), older.getId()), this.findLatestValid(10));
+
+        // And that the latest one is returned when limited
+        assertEquals(List.of(newer.getId()), this.findLatestValid(1));
+    }
+
+    /**
+     * Test that certificates that only become valid in the future are not
+     * returned.
+     */
+    @Test
+    void testFindLatestValidFutureStartDate() {
+        final Certificate valid = this.createCertificate(this.mrnEntity, this.daysFromNow(-10), this.daysFromNow(10), false);
+        this.createCertificate(this.mrnEntity, this.daysFromNow(1), this.daysFromNow(30), false);
+
+        // Make sure the future certificate is not returned, although it starts later
+        assertEquals(List.of(valid.getId()), this.findLatestValid(10));
+    }
+
+    /**
+     * Test that expired certificates are not returned.
+     */
+    @Test
+    void testFindLatestValidExpired() {
+        this.createCertificate(this.mrnEntity, this.daysFromNow(-10), this.daysFromNow(-1), false);
+
+        // Make sure the expired certificate is not returned
+        assertTrue(this.findLatestValid(10).isEmpty());
+    }
+
+    /**
+     * Test that revoked certificates are not returned, even if these are
+     * within their validity period.
+     */
+    @Test
+    void testFindLatestValidRevoked() {
+        final Certificate valid = this.createCertificate(this.mrnEntity, this.daysFromNow(-10), this.daysFromNow(10), false);
+        this.createCertificate(this.mrnEntity, this.daysFromNow(-1), this.daysFromNow(10), true);
+
+        // Make sure the revoked certificate is not returned, although it starts later
+        assertEquals(List.of(valid.getId()), this.findLatestValid(10));
+    }
+
+    /**
+     * Test that certificates without an end date are considered valid
+     * indefinitely.
+     */
+    @Test
+    void testFindLatestValidNullEndDate() {
+        final Certificate valid = this.createCertificate(this.mrnEntity, this.daysFromNow(-10), null, false);
+
+        // Make sure the certificate without an end date is returned
+        assertEquals(List.of(valid.getId()), this.findLatestValid(10));
+    }
+
+    /**
+     * Test that only the certificates of the requested MRN entity are
+     * returned.
+     */
+    @Test
+    void testFindLatestValidOtherMrnEntity() {
+        MrnEntity otherMrnEntity = new MrnEntity();
+        otherMrnEntity.setName("other_mrn_entity");
+        otherMrnEntity.setMrn("urn:mrn:mcp:device:mcc:grad:other_mrn_entity");
+        otherMrnEntity.setEntityType(McpEntityType.DEVICE);
+        otherMrnEntity.setVersion("");
+        otherMrnEntity = this.mrnEntityRepo.save(otherMrnEntity);
+        this.createCertificate(otherMrnEntity, this.daysFromNow(-1), this.daysFromNow(10), false);
+
+        // Make sure the certificate of the other MRN entity is not returned
+        assertTrue(this.findLatestValid(10).isEmpty());
+    }
+
+    /**
+     * Queries the latest valid certificate IDs of the test MRN entity.
+     *
+     * @param limit the maximum number of certificates to be returned
+     * @return the IDs of the latest valid certificates
+     */
+    private List<BigInteger> findLatestValid(int limit) {
+        return this.certificateRepo.findLatestValid(this.mrnEntity.getId(), this.now, PageRequest.of(0, limit))
+                .stream()
+                .map(Certificate::getId)
+                .toList();
+    }
+
+    /**
+     * Creates and persists a new certificate for the provided MRN entity.
+     *
+     * @param mrnEntity the MRN entity of the certificate
+     * @param startDate the start date of the certificate
+     * @param endDate the end date of the certificate
+     * @param revoked whether the certificate is revoked
+     * @return the persisted certificate
+     */
+    private Certificate createCertificate(MrnEntity mrnEntity, Date startDate, Date endDate, Boolean revoked) {
+        final Certificate certificate = new Certificate();
+        certificate.setMrnEntity(mrnEntity);
+        certificate.setCertificate("CERTIFICATE");
+        certificate.setPublicKey("PUBLIC_KEY");
+        certificate.setStartDate(startDate);
+        certificate.setEndDate(endDate);
+        certificate.setRevoked(revoked);
+        return this.certificateRepo.saveAndFlush(certificate);
+    }
+
+    /**
+     * Returns the date the provided number of days from the test time.
+     *
+     * @param days the number of days, negative for the past
+     * @return the resulting date
+     */
+    private Date daysFromNow(int days) {
+        return new Date(this.now.getTime() + days * 86400000L);
+    }
+
+}
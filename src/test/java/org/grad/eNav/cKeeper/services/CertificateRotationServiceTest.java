@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.grad.eNav.cKeeper.exceptions.SavingFailedException;
+import org.grad.eNav.cKeeper.models.domain.Certificate;
+import org.grad.eNav.cKeeper.repos.CertificateRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CertificateRotationServiceTest {
+
+    /**
+     * The Tested Service.
+     */
+    @InjectMocks
+    @Spy
+    CertificateRotationService certificateRotationService;
+
+    /**
+     * The Certificate Repo mock.
+     */
+    @Mock
+    CertificateRepo certificateRepo;
+
+    /**
+     * The Certificate Service mock.
+     */
+    @Mock
+    CertificateService certificateService;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+    private Certificate certificate;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        // Initialise the service parameters
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.certificateRotationService.meterRegistry = this.meterRegistry;
+        this.certificateRotationService.enabled = true;
+        this.certificateRotationService.windowHours = 168;
+        this.certificateRotationService.threads = 2;
+        this.certificateRotationService.quotaShare = 0.5;
+        this.certificateRotationService.maxDailyGeneratedCertificates = 100;
+        this.certificateRotationService.init();
+
+        // Create a successor certificate
+        this.certificate = new Certificate();
+        this.certificate.setId(BigInteger.TEN);
+        this.certificate.setStartDate(new Date());
+        this.certificate.setEndDate(new Date(System.currentTimeMillis() + 365L * 24 * 3600 * 1000));
+    }
+
+    /**
+     * Clean up after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.certificateRotationService.destroy();
+    }
+
+    /**
+     * Test that the MRN entities with certificates about to expire will be
+     * rotated, and that the rotation results are recorded.
+     */
+    @Test
+    void testRotate() throws InterruptedException {
+        doReturn(List.of(BigInteger.ONE, BigInteger.TWO)).when(this.certificateRepo).findMrnEntityIdsWithCertificatesExpiringBetween(any(), any());
+        doReturn(0).when(this.certificateRepo).getNumOfGeneratedCertificatesToday();
+        doReturn(Optional.of(this.certificate)).when(this.certificateService).rotateMrnEntityCertificate(eq(BigInteger.ONE), any());
+        doThrow(new SavingFailedException("MCP failure")).when(this.certificateService).rotateMrnEntityCertificate(eq(BigInteger.TWO), any());
+
+        // Perform the service call
+        this.certificateRotationService.rotate();
+        this.awaitRotations();
+
+        // Make sure both entities were rotated
+        verify(this.certificateService, times(1)).rotateMrnEntityCertificate(eq(BigInteger.ONE), any());
+        verify(this.certificateService, times(1)).rotateMrnEntityCertificate(eq(BigInteger.TWO), any());
+
+        // Make sure the metrics are populated
+        assertEquals(1.0, this.meterRegistry.get("ckeeper.certificate.rotations").tag("result", "success").counter().count());
+        assertEquals(1.0, this.meterRegistry.get("ckeeper.certificate.rotations").tag("result", "failure").counter().count());
+        assertEquals(0.0, this.meterRegistry.get("ckeeper.certificate.rotations.pending").gauge().value());
+        assertFalse(this.certificateRotationService.running.get());
+    }
+
+    /**
+     * Test that a rotation run only uses up its share of the daily issuance
+     * quota, starting from the MRN entities whose certificates expire first.
+     */
+    @Test
+    void testRotateQuotaShare() throws InterruptedException {
+        doReturn(List.of(BigInteger.ONE, BigInteger.TWO, BigInteger.TEN)).when(this.certificateRepo).findMrnEntityIdsWithCertificatesExpiringBetween(any(), any());
+        doReturn(48).when(this.certificateRepo).getNumOfGeneratedCertificatesToday();
+        doReturn(Optional.of(this.certificate)).when(this.certificateService).rotateMrnEntityCertificate(any(), any());
+
+        // Perform the service call
+        this.certificateRotationService.rotate();
+        this.awaitRotations();
+
+        // Make sure only the first two entities were rotated
+        verify(this.certificateService, times(1)).rotateMrnEntityCertificate(eq(BigInteger.ONE), any());
+        verify(this.certificateService, times(1)).rotateMrnEntityCertificate(eq(BigInteger.TWO), any());
+        verify(this.certificateService, never()).rotateMrnEntityCertificate(eq(BigInteger.TEN), any());
+    }
+
+    /**
+     * Test that once the rotation share of the daily issuance quota has been
+     * used up, nothing will be rotated.
+     */
+    @Test
+    void testRotateQuotaShareUsedUp() throws InterruptedException {
+        doReturn(List.of(BigInteger.ONE)).when(this.certificateRepo).findMrnEntityIdsWithCertificatesExpiringBetween(any(), any());
+        doReturn(50).when(this.certificateRepo).getNumOfGeneratedCertificatesToday();
+
+        // Perform the service call
+        this.certificateRotationService.rotate();
+        this.awaitRotations();
+
+        // Make sure nothing was rotated, and another run can take place
+        verifyNoInteractions(this.certificateService);
+        assertFalse(this.certificateRotationService.running.get());
+    }
+
+    /**
+     * Test that the scheduled call does not wait for the rotations to
+     * complete, while a new run cannot start before they do.
+     */
+    @Test
+    void testRotateAsync() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        doReturn(List.of(BigInteger.ONE)).when(this.certificateRepo).findMrnEntityIdsWithCertificatesExpiringBetween(any(), any());
+        doReturn(0).when(this.certificateRepo).getNumOfGeneratedCertificatesToday();
+        doAnswer(inv -> {
+            latch.await(5, TimeUnit.SECONDS);
+            return Optional.of(this.certificate);
+        }).when(this.certificateService).rotateMrnEntityCertificate(eq(BigInteger.ONE), any());
+
+        // Perform the service call, which should not wait for the rotation
+        this.certificateRotationService.rotate();
+        assertTrue(this.certificateRotationService.running.get());
+
+        // A second run cannot start while the first is still going
+        this.certificateRotationService.rotate();
+        verify(this.certificateRepo, times(1)).findMrnEntityIdsWithCertificatesExpiringBetween(any(), any());
+
+        // Let the rotation complete
+        latch.countDown();
+        this.awaitRotations();
+        assertFalse(this.certificateRotationService.running.get());
+    }
+
+    /**
+     * Test that when no certificates are about to expire, nothing will be
+     * rotated.
+     */
+    @Test
+    void testRotateNothingToRotate() {
+        doReturn(Collections.emptyList()).when(this.certificateRepo).findMrnEntityIdsWithCertificatesExpiringBetween(any(), any());
+
+        // Perform the service call
+        this.certificateRotationService.rotate();
+
+        // Make sure nothing was rotated
+        verify(this.certificateRepo, never()).getNumOfGeneratedCertificatesToday();
+        verifyNoInteractions(this.certificateService);
+        assertFalse(this.certificateRotationService.running.get());
+    }
+
+    /**
+     * Test that when the service is disabled, nothing will be rotated.
+     */
+    @Test
+    void testRotateDisabled() {
+        this.certificateRotationService.enabled = false;
+
+        // Perform the service call
+        this.certificateRotationService.rotate();
+
+        // Make sure nothing was rotated
+        verifyNoInteractions(this.certificateRepo);
+        verifyNoInteractions(this.certificateService);
+    }
+
+    /**
+     * Waits for the submitted rotations to complete.
+     */
+    private void awaitRotations() throws InterruptedException {
+        this.certificateRotationService.rotationExecutor.shutdown();
+        assertTrue(this.certificateRotationService.rotationExecutor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+}
@@ -16,9 +16,19 @@
 
 package org.grad.eNav.cKeeper.services;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.grad.eNav.cKeeper.components.KeyPairPool;
+import org.grad.eNav.cKeeper.components.MrnEntityLeases;
+import org.grad.eNav.cKeeper.components.MrnEntityLocks;
+import org.grad.eNav.cKeeper.components.PrivateKeyCache;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache;
+import org.grad.eNav.cKeeper.components.SignatureEngines;
+import org.grad.eNav.cKeeper.components.TrustStoreManager;
+import org.grad.eNav.cKeeper.components.VerificationKeyCache;
+import org.grad.eNav.cKeeper.components.VerificationKeyCache.VerificationKey;
 import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
 import org.grad.eNav.cKeeper.exceptions.McpConnectivityException;
 import org.grad.eNav.cKeeper.exceptions.SavingFailedException;
@@ -34,10 +44,16 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
 import java.math.BigInteger;
@@ -45,10 +61,7 @@ import java.security.*;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
-import java.util.Collections;
-import java.util.Date;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -83,6 +96,66 @@ class CertificateServiceTest {
     @Mock
     McpService mcpService;
 
+    /**
+     * The MCP Outbox Service mock.
+     */
+    @Mock
+    McpOutboxService mcpOutboxService;
+
+    /**
+     * The Transaction Manager mock.
+     */
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    /**
+     * The Private Key Cache spy.
+     */
+    @Spy
+    PrivateKeyCache privateKeyCache = new PrivateKeyCache();
+
+    /**
+     * The Verification Key Cache spy.
+     */
+    @Spy
+    VerificationKeyCache verificationKeyCache = new VerificationKeyCache();
+
+    /**
+     * The Signature Certificate Cache spy.
+     */
+    @Spy
+    SignatureCertificateCache signatureCertificateCache = new SignatureCertificateCache();
+
+    /**
+     * The Truststore Manager spy.
+     */
+    @Spy
+    TrustStoreManager trustStoreManager = new TrustStoreManager();
+
+    /**
+     * The MRN Entity Locks spy.
+     */
+    @Spy
+    MrnEntityLocks mrnEntityLocks = new MrnEntityLocks();
+
+    /**
+     * The MRN Entity Leases spy (disabled, since there is no database).
+     */
+    @Spy
+    MrnEntityLeases mrnEntityLeases = new MrnEntityLeases();
+
+    /**
+     * The Signature Engines spy.
+     */
+    @Spy
+    SignatureEngines signatureEngines = new SignatureEngines();
+
+    /**
+     * The Key-Pair Pool spy (not initialised, so always generating on demand).
+     */
+    @Spy
+    KeyPairPool keyPairPool = new KeyPairPool();
+
     // Test Variables
     private Certificate certificate;
     private Certificate newCertificate;
@@ -104,6 +177,14 @@ class CertificateServiceTest {
         // Set the maximum limit of certificates generated daily
         this.certificateService.maxDailyGeneratedCertificates = 100;
 
+        // Initialise the key caches and the MRN entity locks
+        this.privateKeyCache.init();
+        this.verificationKeyCache.init();
+        this.signatureCertificateCache.init();
+        this.mrnEntityLocks.init();
+        this.mrnEntityLeases.enabled = false;
+        this.signatureEngines.init();
+
         // Create an existing MRN entity
         this.mrnEntity = new MrnEntity();
         this.mrnEntity.setId(BigInteger.ONE);
@@ -143,23 +224,75 @@ class CertificateServiceTest {
      */
     @Test
     void testSyncMrnEntityWithMcpMir() throws McpConnectivityException, IOException, InvalidAlgorithmParameterException, NoSuchAlgorithmException, CertificateException, OperatorCreationException {
-        // Add the certificate to the MRN Entity
-        this.mrnEntity.setCertificates(Collections.singleton(this.certificate));
-
         // Create a new test certificate
         KeyPair keypair = X509Utils.generateKeyPair(null);
         PKCS10CertificationRequest csr = X509Utils.generateX509CSR(keypair, "CN=Test", null);
         X509Certificate cert = X509Utils.generateX509Certificate(keypair, "CN=Test", new Date(), new Date(), null);
 
+        // The current database state of the existing certificate
+        final Certificate storedCertificate = new Certificate();
+        storedCertificate.setId(this.certificate.getId());
+        storedCertificate.setMcpMirId(this.certificate.getMcpMirId());
+        storedCertificate.setMrnEntity(this.mrnEntity);
+        storedCertificate.setRevoked(Boolean.FALSE);
+
         // Mock the internal calls
         doReturn(Optional.of(this.mrnEntity)).when(this.mrnEntityRepo).findById(this.mrnEntity.getId());
+        doReturn(Collections.singleton(this.certificate)).when(this.certificateRepo).findAllByMrnEntityId(this.mrnEntity.getId());
+        doReturn(Optional.of(storedCertificate)).when(this.certificateRepo).findById(this.certificate.getId());
         doReturn(Collections.singletonMap(String.valueOf(cert.getSerialNumber()), cert)).when(this.mcpService).getMcpEntityCertificates(McpEntityType.DEVICE, this.mrnEntity.getMrn(), null);
 
         // Perform the service call
-        this.certificateService.syncMrnEntityWithMcpMir(this.mrnEntity.getId());
+        assertTrue(this.certificateService.syncMrnEntityWithMcpMir(this.mrnEntity.getId()));
 
         // Make sure we saved twice, once for the existing and one for the new certificate
-        verify(this.certificateRepo, times(2)).save(any());
+        final ArgumentCaptor<List<Certificate>> savedCaptor = ArgumentCaptor.forClass(List.class);
+        verify(this.certificateRepo, times(1)).saveAll(savedCaptor.capture());
+        assertEquals(2, savedCaptor.getValue().size());
+        assertSame(storedCertificate, savedCaptor.getValue().get(0));
+        assertEquals(Boolean.TRUE, storedCertificate.getRevoked());
+    }
+
+    /**
+     * Test that the local certificates are loaded before the MCP Identity
+     * Registry is contacted, so that a certificate issued locally in the
+     * meantime is not revoked.
+     */
+    @Test
+    void testSyncMrnEntityWithMcpMirLocalFirst() throws McpConnectivityException {
+        // Mock the internal calls
+        doReturn(Optional.of(this.mrnEntity)).when(this.mrnEntityRepo).findById(this.mrnEntity.getId());
+        doReturn(Collections.emptySet()).when(this.certificateRepo).findAllByMrnEntityId(this.mrnEntity.getId());
+        doReturn(Collections.emptyMap()).when(this.mcpService).getMcpEntityCertificates(McpEntityType.DEVICE, this.mrnEntity.getMrn(), null);
+
+        // Perform the service call
+        assertTrue(this.certificateService.syncMrnEntityWithMcpMir(this.mrnEntity.getId()));
+
+        // Make sure the local certificates were loaded before the MCP MIR ones
+        final InOrder inOrder = inOrder(this.certificateRepo, this.mcpService);
+        inOrder.verify(this.certificateRepo, times(1)).findAllByMrnEntityId(this.mrnEntity.getId());
+        inOrder.verify(this.mcpService, times(1)).getMcpEntityCertificates(McpEntityType.DEVICE, this.mrnEntity.getMrn(), null);
+        verify(this.certificateRepo, never()).saveAll(any());
+    }
+
+    /**
+     * Test that if the MCP Identity Registry cannot be contacted, the sync
+     * will be reported as failed and no local certificates will be touched.
+     */
+    @Test
+    void testSyncMrnEntityWithMcpMirNoConnectivity() throws McpConnectivityException {
+        // Mock the internal calls
+        doReturn(Optional.of(this.mrnEntity)).when(this.mrnEntityRepo).findById(this.mrnEntity.getId());
+        doReturn(Collections.singleton(this.certificate)).when(this.certificateRepo).findAllByMrnEntityId(this.mrnEntity.getId());
+        doThrow(McpConnectivityException.class).when(this.mcpService).getMcpEntityCertificates(McpEntityType.DEVICE, this.mrnEntity.getMrn(), null);
+
+        // Perform the service call
+        assertFalse(this.certificateService.syncMrnEntityWithMcpMir(this.mrnEntity.getId()));
+
+        // Make sure the local certificate was not revoked
+        verify(this.certificateRepo, never()).save(any());
+        verify(this.certificateRepo, never()).saveAll(any());
+        assertEquals(Boolean.FALSE, this.certificate.getRevoked());
     }
 
     /**
@@ -176,7 +309,97 @@ class CertificateServiceTest {
         this.certificateService.syncMrnEntityWithMcpMir(this.mrnEntity.getId());
 
         // Make sure we don't do any saving since nothing has changed
+        verify(this.certificateRepo, never()).save(any());
+        verify(this.certificateRepo, never()).saveAll(any());
+    }
+
+    /**
+     * Test that the certificate diff engine only picks up the local
+     * certificates that are no longer in the MCP MIR and the MCP MIR
+     * certificates that are not yet available locally.
+     */
+    @Test
+    void testDiffMrnEntityCertificates() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, CertificateException, OperatorCreationException, IOException {
+        // Create a new test certificate
+        KeyPair keypair = X509Utils.generateKeyPair(null);
+        X509Certificate cert = X509Utils.generateX509Certificate(keypair, "CN=Test", new Date(), new Date(), null);
+
+        // The new certificate is already known locally, but the existing one is not in the MCP MIR
+        this.newCertificate.setMcpMirId(String.valueOf(cert.getSerialNumber()));
+        final Map<String, X509Certificate> mcpCertificates = Map.of(String.valueOf(cert.getSerialNumber()), cert);
+
+        // Perform the service call
+        CertificateService.CertificateDiff result = this.certificateService.diffMrnEntityCertificates(this.mrnEntity, Arrays.asList(this.certificate, this.newCertificate), mcpCertificates);
+
+        // Make sure only the existing certificate was revoked
+        assertEquals(this.mrnEntity.getId(), result.mrnEntityId());
+        assertEquals(1, result.revoked().size());
+        assertEquals(this.certificate.getId(), result.revoked().get(0).getId());
+        assertEquals(Boolean.TRUE, result.revoked().get(0).getRevoked());
+        assertTrue(result.issued().isEmpty());
+        assertFalse(result.isEmpty());
+
+        // And a second time round there should be no differences
+        assertTrue(this.certificateService.diffMrnEntityCertificates(this.mrnEntity, Arrays.asList(this.certificate, this.newCertificate), mcpCertificates).isEmpty());
+        verifyNoInteractions(this.certificateRepo);
+    }
+
+    /**
+     * Test that applying the certificate diffs writes all the changed
+     * certificates at once, and skips the writing altogether when nothing
+     * has changed.
+     */
+    @Test
+    void testApplyCertificateDiffs() {
+        this.certificateService.applyCertificateDiffs(Collections.singletonList(
+                new CertificateService.CertificateDiff(this.mrnEntity.getId(), Collections.emptyList(), Collections.emptyList())));
         verifyNoInteractions(this.certificateRepo);
+        verify(this.mrnEntityLocks, never()).withLocks(any(), any());
+
+        // Now apply some actual changes
+        this.newCertificate.setId(null);
+        doReturn(Optional.of(this.certificate)).when(this.certificateRepo).findById(this.certificate.getId());
+        final List<CertificateService.CertificateDiff> result = this.certificateService.applyCertificateDiffs(Arrays.asList(
+                new CertificateService.CertificateDiff(this.mrnEntity.getId(), Collections.singletonList(this.certificate), Collections.emptyList()),
+                new CertificateService.CertificateDiff(BigInteger.TWO, Collections.emptyList(), Collections.singletonList(this.newCertificate))));
+
+        // Make sure all changes were saved together, under the locks, and the caches dropped
+        assertEquals(2, result.size());
+        assertEquals(List.of(this.certificate), result.get(0).revoked());
+        assertEquals(List.of(this.newCertificate), result.get(1).issued());
+        assertEquals(Boolean.TRUE, this.certificate.getRevoked());
+        verify(this.mrnEntityLocks, times(1)).withLocks(eq(List.of(this.mrnEntity.getId(), BigInteger.TWO)), any());
+        verify(this.certificateRepo, times(1)).saveAll(Arrays.asList(this.certificate, this.newCertificate));
+        verify(this.privateKeyCache, times(1)).invalidate(this.certificate.getId());
+        verify(this.verificationKeyCache, times(1)).invalidate(this.mrnEntity.getId());
+        verify(this.verificationKeyCache, times(1)).invalidate(BigInteger.TWO);
+    }
+
+    /**
+     * Test that applying the certificate diffs skips the changes that have
+     * already taken place in the meantime, i.e. certificates already revoked,
+     * or already saved under the same MCP MIR ID by a concurrent issuance.
+     */
+    @Test
+    void testApplyCertificateDiffsAlreadyApplied() {
+        // Both changes have already taken place
+        final Certificate issuedCertificate = new Certificate();
+        issuedCertificate.setMcpMirId(this.newCertificate.getMcpMirId());
+        issuedCertificate.setMrnEntity(this.mrnEntity);
+        this.certificate.setRevoked(Boolean.TRUE);
+        doReturn(Optional.of(this.certificate)).when(this.certificateRepo).findById(this.certificate.getId());
+        doReturn(Optional.of(this.newCertificate)).when(this.certificateRepo).findByMcpMirId(this.newCertificate.getMcpMirId());
+
+        // Perform the service call
+        final List<CertificateService.CertificateDiff> result = this.certificateService.applyCertificateDiffs(Collections.singletonList(
+                new CertificateService.CertificateDiff(this.mrnEntity.getId(), Collections.singletonList(this.certificate), Collections.singletonList(issuedCertificate))));
+
+        // Make sure nothing was written and no caches were dropped
+        assertEquals(1, result.size());
+        assertTrue(result.get(0).isEmpty());
+        verify(this.certificateRepo, never()).saveAll(any());
+        verify(this.privateKeyCache, never()).invalidate(any());
+        verify(this.verificationKeyCache, never()).invalidate(any());
     }
 
     /**
@@ -203,9 +426,10 @@ class CertificateServiceTest {
     @Test
     void testGetTrustedCertificate() {
         // Initialise the service parameters
-        this.certificateService.trustStore="truststore.jks";
-        this.certificateService.trustStorePassword="password";
-        this.certificateService.trustStoreType="JKS";
+        this.trustStoreManager.trustStore="truststore.jks";
+        this.trustStoreManager.trustStorePassword="password";
+        this.trustStoreManager.trustStoreType="JKS";
+        this.trustStoreManager.reload();
 
         // Call the service
         X509Certificate certificate = this.certificateService.getTrustedCertificate("test-cert");
@@ -229,6 +453,9 @@ class CertificateServiceTest {
         KeyPair keyPair = X509Utils.generateKeyPair(null);
         X509Certificate x509Certificate = X509Utils.generateX509Certificate(keyPair, this.certificateService.certDirName, new Date(), new Date(), null);
 
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.certificateService.meterRegistry = meterRegistry;
+
         doReturn(Optional.of(this.mrnEntity)).when(this.mrnEntityRepo).findById(this.mrnEntity.getId());
         doReturn(new Pair<>(this.certificate.getMcpMirId(), x509Certificate)).when(this.mcpService).issueMcpEntityCertificate(eq(McpEntityType.DEVICE), eq(this.mrnEntity.getMrn()), eq(this.mrnEntity.getVersion()), any());
         doReturn(this.certificate).when(this.certificateRepo).save(any());
@@ -244,6 +471,79 @@ class CertificateServiceTest {
         assertEquals(this.certificate.getStartDate(), result.getStartDate());
         assertEquals(this.certificate.getEndDate(), result.getEndDate());
         assertEquals(this.certificate.getRevoked(), result.getRevoked());
+
+        // Make sure any pending MCP MIR updates were flushed first
+        verify(this.mcpOutboxService, times(1)).flush(this.mrnEntity.getMrn(), this.mrnEntity.getVersion());
+
+        // Make sure the time spent in each issuance stage was recorded
+        for(String stage : new String[]{"prepare", "issue", "persist"}) {
+            assertEquals(1, meterRegistry.get("ckeeper.certificate.issuance.stage").tag("stage", stage).timer().count());
+        }
+
+        // And that the issued certificate was counted
+        assertEquals(1, meterRegistry.get("ckeeper.certificate.operations").tags("operation", "issued", "source", "local", "entity.type", "device").counter().count());
+
+        // And that the MCP MIR call was made outside any transaction
+        final InOrder inOrder = inOrder(this.transactionManager, this.mcpService);
+        inOrder.verify(this.transactionManager, times(1)).commit(any());
+        inOrder.verify(this.mcpService, times(1)).issueMcpEntityCertificate(any(), any(), any(), any());
+        inOrder.verify(this.transactionManager, times(1)).getTransaction(any());
+        inOrder.verify(this.transactionManager, times(1)).commit(any());
+    }
+
+    /**
+     * Test that if a certificate with the same MCP MIR ID has already been
+     * saved (e.g. by a retried issuance), the existing certificate will be
+     * returned and no duplicate will be saved.
+     */
+    @Test
+    void testGenerateMrnEntityCertificateAlreadySaved() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, CertificateException, OperatorCreationException, IOException, McpConnectivityException {
+        // Spin up a self-signed
+        this.certificateService.certDirName="CN=Test";
+        KeyPair keyPair = X509Utils.generateKeyPair(null);
+        X509Certificate x509Certificate = X509Utils.generateX509Certificate(keyPair, this.certificateService.certDirName, new Date(), new Date(), null);
+
+        doReturn(Optional.of(this.mrnEntity)).when(this.mrnEntityRepo).findById(this.mrnEntity.getId());
+        doReturn(new Pair<>(this.certificate.getMcpMirId(), x509Certificate)).when(this.mcpService).issueMcpEntityCertificate(eq(McpEntityType.DEVICE), eq(this.mrnEntity.getMrn()), eq(this.mrnEntity.getVersion()), any());
+        doReturn(Optional.of(this.certificate)).when(this.certificateRepo).findByMcpMirId(this.certificate.getMcpMirId());
+
+        // Perform the service call
+        Certificate result = this.certificateService.generateMrnEntityCertificate(this.mrnEntity.getId());
+
+        // Make sure the existing certificate was returned without saving a duplicate
+        assertSame(this.certificate, result);
+        verify(this.certificateRepo, never()).save(any());
+    }
+
+    /**
+     * Test that if a certificate with the same MCP MIR ID has already been
+     * picked up by a concurrent MCP MIR sync, i.e. without a private key, the
+     * generated private key will be filled in, so that it can be used for
+     * signing.
+     */
+    @Test
+    void testGenerateMrnEntityCertificateAlreadySynced() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, CertificateException, OperatorCreationException, IOException, McpConnectivityException {
+        // Spin up a self-signed
+        this.certificateService.certDirName="CN=Test";
+        KeyPair keyPair = X509Utils.generateKeyPair(null);
+        X509Certificate x509Certificate = X509Utils.generateX509Certificate(keyPair, this.certificateService.certDirName, new Date(), new Date(), null);
+
+        // The synced certificate has no private key
+        this.certificate.setPrivateKey(null);
+
+        doReturn(Optional.of(this.mrnEntity)).when(this.mrnEntityRepo).findById(this.mrnEntity.getId());
+        doReturn(new Pair<>(this.certificate.getMcpMirId(), x509Certificate)).when(this.mcpService).issueMcpEntityCertificate(eq(McpEntityType.DEVICE), eq(this.mrnEntity.getMrn()), eq(this.mrnEntity.getVersion()), any());
+        doReturn(Optional.of(this.certificate)).when(this.certificateRepo).findByMcpMirId(this.certificate.getMcpMirId());
+        doAnswer(inv -> inv.getArgument(0)).when(this.certificateRepo).save(any());
+
+        // Perform the service call
+        Certificate result = this.certificateService.generateMrnEntityCertificate(this.mrnEntity.getId());
+
+        // Make sure the existing certificate was updated with the private key
+        assertSame(this.certificate, result);
+        assertNotNull(result.getPrivateKey());
+        assertTrue(result.getPrivateKey().contains("PRIVATE KEY"));
+        verify(this.certificateRepo, times(1)).save(this.certificate);
     }
 
     /**
@@ -267,6 +567,9 @@ class CertificateServiceTest {
      */
     @Test
     void testGenerateMrnEntityCertificateMaxLimitBreached() {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.certificateService.meterRegistry = meterRegistry;
+
         doReturn(Optional.of(this.mrnEntity)).when(this.mrnEntityRepo).findById(this.mrnEntity.getId());
         doReturn(this.certificateService.maxDailyGeneratedCertificates).when(this.certificateRepo).getNumOfGeneratedCertificatesToday();
 
@@ -274,6 +577,9 @@ class CertificateServiceTest {
         assertThrows(ValidationException.class, () ->
                 this.certificateService.generateMrnEntityCertificate(this.mrnEntity.getId())
         );
+
+        // Make sure the daily quota hit was counted
+        assertEquals(1, meterRegistry.get("ckeeper.certificate.quota.hits").counter().count());
     }
 
     /**
@@ -350,6 +656,59 @@ class CertificateServiceTest {
         assertEquals(Boolean.TRUE, result.getRevoked());
     }
 
+    /**
+     * Test that when we revoke a certificate, its private key will also be
+     * dropped from the private key cache.
+     */
+    @Test
+    void testRevokeInvalidatesPrivateKey() throws IOException, McpConnectivityException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        // Cache a private key for the certificate
+        this.privateKeyCache.put(this.certificate.getId(), X509Utils.generateKeyPair(null).getPrivate());
+
+        doReturn(Optional.of(this.certificate)).when(this.certificateRepo).findById(this.certificate.getId());
+        doReturn(this.certificate).when(this.certificateRepo).save(any());
+
+        // Perform the service call
+        this.certificateService.revoke(this.certificate.getId());
+
+        // Make sure the private key is no longer cached
+        assertNull(this.privateKeyCache.get(this.certificate.getId()));
+    }
+
+    /**
+     * Test that when we revoke a certificate inside a transaction, the
+     * cached keys are only dropped once the transaction commits, so that
+     * concurrent verifications cannot re-cache the revoked key before the
+     * revocation becomes visible.
+     */
+    @Test
+    void testRevokeInvalidatesAfterCommit() throws IOException, McpConnectivityException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+        // Cache the keys of the certificate
+        final KeyPair keyPair = X509Utils.generateKeyPair(null);
+        this.privateKeyCache.put(this.certificate.getId(), keyPair.getPrivate());
+        this.verificationKeyCache.put(this.mrnEntity.getId(), List.of(new VerificationKey(this.certificate.getId(), keyPair.getPublic(), null, null)));
+
+        doReturn(Optional.of(this.certificate)).when(this.certificateRepo).findById(this.certificate.getId());
+        doReturn(this.certificate).when(this.certificateRepo).save(any());
+
+        // Perform the service call within a transaction
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            this.certificateService.revoke(this.certificate.getId());
+
+            // Make sure the keys are still cached before the commit
+            assertNotNull(this.privateKeyCache.get(this.certificate.getId()));
+            assertNotNull(this.verificationKeyCache.get(this.mrnEntity.getId()));
+
+            // And dropped after it
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertNull(this.privateKeyCache.get(this.certificate.getId()));
+            assertNull(this.verificationKeyCache.get(this.mrnEntity.getId()));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
     /**
      * Test that if we try revoke a certificate based on the provided
      * certificate ID and this does NOT exist, then a DataNotFoundException
@@ -382,13 +741,15 @@ class CertificateServiceTest {
 
     /**
      * Test that when the latest certificate we have for an MRN Entity is valid,
-     * it will be returned as expected.
+     * it will be returned as expected, by only querying for a single
+     * certificate that is valid at the current time.
      */
     @Test
     void testGetLatestOrCreate() {
-        doReturn(Collections.singleton(this.certificate)).when(this.certificateService).findAllByMrnEntityId(any());
+        doReturn(Collections.singletonList(this.certificate)).when(this.certificateRepo).findLatestValid(any(), any(), any());
 
         // Perform the service call
+        final long start = System.currentTimeMillis();
         Certificate result = this.certificateService.getLatestOrCreate(this.mrnEntity.getId());
 
         // Assert that the resulting certificate seems correct
@@ -401,17 +762,24 @@ class CertificateServiceTest {
         assertEquals(this.certificate.getCertificate(), result.getCertificate());
         assertEquals(this.certificate.getMcpMirId(), result.getMcpMirId());
         assertEquals(this.certificate.getRevoked(), result.getRevoked());
+
+        // Make sure the query was limited to the latest valid certificate
+        final ArgumentCaptor<Date> nowCaptor = ArgumentCaptor.forClass(Date.class);
+        final ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+        verify(this.certificateRepo, times(1)).findLatestValid(eq(this.mrnEntity.getId()), nowCaptor.capture(), pageableCaptor.capture());
+        assertTrue(nowCaptor.getValue().getTime() >= start);
+        assertEquals(1, pageableCaptor.getValue().getPageSize());
+        verify(this.certificateRepo, never()).findAllByMrnEntityId(any());
     }
 
     /**
-     * Test that when the latest certificate we have for an MRN Entity has an
-     * invalid start date, a new one will be generated on demand.
+     * Test that when no valid certificate exists for an MRN Entity (e.g. all
+     * of them have expired, not started yet or been revoked), a new one will
+     * be generated on demand.
      */
     @Test
-    void testGetLatestOrCreateStartDateWrong() throws InvalidAlgorithmParameterException, McpConnectivityException, NoSuchAlgorithmException, IOException, OperatorCreationException {
-        // Set the start date to be in the future
-        this.certificate.setStartDate(this.certificate.getEndDate());
-        doReturn(Collections.singleton(this.certificate)).when(this.certificateService).findAllByMrnEntityId(any());
+    void testGetLatestOrCreateNoneValid() throws InvalidAlgorithmParameterException, McpConnectivityException, NoSuchAlgorithmException, IOException, OperatorCreationException {
+        doReturn(Collections.emptyList()).when(this.certificateRepo).findLatestValid(any(), any(), any());
         doReturn(this.newCertificate).when(this.certificateService).generateMrnEntityCertificate(this.mrnEntity.getId());
 
         // Perform the service call
@@ -430,55 +798,74 @@ class CertificateServiceTest {
     }
 
     /**
-     * Test that when the latest certificate we have for an MRN Entity has an
-     * invalid end date, a new one will be generated on demand.
+     * Test that when a valid certificate is issued for an MRN Entity by
+     * another node while waiting for its lease, no new one will be generated.
      */
     @Test
-    void testGetLatestOrCreateEndDateWrong() throws InvalidAlgorithmParameterException, McpConnectivityException, NoSuchAlgorithmException, IOException, OperatorCreationException {
-        // Set the start date to be in the future
-        this.certificate.setEndDate(this.certificate.getStartDate());
-        doReturn(Collections.singleton(this.certificate)).when(this.certificateService).findAllByMrnEntityId(any());
-        doReturn(this.newCertificate).when(this.certificateService).generateMrnEntityCertificate(this.mrnEntity.getId());
+    void testGetLatestOrCreateIssuedWhileLeased() throws InvalidAlgorithmParameterException, McpConnectivityException, NoSuchAlgorithmException, IOException, OperatorCreationException {
+        doReturn(Collections.emptyList())
+                .doReturn(Collections.singletonList(this.certificate))
+                .when(this.certificateRepo).findLatestValid(any(), any(), any());
 
         // Perform the service call
         Certificate result = this.certificateService.getLatestOrCreate(this.mrnEntity.getId());
 
-        // Assert that the resulting certificate seems correct
+        // Assert that the certificate of the other node was returned
         assertNotNull(result);
-        assertEquals(this.newCertificate.getId(), result.getId());
-        assertEquals(this.newCertificate.getStartDate(), result.getStartDate());
-        assertEquals(this.newCertificate.getEndDate(), result.getEndDate());
-        assertEquals(this.newCertificate.getPrivateKey(), result.getPrivateKey());
-        assertEquals(this.newCertificate.getPublicKey(), result.getPublicKey());
-        assertEquals(this.newCertificate.getCertificate(), result.getCertificate());
-        assertEquals(this.newCertificate.getMcpMirId(), result.getMcpMirId());
-        assertEquals(this.newCertificate.getRevoked(), result.getRevoked());
+        assertEquals(this.certificate.getId(), result.getId());
+        verify(this.mrnEntityLeases, times(1)).withLease(eq(this.mrnEntity.getId()), any());
+        verify(this.certificateService, never()).generateMrnEntityCertificate(any());
     }
 
     /**
-     * Test that when the latest certificate we have for an MRN Entity has been
-     * revoked, a new one will be generated on demand.
+     * Test that when all the valid certificates of an MRN Entity are about to
+     * expire, a successor certificate will be issued.
      */
     @Test
-    void testGetLatestOrCreateRevoked() throws InvalidAlgorithmParameterException, McpConnectivityException, NoSuchAlgorithmException, IOException, OperatorCreationException {
-        // Set the start date to be in the future
-        this.certificate.setRevoked(Boolean.TRUE);
+    void testRotateMrnEntityCertificate() throws InvalidAlgorithmParameterException, McpConnectivityException, NoSuchAlgorithmException, IOException, OperatorCreationException {
         doReturn(Collections.singleton(this.certificate)).when(this.certificateService).findAllByMrnEntityId(any());
         doReturn(this.newCertificate).when(this.certificateService).generateMrnEntityCertificate(this.mrnEntity.getId());
 
         // Perform the service call
-        Certificate result = this.certificateService.getLatestOrCreate(this.mrnEntity.getId());
+        Optional<Certificate> result = this.certificateService.rotateMrnEntityCertificate(this.mrnEntity.getId(), new Date(new Date().getTime() + 60000));
 
-        // Assert that the resulting certificate seems correct
-        assertNotNull(result);
-        assertEquals(this.newCertificate.getId(), result.getId());
-        assertEquals(this.newCertificate.getStartDate(), result.getStartDate());
-        assertEquals(this.newCertificate.getEndDate(), result.getEndDate());
-        assertEquals(this.newCertificate.getPrivateKey(), result.getPrivateKey());
-        assertEquals(this.newCertificate.getPublicKey(), result.getPublicKey());
-        assertEquals(this.newCertificate.getCertificate(), result.getCertificate());
-        assertEquals(this.newCertificate.getMcpMirId(), result.getMcpMirId());
-        assertEquals(this.newCertificate.getRevoked(), result.getRevoked());
+        // Assert that the successor certificate was issued
+        assertTrue(result.isPresent());
+        assertEquals(this.newCertificate.getId(), result.get().getId());
+    }
+
+    /**
+     * Test that when an MRN Entity already has a valid certificate beyond the
+     * rotation threshold, no successor certificate will be issued.
+     */
+    @Test
+    void testRotateMrnEntityCertificateNotRequired() throws InvalidAlgorithmParameterException, McpConnectivityException, NoSuchAlgorithmException, IOException, OperatorCreationException {
+        doReturn(Collections.singleton(this.certificate)).when(this.certificateService).findAllByMrnEntityId(any());
+
+        // Perform the service call
+        Optional<Certificate> result = this.certificateService.rotateMrnEntityCertificate(this.mrnEntity.getId(), new Date(new Date().getTime() - 60000));
+
+        // Assert that no successor certificate was issued
+        assertFalse(result.isPresent());
+        verify(this.certificateService, never()).generateMrnEntityCertificate(any());
+    }
+
+    /**
+     * Test that when an MRN Entity has no valid certificates left (e.g. the
+     * expiring one was revoked in the meantime), no successor certificate
+     * will be issued by the rotation.
+     */
+    @Test
+    void testRotateMrnEntityCertificateNoValidCertificates() throws InvalidAlgorithmParameterException, McpConnectivityException, NoSuchAlgorithmException, IOException, OperatorCreationException {
+        this.certificate.setRevoked(Boolean.TRUE);
+        doReturn(Collections.singleton(this.certificate)).when(this.certificateService).findAllByMrnEntityId(any());
+
+        // Perform the service call
+        Optional<Certificate> result = this.certificateService.rotateMrnEntityCertificate(this.mrnEntity.getId(), new Date(new Date().getTime() + 60000));
+
+        // Assert that no successor certificate was issued
+        assertFalse(result.isPresent());
+        verify(this.certificateService, never()).generateMrnEntityCertificate(any());
     }
 
     /**
@@ -518,6 +905,45 @@ class CertificateServiceTest {
         assertTrue(sign.verify(signature));
     }
 
+    /**
+     * Test that when signing multiple payloads with the same certificate, the
+     * decoded private key will be picked up from the private key cache and
+     * the database will only be accessed once.
+     */
+    @Test
+    void testSignContentCachedPrivateKey() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
+        // Initialise the service parameters
+        this.certificateService.keyPairCurve="secp384r1";
+
+        // Populate the mock certificate with the actual keys
+        final KeyPair keyPair = X509Utils.generateKeyPair(this.certificateService.keyPairCurve);
+        this.certificate.setPublicKey(X509Utils.formatPublicKey(keyPair.getPublic()));
+        this.certificate.setPrivateKey(X509Utils.formatPrivateKey(keyPair.getPrivate()));
+
+        // Create a dummy payload
+        final byte[] payload = MessageDigest.getInstance("SHA-256").digest(("Hello World").getBytes());
+
+        // Mock the service database call
+        doReturn(Optional.of(this.certificate)).when(this.certificateRepo).findById(this.certificate.getId());
+
+        // Perform the service call twice
+        this.certificateService.signContent(this.certificate.getId(), "SHA3-384withECDSA", payload);
+        final byte[] signature = this.certificateService.signContent(this.certificate.getId(), "SHA3-384withECDSA", payload);
+
+        // Verify that the signature is correct
+        final Signature sign = Signature.getInstance("SHA3-384withECDSA");
+        sign.initVerify(keyPair.getPublic());
+        sign.update(payload);
+        assertTrue(sign.verify(signature));
+
+        // Make sure the database was only accessed once
+        verify(this.certificateRepo, times(1)).findById(this.certificate.getId());
+        assertNotNull(this.privateKeyCache.get(this.certificate.getId()));
+
+        // And that the initialised signature engine was reused
+        verify(this.signatureEngines, times(1)).getInstance("SHA3-384withECDSA");
+    }
+
     /**
      * Test that when we are signing a payload, we if the provided certificate
      * ID does not match an entry in the database, a DataNotFoundException will
@@ -570,6 +996,11 @@ class CertificateServiceTest {
 
         // Verify that the signature is correct
         assertTrue(this.certificateService.verifyContent(certificate.getId(), null, payload, signature));
+
+        // And that the decoded public key is reused the next time
+        assertTrue(this.certificateService.verifyContent(certificate.getId(), null, payload, signature));
+        verify(this.certificateRepo, times(1)).findById(this.certificate.getId());
+        assertNotNull(this.verificationKeyCache.getCertificateKey(this.certificate.getId()));
     }
 
     /**
@@ -588,4 +1019,120 @@ class CertificateServiceTest {
         );
     }
 
-}
\ No newline at end of file
+    /**
+     * Test that we can retrieve the decoded public keys of all the currently
+     * valid certificates of an MRN entity, ordered from the latest to the
+     * oldest start date.
+     */
+    @Test
+    void testGetVerificationKeys() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException {
+        // Populate the certificates with actual keys
+        final KeyPair keyPair = X509Utils.generateKeyPair(null);
+        final KeyPair newKeyPair = X509Utils.generateKeyPair(null);
+        this.certificate.setPublicKey(X509Utils.formatPublicKey(keyPair.getPublic()));
+        this.newCertificate.setPublicKey(X509Utils.formatPublicKey(newKeyPair.getPublic()));
+        this.newCertificate.setEndDate(new Date(new Date().getTime() + 1000));
+
+        // Add a revoked certificate which should be ignored
+        final Certificate revokedCertificate = new Certificate();
+        revokedCertificate.setId(BigInteger.TWO);
+        revokedCertificate.setPublicKey(X509Utils.formatPublicKey(keyPair.getPublic()));
+        revokedCertificate.setStartDate(new Date(new Date().getTime() - 1000));
+        revokedCertificate.setRevoked(Boolean.TRUE);
+
+        doReturn(new HashSet<>(Arrays.asList(this.certificate, this.newCertificate, revokedCertificate))).when(this.certificateService).findAllByMrnEntityId(this.mrnEntity.getId());
+
+        // Perform the service call
+        final List<PublicKey> result = this.certificateService.getVerificationKeys(this.mrnEntity.getId());
+
+        // Make sure only the valid keys were returned, latest first
+        assertNotNull(result);
+        assertEquals(2, result.size());
+        assertArrayEquals(newKeyPair.getPublic().getEncoded(), result.get(0).getEncoded());
+        assertArrayEquals(keyPair.getPublic().getEncoded(), result.get(1).getEncoded());
+    }
+
+    /**
+     * Test that we can verify a content signed with an older but still valid
+     * certificate of an MRN entity, i.e. just before a certificate rotation.
+     */
+    @Test
+    void testVerifyEntityContent() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException, InvalidKeyException, SignatureException {
+        // Initialise the service parameters
+        this.certificateService.defaultSigningAlgorithm ="SHA3-384withECDSA";
+
+        // Populate the certificates with actual keys
+        final KeyPair keyPair = X509Utils.generateKeyPair(null);
+        final KeyPair newKeyPair = X509Utils.generateKeyPair(null);
+        this.certificate.setPublicKey(X509Utils.formatPublicKey(keyPair.getPublic()));
+        this.newCertificate.setPublicKey(X509Utils.formatPublicKey(newKeyPair.getPublic()));
+        this.newCertificate.setEndDate(new Date(new Date().getTime() + 1000));
+
+        // Sign a dummy payload with the older key
+        final byte[] payload = MessageDigest.getInstance("SHA-256").digest(("Hello World").getBytes());
+        final Signature sign = Signature.getInstance(this.certificateService.defaultSigningAlgorithm);
+        sign.initSign(keyPair.getPrivate());
+        sign.update(payload);
+        final byte[] signature = sign.sign();
+
+        doReturn(new HashSet<>(Arrays.asList(this.certificate, this.newCertificate))).when(this.certificateService).findAllByMrnEntityId(this.mrnEntity.getId());
+
+        // Verify that the signature is correct
+        assertTrue(this.certificateService.verifyEntityContent(this.mrnEntity.getId(), null, payload, signature));
+
+        // Verify that a corrupted signature is not
+        assertFalse(this.certificateService.verifyEntityContent(this.mrnEntity.getId(), null, payload, new byte[]{1, 2, 3}));
+    }
+
+    /**
+     * Test that if an MRN entity does not have any valid certificates, the
+     * verification will fail without generating a new certificate.
+     */
+    @Test
+    void testVerifyEntityContentNoValidCertificates() throws NoSuchAlgorithmException, InvalidAlgorithmParameterException, McpConnectivityException, IOException, OperatorCreationException {
+        this.certificate.setRevoked(Boolean.TRUE);
+        doReturn(Collections.singleton(this.certificate)).when(this.certificateService).findAllByMrnEntityId(this.mrnEntity.getId());
+
+        // Create a dummy payload
+        final byte[] payload = MessageDigest.getInstance("SHA-256").digest(("Hello World").getBytes());
+
+        // Perform the service call
+        assertFalse(this.certificateService.verifyEntityContent(this.mrnEntity.getId(), null, payload, new byte[]{1, 2, 3}));
+
+        // Make sure no certificate was generated
+        verify(this.certificateService, never()).generateMrnEntityCertificate(any());
+    }
+
+    /**
+     * Test that the decoded verification keys of an MRN entity are cached,
+     * so that subsequent verifications do not need to access the database,
+     * and that the cache is refreshed when a certificate is revoked.
+     */
+    @Test
+    void testGetVerificationKeysCached() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, IOException, McpConnectivityException {
+        // Populate the certificate with an actual key
+        final KeyPair keyPair = X509Utils.generateKeyPair(null);
+        this.certificate.setPublicKey(X509Utils.formatPublicKey(keyPair.getPublic()));
+
+        doReturn(Collections.singleton(this.certificate)).when(this.certificateService).findAllByMrnEntityId(this.mrnEntity.getId());
+
+        // Perform the service call twice
+        assertEquals(1, this.certificateService.getVerificationKeys(this.mrnEntity.getId()).size());
+        assertEquals(1, this.certificateService.getVerificationKeys(this.mrnEntity.getId()).size());
+
+        // Make sure the certificates were only loaded once
+        verify(this.certificateService, times(1)).findAllByMrnEntityId(this.mrnEntity.getId());
+        assertNotNull(this.verificationKeyCache.get(this.mrnEntity.getId()));
+
+        // Now revoke the certificate
+        doReturn(Optional.of(this.certificate)).when(this.certificateRepo).findById(this.certificate.getId());
+        doReturn(this.certificate).when(this.certificateRepo).save(any());
+        this.certificateService.revoke(this.certificate.getId());
+
+        // Make sure the verification keys were dropped and reloaded
+        assertNull(this.verificationKeyCache.get(this.mrnEntity.getId()));
+        assertTrue(this.certificateService.getVerificationKeys(this.mrnEntity.getId()).isEmpty());
+        verify(this.certificateService, times(2)).findAllByMrnEntityId(this.mrnEntity.getId());
+    }
+
+}
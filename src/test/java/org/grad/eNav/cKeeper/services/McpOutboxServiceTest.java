@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.services;
+
+import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
+import org.grad.eNav.cKeeper.exceptions.DeletingFailedException;
+import org.grad.eNav.cKeeper.exceptions.McpConnectivityException;
+import org.grad.eNav.cKeeper.exceptions.SavingFailedException;
+import org.grad.eNav.cKeeper.models.domain.McpOutboxEntry;
+import org.grad.eNav.cKeeper.models.domain.MrnEntity;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.models.dtos.mcp.McpDeviceDto;
+import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
+import org.grad.eNav.cKeeper.repos.McpOutboxRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class McpOutboxServiceTest {
+
+    /**
+     * The Tested Service.
+     */
+    @InjectMocks
+    @Spy
+    McpOutboxService mcpOutboxService;
+
+    /**
+     * The MCP Outbox Repo mock.
+     */
+    @Mock
+    McpOutboxRepo mcpOutboxRepo;
+
+    /**
+     * The MRN Entity Repo mock.
+     */
+    @Mock
+    MRNEntityRepo mrnEntityRepo;
+
+    /**
+     * The MCP Service mock.
+     */
+    @Mock
+    McpService mcpService;
+
+    // Test Variables
+    private MrnEntity mrnEntity;
+    private McpOutboxEntry saveEntry;
+    private McpOutboxEntry deleteEntry;
+    private McpDeviceDto mcpDevice;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        // Initialise the service parameters
+        this.mcpOutboxService.enabled = true;
+        this.mcpOutboxService.batchSize = 10;
+        this.mcpOutboxService.backoffInitialMs = 1000;
+        this.mcpOutboxService.backoffMaxMs = 60000;
+        this.mcpOutboxService.maxAttempts = 3;
+        this.mcpOutboxService.claimDurationMs = 60000;
+        this.mcpOutboxService.flushTimeoutMs = 1000;
+        this.mcpOutboxService.flushRetryIntervalMs = 10;
+        this.mcpOutboxService.init();
+
+        // Create an MRN entity
+        this.mrnEntity = new MrnEntity();
+        this.mrnEntity.setId(BigInteger.ONE);
+        this.mrnEntity.setName("Entity Name");
+        this.mrnEntity.setMrn("urn:mrn:mcp:device:mcc:grad:test");
+        this.mrnEntity.setEntityType(McpEntityType.DEVICE);
+        this.mrnEntity.setVersion("");
+
+        // Create a pending save outbox entry
+        this.saveEntry = new McpOutboxEntry();
+        this.saveEntry.setId(BigInteger.ONE);
+        this.saveEntry.setMrn(this.mrnEntity.getMrn());
+        this.saveEntry.setVersion("");
+        this.saveEntry.setEntityType(McpEntityType.DEVICE);
+        this.saveEntry.setName(this.mrnEntity.getName());
+        this.saveEntry.setOperation(McpOutboxEntry.Operation.SAVE);
+        this.saveEntry.setNextAttemptAt(new Date());
+
+        // Create a pending delete outbox entry
+        this.deleteEntry = new McpOutboxEntry();
+        this.deleteEntry.setId(BigInteger.TWO);
+        this.deleteEntry.setMrn("urn:mrn:mcp:device:mcc:grad:test-deleted");
+        this.deleteEntry.setVersion("");
+        this.deleteEntry.setEntityType(McpEntityType.DEVICE);
+        this.deleteEntry.setName("Deleted Entity Name");
+        this.deleteEntry.setOperation(McpOutboxEntry.Operation.DELETE);
+        this.deleteEntry.setNextAttemptAt(new Date());
+
+        // Create the matching MCP device
+        this.mcpDevice = new McpDeviceDto(this.mrnEntity.getName(), this.mrnEntity.getMrn());
+        this.mcpDevice.setId(BigInteger.ONE);
+    }
+
+    /**
+     * Clean up after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.mcpOutboxService.destroy();
+    }
+
+    /**
+     * Test that a new MCP MIR mutation is recorded in the outbox, ready to be
+     * dispatched straight away.
+     */
+    @Test
+    void testRecord() {
+        doReturn(Optional.empty()).when(this.mcpOutboxRepo).findByMrnAndVersion(this.mrnEntity.getMrn(), "");
+        doAnswer(inv -> inv.getArgument(0)).when(this.mcpOutboxRepo).save(any());
+
+        // Perform the service call
+        final McpOutboxEntry result = this.mcpOutboxService.record(this.mrnEntity, McpOutboxEntry.Operation.SAVE);
+
+        // Make sure the entry was recorded correctly
+        assertNotNull(result);
+        assertEquals(this.mrnEntity.getMrn(), result.getMrn());
+        assertEquals("", result.getVersion());
+        assertEquals(this.mrnEntity.getEntityType(), result.getEntityType());
+        assertEquals(this.mrnEntity.getName(), result.getName());
+        assertEquals(McpOutboxEntry.Operation.SAVE, result.getOperation());
+        assertEquals(0, result.getAttempts());
+        assertNotNull(result.getNextAttemptAt());
+    }
+
+    /**
+     * Test that recording an MCP MIR mutation for an MRN entity that already
+     * has a pending one, replaces the pending mutation instead of adding a
+     * new one.
+     */
+    @Test
+    void testRecordDeduplicated() {
+        this.saveEntry.setAttempts(3);
+        this.saveEntry.setLastError("error");
+        this.saveEntry.setFailedAt(new Date());
+        doReturn(Optional.of(this.saveEntry)).when(this.mcpOutboxRepo).findByMrnAndVersion(this.mrnEntity.getMrn(), "");
+        doAnswer(inv -> inv.getArgument(0)).when(this.mcpOutboxRepo).save(any());
+
+        // Perform the service call
+        final McpOutboxEntry result = this.mcpOutboxService.record(this.mrnEntity, McpOutboxEntry.Operation.DELETE);
+
+        // Make sure the pending entry was replaced
+        assertSame(this.saveEntry, result);
+        assertEquals(McpOutboxEntry.Operation.DELETE, result.getOperation());
+        assertEquals(0, result.getAttempts());
+        assertNull(result.getLastError());
+        assertNull(result.getFailedAt());
+    }
+
+    /**
+     * Test that the due outbox entries are dispatched to the MCP MIR and that
+     * the completed ones are removed in a single batch.
+     */
+    @Test
+    void testDispatch() throws McpConnectivityException {
+        doReturn(Arrays.asList(this.saveEntry, this.deleteEntry)).when(this.mcpOutboxRepo).findDue(any(), any());
+        doReturn(1).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+        doThrow(DataNotFoundException.class).when(this.mcpService).getMcpEntity(any(), any(), any());
+        doReturn(this.mcpDevice).when(this.mcpService).createMcpEntity(any());
+        doThrow(DeletingFailedException.class).when(this.mcpService).deleteMcpEntity(any(), any(), any());
+
+        // Perform the service call
+        this.mcpOutboxService.dispatch();
+
+        // Make sure the mutations reached the MCP MIR
+        verify(this.mcpService, times(1)).createMcpEntity(any());
+        verify(this.mcpService, times(1)).deleteMcpEntity(this.deleteEntry.getMrn(), "", McpDeviceDto.class);
+
+        // And that both entries were removed together
+        final ArgumentCaptor<List<McpOutboxEntry>> completedCaptor = ArgumentCaptor.forClass(List.class);
+        verify(this.mcpOutboxRepo, times(1)).deleteAll(completedCaptor.capture());
+        assertEquals(Arrays.asList(this.saveEntry, this.deleteEntry), completedCaptor.getValue());
+    }
+
+    /**
+     * Test that existing MCP MIR entities are updated rather than created.
+     */
+    @Test
+    void testDispatchUpdate() throws McpConnectivityException {
+        doReturn(Collections.singletonList(this.saveEntry)).when(this.mcpOutboxRepo).findDue(any(), any());
+        doReturn(1).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+        doReturn(this.mcpDevice).when(this.mcpService).getMcpEntity(this.saveEntry.getMrn(), "", McpDeviceDto.class);
+        doReturn(this.mcpDevice).when(this.mcpService).updateMcpEntity(this.mcpDevice.getMrn(), this.mcpDevice);
+
+        // Perform the service call
+        this.mcpOutboxService.dispatch();
+
+        // Make sure the entity was updated
+        verify(this.mcpService, times(1)).updateMcpEntity(this.mcpDevice.getMrn(), this.mcpDevice);
+        verify(this.mcpService, never()).createMcpEntity(any());
+    }
+
+    /**
+     * Test that if the MCP MIR is not reachable, the failed entry is retried
+     * with a backoff and the rest of the batch is left for the next run.
+     */
+    @Test
+    void testDispatchNoConnectivity() throws McpConnectivityException {
+        doReturn(Arrays.asList(this.saveEntry, this.deleteEntry)).when(this.mcpOutboxRepo).findDue(any(), any());
+        doReturn(1).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+        doThrow(new McpConnectivityException("MCP not reachable")).when(this.mcpService).getMcpEntity(any(), any(), any());
+
+        // Perform the service call
+        final long start = System.currentTimeMillis();
+        this.mcpOutboxService.dispatch();
+
+        // Make sure the failed entry was rescheduled
+        verify(this.mcpOutboxRepo, times(1)).save(this.saveEntry);
+        assertEquals(1, this.saveEntry.getAttempts());
+        assertEquals("MCP not reachable", this.saveEntry.getLastError());
+        assertTrue(this.saveEntry.getNextAttemptAt().getTime() >= start + this.mcpOutboxService.backoffInitialMs);
+        assertNull(this.saveEntry.getClaimedBy());
+
+        // And that the rest of the batch was not attempted
+        verify(this.mcpService, never()).deleteMcpEntity(any(), any(), any());
+        verify(this.mcpOutboxRepo, never()).deleteAll(any());
+    }
+
+    /**
+     * Test that an entry rejected by the MCP MIR is marked as failed once it
+     * runs out of attempts, while the rest of the batch is still dispatched.
+     */
+    @Test
+    void testDispatchMaxAttempts() throws McpConnectivityException {
+        this.saveEntry.setAttempts(2);
+        doReturn(Arrays.asList(this.saveEntry, this.deleteEntry)).when(this.mcpOutboxRepo).findDue(any(), any());
+        doReturn(1).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+        doThrow(new SavingFailedException("MCP rejected the entity")).when(this.mcpService).getMcpEntity(any(), any(), any());
+        doReturn(1L).when(this.mcpOutboxRepo).countByFailedAtIsNotNull();
+
+        // Perform the service call
+        this.mcpOutboxService.dispatch();
+
+        // Make sure the rejected entry was marked as failed
+        verify(this.mcpOutboxRepo, times(1)).save(this.saveEntry);
+        assertEquals(3, this.saveEntry.getAttempts());
+        assertEquals("MCP rejected the entity", this.saveEntry.getLastError());
+        assertNotNull(this.saveEntry.getFailedAt());
+        assertNull(this.saveEntry.getClaimedBy());
+        assertEquals(1L, this.mcpOutboxService.failed.get());
+
+        // And that the rest of the batch was still dispatched
+        verify(this.mcpService, times(1)).deleteMcpEntity(this.deleteEntry.getMrn(), "", McpDeviceDto.class);
+        verify(this.mcpOutboxRepo, times(1)).deleteAll(Collections.singletonList(this.deleteEntry));
+    }
+
+    /**
+     * Test that connectivity failures never mark an entry as failed, even
+     * after running out of attempts, since the entry itself is not at fault.
+     */
+    @Test
+    void testDispatchNoConnectivityMaxAttempts() throws McpConnectivityException {
+        this.saveEntry.setAttempts(2);
+        doReturn(Collections.singletonList(this.saveEntry)).when(this.mcpOutboxRepo).findDue(any(), any());
+        doReturn(1).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+        doThrow(new McpConnectivityException("MCP not reachable")).when(this.mcpService).getMcpEntity(any(), any(), any());
+
+        // Perform the service call
+        this.mcpOutboxService.dispatch();
+
+        // Make sure the entry was only rescheduled
+        verify(this.mcpOutboxRepo, times(1)).save(this.saveEntry);
+        assertEquals(3, this.saveEntry.getAttempts());
+        assertNull(this.saveEntry.getFailedAt());
+    }
+
+    /**
+     * Test that the failed outbox entries can be retried on demand, which
+     * also requests a new dispatch.
+     */
+    @Test
+    void testRetryFailed() {
+        doReturn(2).when(this.mcpOutboxRepo).retryFailed(any());
+        doNothing().when(this.mcpOutboxService).requestDispatch();
+
+        // Perform the service call
+        assertEquals(2, this.mcpOutboxService.retryFailed());
+
+        // Make sure a new dispatch was requested
+        verify(this.mcpOutboxService, times(1)).requestDispatch();
+    }
+
+    /**
+     * Test that the entries claimed by another dispatcher in the meantime
+     * are skipped, so that they are never applied concurrently.
+     */
+    @Test
+    void testDispatchClaimed() throws McpConnectivityException {
+        doReturn(Arrays.asList(this.saveEntry, this.deleteEntry)).when(this.mcpOutboxRepo).findDue(any(), any());
+        doReturn(0).when(this.mcpOutboxRepo).claim(eq(this.saveEntry.getId()), any(), anyLong());
+        doReturn(1).when(this.mcpOutboxRepo).claim(eq(this.deleteEntry.getId()), any(), anyLong());
+
+        // Perform the service call
+        this.mcpOutboxService.dispatch();
+
+        // Make sure only the claimed entry was applied and removed
+        verify(this.mcpService, never()).getMcpEntity(any(), any(), any());
+        verify(this.mcpService, times(1)).deleteMcpEntity(this.deleteEntry.getMrn(), "", McpDeviceDto.class);
+        verify(this.mcpOutboxRepo, times(1)).deleteAll(Collections.singletonList(this.deleteEntry));
+    }
+
+    /**
+     * Test that the MRN assigned by the MCP MIR on creation is written back
+     * to the local MRN entity.
+     */
+    @Test
+    void testDispatchCanonicalMrn() throws McpConnectivityException {
+        final McpDeviceDto createdDevice = new McpDeviceDto(this.mrnEntity.getName(), "urn:mrn:mcp:device:mcc:grad:canonical");
+        createdDevice.setId(BigInteger.ONE);
+
+        doReturn(Collections.singletonList(this.saveEntry)).when(this.mcpOutboxRepo).findDue(any(), any());
+        doReturn(1).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+        doThrow(DataNotFoundException.class).when(this.mcpService).getMcpEntity(any(), any(), any());
+        doReturn(createdDevice).when(this.mcpService).createMcpEntity(any());
+        doReturn(Optional.of(this.mrnEntity)).when(this.mrnEntityRepo).findByMrnAndVersion(this.saveEntry.getMrn(), "");
+
+        // Perform the service call
+        this.mcpOutboxService.dispatch();
+
+        // Make sure the MCP MIR MRN was saved locally
+        assertEquals(createdDevice.getMrn(), this.mrnEntity.getMrn());
+        verify(this.mrnEntityRepo, times(1)).save(this.mrnEntity);
+    }
+
+    /**
+     * Test that when the service is disabled, nothing will be dispatched.
+     */
+    @Test
+    void testDispatchDisabled() {
+        this.mcpOutboxService.enabled = false;
+
+        // Perform the service call
+        this.mcpOutboxService.dispatch();
+
+        // Make sure nothing was dispatched
+        verifyNoInteractions(this.mcpOutboxRepo);
+        verifyNoInteractions(this.mcpService);
+    }
+
+    /**
+     * Test that a pending outbox entry can be flushed straight away for a
+     * specific MRN entity.
+     */
+    @Test
+    void testFlush() throws McpConnectivityException {
+        doReturn(Optional.of(this.deleteEntry)).when(this.mcpOutboxRepo).findByMrnAndVersion(this.deleteEntry.getMrn(), "");
+        doReturn(1).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+
+        // Perform the service call
+        this.mcpOutboxService.flush(this.deleteEntry.getMrn(), null);
+
+        // Make sure the mutation reached the MCP MIR and was removed
+        verify(this.mcpService, times(1)).deleteMcpEntity(this.deleteEntry.getMrn(), "", McpDeviceDto.class);
+        verify(this.mcpOutboxRepo, times(1)).deleteAll(Collections.singletonList(this.deleteEntry));
+    }
+
+    /**
+     * Test that if the pending outbox entry is claimed by a concurrent
+     * dispatch, the flush waits for it to be applied, instead of applying it
+     * a second time.
+     */
+    @Test
+    void testFlushClaimed() throws McpConnectivityException {
+        doReturn(Optional.of(this.saveEntry), Optional.empty()).when(this.mcpOutboxRepo).findByMrnAndVersion(this.saveEntry.getMrn(), "");
+        doReturn(0).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+
+        // Perform the service call
+        this.mcpOutboxService.flush(this.saveEntry.getMrn(), null);
+
+        // Make sure the entry was not applied again
+        verifyNoInteractions(this.mcpService);
+        verify(this.mcpOutboxRepo, never()).deleteAll(any());
+    }
+
+    /**
+     * Test that if the pending outbox entry stays claimed by another
+     * dispatcher for longer than the flush timeout, the flush fails.
+     */
+    @Test
+    void testFlushClaimedTimeout() {
+        this.mcpOutboxService.flushTimeoutMs = 50;
+        doReturn(Optional.of(this.saveEntry)).when(this.mcpOutboxRepo).findByMrnAndVersion(this.saveEntry.getMrn(), "");
+        doReturn(0).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+
+        // Perform the service call
+        assertThrows(McpConnectivityException.class, () ->
+                this.mcpOutboxService.flush(this.saveEntry.getMrn(), null)
+        );
+
+        // Make sure the entry was not applied
+        verifyNoInteractions(this.mcpService);
+    }
+
+    /**
+     * Test that if a flushed entry fails to be applied, its claim is
+     * released, so that the scheduled dispatch can retry it.
+     */
+    @Test
+    void testFlushFailed() throws McpConnectivityException {
+        doReturn(Optional.of(this.saveEntry)).when(this.mcpOutboxRepo).findByMrnAndVersion(this.saveEntry.getMrn(), "");
+        doReturn(1).when(this.mcpOutboxRepo).claim(any(), any(), anyLong());
+        doThrow(new McpConnectivityException("MCP not reachable")).when(this.mcpService).getMcpEntity(any(), any(), any());
+
+        // Perform the service call
+        assertThrows(McpConnectivityException.class, () ->
+                this.mcpOutboxService.flush(this.saveEntry.getMrn(), null)
+        );
+
+        // Make sure the claim was released and the entry kept
+        verify(this.mcpOutboxRepo, times(1)).release(eq(this.saveEntry.getId()), any());
+        verify(this.mcpOutboxRepo, never()).deleteAll(any());
+    }
+
+    /**
+     * Test that the retry backoff doubles after every failed attempt, up to
+     * the configured maximum.
+     */
+    @Test
+    void testGetBackoff() {
+        assertEquals(1000, this.mcpOutboxService.getBackoff(1));
+        assertEquals(2000, this.mcpOutboxService.getBackoff(2));
+        assertEquals(4000, this.mcpOutboxService.getBackoff(3));
+        assertEquals(60000, this.mcpOutboxService.getBackoff(10));
+        assertEquals(60000, this.mcpOutboxService.getBackoff(Integer.MAX_VALUE));
+    }
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.grad.eNav.cKeeper.components.MrnEntityLeases;
+import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
+import org.grad.eNav.cKeeper.exceptions.McpConnectivityException;
+import org.grad.eNav.cKeeper.models.domain.Certificate;
+import org.grad.eNav.cKeeper.models.domain.MrnEntity;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.repos.CertificateRepo;
+import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
+import org.grad.eNav.cKeeper.services.CertificateService.CertificateDiff;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class McpReconciliationServiceTest {
+
+    /**
+     * The Tested Service.
+     */
+    @InjectMocks
+    @Spy
+    McpReconciliationService mcpReconciliationService;
+
+    /**
+     * The MRN Entity Repo mock.
+     */
+    @Mock
+    MRNEntityRepo mrnEntityRepo;
+
+    /**
+     * The Certificate Repo mock.
+     */
+    @Mock
+    CertificateRepo certificateRepo;
+
+    /**
+     * The Certificate Service mock.
+     */
+    @Mock
+    CertificateService certificateService;
+
+    /**
+     * The MCP Service mock.
+     */
+    @Mock
+    McpService mcpService;
+
+    /**
+     * The MCP Sync Service mock.
+     */
+    @Mock
+    McpSyncService mcpSyncService;
+
+    /**
+     * The MRN Entity Leases mock.
+     */
+    @Mock
+    MrnEntityLeases mrnEntityLeases;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+    private MrnEntity mrnEntity;
+    private MrnEntity unreachableMrnEntity;
+    private Certificate certificate;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        // Initialise the service parameters
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.mcpReconciliationService.meterRegistry = this.meterRegistry;
+        this.mcpReconciliationService.enabled = true;
+        this.mcpReconciliationService.concurrency = 2;
+        this.mcpReconciliationService.ratePerSecond = 0;
+        this.mcpReconciliationService.batchSize = 10;
+        this.mcpReconciliationService.pageSize = 1;
+        this.mcpReconciliationService.init();
+
+        // Create an MRN entity with a certificate to be revoked
+        this.mrnEntity = new MrnEntity();
+        this.mrnEntity.setId(BigInteger.ONE);
+        this.mrnEntity.setName("Entity Name");
+        this.mrnEntity.setMrn("urn:mrn:mcp:device:mcc:grad:test");
+        this.mrnEntity.setEntityType(McpEntityType.DEVICE);
+        this.certificate = new Certificate();
+        this.certificate.setId(BigInteger.ONE);
+        this.certificate.setMcpMirId("1234567890");
+        this.certificate.setMrnEntity(this.mrnEntity);
+
+        // Create an MRN entity that cannot be retrieved from the MCP
+        this.unreachableMrnEntity = new MrnEntity();
+        this.unreachableMrnEntity.setId(BigInteger.TWO);
+        this.unreachableMrnEntity.setName("Unreachable Entity Name");
+        this.unreachableMrnEntity.setMrn("urn:mrn:mcp:device:mcc:grad:test-unreachable");
+        this.unreachableMrnEntity.setEntityType(McpEntityType.DEVICE);
+    }
+
+    /**
+     * Clean up after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.mcpReconciliationService.destroy();
+    }
+
+    /**
+     * Test that all the MRN entities are reconciled, page by page, only the
+     * changed ones are written in a batch, and the progress is recorded.
+     */
+    @Test
+    void testReconcileAll() throws InterruptedException {
+        final CertificateDiff diff = new CertificateDiff(this.mrnEntity.getId(), Collections.singletonList(this.certificate), Collections.emptyList());
+        this.acquireLease();
+        doReturn(2L).when(this.mrnEntityRepo).count();
+        doReturn(List.of(BigInteger.ONE)).when(this.mrnEntityRepo).findIdsAfter(eq(BigInteger.ZERO), any());
+        doReturn(List.of(BigInteger.TWO)).when(this.mrnEntityRepo).findIdsAfter(eq(BigInteger.ONE), any());
+        doReturn(Collections.emptyList()).when(this.mrnEntityRepo).findIdsAfter(eq(BigInteger.TWO), any());
+        doReturn(List.of(this.mrnEntity)).when(this.mrnEntityRepo).findAllById(List.of(BigInteger.ONE));
+        doReturn(List.of(this.unreachableMrnEntity)).when(this.mrnEntityRepo).findAllById(List.of(BigInteger.TWO));
+        doReturn(Mono.error(new DataNotFoundException("Not found"))).when(this.mcpService).getMcpEntityCertificatesAsync(McpEntityType.DEVICE, this.mrnEntity.getMrn(), null);
+        doReturn(Mono.error(new McpConnectivityException("Unreachable"))).when(this.mcpService).getMcpEntityCertificatesAsync(McpEntityType.DEVICE, this.unreachableMrnEntity.getMrn(), null);
+        doReturn(Collections.singleton(this.certificate)).when(this.certificateRepo).findAllByMrnEntityId(this.mrnEntity.getId());
+        doReturn(diff).when(this.certificateService).diffMrnEntityCertificates(eq(this.mrnEntity), eq(Collections.singleton(this.certificate)), eq(Collections.emptyMap()));
+        doAnswer(inv -> inv.getArgument(0)).when(this.certificateService).applyCertificateDiffs(any());
+
+        // Perform the service call
+        this.mcpReconciliationService.reconcileAll();
+        this.awaitReconciliation();
+
+        // Make sure the entities were never loaded all at once
+        verify(this.mrnEntityRepo, never()).findAll();
+
+        // Make sure the local certificates were loaded before the MCP MIR ones
+        final InOrder inOrder = inOrder(this.certificateRepo, this.mcpService);
+        inOrder.verify(this.certificateRepo, times(1)).findAllByMrnEntityId(this.mrnEntity.getId());
+        inOrder.verify(this.mcpService, times(1)).getMcpEntityCertificatesAsync(McpEntityType.DEVICE, this.mrnEntity.getMrn(), null);
+
+        // Make sure only the reachable entity was written and marked as synced
+        verify(this.certificateService, times(1)).applyCertificateDiffs(List.of(diff));
+        verify(this.mcpSyncService, times(1)).markSynced(this.mrnEntity.getId());
+        verify(this.mcpSyncService, never()).markSynced(this.unreachableMrnEntity.getId());
+
+        // Make sure the progress was recorded
+        final McpReconciliationService.ReconciliationProgress progress = this.mcpReconciliationService.getProgress();
+        assertFalse(progress.running());
+        assertNotNull(progress.finishedAt());
+        assertEquals(2, progress.total());
+        assertEquals(2, progress.processed());
+        assertEquals(1, progress.synced());
+        assertEquals(1, progress.mcpErrors());
+        assertEquals(1, progress.revoked());
+        assertEquals(0, progress.issued());
+        assertEquals(0.5, progress.mcpErrorRate());
+        assertEquals(1.0, progress.completion());
+
+        // Make sure the metrics are populated
+        assertEquals(1.0, this.meterRegistry.get("ckeeper.mcp.reconcile.entities").tag("result", "synced").counter().count());
+        assertEquals(1.0, this.meterRegistry.get("ckeeper.mcp.reconcile.entities").tag("result", "mcp-error").counter().count());
+        assertEquals(1.0, this.meterRegistry.get("ckeeper.mcp.reconcile.certificates").tag("change", "revoked").counter().count());
+        assertEquals(1, this.meterRegistry.get("ckeeper.mcp.reconcile.duration").timer().count());
+    }
+
+    /**
+     * Test that if a batch fails to be written, the MRN entities are recorded
+     * as failed and not marked as synced.
+     */
+    @Test
+    void testReconcileAllWriteFailed() throws InterruptedException {
+        final CertificateDiff diff = new CertificateDiff(this.mrnEntity.getId(), Collections.singletonList(this.certificate), Collections.emptyList());
+        this.acquireLease();
+        doReturn(1L).when(this.mrnEntityRepo).count();
+        doReturn(List.of(BigInteger.ONE)).when(this.mrnEntityRepo).findIdsAfter(eq(BigInteger.ZERO), any());
+        doReturn(Collections.emptyList()).when(this.mrnEntityRepo).findIdsAfter(eq(BigInteger.ONE), any());
+        doReturn(List.of(this.mrnEntity)).when(this.mrnEntityRepo).findAllById(List.of(BigInteger.ONE));
+        doReturn(Mono.just(Collections.emptyMap())).when(this.mcpService).getMcpEntityCertificatesAsync(McpEntityType.DEVICE, this.mrnEntity.getMrn(), null);
+        doReturn(diff).when(this.certificateService).diffMrnEntityCertificates(eq(this.mrnEntity), any(), any());
+        doThrow(new RuntimeException("Database failure")).when(this.certificateService).applyCertificateDiffs(any());
+
+        // Perform the service call
+        this.mcpReconciliationService.reconcileAll();
+        this.awaitReconciliation();
+
+        // Make sure the entity was recorded as failed
+        verifyNoInteractions(this.mcpSyncService);
+        assertEquals(1, this.mcpReconciliationService.getProgress().failed());
+        assertEquals(0, this.mcpReconciliationService.getProgress().synced());
+    }
+
+    /**
+     * Test that when another node is already running the reconciliation,
+     * this run will be skipped.
+     */
+    @Test
+    void testReconcileAllRunningElsewhere() throws InterruptedException {
+        doReturn(false).when(this.mrnEntityLeases).tryWithLease(eq(McpReconciliationService.RECONCILIATION_LEASE_ID), any());
+
+        // Perform the service call
+        this.mcpReconciliationService.reconcileAll();
+        this.awaitReconciliation();
+
+        // Make sure nothing was reconciled, and another run can take place
+        verifyNoInteractions(this.mrnEntityRepo);
+        verifyNoInteractions(this.certificateRepo);
+        verifyNoInteractions(this.mcpService);
+        verifyNoInteractions(this.certificateService);
+        assertFalse(this.mcpReconciliationService.getProgress().running());
+    }
+
+    /**
+     * Test that the reconciliation runs on its own executor, so that the
+     * scheduled call returns straight away.
+     */
+    @Test
+    void testReconcileAllAsync() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        doAnswer(inv -> latch.await(5, TimeUnit.SECONDS)).when(this.mrnEntityLeases).tryWithLease(eq(McpReconciliationService.RECONCILIATION_LEASE_ID), any());
+
+        // Perform the service call, which should not wait for the run
+        this.mcpReconciliationService.reconcileAll();
+        assertTrue(this.mcpReconciliationService.getProgress().running());
+
+        // A second run cannot start while the first is still going
+        this.mcpReconciliationService.reconcileAll();
+
+        // Let the run complete
+        latch.countDown();
+        this.awaitReconciliation();
+        verify(this.mrnEntityLeases, times(1)).tryWithLease(eq(McpReconciliationService.RECONCILIATION_LEASE_ID), any());
+        assertFalse(this.mcpReconciliationService.getProgress().running());
+    }
+
+    /**
+     * Test that when the service is disabled, nothing will be reconciled.
+     */
+    @Test
+    void testReconcileAllDisabled() throws InterruptedException {
+        this.mcpReconciliationService.enabled = false;
+
+        // Perform the service call
+        this.mcpReconciliationService.reconcileAll();
+        this.awaitReconciliation();
+
+        // Make sure nothing was reconciled
+        verifyNoInteractions(this.mrnEntityLeases);
+        verifyNoInteractions(this.mrnEntityRepo);
+        verifyNoInteractions(this.mcpService);
+        verifyNoInteractions(this.certificateService);
+    }
+
+    /**
+     * Waits for the submitted reconciliation runs to complete.
+     */
+    private void awaitReconciliation() throws InterruptedException {
+        this.mcpReconciliationService.reconciliationExecutor.shutdown();
+        assertTrue(this.mcpReconciliationService.reconciliationExecutor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Mocks the acquisition of the cluster-wide reconciliation lease, so that
+     * the reconciliation runs straight away.
+     */
+    private void acquireLease() {
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return true;
+        }).when(this.mrnEntityLeases).tryWithLease(eq(McpReconciliationService.RECONCILIATION_LEASE_ID), any());
+    }
+
+}
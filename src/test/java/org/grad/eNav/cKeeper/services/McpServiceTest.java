@@ -17,11 +17,14 @@
 package org.grad.eNav.cKeeper.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.apache.commons.lang3.StringUtils;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.grad.eNav.cKeeper.components.McpCircuitBreaker;
+import org.grad.eNav.cKeeper.components.TrustStoreManager;
 import org.grad.eNav.cKeeper.exceptions.*;
 import org.grad.eNav.cKeeper.models.domain.Pair;
 import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
@@ -34,20 +37,25 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.math.BigInteger;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -69,6 +77,18 @@ class McpServiceTest {
     @Mock
     McpConfigService mcpConfigService;
 
+    /**
+     * The Truststore Manager Mock.
+     */
+    @Mock
+    TrustStoreManager trustStoreManager;
+
+    /**
+     * The MCP Circuit Breaker Spy.
+     */
+    @Spy
+    McpCircuitBreaker mcpCircuitBreaker = new McpCircuitBreaker();
+
     // The Test Mock Web Server (to test the webClient)
     public static MockWebServer mockBackEnd;
 
@@ -141,6 +161,74 @@ class McpServiceTest {
         assertNotNull(this.mcpService.mcpMirClient);
     }
 
+    /**
+     * Test that the MCP MIR client is rebuilt every time the truststore is
+     * reloaded, so that the new trusted certificates are picked up.
+     */
+    @Test
+    void testInitRebuildOnTrustStoreReload() throws UnrecoverableKeyException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, CertificateException {
+        this.mcpService.init();
+        final WebClient initialClient = this.mcpService.mcpMirClient;
+
+        // Capture the truststore reload listener
+        final ArgumentCaptor<Consumer<TrustStoreManager.TrustStoreSnapshot>> listenerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(this.trustStoreManager, times(1)).addReloadListener(listenerCaptor.capture());
+
+        // Simulate a truststore reload
+        listenerCaptor.getValue().accept(TrustStoreManager.TrustStoreSnapshot.empty());
+
+        // Make sure the MCP MIR client was rebuilt
+        assertNotNull(this.mcpService.mcpMirClient);
+        assertNotSame(initialClient, this.mcpService.mcpMirClient);
+    }
+
+    /**
+     * Test that each MCP MIR operation is assigned the correct response
+     * timeout, with the certificate issuance allowed to take longer.
+     */
+    @Test
+    void testGetResponseTimeout() {
+        assertEquals(Duration.ofMillis(this.mcpService.responseTimeoutMs), this.mcpService.getResponseTimeout(McpService.McpOperation.GET));
+        assertEquals(Duration.ofMillis(this.mcpService.issueResponseTimeoutMs), this.mcpService.getResponseTimeout(McpService.McpOperation.ISSUE));
+        assertEquals(Duration.ofMillis(this.mcpService.probeResponseTimeoutMs), this.mcpService.getResponseTimeout(McpService.McpOperation.PROBE));
+    }
+
+    /**
+     * Test that the latency of the MCP MIR calls is recorded in the meter
+     * registry, tagged by the operation and the response status.
+     */
+    @Test
+    void testGetMcpDeviceLatencyRecorded() throws McpConnectivityException, UnrecoverableKeyException, CertificateException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.mcpService.meterRegistry = meterRegistry;
+
+        // Mock the MCP Base Service
+        mockBackEnd.enqueue(new MockResponse()
+                .setBody(this.objectMapper.writeValueAsString(this.mcpDeviceDto))
+                .addHeader("Content-Type", "application/json")
+                .setResponseCode(HttpStatus.OK.value()));
+
+        // Mock the service secondary calls
+        doNothing().when(this.mcpService).checkMcpMirConnectivity();
+        doAnswer(inv -> inv.getArgument(1)).when(this.mcpConfigService).constructMcpEntityMrn(any(), any());
+
+        // Init the service
+        this.mcpService.init();
+
+        // Perform the service call
+        assertNotNull(this.mcpService.getMcpEntity(this.mcpDeviceDto.getMrn(), null, McpDeviceDto.class));
+
+        // Make sure the call latency was recorded
+        assertEquals(1, meterRegistry.get("ckeeper.mcp.client.requests")
+                .tag("operation", McpService.McpOperation.GET.name())
+                .tag("status", String.valueOf(HttpStatus.OK.value()))
+                .timer()
+                .count());
+
+        // And release the connection pool
+        this.mcpService.destroy();
+    }
+
     /**
      * Test that we can retrieve a specific MCP device based on the provided
      * MRN number. Note that the last MRN section (device ID) can also be
@@ -169,6 +257,9 @@ class McpServiceTest {
         assertNotNull(result);
         assertNotNull(result);
         assertEquals(this.mcpDeviceDto.getId(), result.getId());
+
+        // Make sure the successful call was recorded
+        verify(this.mcpCircuitBreaker, times(1)).recordSuccess();
         assertEquals(this.mcpDeviceDto.getCreatedAt(), result.getCreatedAt());
         assertEquals(this.mcpDeviceDto.getUpdatedAt(), result.getUpdatedAt());
         assertEquals(this.mcpDeviceDto.getName(), result.getName());
@@ -201,6 +292,59 @@ class McpServiceTest {
         );
     }
 
+    /**
+     * Test that we can retrieve a specific MCP device based on the provided
+     * MRN number using the non-blocking API.
+     */
+    @Test
+    void testGetMcpDeviceAsync() throws McpConnectivityException, UnrecoverableKeyException, CertificateException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
+        // Mock the MCP Base Service
+        mockBackEnd.enqueue(new MockResponse()
+                .setBody(this.objectMapper.writeValueAsString(this.mcpDeviceDto))
+                .addHeader("Content-Type", "application/json")
+                .setResponseCode(HttpStatus.OK.value()));
+
+        // Mock the service secondary calls
+        doNothing().when(this.mcpService).checkMcpMirConnectivity();
+        doAnswer(inv -> inv.getArgument(1)).when(this.mcpConfigService).constructMcpEntityMrn(any(), any());
+
+        // Init the service
+        this.mcpService.init();
+
+        // Perform the service call
+        final Mono<McpDeviceDto> publisher = this.mcpService.getMcpEntityAsync(this.mcpDeviceDto.getMrn(), null, McpDeviceDto.class);
+
+        // Make sure nothing happens before subscribing
+        verify(this.mcpService, never()).checkMcpMirConnectivity();
+
+        // Make sure the response is correct
+        McpDeviceDto result = publisher.block();
+        assertNotNull(result);
+        assertEquals(this.mcpDeviceDto.getName(), result.getName());
+        assertEquals(this.mcpDeviceDto.getMrn(), result.getMrn());
+    }
+
+    /**
+     * Test that if the MCP Identity Registry is not reachable, the blocking
+     * API will still report the McpConnectivityException, without any
+     * requests being made.
+     */
+    @Test
+    void testGetMcpDeviceNoConnectivity() throws UnrecoverableKeyException, CertificateException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
+        doReturn(Boolean.FALSE).when(this.mcpCircuitBreaker).isAvailable();
+
+        // Init the service
+        this.mcpService.init();
+
+        // Perform the service call
+        assertThrows(McpConnectivityException.class, () ->
+                this.mcpService.getMcpEntity(this.mcpDeviceDto.getMrn(), null, McpDeviceDto.class)
+        );
+
+        // Make sure no request was made
+        verify(this.mcpConfigService, never()).constructMcpEntityMrn(any(), any());
+    }
+
     /**
      * Test that we can successfully create a new MCP device based on the
      * provided object. That means that both name and MRN fields are required
@@ -561,6 +705,9 @@ class McpServiceTest {
      */
     @Test
     void testIssueMcpDeviceCertificate() throws McpConnectivityException, UnrecoverableKeyException, CertificateException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.mcpService.meterRegistry = meterRegistry;
+
         // Mock the MCP Base Service
         mockBackEnd.enqueue(new MockResponse()
                 .setBody(X509Utils.formatCertificate(cert))
@@ -582,6 +729,9 @@ class McpServiceTest {
         assertNotNull(result);
         assertEquals("1", result.getKey());
         assertEquals(cert, result.getValue());
+
+        // And that the issuance was counted
+        assertEquals(1, meterRegistry.get("ckeeper.mcp.certificates").tags("operation", "issue", "entity.type", "device", "result", "success").counter().count());
     }
 
     /**
@@ -591,6 +741,9 @@ class McpServiceTest {
      */
     @Test
     void testIssueMcpDeviceCertificateFailed() throws McpConnectivityException, UnrecoverableKeyException, CertificateException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.mcpService.meterRegistry = meterRegistry;
+
         // Mock the MCP Base Service
         mockBackEnd.enqueue(new MockResponse()
                 .setBody(StringUtils.EMPTY)
@@ -607,6 +760,9 @@ class McpServiceTest {
         assertThrows(InvalidRequestException.class, () ->
                 this.mcpService.issueMcpEntityCertificate(McpEntityType.DEVICE, this.mcpDeviceDto.getMrn(), null, this.csr)
         );
+
+        // Make sure the failure was counted
+        assertEquals(1, meterRegistry.get("ckeeper.mcp.certificates").tags("operation", "issue", "entity.type", "device", "result", "failure").counter().count());
     }
 
     /**
@@ -815,10 +971,37 @@ class McpServiceTest {
     }
 
     /**
-     * Test that we can correctly check the connectivity to the MCP environment.
+     * Test that the MCP connectivity check is answered by the circuit breaker
+     * without contacting the MCP environment.
+     */
+    @Test
+    void testCheckMcpMirConnectivity() throws McpConnectivityException {
+        // Perform the service call
+        this.mcpService.checkMcpMirConnectivity();
+
+        // Make sure the circuit breaker was consulted
+        verify(this.mcpCircuitBreaker, times(1)).isAvailable();
+    }
+
+    /**
+     * Test that when the MCP circuit breaker is open, the MCP connectivity
+     * check will fail straight away.
      */
     @Test
-    void testCheckMcpMirConnectivity() throws UnrecoverableKeyException, CertificateException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, McpConnectivityException {
+    void testCheckMcpMirConnectivityOpen() {
+        doReturn(Boolean.FALSE).when(this.mcpCircuitBreaker).isAvailable();
+
+        // Perform the service call
+        assertThrows(McpConnectivityException.class, () ->
+                this.mcpService.checkMcpMirConnectivity()
+        );
+    }
+
+    /**
+     * Test that we can correctly probe the connectivity to the MCP environment.
+     */
+    @Test
+    void testProbeMcpMirConnectivity() throws UnrecoverableKeyException, CertificateException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, McpConnectivityException {
         mockBackEnd.enqueue(new MockResponse()
                 .setResponseCode(HttpStatus.OK.value()));
 
@@ -826,15 +1009,19 @@ class McpServiceTest {
         this.mcpService.init();
 
         // Perform the service call
-        this.mcpService.checkMcpMirConnectivity();
+        this.mcpService.probeMcpMirConnectivity();
+
+        // Make sure the outcome was recorded
+        verify(this.mcpCircuitBreaker, times(1)).recordSuccess();
+        verify(this.mcpCircuitBreaker, never()).recordFailure();
     }
 
     /**
      * Test that we can correctly detect the disconnections from the MCP
-     * environment.
+     * environment while probing.
      */
     @Test
-    void testCheckMcpMirConnectivityFailed() throws UnrecoverableKeyException, CertificateException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
+    void testProbeMcpMirConnectivityFailed() throws UnrecoverableKeyException, CertificateException, IOException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
         // Mock some data
         this.mockBackEnd.enqueue(new MockResponse()
                 .setResponseCode(HttpStatus.NOT_FOUND.value()));
@@ -844,8 +1031,12 @@ class McpServiceTest {
 
         // Perform the service call
         assertThrows(McpConnectivityException.class, () ->
-                this.mcpService.checkMcpMirConnectivity()
+                this.mcpService.probeMcpMirConnectivity()
         );
+
+        // Make sure the outcome was recorded
+        verify(this.mcpCircuitBreaker, times(1)).recordFailure();
+        verify(this.mcpCircuitBreaker, never()).recordSuccess();
     }
 
 }
\ No newline at end of file
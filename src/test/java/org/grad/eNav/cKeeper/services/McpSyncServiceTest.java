@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.services;
+
+import org.grad.eNav.cKeeper.components.MrnEntityLeases;
+import org.grad.eNav.cKeeper.models.domain.MrnEntity;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class McpSyncServiceTest {
+
+    /**
+     * The Tested Service.
+     */
+    @InjectMocks
+    @Spy
+    McpSyncService mcpSyncService;
+
+    /**
+     * The MRN Entity Repo mock.
+     */
+    @Mock
+    MRNEntityRepo mrnEntityRepo;
+
+    /**
+     * The Certificate Service mock.
+     */
+    @Mock
+    CertificateService certificateService;
+
+    /**
+     * The MRN Entity Leases mock.
+     */
+    @Mock
+    MrnEntityLeases mrnEntityLeases;
+
+    // Test Variables
+    private MrnEntity mrnEntity;
+    private MrnEntity syncedMrnEntity;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() {
+        // Initialise the service parameters
+        this.mcpSyncService.enabled = true;
+        this.mcpSyncService.stalenessSeconds = 300;
+        this.mcpSyncService.threads = 1;
+        this.mcpSyncService.pageSize = 1;
+        this.mcpSyncService.init();
+
+        // Create an MRN entity that has never been synced
+        this.mrnEntity = new MrnEntity();
+        this.mrnEntity.setId(BigInteger.ONE);
+        this.mrnEntity.setName("Entity Name");
+        this.mrnEntity.setMrn("urn:mrn:mcp:device:mcc:grad:test");
+        this.mrnEntity.setEntityType(McpEntityType.DEVICE);
+
+        // Create an MRN entity that has been synced recently
+        this.syncedMrnEntity = new MrnEntity();
+        this.syncedMrnEntity.setId(BigInteger.TWO);
+        this.syncedMrnEntity.setName("Synced Entity Name");
+        this.syncedMrnEntity.setMrn("urn:mrn:mcp:device:mcc:grad:test-synced");
+        this.syncedMrnEntity.setEntityType(McpEntityType.DEVICE);
+        this.mcpSyncService.lastSynced.put(this.syncedMrnEntity.getId(), Instant.now());
+    }
+
+    /**
+     * Clean up after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.mcpSyncService.destroy();
+    }
+
+    /**
+     * Test that we can correctly identify which MRN entities are stale and
+     * need to be synced with the MCP MIR.
+     */
+    @Test
+    void testIsStale() {
+        assertTrue(this.mcpSyncService.isStale(this.mrnEntity.getId()));
+        assertFalse(this.mcpSyncService.isStale(this.syncedMrnEntity.getId()));
+
+        // Make the synced entity stale
+        this.mcpSyncService.lastSynced.put(this.syncedMrnEntity.getId(), Instant.now().minusSeconds(301));
+        assertTrue(this.mcpSyncService.isStale(this.syncedMrnEntity.getId()));
+    }
+
+    /**
+     * Test that the periodic reconciliation pages through the MRN entities,
+     * only syncs the stale ones on the sync executor, records the successful
+     * sync time, and drops the sync times of the deleted MRN entities.
+     */
+    @Test
+    void testReconcile() throws InterruptedException {
+        this.acquireLease();
+        this.mcpSyncService.lastSynced.put(BigInteger.TEN, Instant.now());
+        doReturn(List.of(this.mrnEntity.getId())).when(this.mrnEntityRepo).findIdsAfter(eq(BigInteger.ZERO), any());
+        doReturn(List.of(this.syncedMrnEntity.getId())).when(this.mrnEntityRepo).findIdsAfter(eq(this.mrnEntity.getId()), any());
+        doReturn(Collections.emptyList()).when(this.mrnEntityRepo).findIdsAfter(eq(this.syncedMrnEntity.getId()), any());
+        doReturn(Boolean.TRUE).when(this.certificateService).syncMrnEntityWithMcpMir(this.mrnEntity.getId());
+
+        // Perform the service call
+        this.mcpSyncService.reconcile();
+        this.awaitSweep();
+
+        // Make sure only the stale entity was synced, and never loaded as a whole
+        verify(this.mrnEntityRepo, never()).findAll();
+        verify(this.certificateService, times(1)).syncMrnEntityWithMcpMir(this.mrnEntity.getId());
+        verify(this.certificateService, never()).syncMrnEntityWithMcpMir(this.syncedMrnEntity.getId());
+        assertFalse(this.mcpSyncService.isStale(this.mrnEntity.getId()));
+
+        // Make sure the deleted entity was dropped
+        assertFalse(this.mcpSyncService.lastSynced.containsKey(BigInteger.TEN));
+        assertTrue(this.mcpSyncService.lastSynced.containsKey(this.syncedMrnEntity.getId()));
+    }
+
+    /**
+     * Test that if the sync fails (e.g. the MCP MIR is not reachable), the MRN
+     * entity will remain stale so that it is retried.
+     */
+    @Test
+    void testReconcileFailed() throws InterruptedException {
+        this.acquireLease();
+        doReturn(List.of(this.mrnEntity.getId())).when(this.mrnEntityRepo).findIdsAfter(eq(BigInteger.ZERO), any());
+        doReturn(Collections.emptyList()).when(this.mrnEntityRepo).findIdsAfter(eq(this.mrnEntity.getId()), any());
+        doReturn(Boolean.FALSE).when(this.certificateService).syncMrnEntityWithMcpMir(this.mrnEntity.getId());
+
+        // Perform the service call
+        this.mcpSyncService.reconcile();
+        this.awaitSweep();
+
+        // Make sure the entity is still stale
+        assertTrue(this.mcpSyncService.isStale(this.mrnEntity.getId()));
+    }
+
+    /**
+     * Test that when another node is already sweeping, this sweep will be
+     * skipped.
+     */
+    @Test
+    void testReconcileRunningElsewhere() throws InterruptedException {
+        doReturn(false).when(this.mrnEntityLeases).tryWithLease(eq(McpSyncService.SYNC_LEASE_ID), any());
+
+        // Perform the service call
+        this.mcpSyncService.reconcile();
+        this.awaitSweep();
+
+        // Make sure nothing was synced, and another sweep can take place
+        verifyNoInteractions(this.mrnEntityRepo);
+        verifyNoInteractions(this.certificateService);
+        assertFalse(this.mcpSyncService.sweeping.get());
+    }
+
+    /**
+     * Test that when the service is disabled, nothing will be synced.
+     */
+    @Test
+    void testReconcileDisabled() throws InterruptedException {
+        this.mcpSyncService.enabled = false;
+
+        // Perform the service call
+        this.mcpSyncService.reconcile();
+        this.awaitSweep();
+
+        // Make sure nothing was synced
+        verifyNoInteractions(this.mrnEntityLeases);
+        verifyNoInteractions(this.mrnEntityRepo);
+        verifyNoInteractions(this.certificateService);
+    }
+
+    /**
+     * Test that a sync request for a stale MRN entity will be performed in
+     * the background.
+     */
+    @Test
+    void testRequestSync() {
+        doReturn(Boolean.TRUE).when(this.certificateService).syncMrnEntityWithMcpMir(this.mrnEntity.getId());
+
+        // Perform the service call
+        this.mcpSyncService.requestSync(this.mrnEntity.getId());
+
+        // Make sure the entity was synced in the background
+        verify(this.certificateService, timeout(5000).times(1)).syncMrnEntityWithMcpMir(this.mrnEntity.getId());
+    }
+
+    /**
+     * Test that a sync request for an MRN entity that has been recently synced
+     * will not be performed.
+     */
+    @Test
+    void testRequestSyncNotStale() {
+        // Perform the service call
+        this.mcpSyncService.requestSync(this.syncedMrnEntity.getId());
+
+        // Make sure nothing was synced
+        verifyNoInteractions(this.certificateService);
+    }
+
+    /**
+     * Test that the sync time of a deleted MRN entity can be dropped.
+     */
+    @Test
+    void testForget() {
+        this.mcpSyncService.forget(this.syncedMrnEntity.getId());
+
+        // Make sure the entity is stale again
+        assertFalse(this.mcpSyncService.lastSynced.containsKey(this.syncedMrnEntity.getId()));
+        assertTrue(this.mcpSyncService.isStale(this.syncedMrnEntity.getId()));
+    }
+
+    /**
+     * Waits for the submitted sweeps to complete.
+     */
+    private void awaitSweep() throws InterruptedException {
+        this.mcpSyncService.sweepExecutor.shutdown();
+        assertTrue(this.mcpSyncService.sweepExecutor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Mocks the acquisition of the cluster-wide sweep lease, so that the
+     * sweep runs straight away.
+     */
+    private void acquireLease() {
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return true;
+        }).when(this.mrnEntityLeases).tryWithLease(eq(McpSyncService.SYNC_LEASE_ID), any());
+    }
+
+}
@@ -16,12 +16,12 @@
 
 package org.grad.eNav.cKeeper.services;
 
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache;
 import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
-import org.grad.eNav.cKeeper.exceptions.McpConnectivityException;
 import org.grad.eNav.cKeeper.exceptions.ValidationException;
+import org.grad.eNav.cKeeper.models.domain.McpOutboxEntry;
 import org.grad.eNav.cKeeper.models.domain.MrnEntity;
 import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
-import org.grad.eNav.cKeeper.models.dtos.mcp.McpDeviceDto;
 import org.grad.eNav.cKeeper.models.dtos.datatables.*;
 import org.grad.eNav.cKeeper.repos.MRNEntityRepo;
 import org.hibernate.search.engine.search.query.SearchQuery;
@@ -40,7 +40,6 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 import jakarta.persistence.EntityManager;
-import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -69,10 +68,16 @@ class MrnEntityServiceTest {
     EntityManager entityManager;
 
     /**
-     * The MCP Service Mock.
+     * The MCP Outbox Service Mock.
      */
     @Mock
-    McpService mcpService;
+    McpOutboxService mcpOutboxService;
+
+    /**
+     * The MCP Sync Service Mock.
+     */
+    @Mock
+    McpSyncService mcpSyncService;
 
     /**
      * The Station Repository Mock.
@@ -80,11 +85,15 @@ class MrnEntityServiceTest {
     @Mock
     private MRNEntityRepo mrnEntityRepo;
 
+    /**
+     * The Signature Certificate Cache mock.
+     */
+    @Mock
+    SignatureCertificateCache signatureCertificateCache;
+
     // Test Variables
     private List<MrnEntity> entities;
     private Pageable pageable;
-    private McpDeviceDto newMcpDevice;
-    private McpDeviceDto existingMcpDevice;
     private MrnEntity newEntity;
     private MrnEntity existingEntity;
 
@@ -121,11 +130,6 @@ class MrnEntityServiceTest {
         this.existingEntity.setMrn("urn:mrn:mcp:device:mcc:grad:test-existing");
         this.existingEntity.setMmsi("123456790");
         this.existingEntity.setEntityType(McpEntityType.DEVICE);
-
-        // Create an MCP Device DTO
-        this.newMcpDevice = new McpDeviceDto(this.newEntity.getName(), this.newEntity.getMrn());
-        this.existingMcpDevice = new McpDeviceDto(this.existingEntity.getName(), this.existingEntity.getMrn());
-        this.existingMcpDevice.setId(BigInteger.ONE);
     }
 
     /**
@@ -325,10 +329,8 @@ class MrnEntityServiceTest {
      * checks are successful.
      */
     @Test
-    void testCreate() throws IOException, McpConnectivityException {
-        doThrow(DataNotFoundException.class).when(this.mcpService).getMcpEntity(any(), any(), any());
+    void testCreate() {
         doReturn(this.newEntity).when(this.mrnEntityRepo).save(any());
-        doReturn(this.newMcpDevice).when(this.mcpService).createMcpEntity(any());
 
         // Perform the service call
         MrnEntity result = this.mrnEntityService.save(this.newEntity);
@@ -343,6 +345,9 @@ class MrnEntityServiceTest {
 
         // Also that a saving call took place in the repository
         verify(this.mrnEntityRepo, times(1)).save(this.newEntity);
+
+        // And that the MCP MIR update was recorded in the outbox
+        verify(this.mcpOutboxService, times(1)).record(this.newEntity, McpOutboxEntry.Operation.SAVE);
     }
 
     /**
@@ -366,10 +371,8 @@ class MrnEntityServiceTest {
      * validation checks are successful.
      */
     @Test
-    void testUpdate() throws IOException, McpConnectivityException {
+    void testUpdate() {
         doReturn(Boolean.TRUE).when(this.mrnEntityRepo).existsById(this.existingEntity.getId());
-        doReturn(this.existingMcpDevice).when(this.mcpService).getMcpEntity(this.existingEntity.getMrn(), null, McpDeviceDto.class);
-        doReturn(this.existingMcpDevice).when(this.mcpService).updateMcpEntity(this.existingMcpDevice.getMrn(), this.existingMcpDevice);
         doReturn(this.existingEntity).when(this.mrnEntityRepo).save(any());
 
         // Perform the service call
@@ -385,6 +388,9 @@ class MrnEntityServiceTest {
 
         // Also that a saving call took place in the repository
         verify(this.mrnEntityRepo, times(1)).save(this.existingEntity);
+
+        // And that the MCP MIR update was recorded in the outbox
+        verify(this.mcpOutboxService, times(1)).record(this.existingEntity, McpOutboxEntry.Operation.SAVE);
     }
 
     /**
@@ -409,9 +415,8 @@ class MrnEntityServiceTest {
      * Test that we can successfully delete an existing station.
      */
     @Test
-    void testDelete() throws IOException, McpConnectivityException {
+    void testDelete() {
         doReturn(Optional.of(this.existingEntity)).when(this.mrnEntityRepo).findById(this.existingEntity.getId());
-        doReturn(Boolean.TRUE).when(this.mcpService).deleteMcpEntity(this.existingEntity.getMrn(), null, McpDeviceDto.class);
         doReturn(Boolean.TRUE).when(this.mrnEntityRepo).existsById(this.existingEntity.getId());
         doNothing().when(this.mrnEntityRepo).deleteById(this.existingEntity.getId());
 
@@ -420,6 +425,8 @@ class MrnEntityServiceTest {
 
         // Verify that a deletion call took place in the repository
         verify(this.mrnEntityRepo, times(1)).deleteById(this.existingEntity.getId());
+        verify(this.mcpOutboxService, times(1)).record(this.existingEntity, McpOutboxEntry.Operation.DELETE);
+        verify(this.mcpSyncService, times(1)).forget(this.existingEntity.getId());
     }
 
     /**
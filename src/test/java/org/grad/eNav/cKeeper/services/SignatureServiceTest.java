@@ -16,11 +16,24 @@
 
 package org.grad.eNav.cKeeper.services;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.grad.eNav.cKeeper.components.RequestCoalescer;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache.SignatureCertificateBundle;
+import org.grad.eNav.cKeeper.components.SignatureCertificateCache.SignatureCertificateKey;
+import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
 import org.grad.eNav.cKeeper.exceptions.InvalidRequestException;
 import org.grad.eNav.cKeeper.models.domain.Certificate;
 import org.grad.eNav.cKeeper.models.domain.MrnEntity;
 import org.grad.eNav.cKeeper.models.domain.SignatureCertificate;
 import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.models.dtos.SignatureBatchVerificationRequestDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureRequestDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureResponseDto;
+import org.grad.eNav.cKeeper.models.dtos.SignatureVerificationResponseDto;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -38,8 +51,18 @@ import java.security.SignatureException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -73,6 +96,24 @@ class SignatureServiceTest {
     @Mock
     McpConfigService mcpConfigService;
 
+    /**
+     * The MCP Sync Service mock.
+     */
+    @Mock
+    McpSyncService mcpSyncService;
+
+    /**
+     * The Signature Certificate Cache spy.
+     */
+    @Spy
+    SignatureCertificateCache signatureCertificateCache = new SignatureCertificateCache();
+
+    /**
+     * The Request Coalescer spy.
+     */
+    @Spy
+    RequestCoalescer requestCoalescer = new RequestCoalescer();
+
     // Test Variables
     private MrnEntity mrnEntity;
     private Certificate certificate;
@@ -86,6 +127,12 @@ class SignatureServiceTest {
      */
     @BeforeEach
     void setup() throws NoSuchAlgorithmException {
+        // Initialise the service parameters
+        this.signatureService.maxBatchSize = 10;
+        this.signatureService.batchThreads = 2;
+        this.signatureService.init();
+        this.signatureCertificateCache.init();
+
         // Create a new MRN entity DTO
         this.mrnEntity = new MrnEntity();
         this.mrnEntity.setId(BigInteger.ONE);
@@ -117,6 +164,14 @@ class SignatureServiceTest {
         this.signature = MessageDigest.getInstance("SHA-256").digest(("That's the signature?").getBytes());
     }
 
+    /**
+     * Clean up after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.signatureService.destroy();
+    }
+
     /**
      * Test that we can successfully retrieve the certificate information that
      * will be used to generate a signature, on demand, for a specific MRN
@@ -135,6 +190,9 @@ class SignatureServiceTest {
         // Perform the service call
         SignatureCertificate result = this.signatureService.getSignatureCertificate(this.mrnEntity.getName(), this.mrnEntity.getMmsi(), this.mrnEntity.getVersion(), this.mrnEntity.getEntityType());
 
+        // Make sure the MCP sync was only requested, in the background
+        verify(this.mcpSyncService, times(1)).requestSync(this.mrnEntity.getId());
+
         // Assert that the signature certificate seems OK
         assertNotNull(result);
         assertEquals(this.certificate.getId(), result.getCertificateId());
@@ -143,6 +201,124 @@ class SignatureServiceTest {
         assertEquals(Base64.getEncoder().encodeToString(new byte[]{0x01, 0x02, 0x03, 0x04}), result.getRootCertificate());
     }
 
+    /**
+     * Test that the assembled signature certificate bundles are cached along
+     * with their ETag, so that subsequent requests for the same entity do not
+     * need to rebuild them, until the entity certificates change.
+     */
+    @Test
+    void testGetSignatureCertificateBundleCached() throws CertificateEncodingException {
+        // Make sure the certificate is still valid
+        this.certificate.setEndDate(new Date(new Date().getTime() + 60000));
+
+        // Mock a root certificate
+        X509Certificate rootCertificate = mock(X509Certificate.class);
+        doReturn(new byte[]{0x01, 0x02, 0x03, 0x04}).when(rootCertificate).getEncoded();
+
+        doReturn(this.mrnEntity).when(this.mrnEntityService).getOrCreate(any(), any(), any(), any(), any());
+        doReturn(this.certificate).when(this.certificateService).getLatestOrCreate(this.mrnEntity.getId());
+        doReturn(rootCertificate).when(this.certificateService).getTrustedCertificate(any());
+
+        // Perform the service call twice
+        SignatureCertificateBundle result = this.signatureService.getSignatureCertificateBundle(this.mrnEntity.getName(), this.mrnEntity.getVersion(), this.mrnEntity.getMmsi(), this.mrnEntity.getEntityType());
+        SignatureCertificateBundle cachedResult = this.signatureService.getSignatureCertificateBundle(this.mrnEntity.getName(), this.mrnEntity.getVersion(), this.mrnEntity.getMmsi(), this.mrnEntity.getEntityType());
+
+        // Make sure the bundle was only built once
+        assertNotNull(result);
+        assertNotNull(result.eTag());
+        assertSame(result, cachedResult);
+        verify(this.certificateService, times(1)).getLatestOrCreate(any());
+        verify(this.mcpSyncService, times(2)).requestSync(this.mrnEntity.getId());
+
+        // Drop the cached bundles of the entity and make sure it's rebuilt
+        this.signatureCertificateCache.invalidateMrnEntity(this.mrnEntity.getId());
+        SignatureCertificateBundle rebuiltResult = this.signatureService.getSignatureCertificateBundle(this.mrnEntity.getName(), this.mrnEntity.getVersion(), this.mrnEntity.getMmsi(), this.mrnEntity.getEntityType());
+        assertNotSame(result, rebuiltResult);
+        assertEquals(result.eTag(), rebuiltResult.eTag());
+        verify(this.certificateService, times(2)).getLatestOrCreate(any());
+    }
+
+    /**
+     * Test that if the certificates of the entity are invalidated while the
+     * signature certificate bundle is being built, e.g. due to a rotation or
+     * a revocation, the stale bundle will not be cached.
+     */
+    @Test
+    void testGetSignatureCertificateBundleInvalidatedDuringBuild() throws CertificateEncodingException {
+        // Make sure the certificate is still valid
+        this.certificate.setEndDate(new Date(new Date().getTime() + 60000));
+
+        // Mock a root certificate
+        X509Certificate rootCertificate = mock(X509Certificate.class);
+        doReturn(new byte[]{0x01, 0x02, 0x03, 0x04}).when(rootCertificate).getEncoded();
+
+        // Invalidate the entity certificates while the bundle is being built
+        doAnswer(inv -> {
+            this.signatureCertificateCache.invalidateMrnEntity(this.mrnEntity.getId());
+            return this.mrnEntity;
+        }).when(this.mrnEntityService).getOrCreate(any(), any(), any(), any(), any());
+        doReturn(this.certificate).when(this.certificateService).getLatestOrCreate(this.mrnEntity.getId());
+        doReturn(rootCertificate).when(this.certificateService).getTrustedCertificate(any());
+
+        // Perform the service call
+        SignatureCertificateBundle result = this.signatureService.getSignatureCertificateBundle(this.mrnEntity.getName(), this.mrnEntity.getVersion(), this.mrnEntity.getMmsi(), this.mrnEntity.getEntityType());
+
+        // Make sure the bundle was returned but not cached
+        assertNotNull(result);
+        assertNull(this.signatureCertificateCache.get(new SignatureCertificateKey(this.mrnEntity.getName(), this.mrnEntity.getVersion(), this.mrnEntity.getMmsi(), this.mrnEntity.getEntityType())));
+    }
+
+    /**
+     * Test that concurrent requests for the signature certificate bundle of
+     * the same entity are coalesced, so that the bundle is only built once
+     * and shared between them.
+     */
+    @Test
+    void testGetSignatureCertificateBundleCoalesced() throws Exception {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.requestCoalescer.meterRegistry = meterRegistry;
+
+        // Make sure the certificate is still valid
+        this.certificate.setEndDate(new Date(new Date().getTime() + 60000));
+
+        // Mock a root certificate
+        X509Certificate rootCertificate = mock(X509Certificate.class);
+        doReturn(new byte[]{0x01, 0x02, 0x03, 0x04}).when(rootCertificate).getEncoded();
+
+        // Block the first request while it's building the bundle
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return this.mrnEntity;
+        }).when(this.mrnEntityService).getOrCreate(any(), any(), any(), any(), any());
+        doReturn(this.certificate).when(this.certificateService).getLatestOrCreate(this.mrnEntity.getId());
+        doReturn(rootCertificate).when(this.certificateService).getTrustedCertificate(any());
+
+        // Perform the first service call
+        final CompletableFuture<SignatureCertificateBundle> first = CompletableFuture.supplyAsync(() ->
+                this.signatureService.getSignatureCertificateBundle(this.mrnEntity.getName(), this.mrnEntity.getVersion(), this.mrnEntity.getMmsi(), this.mrnEntity.getEntityType()));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Perform a concurrent service call and wait until it's coalesced
+        final CompletableFuture<SignatureCertificateBundle> second = CompletableFuture.supplyAsync(() ->
+                this.signatureService.getSignatureCertificateBundle(this.mrnEntity.getName(), this.mrnEntity.getVersion(), this.mrnEntity.getMmsi(), this.mrnEntity.getEntityType()));
+        final long deadline = System.currentTimeMillis() + 5000;
+        while(Optional.ofNullable(meterRegistry.find("ckeeper.requests.coalescing").tag("result", "coalesced").counter()).map(Counter::count).orElse(0.0) < 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        // Make sure both calls got the same bundle, which was only built once
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        verify(this.mrnEntityService, times(1)).getOrCreate(any(), any(), any(), any(), any());
+        verify(this.certificateService, times(1)).getLatestOrCreate(any());
+        assertEquals(1, meterRegistry.get("ckeeper.requests.coalescing").tag("result", "executed").counter().count());
+        assertEquals(1, meterRegistry.get("ckeeper.requests.coalescing").tag("result", "coalesced").counter().count());
+    }
+
     /**
      * Test that we can correctly generate a signature for the provided entity
      * MMSI and the content we want to sign.
@@ -175,6 +351,139 @@ class SignatureServiceTest {
         );
     }
 
+    /**
+     * Test that we can correctly generate a batch of signatures, where the
+     * signing certificate is identified either directly by its ID, or by the
+     * entity information. The entity resolution should only take place once
+     * for each distinct entity.
+     */
+    @Test
+    void testGenerateBatchSignatures() throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
+        // Create the batch signature requests
+        final SignatureRequestDto certificateRequest = new SignatureRequestDto();
+        certificateRequest.setCertificateId(this.certificate.getId());
+        certificateRequest.setAlgorithm(this.algorithm);
+        certificateRequest.setPayload(Base64.getEncoder().encodeToString(this.content));
+        final SignatureRequestDto entityRequest = new SignatureRequestDto();
+        entityRequest.setEntityName(this.mrnEntity.getName());
+        entityRequest.setMmsi(this.mrnEntity.getMmsi());
+        entityRequest.setEntityType(McpEntityType.DEVICE);
+        entityRequest.setAlgorithm(this.algorithm);
+        entityRequest.setPayload(Base64.getEncoder().encodeToString(this.content));
+
+        doReturn(this.signatureCertificate).when(this.signatureService).getSignatureCertificate(this.mrnEntity.getName(), null, this.mrnEntity.getMmsi(), McpEntityType.DEVICE);
+        doReturn(this.signature).when(this.certificateService).signContent(this.certificate.getId(), this.algorithm, this.content);
+
+        // Perform the service call
+        final List<SignatureResponseDto> result = this.signatureService.generateBatchSignatures(Arrays.asList(certificateRequest, entityRequest, entityRequest));
+
+        // Make sure all the signatures were generated
+        assertNotNull(result);
+        assertEquals(3, result.size());
+        for(SignatureResponseDto signatureResponse : result) {
+            assertNull(signatureResponse.getError());
+            assertEquals(this.certificate.getId(), signatureResponse.getCertificateId());
+            assertEquals(Base64.getEncoder().encodeToString(this.signature), signatureResponse.getSignature());
+        }
+
+        // Make sure the entity was only resolved once
+        verify(this.signatureService, times(1)).getSignatureCertificate(any(), any(), any(), any());
+    }
+
+    /**
+     * Test that the batch executor uses a thread per available processor,
+     * unless the number of threads is configured explicitly.
+     */
+    @Test
+    void testInitBatchThreads() {
+        assertEquals(2, ((ThreadPoolExecutor) this.signatureService.batchExecutor).getMaximumPoolSize());
+
+        // Now use the default number of threads
+        this.signatureService.destroy();
+        this.signatureService.batchThreads = 0;
+        this.signatureService.init();
+        assertEquals(Runtime.getRuntime().availableProcessors(), ((ThreadPoolExecutor) this.signatureService.batchExecutor).getMaximumPoolSize());
+    }
+
+    /**
+     * Test that the entities of a batch signature request are resolved on
+     * the calling thread, while only the signing operations are performed on
+     * the dedicated batch executor.
+     */
+    @Test
+    void testGenerateBatchSignaturesThreads() throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
+        // Create the batch signature requests
+        final SignatureRequestDto entityRequest = new SignatureRequestDto();
+        entityRequest.setEntityName(this.mrnEntity.getName());
+        entityRequest.setMmsi(this.mrnEntity.getMmsi());
+        entityRequest.setEntityType(McpEntityType.DEVICE);
+        entityRequest.setAlgorithm(this.algorithm);
+        entityRequest.setPayload(Base64.getEncoder().encodeToString(this.content));
+
+        // Keep track of the threads used
+        final Thread callingThread = Thread.currentThread();
+        final List<String> signingThreads = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(inv -> {
+            assertSame(callingThread, Thread.currentThread());
+            return this.signatureCertificate;
+        }).when(this.signatureService).getSignatureCertificate(this.mrnEntity.getName(), null, this.mrnEntity.getMmsi(), McpEntityType.DEVICE);
+        doAnswer(inv -> {
+            signingThreads.add(Thread.currentThread().getName());
+            return this.signature;
+        }).when(this.certificateService).signContent(this.certificate.getId(), this.algorithm, this.content);
+
+        // Perform the service call
+        final List<SignatureResponseDto> result = this.signatureService.generateBatchSignatures(Arrays.asList(entityRequest, entityRequest));
+
+        // Make sure all the signatures were generated on the batch executor
+        assertEquals(2, result.size());
+        result.forEach(signatureResponse -> assertNull(signatureResponse.getError()));
+        assertEquals(List.of("signature-batch", "signature-batch"), signingThreads);
+    }
+
+    /**
+     * Test that if some of the items of a batch signature request fail, the
+     * errors will be reported per item, without failing the whole batch.
+     */
+    @Test
+    void testGenerateBatchSignaturesPartialFailure() throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
+        // Create the batch signature requests
+        final SignatureRequestDto validRequest = new SignatureRequestDto();
+        validRequest.setCertificateId(this.certificate.getId());
+        validRequest.setAlgorithm(this.algorithm);
+        validRequest.setPayload(Base64.getEncoder().encodeToString(this.content));
+        final SignatureRequestDto noPayloadRequest = new SignatureRequestDto();
+        noPayloadRequest.setCertificateId(this.certificate.getId());
+        final SignatureRequestDto noEntityRequest = new SignatureRequestDto();
+        noEntityRequest.setPayload(Base64.getEncoder().encodeToString(this.content));
+
+        doReturn(this.signature).when(this.certificateService).signContent(this.certificate.getId(), this.algorithm, this.content);
+
+        // Perform the service call
+        final List<SignatureResponseDto> result = this.signatureService.generateBatchSignatures(Arrays.asList(validRequest, noPayloadRequest, noEntityRequest));
+
+        // Make sure only the first signature was generated
+        assertNotNull(result);
+        assertEquals(3, result.size());
+        assertNull(result.get(0).getError());
+        assertEquals(Base64.getEncoder().encodeToString(this.signature), result.get(0).getSignature());
+        assertNotNull(result.get(1).getError());
+        assertNull(result.get(1).getSignature());
+        assertNotNull(result.get(2).getError());
+        assertNull(result.get(2).getSignature());
+    }
+
+    /**
+     * Test that if a batch signature request exceeds the maximum allowed size,
+     * an InvalidRequestException will be thrown.
+     */
+    @Test
+    void testGenerateBatchSignaturesTooLarge() {
+        assertThrows(InvalidRequestException.class, () ->
+                this.signatureService.generateBatchSignatures(Collections.nCopies(11, new SignatureRequestDto()))
+        );
+    }
+
     /**
      * Test that we can correctly verify a signature for the provided entity
      * ID and the content we submit.
@@ -182,11 +491,13 @@ class SignatureServiceTest {
     @Test
     void testVerifyEntitySignatureByMrn() throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
         doReturn(this.mrnEntity).when(this.mrnEntityService).findOneByMrn(this.mrnEntity.getMrn());
-        doReturn(this.certificate).when(this.certificateService).getLatestOrCreate(this.mrnEntity.getId());
-        doReturn(Boolean.TRUE).when(this.certificateService).verifyContent(mrnEntity.getId(), this.algorithm, this.content, this.signature);
+        doReturn(Boolean.TRUE).when(this.certificateService).verifyEntityContent(this.mrnEntity.getId(), this.algorithm, this.content, this.signature);
 
         // Perform the service call
         assertTrue(this.signatureService.verifyEntitySignatureByMrn(this.mrnEntity.getMrn(), this.algorithm, Base64.getEncoder().encodeToString(this.content), Base64.getEncoder().encodeToString((this.signature))));
+
+        // Make sure the verification never issued a certificate
+        verify(this.certificateService, never()).getLatestOrCreate(any());
     }
 
     /**
@@ -196,13 +507,68 @@ class SignatureServiceTest {
     @Test
     void testVerifyEntitySignatureByMrnFail() throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
         doReturn(this.mrnEntity).when(this.mrnEntityService).findOneByMrn(this.mrnEntity.getMrn());
-        doReturn(this.certificate).when(this.certificateService).getLatestOrCreate(this.mrnEntity.getId());
-        doReturn(Boolean.FALSE).when(this.certificateService).verifyContent(mrnEntity.getId(), this.algorithm, this.content, this.signature);
+        doReturn(Boolean.FALSE).when(this.certificateService).verifyEntityContent(this.mrnEntity.getId(), this.algorithm, this.content, this.signature);
 
         // Perform the service call
         assertFalse(this.signatureService.verifyEntitySignatureByMrn(this.mrnEntity.getMrn(), this.algorithm, Base64.getEncoder().encodeToString(this.content), Base64.getEncoder().encodeToString(this.signature)));
     }
 
+    /**
+     * Test that the signature verification latency and outcome are recorded
+     * in the meter registry, tagged by the algorithm and the entity type.
+     */
+    @Test
+    void testVerifyEntitySignatureByMrnMetrics() throws NoSuchAlgorithmException {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.signatureService.meterRegistry = meterRegistry;
+        doReturn(this.mrnEntity).when(this.mrnEntityService).findOneByMrn(this.mrnEntity.getMrn());
+        doReturn(Boolean.TRUE, Boolean.FALSE).when(this.certificateService).verifyEntityContent(this.mrnEntity.getId(), this.algorithm, this.content, this.signature);
+
+        // Perform the service calls
+        assertTrue(this.signatureService.verifyEntitySignatureByMrn(this.mrnEntity.getMrn(), this.algorithm, Base64.getEncoder().encodeToString(this.content), Base64.getEncoder().encodeToString(this.signature)));
+        assertFalse(this.signatureService.verifyEntitySignatureByMrn(this.mrnEntity.getMrn(), this.algorithm, Base64.getEncoder().encodeToString(this.content), Base64.getEncoder().encodeToString(this.signature)));
+
+        // Make sure the metrics were recorded
+        assertEquals(1, meterRegistry.get("ckeeper.signature.verifications").tags("algorithm", this.algorithm, "entity.type", "device", "outcome", "valid").counter().count());
+        assertEquals(1, meterRegistry.get("ckeeper.signature.verifications").tags("algorithm", this.algorithm, "entity.type", "device", "outcome", "invalid").counter().count());
+        assertEquals(2, meterRegistry.get("ckeeper.signature.verify").tags("algorithm", this.algorithm, "entity.type", "device").timers().stream().mapToLong(Timer::count).sum());
+    }
+
+    /**
+     * Test that the signing latency is recorded in the meter registry, tagged
+     * by the algorithm and the entity type, if that is known.
+     */
+    @Test
+    void testGenerateEntitySignatureMetrics() throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.signatureService.meterRegistry = meterRegistry;
+        doReturn(this.signature).when(this.certificateService).signContent(eq(this.certificate.getId()), any(), eq(this.content));
+
+        // Perform the service calls
+        this.signatureService.generateEntitySignature(this.certificate.getId(), McpEntityType.DEVICE, this.algorithm, this.content);
+        this.signatureService.generateEntitySignature(this.certificate.getId(), McpEntityType.DEVICE, this.algorithm.toLowerCase(), this.content);
+        this.signatureService.generateEntitySignature(this.certificate.getId(), "SHA-256", this.content);
+
+        // Make sure the metrics were recorded
+        assertEquals(2, meterRegistry.get("ckeeper.signature.sign").tags("algorithm", this.algorithm, "entity.type", "device", "result", "success").timer().count());
+        assertEquals(1, meterRegistry.get("ckeeper.signature.sign").tags("algorithm", "other", "entity.type", "unknown", "result", "success").timer().count());
+    }
+
+    /**
+     * Test that the unsupported, caller-provided algorithms are all tagged
+     * as "other", so that they cannot create new meters.
+     */
+    @Test
+    void testGetAlgorithmTag() {
+        this.signatureService.defaultSigningAlgorithm = "SHA3-384withECDSA";
+
+        assertEquals("SHA3-384withECDSA", this.signatureService.getAlgorithmTag(null));
+        assertEquals("SHA256withECDSA", this.signatureService.getAlgorithmTag("SHA256withECDSA"));
+        assertEquals("SHA256withCVC-ECDSA", this.signatureService.getAlgorithmTag("sha256withcvc-ecdsa"));
+        assertEquals("other", this.signatureService.getAlgorithmTag("SHA-256"));
+        assertEquals("other", this.signatureService.getAlgorithmTag(UUID.randomUUID().toString()));
+    }
+
     /**
      * Test that we can correctly verify a signature for the provided entity
      * MMSI and the content we submit.
@@ -229,4 +595,127 @@ class SignatureServiceTest {
         assertFalse(this.signatureService.verifyEntitySignatureByMmsi(this.mrnEntity.getMmsi(), this.algorithm, Base64.getEncoder().encodeToString(this.content), Base64.getEncoder().encodeToString(this.signature)));
     }
 
-}
\ No newline at end of file
+    /**
+     * Test that we can correctly verify a batch of signatures, where the
+     * entity is identified either by its MRN or its MMSI. The entity
+     * resolution should only take place once for each distinct entity.
+     */
+    @Test
+    void testVerifyBatchSignatures() throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
+        // Create the batch verification requests
+        final SignatureBatchVerificationRequestDto mrnRequest = new SignatureBatchVerificationRequestDto();
+        mrnRequest.setMrn(this.mrnEntity.getMrn());
+        mrnRequest.setAlgorithm(this.algorithm);
+        mrnRequest.setContent(Base64.getEncoder().encodeToString(this.content));
+        mrnRequest.setSignature(Base64.getEncoder().encodeToString(this.signature));
+        final SignatureBatchVerificationRequestDto mmsiRequest = new SignatureBatchVerificationRequestDto();
+        mmsiRequest.setMmsi(this.mrnEntity.getMmsi());
+        mmsiRequest.setAlgorithm(this.algorithm);
+        mmsiRequest.setContent(Base64.getEncoder().encodeToString(this.content));
+        mmsiRequest.setSignature(Base64.getEncoder().encodeToString(this.signature));
+
+        doReturn(this.mrnEntity).when(this.mrnEntityService).findOneByMrn(this.mrnEntity.getMrn());
+        doReturn(this.mrnEntity).when(this.mrnEntityService).findOneByMmsi(this.mrnEntity.getMmsi());
+        doReturn(Boolean.TRUE).when(this.certificateService).verifyEntityContent(this.mrnEntity.getId(), this.algorithm, this.content, this.signature);
+
+        // Perform the service call
+        final List<SignatureVerificationResponseDto> result = this.signatureService.verifyBatchSignatures(Arrays.asList(mrnRequest, mmsiRequest, mrnRequest));
+
+        // Make sure all the signatures were verified
+        assertNotNull(result);
+        assertEquals(3, result.size());
+        for(SignatureVerificationResponseDto verificationResponse : result) {
+            assertNull(verificationResponse.getError());
+            assertTrue(verificationResponse.isValid());
+        }
+
+        // Make sure each distinct entity was only resolved once
+        verify(this.mrnEntityService, times(1)).findOneByMrn(any());
+        verify(this.mrnEntityService, times(1)).findOneByMmsi(any());
+    }
+
+    /**
+     * Test that if some of the items of a batch verification request fail,
+     * the errors will be reported per item, without failing the whole batch.
+     */
+    @Test
+    void testVerifyBatchSignaturesPartialFailure() throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
+        // Create the batch verification requests
+        final SignatureBatchVerificationRequestDto validRequest = new SignatureBatchVerificationRequestDto();
+        validRequest.setMrn(this.mrnEntity.getMrn());
+        validRequest.setAlgorithm(this.algorithm);
+        validRequest.setContent(Base64.getEncoder().encodeToString(this.content));
+        validRequest.setSignature(Base64.getEncoder().encodeToString(this.signature));
+        final SignatureBatchVerificationRequestDto unknownRequest = new SignatureBatchVerificationRequestDto();
+        unknownRequest.setMmsi("987654321");
+        unknownRequest.setContent(Base64.getEncoder().encodeToString(this.content));
+        unknownRequest.setSignature(Base64.getEncoder().encodeToString(this.signature));
+        final SignatureBatchVerificationRequestDto noSignatureRequest = new SignatureBatchVerificationRequestDto();
+        noSignatureRequest.setMrn(this.mrnEntity.getMrn());
+        noSignatureRequest.setContent(Base64.getEncoder().encodeToString(this.content));
+
+        doReturn(this.mrnEntity).when(this.mrnEntityService).findOneByMrn(this.mrnEntity.getMrn());
+        doThrow(DataNotFoundException.class).when(this.mrnEntityService).findOneByMmsi("987654321");
+        doReturn(Boolean.FALSE).when(this.certificateService).verifyEntityContent(this.mrnEntity.getId(), this.algorithm, this.content, this.signature);
+
+        // Perform the service call
+        final List<SignatureVerificationResponseDto> result = this.signatureService.verifyBatchSignatures(Arrays.asList(validRequest, unknownRequest, noSignatureRequest));
+
+        // Make sure the results are reported per item
+        assertNotNull(result);
+        assertEquals(3, result.size());
+        assertNull(result.get(0).getError());
+        assertFalse(result.get(0).isValid());
+        assertNull(result.get(1).getError());
+        assertFalse(result.get(1).isValid());
+        assertNotNull(result.get(2).getError());
+        assertFalse(result.get(2).isValid());
+    }
+
+    /**
+     * Test that the entities of a batch verification request are resolved on
+     * the calling thread, while only the verification operations are
+     * performed on the dedicated batch executor.
+     */
+    @Test
+    void testVerifyBatchSignaturesThreads() throws NoSuchAlgorithmException, IOException, InvalidKeySpecException, SignatureException, InvalidKeyException {
+        // Create the batch verification requests
+        final SignatureBatchVerificationRequestDto mrnRequest = new SignatureBatchVerificationRequestDto();
+        mrnRequest.setMrn(this.mrnEntity.getMrn());
+        mrnRequest.setAlgorithm(this.algorithm);
+        mrnRequest.setContent(Base64.getEncoder().encodeToString(this.content));
+        mrnRequest.setSignature(Base64.getEncoder().encodeToString(this.signature));
+
+        // Keep track of the threads used
+        final Thread callingThread = Thread.currentThread();
+        final List<String> verificationThreads = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(inv -> {
+            assertSame(callingThread, Thread.currentThread());
+            return this.mrnEntity;
+        }).when(this.mrnEntityService).findOneByMrn(this.mrnEntity.getMrn());
+        doAnswer(inv -> {
+            verificationThreads.add(Thread.currentThread().getName());
+            return Boolean.TRUE;
+        }).when(this.certificateService).verifyEntityContent(this.mrnEntity.getId(), this.algorithm, this.content, this.signature);
+
+        // Perform the service call
+        final List<SignatureVerificationResponseDto> result = this.signatureService.verifyBatchSignatures(Arrays.asList(mrnRequest, mrnRequest));
+
+        // Make sure all the signatures were verified on the batch executor
+        assertEquals(2, result.size());
+        result.forEach(verificationResponse -> assertTrue(verificationResponse.isValid()));
+        assertEquals(List.of("signature-batch", "signature-batch"), verificationThreads);
+    }
+
+    /**
+     * Test that if a batch verification request exceeds the maximum allowed
+     * size, an InvalidRequestException will be thrown.
+     */
+    @Test
+    void testVerifyBatchSignaturesTooLarge() {
+        assertThrows(InvalidRequestException.class, () ->
+                this.signatureService.verifyBatchSignatures(Collections.nCopies(11, new SignatureBatchVerificationRequestDto()))
+        );
+    }
+
+}
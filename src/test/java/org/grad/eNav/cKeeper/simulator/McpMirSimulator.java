@@ -0,0 +1,636 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequest;
+import org.grad.eNav.cKeeper.utils.X509Utils;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.*;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The MCP MIR Simulator.
+ * <p/>
+ * A stand-in for the MCP Identity Registry, implementing the operations
+ * used by the {@link org.grad.eNav.cKeeper.services.McpService}, i.e. the
+ * entity CRUD operations, the certificate issuance from CSRs and the
+ * certificate revocation. The certificates are actually issued by a local
+ * CA generated on start-up, so that the whole certificate lifecycle can be
+ * exercised without a real MCP MIR.
+ * <p/>
+ * To support load and latency testing, a fixed latency with a random
+ * jitter, a rate of failing requests and complete outages can be injected,
+ * and changed at any point while the simulator is running.
+ * <p/>
+ * The simulator can either be embedded in tests, or started standalone
+ * through its main method, in which case cKeeper can be pointed to it by
+ * setting the "gla.rad.ckeeper.mcp.host" property to the printed host.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Slf4j
+public class McpMirSimulator implements Closeable {
+
+    /**
+     * The path prefix of all the MCP MIR organisation endpoints.
+     */
+    public static final String ORG_PATH_PREFIX = "/x509/api/org/";
+
+    // Simulator Variables
+    private final MockWebServer server = new MockWebServer();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, ObjectNode> entities = new ConcurrentHashMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private KeyPair caKeyPair;
+    private X509Certificate caCertificate;
+    private volatile long latencyMs;
+    private volatile long latencyJitterMs;
+    private volatile double errorRate;
+    private volatile boolean outage;
+    private volatile int certificateValidityDays = 365;
+
+    /**
+     * Starts the simulator on the provided port, or a random one if zero,
+     * optionally serving over HTTPS with a server certificate issued by the
+     * local CA.
+     *
+     * @param port the port to listen on, or zero for a random one
+     * @param https whether to serve over HTTPS
+     * @return the simulator
+     * @throws GeneralSecurityException if the local CA cannot be generated
+     * @throws IOException if the server cannot be started
+     */
+    public McpMirSimulator start(int port, boolean https) throws GeneralSecurityException, IOException {
+        Security.addProvider(new BouncyCastleProvider());
+
+        // Generate the local CA
+        this.caKeyPair = X509Utils.generateKeyPair("secp384r1");
+        try {
+            this.caCertificate = X509Utils.generateX509Certificate(this.caKeyPair, "CN=MCP MIR Simulator CA",
+                    new Date(), Date.from(Instant.now().plusSeconds(10L * 365 * 86400)), "SHA384withECDSA");
+        } catch (Exception ex) {
+            throw new GeneralSecurityException(ex);
+        }
+
+        // Secure the server if required
+        if(https) {
+            this.server.useHttps(this.createSslContext().getSocketFactory(), false);
+        }
+
+        // And start serving
+        this.server.setDispatcher(new McpMirDispatcher());
+        this.server.start(port);
+        log.info("MCP MIR simulator started on {}", this.getHost());
+        return this;
+    }
+
+    /**
+     * Stops the simulator.
+     *
+     * @throws IOException if the server cannot be stopped
+     */
+    @Override
+    public void close() throws IOException {
+        this.server.shutdown();
+    }
+
+    /**
+     * Returns the host and port the simulator is listening on, in the form
+     * expected by the "gla.rad.ckeeper.mcp.host" property.
+     *
+     * @return the simulator host and port
+     */
+    public String getHost() {
+        return String.format("%s:%d", this.server.getHostName(), this.server.getPort());
+    }
+
+    /**
+     * Returns the port the simulator is listening on.
+     *
+     * @return the simulator port
+     */
+    public int getPort() {
+        return this.server.getPort();
+    }
+
+    /**
+     * Returns the local CA certificate, which issues all the certificates of
+     * the simulator.
+     *
+     * @return the local CA certificate
+     */
+    public X509Certificate getCaCertificate() {
+        return this.caCertificate;
+    }
+
+    /**
+     * Writes the local CA certificate into a PKCS12 truststore, so that it
+     * can be used as the cKeeper MCP truststore.
+     *
+     * @param path the path of the truststore file
+     * @param password the password of the truststore
+     * @throws GeneralSecurityException if the truststore cannot be generated
+     * @throws IOException if the truststore cannot be written
+     */
+    public void writeTrustStore(Path path, String password) throws GeneralSecurityException, IOException {
+        final KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("mcp-mir-simulator-ca", this.caCertificate);
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            trustStore.store(outputStream, password.toCharArray());
+        }
+    }
+
+    /**
+     * Sets the latency to be added to every response.
+     *
+     * @param latencyMs the fixed latency in milliseconds
+     * @param latencyJitterMs the maximum random latency in milliseconds to be added on top
+     * @return the simulator
+     */
+    public McpMirSimulator setLatency(long latencyMs, long latencyJitterMs) {
+        this.latencyMs = Math.max(latencyMs, 0);
+        this.latencyJitterMs = Math.max(latencyJitterMs, 0);
+        return this;
+    }
+
+    /**
+     * Sets the rate of the requests that will fail with an internal server
+     * error.
+     *
+     * @param errorRate the error rate between 0 and 1
+     * @return the simulator
+     */
+    public McpMirSimulator setErrorRate(double errorRate) {
+        this.errorRate = Math.min(Math.max(errorRate, 0.0), 1.0);
+        return this;
+    }
+
+    /**
+     * Sets whether the simulator is in an outage, in which case every
+     * connection is dropped without a response.
+     *
+     * @param outage whether the simulator is in an outage
+     * @return the simulator
+     */
+    public McpMirSimulator setOutage(boolean outage) {
+        this.outage = outage;
+        return this;
+    }
+
+    /**
+     * Sets the validity period of the issued certificates.
+     *
+     * @param certificateValidityDays the validity period in days
+     * @return the simulator
+     */
+    public McpMirSimulator setCertificateValidityDays(int certificateValidityDays) {
+        this.certificateValidityDays = Math.max(certificateValidityDays, 1);
+        return this;
+    }
+
+    /**
+     * Returns the number of the requests received so far.
+     *
+     * @return the number of the received requests
+     */
+    public int getRequestCount() {
+        return this.server.getRequestCount();
+    }
+
+    /**
+     * Returns the number of the requests failed on purpose so far, i.e.
+     * through the error rate or an outage.
+     *
+     * @return the number of the injected errors
+     */
+    public long getInjectedErrors() {
+        return this.injectedErrors.get();
+    }
+
+    /**
+     * Returns the number of the registered entities.
+     *
+     * @return the number of the registered entities
+     */
+    public int getEntityCount() {
+        return this.entities.size();
+    }
+
+    /**
+     * Creates the SSL context of the server, with a server certificate for
+     * the local host issued by the local CA.
+     *
+     * @return the server SSL context
+     * @throws GeneralSecurityException if the SSL context cannot be created
+     * @throws IOException if the server certificate cannot be generated
+     */
+    protected SSLContext createSslContext() throws GeneralSecurityException, IOException {
+        final KeyPair serverKeyPair = X509Utils.generateKeyPair("secp256r1");
+        final X509Certificate serverCertificate;
+        try {
+            final X509v3CertificateBuilder builder = this.createCertificateBuilder(new X500Name("CN=localhost"), serverKeyPair.getPublic())
+                    .addExtension(Extension.subjectAlternativeName, false, new GeneralNames(new GeneralName[]{
+                            new GeneralName(GeneralName.dNSName, "localhost"),
+                            new GeneralName(GeneralName.iPAddress, "127.0.0.1")
+                    }));
+            serverCertificate = this.signCertificate(builder);
+        } catch (Exception ex) {
+            throw new GeneralSecurityException(ex);
+        }
+
+        // Load the server key into a keystore
+        final char[] password = UUID.randomUUID().toString().toCharArray();
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("server", serverKeyPair.getPrivate(), password, new Certificate[]{serverCertificate, this.caCertificate});
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, password);
+
+        // And build the SSL context
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    /**
+     * Issues a new certificate signed by the local CA, based on the provided
+     * PEM formatted certificate signing request.
+     *
+     * @param csrPem the PEM formatted certificate signing request
+     * @return the issued certificate
+     * @throws Exception if the certificate cannot be issued
+     */
+    protected X509Certificate issueCertificate(String csrPem) throws Exception {
+        final PKCS10CertificationRequest csr;
+        try (PEMParser pemParser = new PEMParser(new StringReader(csrPem))) {
+            csr = (PKCS10CertificationRequest) pemParser.readObject();
+        }
+        final JcaPKCS10CertificationRequest jcaCsr = new JcaPKCS10CertificationRequest(csr);
+        return this.signCertificate(this.createCertificateBuilder(jcaCsr.getSubject(), jcaCsr.getPublicKey()));
+    }
+
+    /**
+     * Creates a certificate builder for the provided subject and public key,
+     * issued by the local CA and valid from now on.
+     *
+     * @param subject the subject of the certificate
+     * @param publicKey the public key of the certificate
+     * @return the certificate builder
+     */
+    protected X509v3CertificateBuilder createCertificateBuilder(X500Name subject, PublicKey publicKey) {
+        final Instant now = Instant.now();
+        return new JcaX509v3CertificateBuilder(
+                this.caCertificate,
+                new BigInteger(64, new SecureRandom()),
+                Date.from(now.minusSeconds(60)),
+                Date.from(now.plusSeconds(this.certificateValidityDays * 86400L)),
+                subject,
+                publicKey);
+    }
+
+    /**
+     * Signs the certificate of the provided builder with the local CA.
+     *
+     * @param builder the certificate builder
+     * @return the signed certificate
+     * @throws Exception if the certificate cannot be signed
+     */
+    protected X509Certificate signCertificate(X509v3CertificateBuilder builder) throws Exception {
+        return new JcaX509CertificateConverter()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .getCertificate(builder.build(new JcaContentSignerBuilder("SHA384withECDSA")
+                        .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                        .build(this.caKeyPair.getPrivate())));
+    }
+
+    /**
+     * The dispatcher serving the MCP MIR endpoints, along with the injected
+     * faults.
+     */
+    protected class McpMirDispatcher extends Dispatcher {
+
+        /**
+         * Dispatches the provided request to the matching endpoint.
+         *
+         * @param request the recorded request
+         * @return the response to the request
+         */
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            // Inject any outages or errors first
+            if(outage) {
+                injectedErrors.incrementAndGet();
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+            }
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final MockResponse response = errorRate > 0 && random.nextDouble() < errorRate ?
+                    this.injectError() :
+                    this.handle(request);
+
+            // And delay the response as configured
+            final long delay = latencyMs + (latencyJitterMs > 0 ? random.nextLong(latencyJitterMs + 1) : 0);
+            return response.setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Handles the provided request based on its path, which has the form
+         * {type}[/{mrn}[/{version}]][/certificate/...], following the
+         * organisation prefix.
+         *
+         * @param request the recorded request
+         * @return the response to the request
+         */
+        protected MockResponse handle(RecordedRequest request) {
+            final String path = Optional.ofNullable(request.getRequestUrl())
+                    .map(HttpUrl::encodedPath)
+                    .orElse("");
+            if(!path.startsWith(ORG_PATH_PREFIX)) {
+                return this.status(404);
+            }
+            final List<String> segments = Arrays.stream(path.substring(ORG_PATH_PREFIX.length()).split("/"))
+                    .filter(s -> !s.isEmpty())
+                    .skip(1)
+                    .toList();
+            final String method = Objects.requireNonNull(request.getMethod());
+            try {
+                // The organisation itself is used for the connectivity probe
+                if(segments.isEmpty()) {
+                    return this.status(200);
+                }
+
+                // Locate the certificate operations, if any
+                final String type = segments.get(0);
+                final int certificateIndex = segments.indexOf("certificate");
+                final List<String> entityPath = certificateIndex > 0 ? segments.subList(1, certificateIndex) : segments.subList(1, segments.size());
+                final List<String> certificatePath = certificateIndex > 0 ? segments.subList(certificateIndex + 1, segments.size()) : List.of();
+                final String key = entityPath.isEmpty() ? null : type + "/" + String.join("/", entityPath);
+
+                if(entityPath.isEmpty() && method.equals("POST")) {
+                    return this.createEntity(type, request.getBody().readUtf8());
+                } else if(Objects.isNull(key)) {
+                    return this.status(405);
+                } else if(certificateIndex > 0 && method.equals("POST") && certificatePath.equals(List.of("issue-new", "csr"))) {
+                    return this.issueCertificate(key, request.getBody().readUtf8(), path);
+                } else if(certificateIndex > 0 && method.equals("POST") && certificatePath.size() == 2 && certificatePath.get(1).equals("revoke")) {
+                    return this.revokeCertificate(key, certificatePath.get(0));
+                } else if(certificateIndex < 0) {
+                    return switch (method) {
+                        case "GET" -> this.getEntity(key);
+                        case "PUT" -> this.updateEntity(key, request.getBody().readUtf8());
+                        case "DELETE" -> this.deleteEntity(key);
+                        default -> this.status(405);
+                    };
+                }
+                return this.status(404);
+            } catch (Exception ex) {
+                log.warn("MCP MIR simulator failed to handle {} {}: {}", method, path, ex.getMessage());
+                return this.status(400);
+            }
+        }
+
+        /**
+         * Registers a new entity.
+         *
+         * @param type the entity type
+         * @param body the JSON entity
+         * @return the created entity response
+         * @throws IOException if the entity cannot be parsed
+         */
+        protected MockResponse createEntity(String type, String body) throws IOException {
+            final ObjectNode entity = (ObjectNode) objectMapper.readTree(body);
+            final String key = type + "/" + entity.path("mrn").asText() +
+                    (entity.hasNonNull("instanceVersion") ? "/" + entity.get("instanceVersion").asText() : "");
+            final String now = Instant.now().toString();
+            entity.put("id", idSequence.incrementAndGet());
+            entity.put("createdAt", now);
+            entity.put("updatedAt", now);
+            entity.set("certificates", objectMapper.createArrayNode());
+            if(Objects.nonNull(entities.putIfAbsent(key, entity))) {
+                return this.status(409);
+            }
+            return this.json(201, entity);
+        }
+
+        /**
+         * Retrieves an existing entity.
+         *
+         * @param key the entity key
+         * @return the entity response
+         */
+        protected MockResponse getEntity(String key) throws IOException {
+            final ObjectNode entity = entities.get(key);
+            if(Objects.isNull(entity)) {
+                return this.status(404);
+            }
+            synchronized (entity) {
+                return this.json(200, entity);
+            }
+        }
+
+        /**
+         * Updates an existing entity, keeping its certificates.
+         *
+         * @param key the entity key
+         * @param body the JSON entity
+         * @return the updated entity response
+         * @throws IOException if the entity cannot be parsed
+         */
+        protected MockResponse updateEntity(String key, String body) throws IOException {
+            final ObjectNode entity = entities.get(key);
+            if(Objects.isNull(entity)) {
+                return this.status(404);
+            }
+            final ObjectNode update = (ObjectNode) objectMapper.readTree(body);
+            update.remove(List.of("id", "createdAt", "certificates"));
+            synchronized (entity) {
+                entity.setAll(update);
+                entity.put("updatedAt", Instant.now().toString());
+                return this.json(200, entity);
+            }
+        }
+
+        /**
+         * Deletes an existing entity.
+         *
+         * @param key the entity key
+         * @return the deletion response
+         */
+        protected MockResponse deleteEntity(String key) {
+            return this.status(Objects.nonNull(entities.remove(key)) ? 200 : 404);
+        }
+
+        /**
+         * Issues a new certificate for an existing entity, based on the
+         * provided certificate signing request.
+         *
+         * @param key the entity key
+         * @param csrPem the PEM formatted certificate signing request
+         * @param path the request path
+         * @return the issued certificate response
+         * @throws Exception if the certificate cannot be issued
+         */
+        protected MockResponse issueCertificate(String key, String csrPem, String path) throws Exception {
+            final ObjectNode entity = entities.get(key);
+            if(Objects.isNull(entity)) {
+                return this.status(404);
+            }
+            final X509Certificate certificate = McpMirSimulator.this.issueCertificate(csrPem);
+            final String certificatePem = X509Utils.formatCertificate(certificate);
+            final long id = idSequence.incrementAndGet();
+            synchronized (entity) {
+                ((ArrayNode) entity.get("certificates")).addObject()
+                        .put("id", id)
+                        .put("certificate", certificatePem)
+                        .put("start", certificate.getNotBefore().getTime())
+                        .put("end", certificate.getNotAfter().getTime())
+                        .put("serialNumber", certificate.getSerialNumber().toString())
+                        .put("revoked", false);
+            }
+            return new MockResponse()
+                    .setResponseCode(201)
+                    .setHeader("Content-Type", "application/x-pem-file")
+                    .setHeader("Location", path.replace("issue-new/csr", String.valueOf(id)))
+                    .setBody(certificatePem);
+        }
+
+        /**
+         * Revokes an existing certificate of an entity.
+         *
+         * @param key the entity key
+         * @param certificateId the ID of the certificate
+         * @return the revocation response
+         */
+        protected MockResponse revokeCertificate(String key, String certificateId) {
+            final ObjectNode entity = entities.get(key);
+            if(Objects.isNull(entity)) {
+                return this.status(404);
+            }
+            synchronized (entity) {
+                for(var certificate : entity.get("certificates")) {
+                    if(certificate.path("id").asText().equals(certificateId)) {
+                        ((ObjectNode) certificate)
+                                .put("revoked", true)
+                                .put("revokedAt", System.currentTimeMillis())
+                                .put("revokeReason", "unspecified");
+                        return this.status(200);
+                    }
+                }
+            }
+            return this.status(404);
+        }
+
+        /**
+         * Creates an injected error response.
+         *
+         * @return the error response
+         */
+        protected MockResponse injectError() {
+            injectedErrors.incrementAndGet();
+            return this.status(500);
+        }
+
+        /**
+         * Creates an empty response with the provided status.
+         *
+         * @param status the response status
+         * @return the response
+         */
+        protected MockResponse status(int status) {
+            return new MockResponse().setResponseCode(status);
+        }
+
+        /**
+         * Creates a JSON response with the provided status and entity.
+         *
+         * @param status the response status
+         * @param entity the JSON entity
+         * @return the response
+         * @throws IOException if the entity cannot be serialised
+         */
+        protected MockResponse json(int status, ObjectNode entity) throws IOException {
+            return new MockResponse()
+                    .setResponseCode(status)
+                    .setHeader("Content-Type", "application/json")
+                    .setBody(objectMapper.writeValueAsString(entity));
+        }
+
+    }
+
+    /**
+     * Starts the simulator standalone. The port can be provided as the first
+     * argument, while the injected faults can be configured through the
+     * "mcp.simulator.latency-ms", "mcp.simulator.latency-jitter-ms",
+     * "mcp.simulator.error-rate" and "mcp.simulator.https" system properties.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        final McpMirSimulator simulator = new McpMirSimulator()
+                .setLatency(Long.getLong("mcp.simulator.latency-ms", 0L), Long.getLong("mcp.simulator.latency-jitter-ms", 0L))
+                .setErrorRate(Double.parseDouble(System.getProperty("mcp.simulator.error-rate", "0")))
+                .start(args.length > 0 ? Integer.parseInt(args[0]) : 8443,
+                        Boolean.parseBoolean(System.getProperty("mcp.simulator.https", "true")));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                simulator.close();
+            } catch (IOException ex) {
+                log.error(ex.getMessage());
+            }
+        }));
+        Thread.currentThread().join();
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.cKeeper.simulator;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.grad.eNav.cKeeper.components.McpCircuitBreaker;
+import org.grad.eNav.cKeeper.components.TrustStoreManager;
+import org.grad.eNav.cKeeper.exceptions.DataNotFoundException;
+import org.grad.eNav.cKeeper.models.domain.Pair;
+import org.grad.eNav.cKeeper.models.domain.mcp.McpEntityType;
+import org.grad.eNav.cKeeper.models.dtos.mcp.McpDeviceDto;
+import org.grad.eNav.cKeeper.services.McpConfigService;
+import org.grad.eNav.cKeeper.services.McpService;
+import org.grad.eNav.cKeeper.utils.X509Utils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * The MCP MIR Simulator Test.
+ * <p/>
+ * Drives the simulator through the actual MCP service client over HTTPS, to
+ * make sure the two remain compatible.
+ */
+@ExtendWith(MockitoExtension.class)
+class McpMirSimulatorTest {
+
+    /**
+     * The MCP Service driving the simulator.
+     */
+    @InjectMocks
+    @Spy
+    McpService mcpService;
+
+    /**
+     * The MCP Config Service mock.
+     */
+    @Mock
+    McpConfigService mcpConfigService;
+
+    /**
+     * The Truststore Manager mock.
+     */
+    @Mock
+    TrustStoreManager trustStoreManager;
+
+    /**
+     * The MCP Circuit Breaker spy.
+     */
+    @Spy
+    McpCircuitBreaker mcpCircuitBreaker = new McpCircuitBreaker();
+
+    // Test Variables
+    private McpMirSimulator simulator;
+    private McpDeviceDto mcpDeviceDto;
+
+    /**
+     * Add the Bouncy Castle as a security provider for the unit tests.
+     */
+    @BeforeAll
+    static void addSecurityProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        this.simulator = new McpMirSimulator().start(0, true);
+        this.mcpDeviceDto = new McpDeviceDto("Test", "urn:mrn:mcp:device:mcc:grad:test");
+
+        // Point the MCP service to the simulator
+        doReturn(String.format("https://%s%surn:mrn:mcp:org:mcc:grad", this.simulator.getHost(), McpMirSimulator.ORG_PATH_PREFIX)).when(this.mcpConfigService).constructMcpCheckUrl();
+        doCallRealMethod().when(this.mcpConfigService).constructMcpBaseUrl();
+        lenient().doAnswer(inv -> inv.getArgument(1)).when(this.mcpConfigService).constructMcpEntityMrn(any(), any());
+        doNothing().when(this.mcpService).checkMcpMirConnectivity();
+        this.mcpService.init();
+    }
+
+    /**
+     * Clean up after each test.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        this.mcpService.destroy();
+        this.simulator.close();
+    }
+
+    /**
+     * Test that an entity can be registered, retrieved and deleted.
+     */
+    @Test
+    void testEntityLifecycle() throws Exception {
+        // Register the entity
+        final McpDeviceDto created = this.mcpService.createMcpEntity(this.mcpDeviceDto);
+        assertNotNull(created.getId());
+        assertEquals(this.mcpDeviceDto.getMrn(), created.getMrn());
+        assertEquals(1, this.simulator.getEntityCount());
+
+        // Retrieve it back
+        final McpDeviceDto retrieved = this.mcpService.getMcpEntity(this.mcpDeviceDto.getMrn(), null, McpDeviceDto.class);
+        assertEquals(created.getId(), retrieved.getId());
+        assertEquals(this.mcpDeviceDto.getName(), retrieved.getName());
+
+        // And delete it
+        assertTrue(this.mcpService.deleteMcpEntity(this.mcpDeviceDto.getMrn(), null, McpDeviceDto.class));
+        assertEquals(0, this.simulator.getEntityCount());
+        assertThrows(DataNotFoundException.class, () ->
+                this.mcpService.getMcpEntity(this.mcpDeviceDto.getMrn(), null, McpDeviceDto.class));
+    }
+
+    /**
+     * Test that a certificate can be issued from a CSR by the local CA, and
+     * that it can subsequently be revoked.
+     */
+    @Test
+    void testCertificateLifecycle() throws Exception {
+        this.mcpService.createMcpEntity(this.mcpDeviceDto);
+
+        // Issue a certificate from a CSR
+        final KeyPair keyPair = X509Utils.generateKeyPair(null);
+        final Pair<String, X509Certificate> issued = this.mcpService.issueMcpEntityCertificate(McpEntityType.DEVICE,
+                this.mcpDeviceDto.getMrn(), null, X509Utils.generateX509CSR(keyPair, "CN=Test", null));
+
+        // Make sure it was issued by the local CA for our key
+        assertNotNull(issued.getKey());
+        assertEquals(keyPair.getPublic(), issued.getValue().getPublicKey());
+        issued.getValue().verify(this.simulator.getCaCertificate().getPublicKey());
+
+        // Make sure it is listed for the entity
+        final Map<String, X509Certificate> certificates = this.mcpService.getMcpEntityCertificates(McpEntityType.DEVICE, this.mcpDeviceDto.getMrn(), null);
+        assertTrue(certificates.containsKey(issued.getValue().getSerialNumber().toString()));
+
+        // Revoke it, after which it should not be listed anymore
+        this.mcpService.revokeMcpEntityCertificate(McpEntityType.DEVICE, this.mcpDeviceDto.getMrn(), null, issued.getKey());
+        assertTrue(this.mcpService.getMcpEntityCertificates(McpEntityType.DEVICE, this.mcpDeviceDto.getMrn(), null).isEmpty());
+    }
+
+    /**
+     * Test that the configured latency is applied to the responses.
+     */
+    @Test
+    void testLatencyInjection() throws Exception {
+        this.simulator.setLatency(200, 0);
+
+        // Perform a call and time it
+        final long start = System.currentTimeMillis();
+        this.mcpService.createMcpEntity(this.mcpDeviceDto);
+        assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+
+    /**
+     * Test that the configured error rate and outages fail the requests.
+     */
+    @Test
+    void testFaultInjection() throws Exception {
+        this.mcpService.createMcpEntity(this.mcpDeviceDto);
+
+        // Fail all requests with an error
+        this.simulator.setErrorRate(1.0);
+        assertThrows(DataNotFoundException.class, () ->
+                this.mcpService.getMcpEntity(this.mcpDeviceDto.getMrn(), null, McpDeviceDto.class));
+
+        // Drop all connections
+        this.simulator.setErrorRate(0.0).setOutage(true);
+        assertThrows(Exception.class, () ->
+                this.mcpService.getMcpEntity(this.mcpDeviceDto.getMrn(), null, McpDeviceDto.class));
+        assertEquals(2, this.simulator.getInjectedErrors());
+
+        // And recover
+        this.simulator.setOutage(false);
+        assertNotNull(this.mcpService.getMcpEntity(this.mcpDeviceDto.getMrn(), null, McpDeviceDto.class));
+    }
+
+}